@@ -23,12 +23,13 @@
  */
 package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
 
@@ -36,6 +37,7 @@ import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Component;
 import org.w3c.dom.Document;
@@ -45,6 +47,7 @@ import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.util.BioportalConstants;
 
@@ -54,7 +57,7 @@ import edu.mayo.cts2.framework.plugin.service.bioportal.util.BioportalConstants;
  * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
  */
 @Component
-public class IdentityConverter implements InitializingBean, CacheObserver {
+public class IdentityConverter implements InitializingBean, DisposableBean, CacheObserver {
 	
 	private static final Log log = LogFactory.getLog(IdentityConverter.class);
 
@@ -75,19 +78,38 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	protected static final String ONTOLOGY_BEAN = "success.data.ontologyBean";
 	protected static final String STRING = "string";
 
-	private Map<String,String> ontologyIdToCodeSystemName = new HashMap<String,String>();
-	private Map<String,String> ontologyIdToValueSetName = new HashMap<String,String>();
-	private Map<String,String> codeSystemNameToOntologyId = new HashMap<String,String>();
-	private Map<String,String> valueSetNameToOntologyId = new HashMap<String,String>();
-	private Map<String,String> nameToOntologyVersionId = new HashMap<String,String>();
-	private Map<String,String> ontologyVersionIdToName = new HashMap<String,String>();
-	private Map<String,String> codeSystemVersionNameToVersion = new HashMap<String,String>();
-	private Map<String,String> codeSystemNameToAbout = new HashMap<String,String>();
-	private Map<String,String> codeSystemAboutToName = new HashMap<String,String>();
-	private Map<String,String> valueSetNameToAbout = new HashMap<String,String>();
-	private Map<String,String> versionNameToName = new HashMap<String,String>();
-	private Map<String,String> codeSystemNameAndVersionIdToCodeSystemVersionName = new HashMap<String,String>();
+	/* readers use whatever index is current, writers swap in a new one under the updateLock */
+	private volatile IdentityIndex identityIndex = IdentityIndex.EMPTY;
+
+	private final Object updateLock = new Object();
+
+	private static final int DEFAULT_GAP_FILL_PARALLELISM = 2;
 	
+	/* the longest a lookup waits on the gap filler before giving up on its key */
+	private static final long DEFAULT_GAP_FILL_WAIT = 10 * 1000L;
+
+	/* gap fills get their own pool, so a large gap can't queue up ahead of the upstream calls of requests */
+	private ParallelExecutor gapFillExecutor = 
+			new ParallelExecutor(DEFAULT_GAP_FILL_PARALLELISM, "bioportal-gap-fill");
+	
+	private long gapFillWait = DEFAULT_GAP_FILL_WAIT;
+
+	private final VersionGapFiller versionGapFiller = new VersionGapFiller(
+			new VersionGapFiller.VersionLoader(){
+
+				public boolean isLoaded(String ontologyVersionId) {
+					return isCached(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId);
+				}
+
+				public void load(String ontologyVersionId, IdentityIndex.Updates updates) {
+					cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(ontologyVersionId, updates);
+				}
+
+				public void publish(IdentityIndex.Updates updates) {
+					update(updates);
+				}
+			});
+
 	/**
 	 * The Enum NameType.
 	 *
@@ -95,21 +117,140 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 */
 	private enum NameType {VALUESET,CODESYSTEM};
 	
+	private static final String SNAPSHOT_FILE_NAME = "identity.snapshot";
+
 	/* (non-Javadoc)
 	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
 	 */
 	public void afterPropertiesSet() throws Exception {
 		try {
 			this.bioportalRestService.addObserver(this);
-			this.cacheNameAndId();
+			
+			if(this.loadSnapshot()){
+				this.reconcileInBackground();
+			} else {
+				this.cacheNameAndId();
+				this.saveSnapshot();
+			}
 		} catch (Exception e) {
 			log.error("Error Starting BioPortal Service", e);
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	public void destroy() throws Exception {
+		this.gapFillExecutor.shutdown();
+	}
+
 	@Override
 	public void onApiKeyChange() {
 		this.cacheNameAndId();
+		this.saveSnapshot();
+	}
+	
+	/**
+	 * Gets the current identity index.
+	 *
+	 * @return the identity index
+	 */
+	public IdentityIndex getIdentityIndex(){
+		return this.identityIndex;
+	}
+
+	/**
+	 * Apply a batch of changes to the identity index. The new index
+	 * is built aside and swapped in whole, so readers never see part of a batch.
+	 *
+	 * @param updates the updates
+	 */
+	private void update(IdentityIndex.Updates updates){
+		if(updates.isEmpty()){
+			return;
+		}
+
+		synchronized(this.updateLock){
+			this.identityIndex = this.identityIndex.with(updates);
+		}
+	}
+
+	private String get(IdentityMap map, String key){
+		return this.identityIndex.get(map, key);
+	}
+
+	private boolean isCached(IdentityMap map, String key){
+		return this.identityIndex.containsKey(map, key);
+	}
+
+	private File getSnapshotFile(){
+		String cachePath = this.bioportalRestService.getCachePath();
+		
+		return cachePath != null ? new File(cachePath, SNAPSHOT_FILE_NAME) : null;
+	}
+	
+	/**
+	 * Fill the identity maps from the last saved snapshot, if there is one.
+	 *
+	 * @return true, if a snapshot was loaded
+	 */
+	private boolean loadSnapshot(){
+		File file = this.getSnapshotFile();
+		if(file == null){
+			return false;
+		}
+		
+		IdentitySnapshot snapshot = IdentitySnapshot.load(file);
+		if(snapshot == null){
+			return false;
+		}
+		
+		IdentityIndex.Updates updates = new IdentityIndex.Updates();
+		for(IdentityMap map : IdentityMap.values()){
+			Map<String,String> saved = snapshot.getMap(map.getKey());
+
+			if(saved != null){
+				updates.putAll(map, saved);
+			}
+		}
+		this.update(updates);
+
+		log.info("Loaded identity snapshot from: " + file.getPath());
+		
+		return true;
+	}
+	
+	/**
+	 * Save the current identity maps as the snapshot.
+	 */
+	private void saveSnapshot(){
+		File file = this.getSnapshotFile();
+		if(file != null){
+			new IdentitySnapshot(this.identityIndex.getMapsByKey()).save(file);
+		}
+	}
+	
+	/**
+	 * Re-read the identity maps from BioPortal without blocking startup.
+	 * Until it finishes, lookups are served from the snapshot.
+	 */
+	private void reconcileInBackground(){
+		Thread thread = new Thread(new Runnable(){
+
+			public void run() {
+				try {
+					cacheNameAndId();
+					saveSnapshot();
+					log.info("Identity snapshot reconciled with BioPortal.");
+				} catch (Exception e) {
+					log.error("Error reconciling the identity snapshot with BioPortal", e);
+				}
+			}
+			
+		}, "bioportal-identity-reconcile");
+		
+		thread.setDaemon(true);
+		thread.start();
 	}
 
 	/**
@@ -119,7 +260,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String codeSystemAboutToName(String about){
-		return this.codeSystemAboutToName.get(about);
+		return this.get(IdentityMap.CODE_SYSTEM_ABOUT_TO_NAME, about);
 	}
 
 	/**
@@ -129,7 +270,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String codeSystemNameToOntologyId(String codeSystemName){
-		return this.codeSystemNameToOntologyId.get(codeSystemName);
+		return this.get(IdentityMap.CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, codeSystemName);
 	}
 	
 	/**
@@ -139,7 +280,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String valueSetNameToOntologyId(String valueSetName){
-		return this.valueSetNameToOntologyId.get(valueSetName);
+		return this.get(IdentityMap.VALUE_SET_NAME_TO_ONTOLOGY_ID, valueSetName);
 	}
 	
 	/**
@@ -149,7 +290,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String ontologyIdToCodeSystemName(String ontologyId){
-		String codeSystemName = this.ontologyIdToCodeSystemName.get(ontologyId);
+		String codeSystemName = this.get(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId);
 		
 		if(StringUtils.isBlank(codeSystemName)){
 			log.warn("ResourceNameOrUri for ontologyId: " + ontologyId + " is blank. Checking Virtual Ids...");
@@ -157,14 +298,15 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			this.cacheNameAndIdByVirtualId(ontologyId);
 			this.cacheVersionNameAndOntologyVersionId(ontologyId);
 			
-			codeSystemName = this.ontologyIdToCodeSystemName.get(ontologyId);
+			codeSystemName = this.get(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId);
 		}
 		
 		return codeSystemName;
 	}
 	
 	public Set<String> getAllCodeSystemOntologyIds(){
-		return this.ontologyIdToCodeSystemName.keySet();
+		return new HashSet<String>(
+				this.identityIndex.getMap(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME).keySet());
 	}
 	
 	/**
@@ -174,7 +316,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	public String ontologyIdToValueSetName(String ontologyId){
-		String valueSetName = this.ontologyIdToValueSetName.get(ontologyId);
+		String valueSetName = this.get(IdentityMap.ONTOLOGY_ID_TO_VALUE_SET_NAME, ontologyId);
 		
 		if(StringUtils.isBlank(valueSetName)){
 			log.warn("ResourceNameOrUri for ontologyId: " + ontologyId + " is blank. Checking Virtual Ids...");
@@ -182,7 +324,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			this.cacheNameAndIdByVirtualId(ontologyId);
 			this.cacheVersionNameAndOntologyVersionId(ontologyId);
 			
-			valueSetName = this.ontologyIdToCodeSystemName.get(ontologyId);
+			valueSetName = this.get(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId);
 		}
 		
 		return valueSetName;
@@ -197,6 +339,9 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	private void cachNameAndId(String xml, NameType type ) {
 		
 		Document document = BioportalRestUtils.getDocument(xml);
+		
+		List<String> ontologyIds = new ArrayList<String>();
+		IdentityIndex.Updates updates = new IdentityIndex.Updates();
 		try {
 
 			List<Node> nodeList = TransformUtils.getNodeListWithPath(document, 
@@ -211,15 +356,14 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 				
 				switch(type){
 					case VALUESET :{
-						this.valueSetNameToOntologyId.put(name, ontologyId);
-						this.ontologyIdToValueSetName.put(ontologyId, name);
+						updates.put(IdentityMap.VALUE_SET_NAME_TO_ONTOLOGY_ID, name, ontologyId);
+						updates.put(IdentityMap.ONTOLOGY_ID_TO_VALUE_SET_NAME, ontologyId, name);
 						//break;						//break;
 					} case CODESYSTEM :{
-						this.codeSystemNameToOntologyId.put(name, ontologyId);
-						this.ontologyIdToCodeSystemName.put(ontologyId, name);
+						updates.put(IdentityMap.CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, name, ontologyId);
+						updates.put(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId, name);
 						
-						this.cacheVersionNameAndOntologyVersionId(ontologyId);
-						this.cacheCodeSystemAbout(ontologyId);
+						ontologyIds.add(ontologyId);
 						break;
 					}
 				}
@@ -227,6 +371,51 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 		} catch (Exception e) {
 			throw new Cts2RuntimeException(e);
 		}
+		
+		this.update(updates);
+		
+		this.cacheVersionsAndAbouts(ontologyIds);
+	}
+	
+	/**
+	 * Cache the versions and the about of each ontology. Each ontology takes
+	 * its own BioPortal calls, so they are fanned out over the bounded upstream
+	 * executor. A failure only skips the ontology it happened on.
+	 * 
+	 * The changes of every ontology are gathered and published as one batch,
+	 * so the index maps are copied once rather than once per ontology.
+	 *
+	 * @param ontologyIds the ontology ids
+	 */
+	private void cacheVersionsAndAbouts(List<String> ontologyIds) {
+		final IdentityIndex.Updates batch = new IdentityIndex.Updates();
+		
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		
+		for(final String ontologyId : ontologyIds){
+			tasks.add(new Callable<Void>(){
+
+				public Void call() {
+					IdentityIndex.Updates updates = new IdentityIndex.Updates();
+					try {
+						cacheVersionNameAndOntologyVersionId(ontologyId, false, updates);
+						cacheCodeSystemAbout(ontologyId, updates);
+					} catch (Exception e) {
+						log.warn("Error caching OntologyId: " + ontologyId + ". Skipping.", e);
+					}
+					
+					synchronized(batch){
+						batch.putAll(updates);
+					}
+					
+					return null;
+				}
+			});
+		}
+		
+		this.bioportalRestService.getParallelExecutor().invokeAll(tasks);
+		
+		this.update(batch);
 	}
 	
 	/**
@@ -244,6 +433,10 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 		this.updateStaleCache(valueSetXml);
 	}
 	
+	/**
+	 * Start loading any versions BioPortal has added since the highest one cached.
+	 * Returns without waiting for them.
+	 */
 	private void updateStaleCache(){
 		String codeSystemXml = this.bioportalRestService.getLatestOntologyVersions(true);
 		String valueSetXml = this.bioportalRestService.getLatestViews(true);
@@ -252,26 +445,57 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 		this.updateStaleCache(valueSetXml);
 	}
 	
+	/**
+	 * Start loading any new versions, then wait until the given key is cached,
+	 * there is nothing left to load or the gap fill wait has passed. Newer ids
+	 * are waited for first, as a missing name is most likely a new version.
+	 * A key that is still missing at the deadline is left to the caller to report
+	 * as not found -- the rest of the gap goes on loading in the background.
+	 *
+	 * @param map the map
+	 * @param key the key
+	 */
+	private void updateStaleCacheAndWait(IdentityMap map, String key){
+		this.updateStaleCache();
+		
+		long deadline = System.currentTimeMillis() + this.gapFillWait;
+		
+		for(Integer ontologyVersionId : this.versionGapFiller.getPendingIds()){
+			if(this.isCached(map, key)){
+				return;
+			}
+			
+			long remaining = deadline - System.currentTimeMillis();
+			if(remaining <= 0){
+				log.info("Gave up waiting on the version gap fill for: " + key);
+				return;
+			}
+			
+			this.versionGapFiller.await(ontologyVersionId, remaining);
+		}
+	}
+	
 	private void updateStaleCache(String xml){
+		if(! this.versionGapFiller.isSeeded()){
+			this.versionGapFiller.seed(this.getHighestCachedVersionId());
+		}
+		
+		this.versionGapFiller.fillTo(
+				this.getHighestVersionId(xml), 
+				this.gapFillExecutor);
+	}
+	
+	private int getHighestCachedVersionId(){
 		int highestCachedVersionId = 0;
-		for(String ontologyVersionId : this.ontologyVersionIdToName.keySet()){
+		for(String ontologyVersionId : 
+			this.identityIndex.getMap(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME).keySet()){
 			int versionId = Integer.parseInt(ontologyVersionId);
 			if(highestCachedVersionId < versionId){
 				highestCachedVersionId = versionId;
 			}
 		}
 		
-		int highestFoundVersionId = this.getHighestVersionId(xml);
-		
-		if(highestFoundVersionId > highestCachedVersionId){
-			for(int i=highestCachedVersionId+1;i<=highestFoundVersionId;i++){
-				try { 
-					this.cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(Integer.toString(i));
-				} catch (Exception e) {
-					log.error("Error Starting BioPortal Service", e);
-				}
-			}
-		}
+		return highestCachedVersionId;
 	}
 	
 	private int getHighestVersionId(String xml){
@@ -314,13 +538,15 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			String name = buildName(node);
 				String ontologyId = TransformUtils.getNamedChildText(node, ONTOLOGY_ID);
 
+			IdentityIndex.Updates updates = new IdentityIndex.Updates();
 			if(BooleanUtils.toBoolean(TransformUtils.getNamedChildText(node, IS_VIEW))){
-				this.valueSetNameToOntologyId.put(name, ontologyId);
-				this.ontologyIdToValueSetName.put(ontologyId, name);
+				updates.put(IdentityMap.VALUE_SET_NAME_TO_ONTOLOGY_ID, name, ontologyId);
+				updates.put(IdentityMap.ONTOLOGY_ID_TO_VALUE_SET_NAME, ontologyId, name);
 			} else {
-				this.codeSystemNameToOntologyId.put(name, ontologyId);
-				this.ontologyIdToCodeSystemName.put(ontologyId, name);
+				updates.put(IdentityMap.CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, name, ontologyId);
+				updates.put(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, ontologyId, name);
 			}
+			this.update(updates);
 
 		} catch (Exception e) {
 			throw new Cts2RuntimeException(e);
@@ -334,7 +560,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */	
 	public String codeSystemVersionNameToVersion(String codeSystemVersionName) {		
-		String version = this.codeSystemVersionNameToVersion.get(codeSystemVersionName);
+		String version = this.get(IdentityMap.CODE_SYSTEM_VERSION_NAME_TO_VERSION, codeSystemVersionName);
 		
 		//if there's no version, just return the full name
 		if(version == null){
@@ -358,28 +584,46 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			String ontologyId,
 			String ontologyVersionId){
 
-		if(! this.ontologyVersionIdToName.containsKey(ontologyVersionId)){
+		if(! this.isCached(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId)){
 			this.cacheVersionNameAndOntologyVersionId(ontologyId, true);
 			
-			if(! this.ontologyVersionIdToName.containsKey(ontologyVersionId)){
-				this.cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(ontologyVersionId);
+			if(! this.isCached(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId)){
+				this.cacheVersionById(ontologyVersionId);
 			}
 		}
 		
-		return this.ontologyVersionIdToName.get(ontologyVersionId);
+		return this.get(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId);
 	}
 	
 	public String ontologyVersionIdToCodeSystemVersionName(
 			String ontologyVersionId){
 
-		if(! this.ontologyVersionIdToName.containsKey(ontologyVersionId)){
+		if(! this.isCached(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId)){
 		
-			if(! this.ontologyVersionIdToName.containsKey(ontologyVersionId)){
-				this.cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(ontologyVersionId);
+			if(! this.isCached(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId)){
+				this.cacheVersionById(ontologyVersionId);
 			}
 		}
 		
-		return this.ontologyVersionIdToName.get(ontologyVersionId);
+		return this.get(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId);
+	}
+	
+	/**
+	 * Cache one version by id. If the gap filler already has it queued,
+	 * wait for that instead of asking BioPortal a second time.
+	 *
+	 * @param ontologyVersionId the ontology version id
+	 */
+	private void cacheVersionById(String ontologyVersionId){
+		if(StringUtils.isNumeric(ontologyVersionId) && StringUtils.isNotEmpty(ontologyVersionId) &&
+				this.versionGapFiller.await(
+						Integer.parseInt(ontologyVersionId), 
+						this.gapFillWait) &&
+				this.isCached(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId)){
+			return;
+		}
+		
+		this.cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(ontologyVersionId);
 	}
 	
 	/**
@@ -405,24 +649,24 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	public String codeSystemVersionNameToOntologyVersionId(
 			String codeSystemVersionName){
 
-		if(! this.nameToOntologyVersionId.containsKey(codeSystemVersionName)){		
-			this.updateStaleCache();
-			if(! this.nameToOntologyVersionId.containsKey(codeSystemVersionName)){		
+		if(! this.isCached(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName)){		
+			this.updateStaleCacheAndWait(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName);
+			if(! this.isCached(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName)){		
 				throw new RuntimeException("OntologyVersionId should be cached.");
 			}
 		}
 		
-		return this.nameToOntologyVersionId.get(codeSystemVersionName);
+		return this.get(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName);
 	}
 	
 	public String codeSystemVersionNameCodeSystemName(
 			String codeSystemVersionName){
 
-		if(! this.nameToOntologyVersionId.containsKey(codeSystemVersionName)){	
-			this.updateStaleCache();
+		if(! this.isCached(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName)){	
+			this.updateStaleCacheAndWait(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName);
 		}
 		
-		return this.versionNameToName.get(codeSystemVersionName);
+		return this.get(IdentityMap.VERSION_NAME_TO_NAME, codeSystemVersionName);
 	}
 	
 	public String codeSystemNameAndVersionIdToCodeSystemVersionName(
@@ -450,19 +694,21 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			String codeSystemName,
 			String versionId){
 
-		if(! this.codeSystemNameAndVersionIdToCodeSystemVersionName.containsKey(
+		if(! this.isCached(IdentityMap.CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
 				this.createNameVersionIdKey(codeSystemName, versionId))){	
 			
 			//If the 'versionId' is the CodeSystemVersionName
-			if(this.codeSystemVersionNameToVersion.containsKey(versionId)){
+			if(this.isCached(IdentityMap.CODE_SYSTEM_VERSION_NAME_TO_VERSION, versionId)){
 				return versionId;
 			} else {
-				this.updateStaleCache();
+				this.updateStaleCacheAndWait(
+						IdentityMap.CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
+						this.createNameVersionIdKey(codeSystemName, versionId));
 
 			}
 		}
 
-		return this.codeSystemNameAndVersionIdToCodeSystemVersionName.get(
+		return this.get(IdentityMap.CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
 				this.createNameVersionIdKey(codeSystemName, versionId));
 	}
 	
@@ -475,14 +721,14 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	public String valueSetDefinitionNameToOntologyVersionId(
 			String valueSetDefinitionName){
 
-		if(! this.nameToOntologyVersionId.containsKey(valueSetDefinitionName)){		
-			this.updateStaleCache();
-			if(! this.nameToOntologyVersionId.containsKey(valueSetDefinitionName)){	
+		if(! this.isCached(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, valueSetDefinitionName)){		
+			this.updateStaleCacheAndWait(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, valueSetDefinitionName);
+			if(! this.isCached(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, valueSetDefinitionName)){	
 				throw new RuntimeException("OntologyVersionId should be cached.");
 			}
 		}
 		
-		return this.nameToOntologyVersionId.get(valueSetDefinitionName);
+		return this.get(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, valueSetDefinitionName);
 	}
 
 	
@@ -518,6 +764,21 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	}
 	
 	private void cacheVersionNameAndOntologyVersionId(String ontologyId, boolean forceRefresh) {
+		IdentityIndex.Updates updates = new IdentityIndex.Updates();
+		
+		this.cacheVersionNameAndOntologyVersionId(ontologyId, forceRefresh, updates);
+		
+		this.update(updates);
+	}
+	
+	/**
+	 * Collect the version names and ids of an ontology.
+	 *
+	 * @param ontologyId the ontology id
+	 * @param forceRefresh re-read the versions from BioPortal
+	 * @param updates the updates to add to
+	 */
+	private void cacheVersionNameAndOntologyVersionId(String ontologyId, boolean forceRefresh, IdentityIndex.Updates updates) {
 		try {
 			String xml;
 			try {
@@ -549,7 +810,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			}
 
 			for(Node node : nodeList){
-				this.doCacheVersionNode(node, unique_versions);
+				this.doCacheVersionNode(node, unique_versions, updates);
 			}
 
 			if(!unique_versions){
@@ -557,7 +818,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 				for(String nonUniqueVersion : non_unique_version_set){
 					String versionName = this.buildVersionName(node, unique_versions);
 					
-					this.codeSystemNameAndVersionIdToCodeSystemVersionName.put(
+					updates.put(IdentityMap.CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
 							this.createNameVersionIdKey(
 									TransformUtils.getNamedChildText(node, ABBREVIATION), nonUniqueVersion),
 							versionName);
@@ -569,21 +830,21 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 		}
 	}
 	
-	private void doCacheVersionNode(Node node, boolean unique_versions){
+	private void doCacheVersionNode(Node node, boolean unique_versions, IdentityIndex.Updates updates){
 		String ontologyVersionId = TransformUtils.getNamedChildText(node, ONTOLOGY_VERSION_ID);
 		String versionName = this.buildVersionName(node, unique_versions);
 
-		this.nameToOntologyVersionId.put(versionName, ontologyVersionId);
-		this.ontologyVersionIdToName.put(ontologyVersionId, versionName);
-		this.versionNameToName.put(versionName, this.buildName(node));
+		updates.put(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, versionName, ontologyVersionId);
+		updates.put(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId, versionName);
+		updates.put(IdentityMap.VERSION_NAME_TO_NAME, versionName, this.buildName(node));
 		String version;
 		if (unique_versions) {
 		    version = TransformUtils.getNamedChildText(node, VERSION);
 		} else {
 			version= ontologyVersionId;
 		}
-		codeSystemVersionNameToVersion.put(versionName, version);
-		this.codeSystemNameAndVersionIdToCodeSystemVersionName.put(
+		updates.put(IdentityMap.CODE_SYSTEM_VERSION_NAME_TO_VERSION, versionName, version);
+		updates.put(IdentityMap.CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
 				this.createNameVersionIdKey(
 						TransformUtils.getNamedChildText(node, ABBREVIATION), version),
 				versionName);
@@ -594,11 +855,12 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	}
 	
 	/**
-	 * Cache code system about.
+	 * Collect the about of a code system.
 	 *
 	 * @param ontologyId the ontology id
+	 * @param updates the updates to add to
 	 */
-	private void cacheCodeSystemAbout(String ontologyId) {
+	private void cacheCodeSystemAbout(String ontologyId, IdentityIndex.Updates updates) {
 		try {
 			String xml = this.bioportalRestService.getLatestOntologyVersionByOntologyId(ontologyId);
 
@@ -606,7 +868,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			
 			String about = this.getAboutFromXml(xml, name, BioportalConstants.DEFAULT_ONTOLOGY_ABOUT);
 			
-			this.codeSystemAboutToName.put(about, name);
+			updates.put(IdentityMap.CODE_SYSTEM_ABOUT_TO_NAME, about, name);
 			
 		} catch (Exception e) {
 			throw new Cts2RuntimeException(e);
@@ -619,6 +881,20 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @param ontologyVersionId the ontology version id
 	 */
 	private void cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(String ontologyVersionId) {
+		IdentityIndex.Updates updates = new IdentityIndex.Updates();
+		
+		this.cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(ontologyVersionId, updates);
+		
+		this.update(updates);
+	}
+	
+	/**
+	 * Collect the version name and ids of one ontology version.
+	 *
+	 * @param ontologyVersionId the ontology version id
+	 * @param updates the updates to add to
+	 */
+	private void cacheVersionNameAndOntologyVersionIdWithOntologyVersionId(String ontologyVersionId, IdentityIndex.Updates updates) {
 		try {
 			String xml = this.bioportalRestService.getOntologyByOntologyVersionId(ontologyVersionId);
 
@@ -628,10 +904,10 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 
 			String versionName = this.buildVersionName(node, false);
 
-			this.nameToOntologyVersionId.put(versionName, ontologyVersionId);
-			this.ontologyVersionIdToName.put(ontologyVersionId, versionName);
+			updates.put(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, versionName, ontologyVersionId);
+			updates.put(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId, versionName);
 			
-			this.versionNameToName.put(versionName, this.buildName(node));
+			updates.put(IdentityMap.VERSION_NAME_TO_NAME, versionName, this.buildName(node));
 			
 			String version;
 			
@@ -640,8 +916,8 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			} else {
 				version = ontologyVersionId;
 			}
-			codeSystemVersionNameToVersion.put(versionName, version);
-			this.codeSystemNameAndVersionIdToCodeSystemVersionName.put(
+			updates.put(IdentityMap.CODE_SYSTEM_VERSION_NAME_TO_VERSION, versionName, version);
+			updates.put(IdentityMap.CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME,
 					this.createNameVersionIdKey(
 							TransformUtils.getNamedChildText(node, ABBREVIATION), version),
 					versionName);
@@ -725,6 +1001,8 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 		for(String ontologyId : changedOntologyIds){
 			this.cacheVersionNameAndOntologyVersionId(ontologyId);
 		}
+		
+		this.saveSnapshot();
 	}
 	
 	/**
@@ -782,14 +1060,14 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	 * @return the string
 	 */
 	private String doGetAbout(String name, String defaultAboutPrefix, NameType type){
-		Map<String,String> map;
+		IdentityMap map;
 		switch(type){
 			case CODESYSTEM: {
-				map = this.codeSystemNameToAbout;
+				map = IdentityMap.CODE_SYSTEM_NAME_TO_ABOUT;
 				break;
 			}
 			case VALUESET: {
-				map = this.valueSetNameToAbout;
+				map = IdentityMap.VALUE_SET_NAME_TO_ABOUT;
 				break;
 			}
 			default: {
@@ -797,7 +1075,7 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			}
 		}
 		
-		if(! map.containsKey(name)){
+		if(! this.isCached(map, name)){
 			String ontologyId;
 				switch(type){
 				case CODESYSTEM: {
@@ -817,11 +1095,11 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 			}
 			String xml = this.bioportalRestService.getLatestOntologyVersionByOntologyId(ontologyId);
 			
-			map.put(name, 
-					this.getAboutFromXml(xml, name, defaultAboutPrefix));
+			this.update(new IdentityIndex.Updates().put(map, name, 
+					this.getAboutFromXml(xml, name, defaultAboutPrefix)));
 		}
 		
-		return map.get(name);
+		return this.get(map, name);
 	}
 	
 	/**
@@ -845,13 +1123,26 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	public String getDocumentUri(String ontologyVersionId){	
 		String xml = this.bioportalRestService.getOntologyByOntologyVersionId(ontologyVersionId);
 		
-		String uri = this.getUrn(xml);
+		return this.getDocumentUri(
+				TransformUtils.getNamedChildWithPath(BioportalRestUtils.getDocument(xml), ONTOLOGY_BEAN));
+	}
+	
+	/**
+	 * Gets the document uri of an ontologyBean that has already been fetched,
+	 * such as one entry of a versions list.
+	 *
+	 * @param ontologyBean the ontology bean node
+	 * @return the document uri
+	 */
+	public String getDocumentUri(Node ontologyBean){
+		String uri = StringUtils.trim(TransformUtils.getNamedChildText(ontologyBean, URN));
+		if(StringUtils.isBlank(uri)){
+			uri = StringUtils.trim(TransformUtils.getNamedChildText(ontologyBean, CODING_SCHEME));
+		}
 		
 		if(StringUtils.isBlank(uri)){
-			List<String> fileNames = this.getFileNames(xml);
-			
 			StringBuilder sb = new StringBuilder();
-			for(String fileName : fileNames){
+			for(String fileName : this.getFileNames(ontologyBean)){
 				sb.append(fileName);
 			}
 			
@@ -864,14 +1155,16 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	/**
 	 * Gets the file names.
 	 *
-	 * @param xml the xml
+	 * @param ontologyBean the ontology bean node
 	 * @return the file names
 	 */
-	private List<String> getFileNames(String xml){
+	private List<String> getFileNames(Node ontologyBean){
 		List<String> returnList = new ArrayList<String>();
 		
-		Node node = TransformUtils.getNamedChildWithPath(BioportalRestUtils.getDocument(xml), ONTOLOGY_BEAN);
-		node = TransformUtils.getNamedChild(node, FILENAMES);
+		Node node = TransformUtils.getNamedChild(ontologyBean, FILENAMES);
+		if(node == null){
+			return returnList;
+		}
 		
 		for(Node stringNode : TransformUtils.getNodeList(node, STRING)){
 			returnList.add(TransformUtils.getNodeText(stringNode));
@@ -881,6 +1174,6 @@ public class IdentityConverter implements InitializingBean, CacheObserver {
 	}
 	
 	public boolean isCachedCodeSystemVersionName(String codeSystemVersionName) {
-		return nameToOntologyVersionId.containsKey(codeSystemVersionName);
+		return this.isCached(IdentityMap.NAME_TO_ONTOLOGY_VERSION_ID, codeSystemVersionName);
 	}
 }
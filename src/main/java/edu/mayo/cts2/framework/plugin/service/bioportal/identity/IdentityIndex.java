@@ -0,0 +1,260 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * An immutable set of the {@link IdentityConverter} name and id maps.
+ *
+ * Readers hold on to one index and never see it change. Writers collect their
+ * changes in an {@link Updates} and build a new index with {@link #with(Updates)}.
+ * Only the maps an update touches are copied -- the rest are shared with the
+ * old index. Each copy costs the size of the map, so many small changes (as
+ * in a bootstrap) should be gathered into one {@link Updates} or applied to
+ * one {@link Builder} and published together.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public final class IdentityIndex {
+
+	public static final IdentityIndex EMPTY;
+	
+	static {
+		Map<IdentityMap,Map<String,String>> maps = new EnumMap<IdentityMap,Map<String,String>>(IdentityMap.class);
+		for(IdentityMap map : IdentityMap.values()){
+			maps.put(map, Collections.<String,String>emptyMap());
+		}
+		
+		EMPTY = new IdentityIndex(maps);
+	}
+	
+	private final Map<IdentityMap,Map<String,String>> maps;
+
+	private IdentityIndex(Map<IdentityMap,Map<String,String>> maps) {
+		super();
+		this.maps = Collections.unmodifiableMap(maps);
+	}
+	
+	/**
+	 * Gets a value from one of the maps.
+	 *
+	 * @param map the map
+	 * @param key the key
+	 * @return the value, or null if there is none
+	 */
+	public String get(IdentityMap map, String key){
+		return this.getMap(map).get(key);
+	}
+	
+	/**
+	 * Checks whether one of the maps contains a key.
+	 *
+	 * @param map the map
+	 * @param key the key
+	 * @return true, if the map contains the key
+	 */
+	public boolean containsKey(IdentityMap map, String key){
+		return this.getMap(map).containsKey(key);
+	}
+	
+	/**
+	 * Gets one of the maps. The map is read-only.
+	 *
+	 * @param map the map
+	 * @return the map
+	 */
+	public Map<String,String> getMap(IdentityMap map){
+		return this.maps.get(map);
+	}
+	
+	/**
+	 * Gets all of the maps, by their {@link IdentityMap#getKey()}, for saving
+	 * as an {@link IdentitySnapshot}. The maps are read-only.
+	 *
+	 * @return the maps
+	 */
+	public Map<String,Map<String,String>> getMapsByKey(){
+		Map<String,Map<String,String>> maps = new LinkedHashMap<String,Map<String,String>>();
+		for(Entry<IdentityMap, Map<String, String>> entry : this.maps.entrySet()){
+			maps.put(entry.getKey().getKey(), entry.getValue());
+		}
+		
+		return maps;
+	}
+	
+	/**
+	 * Builds a new index with the given updates applied. This index is left unchanged.
+	 *
+	 * @param updates the updates
+	 * @return the new index, or this index if there are no updates
+	 */
+	public IdentityIndex with(Updates updates){
+		if(updates.isEmpty()){
+			return this;
+		}
+		
+		return this.builder().apply(updates).build();
+	}
+	
+	/**
+	 * Starts a new index from this one. This index is left unchanged.
+	 *
+	 * @return the builder
+	 */
+	public Builder builder(){
+		return new Builder(this);
+	}
+	
+	/**
+	 * Builds a new {@link IdentityIndex}. Each map is copied once, the first
+	 * time it is changed, however many updates are applied. Not thread safe.
+	 */
+	public static class Builder {
+		
+		private IdentityIndex base;
+		
+		private Map<IdentityMap,Map<String,String>> copies = 
+				new EnumMap<IdentityMap,Map<String,String>>(IdentityMap.class);
+		
+		private Builder(IdentityIndex base) {
+			super();
+			this.base = base;
+		}
+		
+		/**
+		 * Applies a batch of changes.
+		 *
+		 * @param updates the updates
+		 * @return this builder
+		 */
+		public Builder apply(Updates updates){
+			for(Entry<IdentityMap, List<String[]>> entry : updates.puts.entrySet()){
+				Map<String,String> map = this.copies.get(entry.getKey());
+				if(map == null){
+					map = new HashMap<String,String>(this.base.getMap(entry.getKey()));
+					this.copies.put(entry.getKey(), map);
+				}
+				
+				for(String[] put : entry.getValue()){
+					map.put(put[0], put[1]);
+				}
+			}
+			
+			return this;
+		}
+		
+		/**
+		 * Builds the index. The builder must not be used afterwards.
+		 *
+		 * @return the index
+		 */
+		public IdentityIndex build(){
+			if(this.copies.isEmpty()){
+				return this.base;
+			}
+			
+			Map<IdentityMap,Map<String,String>> newMaps = 
+					new EnumMap<IdentityMap,Map<String,String>>(this.base.maps);
+			
+			for(Entry<IdentityMap, Map<String, String>> entry : this.copies.entrySet()){
+				newMaps.put(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+			}
+			
+			return new IdentityIndex(newMaps);
+		}
+	}
+	
+	/**
+	 * A batch of changes to an {@link IdentityIndex}. Not thread safe -- 
+	 * each writer fills its own.
+	 */
+	public static class Updates {
+		
+		private Map<IdentityMap,List<String[]>> puts = 
+				new EnumMap<IdentityMap,List<String[]>>(IdentityMap.class);
+		
+		/**
+		 * Adds a put to one of the maps. Later puts of the same key win.
+		 *
+		 * @param map the map
+		 * @param key the key
+		 * @param value the value
+		 * @return these updates
+		 */
+		public Updates put(IdentityMap map, String key, String value){
+			List<String[]> list = this.puts.get(map);
+			if(list == null){
+				list = new ArrayList<String[]>();
+				this.puts.put(map, list);
+			}
+			
+			list.add(new String[]{key, value});
+			
+			return this;
+		}
+		
+		/**
+		 * Adds every entry of the given map as a put.
+		 *
+		 * @param map the map
+		 * @param entries the entries
+		 * @return these updates
+		 */
+		public Updates putAll(IdentityMap map, Map<String,String> entries){
+			for(Entry<String, String> entry : entries.entrySet()){
+				this.put(map, entry.getKey(), entry.getValue());
+			}
+			
+			return this;
+		}
+		
+		/**
+		 * Adds every put of another batch. Its puts win over earlier puts of the same key.
+		 *
+		 * @param updates the updates
+		 * @return these updates
+		 */
+		public Updates putAll(Updates updates){
+			for(Entry<IdentityMap, List<String[]>> entry : updates.puts.entrySet()){
+				for(String[] put : entry.getValue()){
+					this.put(entry.getKey(), put[0], put[1]);
+				}
+			}
+			
+			return this;
+		}
+		
+		public boolean isEmpty(){
+			return this.puts.isEmpty();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+/**
+ * The name and id maps of an {@link IdentityIndex}. The key of each is the
+ * name it is saved under in an {@link IdentitySnapshot}.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public enum IdentityMap {
+	
+	ONTOLOGY_ID_TO_CODE_SYSTEM_NAME("ontologyIdToCodeSystemName"),
+	ONTOLOGY_ID_TO_VALUE_SET_NAME("ontologyIdToValueSetName"),
+	CODE_SYSTEM_NAME_TO_ONTOLOGY_ID("codeSystemNameToOntologyId"),
+	VALUE_SET_NAME_TO_ONTOLOGY_ID("valueSetNameToOntologyId"),
+	NAME_TO_ONTOLOGY_VERSION_ID("nameToOntologyVersionId"),
+	ONTOLOGY_VERSION_ID_TO_NAME("ontologyVersionIdToName"),
+	CODE_SYSTEM_VERSION_NAME_TO_VERSION("codeSystemVersionNameToVersion"),
+	CODE_SYSTEM_NAME_TO_ABOUT("codeSystemNameToAbout"),
+	CODE_SYSTEM_ABOUT_TO_NAME("codeSystemAboutToName"),
+	VALUE_SET_NAME_TO_ABOUT("valueSetNameToAbout"),
+	VERSION_NAME_TO_NAME("versionNameToName"),
+	CODE_SYSTEM_NAME_AND_VERSION_ID_TO_CODE_SYSTEM_VERSION_NAME("codeSystemNameAndVersionIdToCodeSystemVersionName");
+	
+	private String key;
+	
+	private IdentityMap(String key){
+		this.key = key;
+	}
+	
+	public String getKey(){
+		return this.key;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.SerializedFiles;
+
+/**
+ * A versioned, on-disk copy of the {@link IdentityConverter} name and id maps,
+ * so the plugin can start without first re-reading every ontology from BioPortal.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class IdentitySnapshot implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+
+	private static final Log log = LogFactory.getLog(IdentitySnapshot.class);
+	
+	/* bump this when the meaning or the set of the maps changes -- older snapshots are then ignored */
+	public static final int FORMAT_VERSION = 1;
+	
+	private int formatVersion = FORMAT_VERSION;
+	
+	private long created;
+	
+	private LinkedHashMap<String,HashMap<String,String>> maps = 
+			new LinkedHashMap<String,HashMap<String,String>>();
+
+	/**
+	 * Instantiates a new identity snapshot, copying the given maps.
+	 *
+	 * @param maps the maps, by name
+	 */
+	public IdentitySnapshot(Map<String,Map<String,String>> maps) {
+		super();
+		this.created = System.currentTimeMillis();
+		
+		for(Entry<String, Map<String, String>> entry : maps.entrySet()){
+			this.maps.put(entry.getKey(), new HashMap<String,String>(entry.getValue()));
+		}
+	}
+	
+	/**
+	 * Loads a snapshot.
+	 *
+	 * @param file the file
+	 * @return the snapshot, or null if there is no usable snapshot
+	 */
+	public static IdentitySnapshot load(File file){
+		if(! file.exists()){
+			return null;
+		}
+		
+		try {
+			IdentitySnapshot snapshot = (IdentitySnapshot) 
+					SerializedFiles.read(file, IdentitySnapshot.class.getClassLoader());
+			
+			if(snapshot.formatVersion != FORMAT_VERSION){
+				log.info("Ignoring identity snapshot with format version: " + snapshot.formatVersion);
+				return null;
+			}
+			
+			return snapshot;
+		} catch (Exception e) {
+			log.warn("Could not read identity snapshot: " + file.getPath(), e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Saves the snapshot. The new snapshot is renamed over the old one, so a crash
+	 * mid-write leaves the previous snapshot behind.
+	 *
+	 * @param file the file
+	 */
+	public void save(File file){
+		try {
+			SerializedFiles.write(file, this);
+		} catch (IOException e) {
+			log.warn("Could not write identity snapshot: " + file.getPath(), e);
+		}
+	}
+	
+	public long getCreated() {
+		return created;
+	}
+	
+	public int getFormatVersion() {
+		return formatVersion;
+	}
+	
+	public Map<String,String> getMap(String name) {
+		return this.maps.get(name);
+	}
+}
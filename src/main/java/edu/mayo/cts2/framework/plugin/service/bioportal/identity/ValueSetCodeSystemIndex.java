@@ -0,0 +1,311 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
+
+/**
+ * Which code systems each value set (BioPortal view) is a view on, and the reverse.
+ *
+ * The index is built from the latest views list on first use -- each view lists
+ * the ontology version ids it is a view on, and those are named with the
+ * {@link IdentityConverter}. 
+ * 
+ * At most once every check interval the views list is read again (usually from
+ * the response cache) and its digest compared with the one the index was built
+ * from. If it changed, only the views whose version id changed (and views not
+ * seen before) are indexed again. Ontology version ids never change, so the
+ * other views keep their entries. A change event marks its ontologies to be
+ * indexed again on next use, without waiting for the check.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+@Component
+public class ValueSetCodeSystemIndex implements InitializingBean, CacheObserver {
+	
+	private static final Log log = LogFactory.getLog(ValueSetCodeSystemIndex.class);
+	
+	public static final long DEFAULT_CHECK_INTERVAL = 5 * 60 * 1000L;
+	
+	private static final String ONTOLOGY_VERSION_ID = "id";
+	
+	@Resource
+	private BioportalRestService bioportalRestService;
+	
+	@Resource
+	private IdentityConverter identityConverter;
+	
+	/**
+	 * One immutable build of the index.
+	 */
+	private static class Index {
+		private final String digest;
+		private final Map<String,String> versionIdOfOntologyId;
+		private final Map<String,String> valueSetOfOntologyId;
+		private final Map<String,Set<String>> codeSystemsOfValueSet;
+		private final Map<String,Set<String>> valueSetsOfCodeSystem;
+		
+		private Index(
+				String digest,
+				Map<String,String> versionIdOfOntologyId,
+				Map<String,String> valueSetOfOntologyId,
+				Map<String,Set<String>> codeSystemsOfValueSet, 
+				Map<String,Set<String>> valueSetsOfCodeSystem) {
+			super();
+			this.digest = digest;
+			this.versionIdOfOntologyId = versionIdOfOntologyId;
+			this.valueSetOfOntologyId = valueSetOfOntologyId;
+			this.codeSystemsOfValueSet = codeSystemsOfValueSet;
+			this.valueSetsOfCodeSystem = valueSetsOfCodeSystem;
+		}
+	}
+	
+	private volatile Index index;
+	
+	private volatile boolean stale;
+	
+	private volatile long nextCheck;
+	
+	private volatile long checkInterval = DEFAULT_CHECK_INTERVAL;
+	
+	//guarded by this
+	private Set<String> changedOntologyIds = new HashSet<String>();
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		this.bioportalRestService.addObserver(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver#onCodeSystemsChangeEvent(java.util.List)
+	 */
+	public synchronized void onCodeSystemsChangeEvent(List<String> changedOntologyIds) {
+		if(this.index == null){
+			return;
+		}
+		
+		this.changedOntologyIds.addAll(changedOntologyIds);
+		this.stale = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver#onApiKeyChange()
+	 */
+	public synchronized void onApiKeyChange() {
+		this.index = null;
+		this.changedOntologyIds.clear();
+		this.stale = true;
+	}
+	/**
+	 * Gets the names of the code systems a value set is a view on.
+	 *
+	 * @param valueSetName the value set name
+	 * @return the code system names, empty if the value set is not known
+	 */
+	public Set<String> getCodeSystemsOfValueSet(String valueSetName){
+		return this.get(this.getIndex().codeSystemsOfValueSet, valueSetName);
+	}
+	
+	/**
+	 * Gets the names of the value sets that are views on a code system.
+	 *
+	 * @param codeSystemName the code system name
+	 * @return the value set names, empty if there are none
+	 */
+	public Set<String> getValueSetsOfCodeSystem(String codeSystemName){
+		return this.get(this.getIndex().valueSetsOfCodeSystem, codeSystemName);
+	}
+	
+	private Set<String> get(Map<String,Set<String>> map, String key){
+		Set<String> set = map.get(key);
+		
+		if(set == null){
+			return Collections.emptySet();
+		} else {
+			return set;
+		}
+	}
+	
+	private Index getIndex(){
+		Index current = this.index;
+		if(current == null || this.stale || System.currentTimeMillis() >= this.nextCheck){
+			synchronized(this){
+				if(this.index == null || this.stale || System.currentTimeMillis() >= this.nextCheck){
+					this.refresh();
+				}
+				current = this.index;
+			}
+		}
+		
+		return current;
+	}
+	
+	/**
+	 * Read the latest views, and rebuild the index if they are not the ones it
+	 * was built from.
+	 */
+	protected synchronized void refresh(){
+		String xml = this.bioportalRestService.getLatestViews(this.stale);
+		
+		String digest = xml.length() + ":" + xml.hashCode();
+		
+		if(this.index == null || this.stale || ! digest.equals(this.index.digest)){
+			this.rebuild(xml, digest);
+		}
+		
+		this.nextCheck = System.currentTimeMillis() + this.checkInterval;
+	}
+	
+	/**
+	 * Rebuild the index from the latest views, indexing again only the views
+	 * that changed since the last build.
+	 *
+	 * @param xml the latest views
+	 * @param digest the digest of the latest views
+	 */
+	private void rebuild(String xml, String digest){
+		Index previous = this.index;
+		
+		Document doc = BioportalRestUtils.getDocument(xml);
+		
+		Map<String,String> versionIdOfOntologyId = new HashMap<String,String>();
+		Map<String,String> valueSetOfOntologyId = new HashMap<String,String>();
+		Map<String,Set<String>> codeSystemsOfValueSet = new HashMap<String,Set<String>>();
+		Map<String,Set<String>> valueSetsOfCodeSystem = new HashMap<String,Set<String>>();
+		
+		int indexed = 0;
+		for(Node node : TransformUtils.getNodeListWithPath(doc, "success.data.list.ontologyBean")){
+			String ontologyId = TransformUtils.getNamedChildText(node, "ontologyId");
+			String versionId = TransformUtils.getNamedChildText(node, ONTOLOGY_VERSION_ID);
+			
+			String valueSetName;
+			Set<String> codeSystems;
+			
+			if(previous != null && 
+					! this.changedOntologyIds.contains(ontologyId) &&
+					previous.valueSetOfOntologyId.containsKey(ontologyId) &&
+					StringUtils.equals(versionId, previous.versionIdOfOntologyId.get(ontologyId))){
+				valueSetName = previous.valueSetOfOntologyId.get(ontologyId);
+				codeSystems = previous.codeSystemsOfValueSet.get(valueSetName);
+			} else {
+				codeSystems = new HashSet<String>();
+				
+				try {
+					valueSetName = this.identityConverter.buildName(node);
+					
+					for(Node id : TransformUtils.getNodeListWithPath(node, "viewOnOntologyVersionId.int")){
+						String ontologyVersionId = TransformUtils.getNodeText(id);
+						
+						if(StringUtils.isNotBlank(ontologyVersionId)){
+							String versionName = 
+									this.identityConverter.ontologyVersionIdToCodeSystemVersionName(ontologyVersionId);
+							
+							String codeSystemName = 
+									this.identityConverter.codeSystemVersionNameCodeSystemName(versionName);
+							
+							if(codeSystemName != null){
+								codeSystems.add(codeSystemName);
+							}
+						}
+					}
+				} catch (Exception e) {
+					log.warn("Error indexing view: " + ontologyId + ". Skipping.", e);
+					continue;
+				}
+				
+				codeSystems = Collections.unmodifiableSet(codeSystems);
+				indexed++;
+			}
+			
+			versionIdOfOntologyId.put(ontologyId, versionId);
+			valueSetOfOntologyId.put(ontologyId, valueSetName);
+			codeSystemsOfValueSet.put(valueSetName, codeSystems);
+			
+			for(String codeSystem : codeSystems){
+				Set<String> valueSets = valueSetsOfCodeSystem.get(codeSystem);
+				if(valueSets == null){
+					valueSets = new HashSet<String>();
+					valueSetsOfCodeSystem.put(codeSystem, valueSets);
+				}
+				valueSets.add(valueSetName);
+			}
+		}
+		
+		for(Map.Entry<String, Set<String>> entry : valueSetsOfCodeSystem.entrySet()){
+			entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+		}
+		
+		this.index = new Index(
+				digest, versionIdOfOntologyId, valueSetOfOntologyId, codeSystemsOfValueSet, valueSetsOfCodeSystem);
+		this.changedOntologyIds.clear();
+		this.stale = false;
+		
+		log.info("Indexed " + indexed + " of " + codeSystemsOfValueSet.size() + " value sets over " + 
+				valueSetsOfCodeSystem.size() + " code systems.");
+	}
+
+	public void setBioportalRestService(BioportalRestService bioportalRestService) {
+		this.bioportalRestService = bioportalRestService;
+	}
+
+	public void setIdentityConverter(IdentityConverter identityConverter) {
+		this.identityConverter = identityConverter;
+	}
+	
+	/**
+	 * Sets how often the views list is checked for changes.
+	 *
+	 * @param checkInterval the check interval, in milliseconds
+	 */
+	public void setCheckInterval(long checkInterval) {
+		this.checkInterval = checkInterval;
+		this.nextCheck = 0;
+	}
+	
+	public long getCheckInterval() {
+		return this.checkInterval;
+	}
+}
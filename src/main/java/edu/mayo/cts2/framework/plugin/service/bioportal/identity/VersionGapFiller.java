@@ -0,0 +1,265 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor;
+
+/**
+ * Loads the ontology versions that BioPortal has added since the highest one
+ * already known. The missing version ids are split into batches, and each batch
+ * is one background task on a bounded {@link ParallelExecutor}. A batch collects
+ * the changes of all of its ids and publishes them together, so a gap of N ids
+ * copies the index maps N / batch size times rather than N times.
+ * 
+ * An id is only ever queued once, however many callers ask for it, and callers
+ * can wait for just the batch holding the id they need. A caller that waits
+ * for a batch still in the queue loads it itself rather than waiting its turn,
+ * so waiting from a thread of the same pool can't deadlock it. A wait on a batch
+ * another thread is loading is bounded by the caller's timeout.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class VersionGapFiller {
+
+	private static final Log log = LogFactory.getLog(VersionGapFiller.class);
+	
+	public static final int DEFAULT_BATCH_SIZE = 25;
+
+	/**
+	 * Loads ontology versions into the identity index.
+	 */
+	public interface VersionLoader {
+
+		/**
+		 * Checks whether a version is already known.
+		 *
+		 * @param ontologyVersionId the ontology version id
+		 * @return true, if it is known
+		 */
+		boolean isLoaded(String ontologyVersionId);
+
+		/**
+		 * Reads a version, adding its changes to the given updates.
+		 *
+		 * @param ontologyVersionId the ontology version id
+		 * @param updates the updates to add to
+		 */
+		void load(String ontologyVersionId, IdentityIndex.Updates updates);
+		
+		/**
+		 * Publishes the changes of one batch of versions.
+		 *
+		 * @param updates the updates
+		 */
+		void publish(IdentityIndex.Updates updates);
+	}
+
+	private VersionLoader loader;
+	
+	private int batchSize;
+
+	/* the highest id known or queued, or -1 until it is seeded */
+	private int highestScheduledId = -1;
+
+	private ConcurrentHashMap<Integer,FutureTask<Void>> pending = 
+			new ConcurrentHashMap<Integer,FutureTask<Void>>();
+
+	/**
+	 * Instantiates a new version gap filler.
+	 *
+	 * @param loader the loader
+	 */
+	public VersionGapFiller(VersionLoader loader) {
+		this(loader, DEFAULT_BATCH_SIZE);
+	}
+	
+	/**
+	 * Instantiates a new version gap filler.
+	 *
+	 * @param loader the loader
+	 * @param batchSize the most ids to load and publish together
+	 */
+	public VersionGapFiller(VersionLoader loader, int batchSize) {
+		super();
+		this.loader = loader;
+		this.batchSize = batchSize;
+	}
+
+	public synchronized boolean isSeeded(){
+		return this.highestScheduledId >= 0;
+	}
+
+	/**
+	 * Records the highest version id that is already known. Only ids above the
+	 * highest seeded or queued id are ever filled.
+	 *
+	 * @param highestKnownId the highest known id
+	 */
+	public synchronized void seed(int highestKnownId){
+		this.highestScheduledId = Math.max(this.highestScheduledId, highestKnownId);
+	}
+
+	/**
+	 * Queues every id between the highest known id and the given id. Returns
+	 * without waiting -- use {@link #await(int, long)} or
+	 * {@link #getPendingIds()} to wait.
+	 *
+	 * @param highestFoundId the highest id BioPortal reports
+	 * @param executor the executor to load on
+	 * @return the number of ids queued by this call
+	 */
+	public int fillTo(int highestFoundId, ParallelExecutor executor){
+		int from;
+		synchronized(this){
+			if(highestFoundId <= this.highestScheduledId){
+				return 0;
+			}
+			from = this.highestScheduledId + 1;
+			this.highestScheduledId = highestFoundId;
+		}
+
+		List<String> batch = new ArrayList<String>();
+		for(int id = from; id <= highestFoundId; id++){
+			String ontologyVersionId = Integer.toString(id);
+			if(! this.loader.isLoaded(ontologyVersionId)){
+				batch.add(ontologyVersionId);
+			}
+			
+			if(batch.size() == this.batchSize || id == highestFoundId){
+				this.schedule(batch, executor);
+				batch = new ArrayList<String>();
+			}
+		}
+
+		log.info("Filling ontology version ids " + from + " to " + highestFoundId + ".");
+
+		return highestFoundId - from + 1;
+	}
+
+	private void schedule(final List<String> ontologyVersionIds, ParallelExecutor executor){
+		if(ontologyVersionIds.isEmpty()){
+			return;
+		}
+
+		FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>(){
+
+			public Void call() {
+				try {
+					IdentityIndex.Updates batch = new IdentityIndex.Updates();
+					
+					for(String ontologyVersionId : ontologyVersionIds){
+						if(loader.isLoaded(ontologyVersionId)){
+							continue;
+						}
+						
+						//a failed id adds nothing, rather than half of its changes
+						IdentityIndex.Updates updates = new IdentityIndex.Updates();
+						try {
+							loader.load(ontologyVersionId, updates);
+							batch.putAll(updates);
+						} catch (Exception e) {
+							log.warn("Error caching OntologyVersionId: " + ontologyVersionId + ". Skipping.", e);
+						}
+					}
+					
+					loader.publish(batch);
+				} finally {
+					for(String ontologyVersionId : ontologyVersionIds){
+						pending.remove(Integer.valueOf(ontologyVersionId));
+					}
+				}
+
+				return null;
+			}
+		});
+
+		//registered before it is queued, so it can never be removed before it is added
+		for(String ontologyVersionId : ontologyVersionIds){
+			this.pending.put(Integer.valueOf(ontologyVersionId), task);
+		}
+		executor.submit(Executors.callable(task));
+	}
+
+	/**
+	 * Waits for the batch holding one version id, if it is queued. If it has not started
+	 * yet it is loaded in the calling thread; the queued copy then does nothing. If another
+	 * thread is loading it, this waits at most the given time for it to finish.
+	 *
+	 * @param ontologyVersionId the ontology version id
+	 * @param timeout the longest to wait on another thread, in milliseconds
+	 * @return true, if the id was queued
+	 */
+	public boolean await(int ontologyVersionId, long timeout){
+		FutureTask<Void> task = this.pending.get(ontologyVersionId);
+		if(task == null){
+			return false;
+		}
+
+		//a no-op if another thread has already started it
+		task.run();
+		
+		try {
+			task.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			log.debug("Timed out waiting for OntologyVersionId: " + ontologyVersionId);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new Cts2RuntimeException(e);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gets the ids still queued or loading, newest first.
+	 *
+	 * @return the pending ids
+	 */
+	public List<Integer> getPendingIds(){
+		List<Integer> ids = new ArrayList<Integer>(this.pending.keySet());
+		Collections.sort(ids, Collections.reverseOrder());
+
+		return ids;
+	}
+
+	public synchronized int getHighestScheduledId(){
+		return this.highestScheduledId;
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.profile.association;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.mayo.cts2.framework.model.association.GraphNode;
+import edu.mayo.cts2.framework.model.core.EntitySynopsis;
+import edu.mayo.cts2.framework.model.core.ScopedEntityName;
+import edu.mayo.cts2.framework.model.directory.DirectoryResult;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor;
+
+/**
+ * Expands an association graph breadth-first, one level at a time. The nodes of a
+ * level are fetched concurrently, so a graph of depth 'n' costs about 'n' round trips.
+ * 
+ * Nodes are numbered in the order they are reached: level by level, and within a level
+ * in the order of the nodes they were reached from. Each entity is expanded at most once.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class AssociationGraphExpander {
+	
+	private static final Log log = LogFactory.getLog(AssociationGraphExpander.class);
+	
+	/**
+	 * Reads the associations of one entity, oriented so that
+	 * {@link GraphNode#getNodeEntity()} is the entity reached.
+	 */
+	public interface NeighborReader {
+		
+		/**
+		 * Read the associations of the entity.
+		 *
+		 * @param entity the entity
+		 * @return the graph nodes
+		 */
+		public List<GraphNode> read(ScopedEntityName entity);
+	}
+	
+	/**
+	 * Notified as each level of the graph completes.
+	 */
+	public interface LevelListener {
+		
+		/**
+		 * Called once a level is complete, with its numbered nodes.
+		 *
+		 * @param depth the depth of the level, starting at 1
+		 * @param nodes the nodes
+		 */
+		public void onLevel(int depth, List<GraphNode> nodes);
+	}
+	
+	private ParallelExecutor executor;
+	
+	private int maxNodes;
+
+	/**
+	 * Instantiates a new association graph expander.
+	 *
+	 * @param executor the executor to fetch each level on
+	 * @param maxNodes the most nodes to return
+	 */
+	public AssociationGraphExpander(ParallelExecutor executor, int maxNodes) {
+		super();
+		this.executor = executor;
+		this.maxNodes = maxNodes;
+	}
+	
+	/**
+	 * Expand the graph from its first level.
+	 *
+	 * @param focus the focus entity, or null if the first level is not reached from an entity
+	 * @param firstLevel the nodes of the first level
+	 * @param depth the depth to expand to
+	 * @param reader the reader
+	 * @param listener the listener, may be null
+	 * @return the nodes, at end unless 'maxNodes' cut the graph short
+	 */
+	public DirectoryResult<GraphNode> expand(
+			ScopedEntityName focus,
+			List<GraphNode> firstLevel, 
+			long depth,
+			final NeighborReader reader,
+			LevelListener listener){
+		List<GraphNode> nodes = new ArrayList<GraphNode>();
+		
+		Set<String> visited = new HashSet<String>();
+		Set<String> edges = new HashSet<String>();
+		
+		if(focus != null){
+			visited.add(this.getKey(focus.getNamespace(), focus.getName()));
+		}
+		
+		List<List<GraphNode>> level = new ArrayList<List<GraphNode>>();
+		level.add(firstLevel);
+		
+		boolean atEnd = true;
+		
+		for(int i=1; i <= depth; i++){
+			List<GraphNode> levelNodes = new ArrayList<GraphNode>();
+			List<ScopedEntityName> frontier = new ArrayList<ScopedEntityName>();
+			
+			for(List<GraphNode> neighbors : level){
+				if(neighbors == null || ! atEnd){
+					continue;
+				}
+				for(GraphNode node : neighbors){
+					if(! edges.add(this.getEdgeKey(node))){
+						continue;
+					}
+					if(nodes.size() + levelNodes.size() >= this.maxNodes){
+						atEnd = false;
+						break;
+					}
+					
+					node.setNodeNumber((long) nodes.size() + levelNodes.size());
+					node.setNextNodeNumber((long) nodes.size() + levelNodes.size() + 1);
+					levelNodes.add(node);
+					
+					EntitySynopsis reached = node.getNodeEntity();
+					if(visited.add(this.getKey(reached.getNamespace(), reached.getName()))){
+						ScopedEntityName entity = new ScopedEntityName();
+						entity.setNamespace(reached.getNamespace());
+						entity.setName(reached.getName());
+						
+						frontier.add(entity);
+					}
+				}
+			}
+			
+			nodes.addAll(levelNodes);
+			
+			if(listener != null){
+				listener.onLevel(i, levelNodes);
+			}
+			
+			if(! atEnd || i == depth || frontier.isEmpty()){
+				break;
+			}
+			
+			List<Callable<List<GraphNode>>> reads = new ArrayList<Callable<List<GraphNode>>>();
+			for(final ScopedEntityName entity : frontier){
+				reads.add(new Callable<List<GraphNode>>(){
+
+					public List<GraphNode> call() {
+						try {
+							return reader.read(entity);
+						} catch (RuntimeException e) {
+							log.warn("Skipping graph node: " + entity.getName(), e);
+							return null;
+						}
+					}
+				});
+			}
+			
+			level = this.executor.invokeAll(reads);
+		}
+		
+		return new DirectoryResult<GraphNode>(nodes, atEnd);
+	}
+	
+	private String getEdgeKey(GraphNode node){
+		return this.getKey(node.getSubject().getNamespace(), node.getSubject().getName()) + 
+				"|" + node.getPredicate().getName() + "|" + 
+				this.getKey(node.getTarget().getEntity().getNamespace(), node.getTarget().getEntity().getName());
+	}
+	
+	private String getKey(String namespace, String name){
+		return namespace + ":" + name;
+	}
+}
@@ -23,13 +23,16 @@
  */
 package edu.mayo.cts2.framework.plugin.service.bioportal.profile.association;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
 
+import org.apache.commons.lang.StringUtils;
 import org.springframework.stereotype.Component;
 
 import edu.mayo.cts2.framework.filter.match.AttributeResolver;
@@ -49,14 +52,19 @@ import edu.mayo.cts2.framework.model.core.PredicateReference;
 import edu.mayo.cts2.framework.model.core.PropertyReference;
 import edu.mayo.cts2.framework.model.core.ScopedEntityName;
 import edu.mayo.cts2.framework.model.core.SortCriteria;
-import edu.mayo.cts2.framework.model.core.types.AssociationDirection;
 import edu.mayo.cts2.framework.model.directory.DirectoryResult;
 import edu.mayo.cts2.framework.model.entity.EntityDirectoryEntry;
 import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter;
 import edu.mayo.cts2.framework.plugin.service.bioportal.profile.AbstractBioportalRestService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.profile.association.AssociationGraphExpander.LevelListener;
+import edu.mayo.cts2.framework.plugin.service.bioportal.profile.association.AssociationGraphExpander.NeighborReader;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.PagePlanner;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.RelationCache;
 import edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ParentOrChildOfEntityDirectoryBuilder;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.AssociationTransform;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.ParsedResponse;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.RelatedEntityList;
 import edu.mayo.cts2.framework.plugin.service.bioportal.util.EntityResolver;
 import edu.mayo.cts2.framework.service.command.restriction.AssociationQueryServiceRestrictions;
 import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference;
@@ -86,6 +94,8 @@ public class BioportalRestAssociationQueryService
 	
 	@Resource
 	private EntityResolver entityResolver;
+	
+	private static final int MIN_FILTER_CHUNK_SIZE = 100;
 
 	@Override
 	public Set<ResolvablePropertyReference<EntityDirectoryEntry>> getSupportedSearchReferences() {
@@ -139,6 +149,20 @@ public class BioportalRestAssociationQueryService
 		return returnSet;
 	}
 	
+	/**
+	 * Gets a page of the entities an entity is related to by a predicate. The related
+	 * entities are read once per entity and ontology version and kept in the relation
+	 * cache, so a page is a slice of them. Filters are checked only as far into the
+	 * list as the page needs.
+	 *
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @param entity the entity
+	 * @param predicateName the predicate name
+	 * @param filterComponent the filter component
+	 * @param page the page
+	 * @return the directory result
+	 */
 	public DirectoryResult<EntityDirectoryEntry> doGetAssociationsOfEntity(
 			final String codeSystemName, 
 			final String codeSystemVersionName, 
@@ -147,34 +171,58 @@ public class BioportalRestAssociationQueryService
 			Set<ResolvedFilter> filterComponent,
 			Page page) {
 
-		String ontologyVersionId = 
+		final String ontologyVersionId = 
 			this.identityConverter.codeSystemVersionNameToOntologyVersionId(
 					codeSystemVersionName);
+		
+		RelatedEntityList related = this.bioportalRestService.getRelationCache().get(
+				RelationCache.key(ontologyVersionId, entity.getNamespace() + ":" + entity.getName(), predicateName), 
+				new Callable<RelatedEntityList>(){
 
-		final String xml = 
-			this.entityResolver.getEntityXml(entity, ontologyVersionId);
-				//this.bioportalRestService.
-			//getEntityByOntologyVersionIdAndEntityId(ontologyVersionId, entity);
-		
-		ParentOrChildOfEntityDirectoryBuilder builder;
-		try {
-			builder = new ParentOrChildOfEntityDirectoryBuilder(
-					this.associationTransform.transformEntitiesForRelationship(
-							xml, 
-							codeSystemName,
-							codeSystemVersionName, 
-							predicateName),
-						getSupportedMatchAlgorithms(),
-						getSupportedSearchReferences()
-					);
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+			public RelatedEntityList call() {
+				String xml = entityResolver.getEntityXml(entity, ontologyVersionId);
+				
+				if(StringUtils.isBlank(xml)){
+					return new RelatedEntityList(
+							new ArrayList<String>(), new ArrayList<String>(), new ArrayList<String>());
+				}
+				
+				return associationTransform.transformRelatedEntityList(xml, predicateName);
+			}
+		});
+		
+		int start = page.getStart();
+		int end = start + page.getMaxToReturn();
+		
+		if(filterComponent == null || filterComponent.isEmpty()){
+			return new DirectoryResult<EntityDirectoryEntry>(
+					this.associationTransform.transformRelatedEntityList(
+							related, start, end, codeSystemName, codeSystemVersionName), 
+					end >= related.size());
 		}
 		
-		return builder.restrict(filterComponent).
-			addStart(page.getStart()).
-			addMaxToReturn(page.getMaxToReturn()).
-			resolve();
+		//filter a chunk at a time until the page, and one more to tell if it is the end, are found
+		List<EntityDirectoryEntry> matches = new ArrayList<EntityDirectoryEntry>();
+		int chunkSize = Math.max(page.getMaxToReturn(), MIN_FILTER_CHUNK_SIZE);
+		
+		for(int from = 0; from < related.size() && matches.size() <= end; from += chunkSize){
+			List<EntityDirectoryEntry> chunk = this.associationTransform.transformRelatedEntityList(
+					related, from, from + chunkSize, codeSystemName, codeSystemVersionName);
+			
+			ParentOrChildOfEntityDirectoryBuilder builder = new ParentOrChildOfEntityDirectoryBuilder(
+					chunk,
+					getSupportedMatchAlgorithms(),
+					getSupportedSearchReferences());
+			
+			matches.addAll(builder.restrict(filterComponent).
+					addStart(0).
+					addMaxToReturn(chunk.size()).
+					resolve().getEntries());
+		}
+		
+		return new DirectoryResult<EntityDirectoryEntry>(
+				PagePlanner.slice(matches, start, end - 1), 
+				matches.size() <= end);
 	}
 
 	/* (non-Javadoc)
@@ -265,48 +313,98 @@ public class BioportalRestAssociationQueryService
 			EntityDescriptionReadId id, 
 			GraphDirection direction,
 			long depth) {	
+		return this.getAssociationGraph(focusType, id, direction, depth, null);
+	}
+	
+	/**
+	 * Gets the association graph, notifying the listener as each level completes.
+	 *
+	 * @param focusType the focus type
+	 * @param id the id
+	 * @param direction the direction
+	 * @param depth the depth
+	 * @param listener the listener, may be null
+	 * @return the association graph
+	 */
+	public DirectoryResult<GraphNode> getAssociationGraph(
+			GraphFocus focusType,
+			EntityDescriptionReadId id, 
+			GraphDirection direction,
+			long depth,
+			LevelListener listener) {	
 		
-		String codeSystemVersionName = id.getCodeSystemVersion().getName();
-		String codeSystemName = this.identityConverter.
+		final String codeSystemVersionName = id.getCodeSystemVersion().getName();
+		final String codeSystemName = this.identityConverter.
 				codeSystemVersionNameCodeSystemName(codeSystemVersionName);
 		
 		ScopedEntityName focusEntityName = id.getEntityName();
 		
-		if(depth != 1){
-			throw new UnsupportedOperationException("Only depth of '1' is allowed.");
-		}
-		if(direction != GraphDirection.FORWARD){
-			throw new UnsupportedOperationException("Only GraphDirection of 'FORWARD' is allowed.");
+		if(depth < 1){
+			throw new UnsupportedOperationException("Depth must be at least '1'.");
 		}
+		
+		final boolean forward = direction != GraphDirection.BACKWARD;
+		final boolean backward = direction != GraphDirection.FORWARD;
 
-		String ontologyVersionId = this.identityConverter.
+		final String ontologyVersionId = this.identityConverter.
 			codeSystemVersionNameToOntologyVersionId(codeSystemVersionName);
 		
-		String xml;
+		NeighborReader reader = new NeighborReader(){
+
+			public List<GraphNode> read(ScopedEntityName entity) {
+				return getNeighbors(
+						entityResolver.getEntityXml(entity, ontologyVersionId), 
+						codeSystemName, 
+						codeSystemVersionName, 
+						forward, 
+						backward);
+			}
+		};
+		
+		List<GraphNode> firstLevel;
 		
 		if(focusEntityName.getName().equals("TOP_NODE")){
-			xml = bioportalRestService.getHierarchyRootsByOntolotyVersionId(ontologyVersionId);
+			String xml = bioportalRestService.getHierarchyRootsByOntolotyVersionId(ontologyVersionId);
+			
+			//the roots hang off of a synthetic node, so there is nothing behind them
+			firstLevel = this.getNeighbors(xml, codeSystemName, codeSystemVersionName, forward, false);
+			focusEntityName = null;
 		} else {
-			xml = 
-				this.entityResolver.getEntityXml(
-						focusEntityName, 
-						ontologyVersionId);
+			firstLevel = reader.read(focusEntityName);
 		}
 		
+		//a single level is the direct associations, uncapped as before
+		int maxNodes = depth == 1 ? Integer.MAX_VALUE : this.bioportalRestService.getMaxGraphNodes();
+		
+		return new AssociationGraphExpander(
+				this.bioportalRestService.getParallelExecutor(), maxNodes).
+					expand(focusEntityName, firstLevel, depth, reader, listener);
+	}
 	
-		List<GraphNode> associations = 
-			this.associationTransform.transformAssociationForGraph(xml, codeSystemName, codeSystemVersionName);
+	private List<GraphNode> getNeighbors(
+			String xml, 
+			String codeSystemName, 
+			String codeSystemVersionName,
+			boolean forward,
+			boolean backward){
+		List<GraphNode> neighbors = new ArrayList<GraphNode>();
 		
-		for(long i=0;i<associations.size();i++){
-			GraphNode entry = associations.get((int)i);
-			entry.setNodeNumber(i);
-			entry.setNextNodeNumber(i+1);
-			
-			entry.setDirection(AssociationDirection.SOURCE_TO_TARGET);
-			
+		if(StringUtils.isBlank(xml)){
+			return neighbors;
+		}
+		
+		ParsedResponse response = new ParsedResponse(xml);
+		
+		if(forward){
+			neighbors.addAll(this.associationTransform.
+					transformAssociationForGraph(response, codeSystemName, codeSystemVersionName));
+		}
+		if(backward){
+			neighbors.addAll(this.associationTransform.
+					transformReverseAssociationForGraph(response, codeSystemName, codeSystemVersionName));
 		}
 		
-		return new DirectoryResult<GraphNode>(associations,true);
+		return neighbors;
 	}
 
 	
@@ -23,13 +23,17 @@
  */
 package edu.mayo.cts2.framework.plugin.service.bioportal.profile.entitydescription;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 
+import org.apache.commons.lang.StringUtils;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
 
 import edu.mayo.cts2.framework.filter.directory.AbstractCallbackDirectoryBuilder.Callback;
 import edu.mayo.cts2.framework.model.command.Page;
@@ -52,8 +56,11 @@ import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConvert
 import edu.mayo.cts2.framework.plugin.service.bioportal.profile.AbstractBioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.profile.association.BioportalRestAssociationQueryService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
-import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CountCache;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.PagePlanner;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.PagePlanner.PageReader;
 import edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.EntityDirectoryBuilder;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.CountedDirectoryResult;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.EntityDescriptionTransform;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
 import edu.mayo.cts2.framework.service.command.restriction.EntityDescriptionQueryServiceRestrictions;
@@ -87,6 +94,13 @@ public class BioportalRestEntityDescriptionQueryService
 	
 	private static final String CHILDREN_PREDICATE = "SubClass";
 	
+	private PagePlanner pagePlanner = new PagePlanner(PagePlanner.DEFAULT_PAGE_SIZE);
+	
+	private static final String ONTOLOGY_SCOPE = "ontology:";
+	private static final String ONTOLOGIES_SCOPE = "ontologies:";
+	private static final String ONTOLOGY_VERSION_SCOPE = "ontologyVersion:";
+	private static final String LATEST_SCOPE = "latest";
+	
 	/**
 	 * Gets the entity description name from uri.
 	 *
@@ -120,6 +134,33 @@ public class BioportalRestEntityDescriptionQueryService
 			addStart(page.getStart()).resolve();
 	}
 	
+	/**
+	 * Search the entities of several code systems at once. If the code systems span
+	 * more than one search shard, the shards are searched concurrently and merged
+	 * by rank. A filter is required -- listing every entity of several code systems
+	 * would take a BioPortal call per code system, so it is not supported.
+	 *
+	 * @param codeSystemNames the code system names, in the order shards are made
+	 * @param filterComponent the filter component
+	 * @param page the page
+	 * @return the entity descriptions
+	 */
+	public DirectoryResult<EntityDirectoryEntry> getEntityDescriptionsOfCodeSystems(
+			Collection<String> codeSystemNames,
+			Set<ResolvedFilter> filterComponent, 
+			Page page) {
+		List<String> ontologyIds = new ArrayList<String>();
+		for(String codeSystemName : codeSystemNames){
+			ontologyIds.add(this.identityConverter.codeSystemNameToOntologyId(codeSystemName));
+		}
+		
+		EntityDirectoryBuilder builder = this.getEntitiesOfOntologiesDirectoryBuilder(ontologyIds);
+		
+		return builder.restrict(filterComponent).
+			addMaxToReturn(page.getMaxToReturn()).
+			addStart(page.getStart()).resolve();
+	}
+	
 	/**
 	 * Gets the count.
 	 *
@@ -127,40 +168,150 @@ public class BioportalRestEntityDescriptionQueryService
 	 * @return the count
 	 */
 	private int getCount(String xml){
-		Document doc = BioportalRestUtils.getDocument(xml);
-		
-		String count = TransformUtils.getNamedChildTextWithPath(doc, "success.data.page.numResultsTotal");
+		return TransformUtils.getTotalCount(xml);
+	}
+	
+	/**
+	 * Gets the count of a query from the header of a page already fetched for it.
+	 *
+	 * @param countKey the count key
+	 * @return the count, or null if no page of the query has been read
+	 */
+	private Integer getCachedCount(String countKey){
+		return this.bioportalRestService.getCountCache().get(countKey);
+	}
+	
+	/**
+	 * Record the count of a query.
+	 *
+	 * @param countKey the count key
+	 * @param count the count
+	 * @return the count
+	 */
+	private int cacheCount(String countKey, int count){
+		this.bioportalRestService.getCountCache().put(countKey, count);
 		
-		return Integer.valueOf(count);
+		return count;
 	}
 	
 	/**
-	 * Gets the page for start and max.
+	 * Read a window of results from the aligned BioPortal pages that cover it.
+	 * The pages are fetched in parallel, and the count in their headers is kept
+	 * for later count requests. If the count is already known, the window is
+	 * trimmed to it, and a window past the end is answered without going upstream.
 	 *
 	 * @param start the start
 	 * @param max the max
-	 * @return the page for start and max
+	 * @param countKey the key of the query's count
+	 * @param reader the page reader
+	 * @return the directory result
 	 */
-	private Page getPageForStartAndMax(int start, int max){
-		Page page = new Page();
-		if(start < max){
-			page.setMaxToReturn(max);
-			page.setPage(0);
-		} else {
-			int calculatedPage;
-			if(start != 0){
-				calculatedPage = start / max;
-			} else {
-				calculatedPage = 0;
+	protected DirectoryResult<EntityDirectoryEntry> readWindow(
+			int start, 
+			int max, 
+			final String countKey,
+			final PageReader<EntityDirectoryEntry> reader){
+		PageReader<EntityDirectoryEntry> countingReader = new PageReader<EntityDirectoryEntry>(){
+
+			public DirectoryResult<EntityDirectoryEntry> read(Page page, int from, int to) {
+				DirectoryResult<EntityDirectoryEntry> result = reader.read(page, from, to);
+				
+				if(result instanceof CountedDirectoryResult){
+					cacheCount(countKey, ((CountedDirectoryResult<EntityDirectoryEntry>) result).getTotalCount());
+				}
+				
+				return result;
 			}
-			page.setPage(calculatedPage);
-			page.setMaxToReturn(
-					(start - (calculatedPage * max)) + max);
+		};
+		
+		Integer count = this.getCachedCount(countKey);
+		
+		if(count == null){
+			return this.pagePlanner.read(
+					start, 
+					max, 
+					countingReader, 
+					this.bioportalRestService.getParallelExecutor());
+		}
+		
+		if(start >= count){
+			return new DirectoryResult<EntityDirectoryEntry>(new ArrayList<EntityDirectoryEntry>(), true);
 		}
 		
-		return page;
+		int available = Math.min(max, count - start);
+		
+		DirectoryResult<EntityDirectoryEntry> result = this.pagePlanner.read(
+				start, 
+				available, 
+				countingReader, 
+				this.bioportalRestService.getParallelExecutor());
+		
+		return new DirectoryResult<EntityDirectoryEntry>(result.getEntries(), start + available >= count);
 	}
+	
+	/**
+	 * List a window of the entities of an ontology version.
+	 *
+	 * @param ontologyVersionId the ontology version id
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @param start the start
+	 * @param maxResults the max results
+	 * @return the directory result
+	 */
+	private DirectoryResult<EntityDirectoryEntry> listEntitiesOfOntologyVersion(
+			final String ontologyVersionId,
+			final String codeSystemName,
+			final String codeSystemVersionName,
+			int start,
+			int maxResults){
+		String countKey = CountCache.key(ONTOLOGY_VERSION_SCOPE + ontologyVersionId, null);
+		
+		return readWindow(start, maxResults, countKey, new PageReader<EntityDirectoryEntry>(){
 
+			public DirectoryResult<EntityDirectoryEntry> read(Page page, int from, int to) {
+				String xml = bioportalRestService.getAllEntitiesByOntologyVersionId(
+						ontologyVersionId, 
+						page);
+				
+				CountedDirectoryResult<EntityDirectoryEntry> directoryResult = 
+						entityDescriptionTransform.transformEntityDirectory(
+								xml,
+								codeSystemName,
+								codeSystemVersionName);
+				
+				return new CountedDirectoryResult<EntityDirectoryEntry>(
+						PagePlanner.slice(directoryResult.getEntries(), from, to), 
+						directoryResult.isAtEnd(),
+						directoryResult.getTotalCount());
+			}
+		});
+	}
+	
+	/**
+	 * Count the entities of an ontology version.
+	 *
+	 * @param ontologyVersionId the ontology version id
+	 * @return the count
+	 */
+	private int countEntitiesOfOntologyVersion(String ontologyVersionId){
+		String countKey = CountCache.key(ONTOLOGY_VERSION_SCOPE + ontologyVersionId, null);
+		
+		Integer count = getCachedCount(countKey);
+		if(count != null){
+			return count;
+		}
+		
+		Page bioportalPage = new Page();
+		bioportalPage.setPage(0);
+		bioportalPage.setMaxToReturn(1);
+		
+		String xml = bioportalRestService.
+			getAllEntitiesByOntologyVersionId(ontologyVersionId, bioportalPage);
+		
+		return cacheCount(countKey, getCount(xml));
+	}
+	
 	/**
 	 * Gets the entity descriptions of code system version.
 	 *
@@ -203,17 +354,14 @@ public class BioportalRestEntityDescriptionQueryService
 			Page page, 
 			String codeSystemName, 
 			String codeSystemVersionName) {
-		final String ontologyVersionId = identityConverter.codeSystemVersionNameToOntologyVersionId(codeSystemVersionName);
+		String ontologyVersionId = identityConverter.codeSystemVersionNameToOntologyVersionId(codeSystemVersionName);
 		
-		String xml = bioportalRestService.getAllEntitiesByOntologyVersionId(
+		return this.listEntitiesOfOntologyVersion(
 				ontologyVersionId, 
-				page);
-		
-		return this.entityDescriptionTransform.transformEntityDirectory(
-				xml, 
 				codeSystemName, 
-				codeSystemVersionName);
-
+				codeSystemVersionName, 
+				page.getStart(), 
+				page.getMaxToReturn());
 	}
 	
 	/* (non-Javadoc)
@@ -247,31 +395,6 @@ public class BioportalRestEntityDescriptionQueryService
 			addStart(page.getStart()).resolve();
 	}
 	
-	/**
-	 * Calculate transform start.
-	 *
-	 * @param bioportalPage the bioportal page
-	 * @param start the start
-	 * @return the int
-	 */
-	private int calculateTransformStart(Page bioportalPage, int start){
-		int bioportalStart = bioportalPage.getStart();
-
-		return start - bioportalStart;
-	}
-	
-	/**
-	 * Calculate transform end.
-	 *
-	 * @param bioportalPage the bioportal page
-	 * @param start the start
-	 * @param max the max
-	 * @return the int
-	 */
-	private int calculateTransformEnd(Page bioportalPage, int start, int max){
-		return this.calculateTransformStart(bioportalPage, start) + max;
-	}
-
 	/* (non-Javadoc)
 	 * @see org.cts2.rest.service.EntityDescriptionService#getAllEntityDescriptionsCount(org.cts2.rest.service.command.Filter)
 	 */
@@ -387,30 +510,36 @@ public class BioportalRestEntityDescriptionQueryService
 		return new EntityDirectoryBuilder(new Callback<EntityDirectoryEntry>(){
 
 			public DirectoryResult<EntityDirectoryEntry> execute(
-					ResolvedFilter filterComponent,
+					final ResolvedFilter filterComponent,
 					float minScore,
 					int start, 
 					int maxResults) {
 				
-				Page bioportalPage = getPageForStartAndMax(start, maxResults);
-			
-				String xml = bioportalRestService.searchEntitiesByOntologyId(
-						ontologyId, 
-						filterComponent,
-						bioportalPage);
+				String countKey = CountCache.key(ONTOLOGY_SCOPE + ontologyId, filterComponent);
 				
-				DirectoryResult<EntityDirectoryEntry> directoryResult = 
-						entityDescriptionTransform.transformEntityDirectoryFromSearch(
-								calculateTransformStart(bioportalPage, start), 
-								calculateTransformEnd(bioportalPage, start, maxResults),
-								xml);
-					
-					return directoryResult;
+				return readWindow(start, maxResults, countKey, new PageReader<EntityDirectoryEntry>(){
+
+					public DirectoryResult<EntityDirectoryEntry> read(Page page, int from, int to) {
+						String xml = bioportalRestService.searchEntitiesByOntologyId(
+								ontologyId, 
+								filterComponent,
+								page);
+						
+						return entityDescriptionTransform.transformEntityDirectoryFromSearch(from, to, xml);
+					}
+				});
 			}
 			
 			public int executeCount(
 					ResolvedFilter filterComponent,
 					float minScore) {
+				String countKey = CountCache.key(ONTOLOGY_SCOPE + ontologyId, filterComponent);
+				
+				Integer count = getCachedCount(countKey);
+				if(count != null){
+					return count;
+				}
+				
 				Page bioportalPage = new Page();
 				bioportalPage.setPage(0);
 				bioportalPage.setMaxToReturn(1);
@@ -420,37 +549,108 @@ public class BioportalRestEntityDescriptionQueryService
 						filterComponent,
 						bioportalPage);
 				
-				return getCount(xml);
+				return cacheCount(countKey, getCount(xml));
 			}
 
 			public DirectoryResult<EntityDirectoryEntry> execute(
 					int start,
 					int maxResults) {
-				
-				Page bioportalPage = getPageForStartAndMax(start, maxResults);
-				
-				String xml = bioportalRestService.getAllEntitiesByOntologyVersionId(
+				return listEntitiesOfOntologyVersion(
 						ontologyVersionId, 
-						bioportalPage);
-				
-				DirectoryResult<EntityDirectoryEntry> directoryResult = 
-						entityDescriptionTransform.transformEntityDirectory(
-								xml,
-								codeSystemName,
-								codeSystemVersionName);
-					
-				return directoryResult;
+						codeSystemName, 
+						codeSystemVersionName, 
+						start, 
+						maxResults);
 			}
 
 			public int executeCount() {
+				return countEntitiesOfOntologyVersion(ontologyVersionId);
+			}
+		},
+		getSupportedMatchAlgorithms());
+	}
+	
+	/**
+	 * Gets the directory builder for a search across several ontologies.
+	 *
+	 * @param ontologyIds the ontology ids
+	 * @return the entity directory builder
+	 */
+	private EntityDirectoryBuilder getEntitiesOfOntologiesDirectoryBuilder(
+			final List<String> ontologyIds){
+		return new EntityDirectoryBuilder(new Callback<EntityDirectoryEntry>(){
+
+			public DirectoryResult<EntityDirectoryEntry> execute(
+					final ResolvedFilter filterComponent,
+					float minScore,
+					int start, 
+					int maxResults) {
+				
+				if(bioportalRestService.isShardedSearch(ontologyIds)){
+					//every shard needs its first 'start + maxResults' results
+					Page shardPage = new Page();
+					shardPage.setPage(0);
+					shardPage.setMaxToReturn(start + maxResults);
+					
+					List<Future<String>> shards = bioportalRestService.searchEntitiesByOntologyIdShards(
+							ontologyIds, 
+							filterComponent, 
+							shardPage);
+					
+					return entityDescriptionTransform.transformEntityDirectoryFromShardedSearch(
+							start, 
+							start + maxResults - 1, 
+							shards, 
+							bioportalRestService.getParallelExecutor());
+				}
+				
+				String countKey = CountCache.key(
+						ONTOLOGIES_SCOPE + StringUtils.join(ontologyIds, ','), filterComponent);
+				
+				return readWindow(start, maxResults, countKey, new PageReader<EntityDirectoryEntry>(){
+
+					public DirectoryResult<EntityDirectoryEntry> read(Page page, int from, int to) {
+						String xml = bioportalRestService.searchEntitiesByOntologyIds(
+								ontologyIds, 
+								filterComponent,
+								page);
+						
+						return entityDescriptionTransform.transformEntityDirectoryFromSearch(from, to, xml);
+					}
+				});
+			}
+			
+			public int executeCount(
+					ResolvedFilter filterComponent,
+					float minScore) {
+				String countKey = CountCache.key(
+						ONTOLOGIES_SCOPE + StringUtils.join(ontologyIds, ','), filterComponent);
+				
+				Integer count = getCachedCount(countKey);
+				if(count != null){
+					return count;
+				}
+				
 				Page bioportalPage = new Page();
 				bioportalPage.setPage(0);
 				bioportalPage.setMaxToReturn(1);
 				
-				String xml = bioportalRestService.
-					getAllEntitiesByOntologyVersionId(ontologyVersionId, bioportalPage);
+				String xml = bioportalRestService.searchEntitiesByOntologyIds(
+						ontologyIds,
+						filterComponent,
+						bioportalPage);
 				
-				return getCount(xml);
+				return cacheCount(countKey, getCount(xml));
+			}
+
+			public DirectoryResult<EntityDirectoryEntry> execute(
+					int start,
+					int maxResults) {
+				throw new UnsupportedOperationException();
+			}
+
+			public int executeCount() {
+				throw new UnsupportedOperationException();
 			}
 		},
 		getSupportedMatchAlgorithms());
@@ -462,29 +662,35 @@ public class BioportalRestEntityDescriptionQueryService
 			new Callback<EntityDirectoryEntry>(){
 
 				public DirectoryResult<EntityDirectoryEntry> execute(
-						ResolvedFilter filterComponent, 
+						final ResolvedFilter filterComponent, 
 						float minScore,
 						int start, 
 						int maxResults) {
 				
-					Page bioportalPage = getPageForStartAndMax(start, maxResults);
+					String countKey = CountCache.key(LATEST_SCOPE, filterComponent);
 					
-					String xml = bioportalRestService.searchEntitiesOfLatestOntologyVersions(
-							filterComponent,
-							bioportalPage);
-		
-					DirectoryResult<EntityDirectoryEntry> directoryResult = 
-							entityDescriptionTransform.transformEntityDirectoryFromSearch(
-									calculateTransformStart(bioportalPage, start), 
-									calculateTransformEnd(bioportalPage, start, maxResults),
-									xml);
-						
-						return directoryResult;			
+					return readWindow(start, maxResults, countKey, new PageReader<EntityDirectoryEntry>(){
+
+						public DirectoryResult<EntityDirectoryEntry> read(Page page, int from, int to) {
+							String xml = bioportalRestService.searchEntitiesOfLatestOntologyVersions(
+									filterComponent,
+									page);
+							
+							return entityDescriptionTransform.transformEntityDirectoryFromSearch(from, to, xml);
+						}
+					});
 				}
 
 				public int executeCount(
 						ResolvedFilter filterComponent, 
 						float minScore) {
+					String countKey = CountCache.key(LATEST_SCOPE, filterComponent);
+					
+					Integer count = getCachedCount(countKey);
+					if(count != null){
+						return count;
+					}
+					
 					Page bioportalPage = new Page();
 					bioportalPage.setPage(0);
 					bioportalPage.setMaxToReturn(1);
@@ -493,7 +699,7 @@ public class BioportalRestEntityDescriptionQueryService
 							filterComponent,
 							bioportalPage);
 					
-					return getCount(xml);
+					return cacheCount(countKey, getCount(xml));
 				}
 
 				public DirectoryResult<EntityDirectoryEntry> execute(
@@ -23,11 +23,18 @@
  */
 package edu.mayo.cts2.framework.plugin.service.bioportal.profile.entitydescription;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.stereotype.Component;
 
 import edu.mayo.cts2.framework.model.command.Page;
@@ -61,6 +68,8 @@ import edu.mayo.cts2.framework.service.profile.entitydescription.name.EntityDesc
 public class BioportalRestEntityDescriptionReadService 
 	extends AbstractBioportalRestService
 	implements EntityDescriptionReadService {
+	
+	private static final Log log = LogFactory.getLog(BioportalRestEntityDescriptionReadService.class);
 
 	@Resource
 	private BioportalRestService bioportalRestService;
@@ -98,11 +107,23 @@ public class BioportalRestEntityDescriptionReadService
 			return null;
 		}
 		
-		ScopedEntityName entityName = id.getEntityName();
-		
 		String ontologyVersionId = this.identityConverter.
 				codeSystemVersionNameToOntologyVersionId(codeSystemVersionName);
 		
+		return this.doRead(
+				id.getEntityName(), 
+				id.getUri(), 
+				codeSystemName, 
+				codeSystemVersionName, 
+				ontologyVersionId);
+	}
+	
+	private EntityDescription doRead(
+			ScopedEntityName entityName,
+			String uri,
+			String codeSystemName,
+			String codeSystemVersionName,
+			String ontologyVersionId){
 		String xml;
 		
 		if(entityName != null){
@@ -111,7 +132,7 @@ public class BioportalRestEntityDescriptionReadService
 					ontologyVersionId);		
 		} else {
 			xml = this.entityResolver.getEntityXml(
-					id.getUri(), 
+					uri, 
 					ontologyVersionId);
 		}
 
@@ -124,6 +145,88 @@ public class BioportalRestEntityDescriptionReadService
 		}
 	}
 	
+	/**
+	 * Read many entities of one code system version. The version is resolved once,
+	 * each distinct id is read once, and the reads run on the shared upstream pool.
+	 * A failure to read one entity is reported in its result and does not fail the batch.
+	 *
+	 * @param codeSystemVersionName the code system version name
+	 * @param ids the ids
+	 * @return the results, one per id, in the order of the ids
+	 */
+	public List<EntityReadResult> readAll(
+			final String codeSystemVersionName, 
+			List<EntityNameOrURI> ids) {
+		List<EntityReadResult> results = new ArrayList<EntityReadResult>();
+		
+		final String codeSystemName = this.identityConverter.
+				codeSystemVersionNameCodeSystemName(codeSystemVersionName);
+		
+		//invalid codeSystemVersion name -- nothing can be found
+		if(codeSystemName == null){
+			for(EntityNameOrURI id : ids){
+				results.add(new EntityReadResult(id, null, null));
+			}
+			return results;
+		}
+		
+		final String ontologyVersionId = this.identityConverter.
+				codeSystemVersionNameToOntologyVersionId(codeSystemVersionName);
+		
+		Map<String,EntityNameOrURI> distinctIds = new LinkedHashMap<String,EntityNameOrURI>();
+		for(EntityNameOrURI id : ids){
+			String key = this.getKey(id);
+			if(! distinctIds.containsKey(key)){
+				distinctIds.put(key, id);
+			}
+		}
+		
+		List<Callable<EntityReadResult>> reads = new ArrayList<Callable<EntityReadResult>>();
+		for(final EntityNameOrURI id : distinctIds.values()){
+			reads.add(new Callable<EntityReadResult>(){
+
+				public EntityReadResult call() {
+					try {
+						return new EntityReadResult(id, doRead(
+								id.getEntityName(), 
+								id.getUri(), 
+								codeSystemName, 
+								codeSystemVersionName, 
+								ontologyVersionId), null);
+					} catch (RuntimeException e) {
+						log.warn("Error reading entity: " + getKey(id), e);
+						return new EntityReadResult(id, null, e);
+					}
+				}
+			});
+		}
+		
+		List<EntityReadResult> distinctResults = 
+				this.bioportalRestService.getParallelExecutor().invokeAll(reads);
+		
+		Map<String,EntityReadResult> resultsByKey = new HashMap<String,EntityReadResult>();
+		for(EntityReadResult result : distinctResults){
+			resultsByKey.put(this.getKey(result.getId()), result);
+		}
+		
+		for(EntityNameOrURI id : ids){
+			EntityReadResult result = resultsByKey.get(this.getKey(id));
+			
+			results.add(new EntityReadResult(id, result.getEntityDescription(), result.getError()));
+		}
+		
+		return results;
+	}
+	
+	private String getKey(EntityNameOrURI id){
+		ScopedEntityName name = id.getEntityName();
+		if(name != null){
+			return name.getNamespace() + ":" + name.getName();
+		} else {
+			return id.getUri();
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see edu.mayo.cts2.framework.service.profile.ReadService#exists(java.lang.Object)
 	 */
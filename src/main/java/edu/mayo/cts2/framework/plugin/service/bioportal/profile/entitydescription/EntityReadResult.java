@@ -0,0 +1,79 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.profile.entitydescription;
+
+import edu.mayo.cts2.framework.model.entity.EntityDescription;
+import edu.mayo.cts2.framework.model.service.core.EntityNameOrURI;
+
+/**
+ * The outcome of reading one entity of a batch read.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class EntityReadResult {
+	
+	private EntityNameOrURI id;
+	
+	private EntityDescription entityDescription;
+	
+	private RuntimeException error;
+
+	/**
+	 * Instantiates a new entity read result.
+	 *
+	 * @param id the id that was read
+	 * @param entityDescription the entity description, or null if not found (or failed)
+	 * @param error the error reading the entity, or null
+	 */
+	public EntityReadResult(
+			EntityNameOrURI id, 
+			EntityDescription entityDescription,
+			RuntimeException error) {
+		super();
+		this.id = id;
+		this.entityDescription = entityDescription;
+		this.error = error;
+	}
+	
+	/**
+	 * Checks if the entity was read.
+	 *
+	 * @return true, if found
+	 */
+	public boolean isFound(){
+		return this.entityDescription != null;
+	}
+
+	public EntityNameOrURI getId() {
+		return id;
+	}
+
+	public EntityDescription getEntityDescription() {
+		return entityDescription;
+	}
+
+	public RuntimeException getError() {
+		return error;
+	}
+}
@@ -30,10 +30,8 @@ import java.util.Set;
 
 import javax.annotation.Resource;
 
-import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Node;
 
 import edu.mayo.cts2.framework.filter.match.AttributeResolver;
 import edu.mayo.cts2.framework.filter.match.ContainsMatcher;
@@ -50,12 +48,11 @@ import edu.mayo.cts2.framework.model.util.ModelUtils;
 import edu.mayo.cts2.framework.model.valueset.ValueSetCatalogEntry;
 import edu.mayo.cts2.framework.model.valueset.ValueSetCatalogEntrySummary;
 import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter;
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.ValueSetCodeSystemIndex;
 import edu.mayo.cts2.framework.plugin.service.bioportal.profile.AbstractBioportalRestService;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
-import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ValueSetDirectoryBuilder;
 import edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ValueSetDirectoryBuilder.ValueSetCodeSystemExtractor;
-import edu.mayo.cts2.framework.plugin.service.bioportal.transform.TransformUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.transform.ValueSetTransform;
 import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference;
 import edu.mayo.cts2.framework.service.meta.StandardModelAttributeReference;
@@ -81,6 +78,9 @@ public class BioportalRestValueSetQueryService
 	
 	@Resource
 	private IdentityConverter identityConverter;
+	
+	@Resource
+	private ValueSetCodeSystemIndex valueSetCodeSystemIndex;
 
 	/* (non-Javadoc)
 	 * @see edu.mayo.cts2.framework.service.profile.QueryService#getPropertyReference(java.lang.String)
@@ -192,7 +192,8 @@ public class BioportalRestValueSetQueryService
 	}
 	
 	/**
-	 * The Class CodeSystemExtractor.
+	 * The Class CodeSystemExtractor. Reads from the value set index, so a
+	 * code system restriction never has to call BioPortal.
 	 *
 	 * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
 	 */
@@ -202,33 +203,14 @@ public class BioportalRestValueSetQueryService
 		 * @see edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ValueSetDirectoryBuilder.ValueSetCodeSystemExtractor#getCodeSystemsOfValueSet(java.lang.String)
 		 */
 		public Set<String> getCodeSystemsOfValueSet(String valueSetName) {
-			Set<String> returnSet = new HashSet<String>();
-			
-			String ontologyId = identityConverter.valueSetNameToOntologyId(valueSetName);
+			return valueSetCodeSystemIndex.getCodeSystemsOfValueSet(valueSetName);
+		}
 
-			
-			String xml = bioportalRestService.getLatestOntologyVersionByOntologyId(ontologyId);
-		
-			Node versionIds = TransformUtils.getNamedChildWithPath(
-					BioportalRestUtils.getDocument(xml), "success.data.ontologyBean.viewOnOntologyVersionId");
-			
-			for(Node id : TransformUtils.getNodeList(versionIds, "int")){
-				String ontologyVersionId = TransformUtils.getNodeText(id);
-			
-				
-				if(StringUtils.isNotBlank(ontologyVersionId)){
-					String versionXml = bioportalRestService.getOntologyByOntologyVersionId(ontologyVersionId);
-					
-					String name = 
-						identityConverter.buildName(
-								TransformUtils.getNamedChildWithPath(BioportalRestUtils.getDocument(versionXml), 
-										"success.data.ontologyBean"));
-				
-					returnSet.add(name);
-				}
-			}	
-			
-			return returnSet;
+		/* (non-Javadoc)
+		 * @see edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory.ValueSetDirectoryBuilder.ValueSetCodeSystemExtractor#getValueSetsOfCodeSystem(java.lang.String)
+		 */
+		public Set<String> getValueSetsOfCodeSystem(String codeSystemName) {
+			return valueSetCodeSystemIndex.getValueSetsOfCodeSystem(codeSystemName);
 		}
 	}
 
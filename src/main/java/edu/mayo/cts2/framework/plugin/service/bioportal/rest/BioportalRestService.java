@@ -28,17 +28,26 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Resource;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.SerializationUtils;
 import org.apache.commons.lang.StringUtils;
@@ -53,6 +62,8 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
@@ -79,13 +90,15 @@ public class BioportalRestService extends BaseCacheObservable
 	
 	public static final String BIOPORTAL_CACHE_NAME = "bioportal-cache";
 	
+	public static final String BIOPORTAL_CACHE_TIMES_NAME = "bioportal-cache-times";
+	
 	public static final String BIOPORTAL_CONFIG_NAMESPACE = "bioportal-service";
 	
 	public static final String CACHE_CONFIG_PROP = "cache";
 
 	private static final String API_KEY_PROP = "apiKey";
 	
-	private static Log log = LogFactory.getLog(BioportalRestService.class);
+	private static final Log log = LogFactory.getLog(BioportalRestService.class);
 	
 	@Resource
 	private BioportalRssFeedClient bioportalRssFeedClient;
@@ -95,10 +108,75 @@ public class BioportalRestService extends BaseCacheObservable
 	
 	private Map<String,String> cache;
 	
-	private RestTemplate restTemplate = new RestTemplate();
+	/* when each cached response was fetched, for the TTL tier */
+	private Map<String,Long> cacheTimes;
+	
+	/* 0 is no limit */
+	private static final long DEFAULT_PERSISTENT_CACHE_MAX_BYTES = 0;
+	
+	/* in bytes */
+	private long persistentCacheMaxBytes = DEFAULT_PERSISTENT_CACHE_MAX_BYTES;
+	
+	/* the approximate size of the responses on disk, in bytes */
+	private AtomicLong persistentCacheBytes = new AtomicLong();
+	
+	/* how far below the budget an eviction takes the cache, in percent */
+	private static final int PERSISTENT_CACHE_EVICTION_TARGET = 90;
+	
+	private CachePolicy cachePolicy = new CachePolicy();
+	
+	private Map<EndpointFamily,CacheStats> cacheStats = createCacheStats();
+	
+	/* every hour default, 0 to only log them on shutdown */
+	private static final int DEFAULT_CACHE_STATS_LOG_PERIOD = 60;
+	
+	/* in minutes */
+	private int cacheStatsLogPeriod = DEFAULT_CACHE_STATS_LOG_PERIOD;
+	
+	private Timer cacheStatsTimer;
+	
+	private HttpConnectionPool httpConnectionPool = new HttpConnectionPool();
+	
+	private RestTemplate restTemplate = new RestTemplate(
+			this.httpConnectionPool.createRequestFactory());
 	
 	private DB db;
 	
+	private GroupCommitter cacheCommitter = new GroupCommitter(new Runnable(){
+
+		public void run() {
+			writeCache();
+		}
+	});
+	
+	private RequestCoalescer<String> requestCoalescer = new RequestCoalescer<String>();
+	
+	/* 0 is no limit */
+	private static final int DEFAULT_MAX_REQUESTS_PER_SECOND = 0;
+	
+	private static final int DEFAULT_UPSTREAM_PARALLELISM = 8;
+	
+	private RateLimiter rateLimiter = new RateLimiter(DEFAULT_MAX_REQUESTS_PER_SECOND);
+	
+	private ParallelExecutor parallelExecutor = 
+			new ParallelExecutor(DEFAULT_UPSTREAM_PARALLELISM, "bioportal-upstream");
+	
+	private static final int DEFAULT_REFRESH_PARALLELISM = 2;
+	
+	/* kept apart from the upstream pool so background refreshes never hold up requests */
+	private ParallelExecutor refreshExecutor = 
+			new ParallelExecutor(DEFAULT_REFRESH_PARALLELISM, "bioportal-refresh");
+	
+	private Set<String> refreshing = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+	
+	private static final int DEFAULT_SEARCH_SHARD_SIZE = 0;
+	
+	private int searchShardSize = DEFAULT_SEARCH_SHARD_SIZE;
+	
+	private static final int DEFAULT_MAX_GRAPH_NODES = 1000;
+	
+	private int maxGraphNodes = DEFAULT_MAX_GRAPH_NODES;
+	
 	private String apiKey;
 	
 	private static final String API_KEY_PARAM = "apikey";
@@ -111,10 +189,21 @@ public class BioportalRestService extends BaseCacheObservable
 	
 	private static final long ONE_MINUTE = 60000L;
 	
-	private static int DEFAULT_MEM_CACHE_SIZE = 25;
+	/* in bytes */
+	private static final long DEFAULT_MEM_CACHE_MAX_BYTES = 32L * 1024 * 1024;
+	
+	private ResponseCache memCache = new ResponseCache(DEFAULT_MEM_CACHE_MAX_BYTES);
+	
+	/* for families whose rule sizes their own memory cache */
+	private Map<EndpointFamily,ResponseCache> familyMemCaches = new EnumMap<EndpointFamily,ResponseCache>(EndpointFamily.class);
+	
+	private DerivedViewCache derivedViewCache = new DerivedViewCache(DerivedViewCache.DEFAULT_MAX_ENTRIES);
 	
-	@SuppressWarnings("unchecked")
-	private Map<String,String> memCache = new LRUMap(DEFAULT_MEM_CACHE_SIZE);
+	private CountCache countCache = new CountCache(CountCache.DEFAULT_MAX_ENTRIES);
+	
+	private RelationCache relationCache = new RelationCache(RelationCache.DEFAULT_MAX_ENTRIES);
+	
+	private NegativeCache negativeCache = new NegativeCache(NegativeCache.DEFAULT_MAX_ENTRIES, NegativeCache.DEFAULT_TTL);
 
 	private String cachePath;
 	
@@ -142,9 +231,36 @@ public class BioportalRestService extends BaseCacheObservable
 	
 	@Override
 	public void destroy() throws Exception {
+		if(this.cacheStatsTimer != null){
+			this.cacheStatsTimer.cancel();
+		}
+		this.logCacheStats();
+		this.refreshExecutor.shutdown();
+		
 		log.info("Shutting down... writing cache to file.");
+		this.cacheCommitter.shutdown();
 		this.writeCache();
 		this.db.close();
+		this.parallelExecutor.shutdown();
+		this.httpConnectionPool.shutdown();
+	}
+
+	/**
+	 * Log the hit and staleness counts of every family.
+	 */
+	public void logCacheStats() {
+		for(Entry<EndpointFamily,CacheStats> entry : this.cacheStats.entrySet()){
+			log.info("Cache stats for " + entry.getKey() + ": " + entry.getValue());
+		}
+	}
+
+	private static Map<EndpointFamily,CacheStats> createCacheStats() {
+		Map<EndpointFamily,CacheStats> cacheStats = new EnumMap<EndpointFamily,CacheStats>(EndpointFamily.class);
+		for(EndpointFamily family : EndpointFamily.values()){
+			cacheStats.put(family, new CacheStats());
+		}
+		
+		return cacheStats;
 	}
 
 	protected Map<String, String> createCache(File file) {
@@ -153,6 +269,8 @@ public class BioportalRestService extends BaseCacheObservable
 				closeOnJvmShutdown().
 				make();
 		
+		this.cacheTimes = db.getHashMap(BIOPORTAL_CACHE_TIMES_NAME);
+		
 		return db.getHashMap(BIOPORTAL_CACHE_NAME);
 	}
 
@@ -224,10 +342,23 @@ public class BioportalRestService extends BaseCacheObservable
 	 * @return the entity by ontology version id and entity id
 	 */
 	public String getEntityByOntologyVersionIdAndEntityId(String ontologyVersionId, String entityId){		
+		return this.getEntityByOntologyVersionIdAndEntityId(ontologyVersionId, entityId, null);
+	}
+	
+	/**
+	 * Gets the entity by ontology version id and entity id. If the entity is
+	 * not found, the miss is remembered until the ontology changes.
+	 *
+	 * @param ontologyVersionId the ontology version id
+	 * @param entityId the entity id
+	 * @param ontologyId the ontology id of the version, or null if not known
+	 * @return the entity by ontology version id and entity id
+	 */
+	public String getEntityByOntologyVersionIdAndEntityId(String ontologyVersionId, String entityId, String ontologyId){		
 		String url = "http://rest.bioontology.org/bioportal/concepts/" + ontologyVersionId + "?" 
 				+ "conceptid=" + entityId;
 
-		String xml = this.doCallBioportalMemCache(url);
+		String xml = this.doCallBioportal(url, false, ontologyId);
 
 		return xml;
 	}
@@ -241,7 +372,7 @@ public class BioportalRestService extends BaseCacheObservable
 	public String getHierarchyRootsByOntolotyVersionId(String ontologyVersionId){
 		String url = "http://rest.bioontology.org/bioportal/concepts/" + ontologyVersionId + "/root";
 
-		String xml = this.doCallBioportalMemCache(url);
+		String xml = this.doCallBioportal(url);
 
 		return xml;
 	}
@@ -266,7 +397,7 @@ public class BioportalRestService extends BaseCacheObservable
 	public String getLatestOntologyVersionByOntologyId(String ontologyId){
 		String url = this.buildGetLatestOntologyVersionByOntologyIdUrl(ontologyId);
 
-		String xml = this.doCallBioportal(url);
+		String xml = this.doCallBioportal(url, false, ontologyId);
 
 		return xml;
 	}
@@ -317,7 +448,7 @@ public class BioportalRestService extends BaseCacheObservable
 	public String getLatestOntologyVersionByVirtualId(String virtualId){
 		String url = "http://rest.bioontology.org/bioportal/virtual/ontology/" + virtualId;
 
-		String xml = this.doCallBioportal(url);
+		String xml = this.doCallBioportal(url, false, virtualId);
 
 		return xml;
 	}
@@ -325,7 +456,7 @@ public class BioportalRestService extends BaseCacheObservable
 	public String getOntologyVersionsByOntologyId(String ontologyId, boolean forceRefresh){
 		String url = buildGetOntologyVersionsByOntologyIdUrl(ontologyId);
 
-		String xml = this.doCallBioportal(url, forceRefresh);
+		String xml = this.doCallBioportal(url, forceRefresh, ontologyId);
 
 		return xml;
 	}
@@ -343,7 +474,7 @@ public class BioportalRestService extends BaseCacheObservable
 	public String getViewVersionsByOntologyId(String ontologyId){
 		String url = buildGetViewVersionsByOntologyIdUrl(ontologyId);
 
-		String xml = this.doCallBioportal(url);
+		String xml = this.doCallBioportal(url, false, ontologyId);
 
 		return xml;
 	}
@@ -425,6 +556,64 @@ public class BioportalRestService extends BaseCacheObservable
 		return this.doSearchEntities(ontologyIds, filter, page);
 	}
 	
+	/**
+	 * Search entities by ontology ids, splitting the ontology ids into shards of
+	 * 'searchShardSize' and searching the shards concurrently. Each shard is
+	 * searched with the same page. Cancelling a future that has not started yet
+	 * keeps its request from being sent at all.
+	 *
+	 * @param ontologyIds the ontology ids
+	 * @param filter the filter
+	 * @param page the page
+	 * @return the search responses, in shard order
+	 */
+	public List<Future<String>> searchEntitiesByOntologyIdShards(
+			Collection<String> ontologyIds, 
+			final ResolvedFilter filter, 
+			final Page page){
+		List<Future<String>> shards = new ArrayList<Future<String>>();
+		
+		for(final List<String> shard : this.getSearchShards(ontologyIds)){
+			shards.add(this.parallelExecutor.submit(new Callable<String>(){
+
+				public String call() {
+					return doSearchEntities(shard, filter, page);
+				}
+			}));
+		}
+		
+		return shards;
+	}
+	
+	/**
+	 * Split the ontology ids into shards of 'searchShardSize', in order.
+	 *
+	 * @param ontologyIds the ontology ids
+	 * @return the shards
+	 */
+	protected List<List<String>> getSearchShards(Collection<String> ontologyIds){
+		List<String> ids = new ArrayList<String>(ontologyIds);
+		
+		int shardSize = this.searchShardSize > 0 ? this.searchShardSize : Math.max(1, ids.size());
+		
+		List<List<String>> shards = new ArrayList<List<String>>();
+		for(int i = 0; i < ids.size(); i += shardSize){
+			shards.add(ids.subList(i, Math.min(ids.size(), i + shardSize)));
+		}
+		
+		return shards;
+	}
+	
+	/**
+	 * Checks if a search of these ontology ids would be split into more than one shard.
+	 *
+	 * @param ontologyIds the ontology ids
+	 * @return true, if the search should be sharded
+	 */
+	public boolean isShardedSearch(Collection<String> ontologyIds){
+		return this.searchShardSize > 0 && ontologyIds.size() > this.searchShardSize;
+	}
+	
 	/**
 	 * Search entities of latest ontology versions.
 	 *
@@ -480,7 +669,7 @@ public class BioportalRestService extends BaseCacheObservable
 		sb.append(
 				this.getBioportalQueryStringForFilter(filter));
 		
-		String xml = this.doCallBioportalMemCache(sb.toString());
+		String xml = this.doCallBioportal(sb.toString());
 
 		return xml;
 	}
@@ -527,31 +716,241 @@ public class BioportalRestService extends BaseCacheObservable
 	 * @param url the url
 	 * @return the string
 	 */
-	protected String doCallBioportal(String url, boolean forceRefresh){
-		String fullUrl = this.appendApiKey(url);
+	protected String doCallBioportal(String url, final boolean forceRefresh){
+		return this.doCallBioportal(url, forceRefresh, null);
+	}
+	
+	/**
+	 * Do call bioportal. The response is cached as the {@link CachePolicy} rule
+	 * for the {@link EndpointFamily} of the URL says.
+	 *
+	 * @param url the url
+	 * @param forceRefresh go upstream even if the response (or a 404) is cached
+	 * @param ontologyId the ontology the URL belongs to, or null
+	 * @return the string
+	 */
+	protected String doCallBioportal(String url, final boolean forceRefresh, final String ontologyId){
+		final EndpointFamily family = EndpointFamily.forUrl(url);
+		final CachePolicy.Rule rule = this.cachePolicy.getRule(family);
+		final String fullUrl = this.appendApiKey(url);
 		
+		CacheStats stats = this.cacheStats.get(family);
+		
+		CachedResponse stale = null;
 		if(forceRefresh){
-			String xml = this.callBioportal(fullUrl);
-			
-			this.cache.put(fullUrl, xml);
+			this.negativeCache.remove(fullUrl);
+		} else {
+			CachedResponse cached = this.getCached(fullUrl, family, rule, false);
+			if(cached != null){
+				if(cached.isFresh(rule)){
+					stats.recordHit(cached.getAge());
+					
+					if(cached.isDueForRefresh(rule)){
+						this.refreshAhead(fullUrl, family, rule, ontologyId);
+					}
+					
+					return cached.xml;
+				}
+				
+				stale = cached;
+			}
+		}
+		
+		stats.recordMiss();
+		
+		try {
+			return this.requestCoalescer.execute(fullUrl, new Callable<String>(){
+	
+				public String call() {
+					if(! forceRefresh){
+						CachedResponse cached = getCached(fullUrl, family, rule, true);
+						if(cached != null && cached.isFresh(rule)){
+							return cached.xml;
+						}
+					}
+					
+					return fetch(fullUrl, family, rule, ontologyId);
+				}
+			});
+		} catch (RuntimeException e) {
+			if(stale == null || ! rule.isServeStaleOnError() || this.isNotFound(e)){
+				throw e;
+			}
 			
-			this.writeCache();
+			log.warn("Error calling BioPortal, serving the expired cached response for: " + fullUrl, e);
+			stats.recordStaleHit(stale.getAge());
 			
-			return xml;
+			return stale.xml;
+		}
+	}
+	
+	/**
+	 * Call bioportal and cache the response.
+	 *
+	 * @param fullUrl the full url
+	 * @param family the family
+	 * @param rule the rule
+	 * @param ontologyId the ontology the URL belongs to, or null
+	 * @return the string
+	 */
+	private String fetch(String fullUrl, EndpointFamily family, CachePolicy.Rule rule, String ontologyId){
+		String xml = this.callBioportal(fullUrl, ontologyId);
+		
+		long now = System.currentTimeMillis();
+		
+		if(rule.getTier() == CachePolicy.Tier.MEMORY){
+			this.getMemCache(family, rule).put(fullUrl, xml, now);
 		} else {
-			if(!this.cache.containsKey(fullUrl)){
+			String previous = this.cache.put(fullUrl, xml);
+			if(this.cacheTimes != null){
+				this.cacheTimes.put(fullUrl, now);
+			}
+			
+			this.persistentCacheBytes.addAndGet(
+					weigh(fullUrl, xml) - (previous == null ? 0 : weigh(fullUrl, previous)));
+			
+			this.evictOverBudget();
+			
+			this.cacheCommitter.changed();
+		}
 		
-				String xml = this.callBioportal(fullUrl);
-				
-				this.cache.put(fullUrl, xml);
+		return xml;
+	}
 	
-				this.writeCache();
-				
-				return xml;
+	/**
+	 * Fetches a response again in the background, unless it is already being fetched.
+	 *
+	 * @param fullUrl the full url
+	 * @param family the family
+	 * @param rule the rule
+	 * @param ontologyId the ontology the URL belongs to, or null
+	 */
+	private void refreshAhead(final String fullUrl, final EndpointFamily family, final CachePolicy.Rule rule, final String ontologyId){
+		if(! this.refreshing.add(fullUrl)){
+			return;
+		}
+		
+		this.cacheStats.get(family).recordRefreshAhead();
+		
+		try {
+			this.refreshExecutor.submit(new Callable<Void>(){
+	
+				public Void call() {
+					try {
+						requestCoalescer.execute(fullUrl, new Callable<String>(){
+	
+							public String call() {
+								return fetch(fullUrl, family, rule, ontologyId);
+							}
+						});
+					} catch (RuntimeException e) {
+						log.warn("Could not refresh cached response for: " + fullUrl, e);
+					} finally {
+						refreshing.remove(fullUrl);
+					}
+					
+					return null;
+				}
+			});
+		} catch (RuntimeException e) {
+			//shutting down -- the response will be fetched when it expires
+			this.refreshing.remove(fullUrl);
+		}
+	}
+	
+	/**
+	 * Gets a cached response, fresh or not.
+	 *
+	 * @param fullUrl the full url
+	 * @param family the family
+	 * @param rule the rule
+	 * @param peek don't count the access as a use of the memory cache
+	 * @return the response, or null if it is not cached
+	 */
+	private CachedResponse getCached(String fullUrl, EndpointFamily family, CachePolicy.Rule rule, boolean peek){
+		String xml;
+		Long fetched = null;
+		
+		if(rule.getTier() == CachePolicy.Tier.MEMORY){
+			ResponseCache responseCache = this.getMemCache(family, rule);
+			
+			ResponseCache.Entry entry = peek ? responseCache.peekEntry(fullUrl) : responseCache.getEntry(fullUrl);
+			if(entry == null){
+				xml = null;
 			} else {
-				return new String(this.cache.get(fullUrl));
+				xml = entry.getValue();
+				fetched = entry.getStoredAt();
+			}
+		} else {
+			xml = this.cache.get(fullUrl);
+			if(xml != null && this.cacheTimes != null){
+				fetched = this.cacheTimes.get(fullUrl);
 			}
 		}
+		
+		return xml == null ? null : new CachedResponse(xml, fetched);
+	}
+	
+	/**
+	 * Gets the memory cache of a family -- its own if the rule sizes one, 
+	 * otherwise the shared one.
+	 *
+	 * @param family the family
+	 * @param rule the rule
+	 * @return the response cache
+	 */
+	private ResponseCache getMemCache(EndpointFamily family, CachePolicy.Rule rule){
+		if(rule.getMaxBytes() <= 0){
+			return this.memCache;
+		}
+		
+		synchronized(this.familyMemCaches){
+			ResponseCache responseCache = this.familyMemCaches.get(family);
+			if(responseCache == null){
+				responseCache = new ResponseCache(rule.getMaxBytes());
+				this.familyMemCaches.put(family, responseCache);
+			} else if(responseCache.getMaximumWeight() != rule.getMaxBytes()){
+				responseCache.setMaximumWeight(rule.getMaxBytes());
+			}
+			
+			return responseCache;
+		}
+	}
+	
+	private boolean isNotFound(RuntimeException e){
+		return e instanceof HttpClientErrorException && 
+			((HttpClientErrorException)e).getStatusCode().equals(HttpStatus.NOT_FOUND);
+	}
+	
+	/**
+	 * A cached response, and when it was fetched.
+	 */
+	private static class CachedResponse {
+		
+		private String xml;
+		
+		/* null if not known */
+		private Long fetched;
+
+		private CachedResponse(String xml, Long fetched) {
+			super();
+			this.xml = xml;
+			this.fetched = fetched;
+		}
+		
+		private long getAge(){
+			return this.fetched == null ? -1 : System.currentTimeMillis() - this.fetched;
+		}
+		
+		private boolean isFresh(CachePolicy.Rule rule){
+			return rule.getTtl() <= 0 || 
+				(this.fetched != null && this.getAge() <= rule.getTtl());
+		}
+		
+		private boolean isDueForRefresh(CachePolicy.Rule rule){
+			return rule.getRefreshAhead() > 0 && rule.getTtl() > 0 && 
+				this.fetched != null && this.getAge() > rule.getTtl() - rule.getRefreshAhead();
+		}
 	}
 	
 	/**
@@ -564,10 +963,10 @@ public class BioportalRestService extends BaseCacheObservable
 		
 		synchronized(cache){
 		
-			this.cache.remove(fullUrl);
+			this.removeFromCache(fullUrl);
 			
 			try {
-				this.writeCache();
+				this.cacheCommitter.changed();
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
@@ -575,22 +974,93 @@ public class BioportalRestService extends BaseCacheObservable
 	}
 	
 	/**
-	 * Do call bioportal mem cache.
+	 * Drops a response from the cache on disk.
 	 *
-	 * @param url the url
-	 * @return the string
+	 * @param fullUrl the full url
 	 */
-	protected String doCallBioportalMemCache(String url){
-		String fullUrl = url + ( url.contains("?") ? "&" : "?") + API_KEY_PARAM + "=" + this.apiKey;
+	private void removeFromCache(String fullUrl){
+		String removed = this.cache.remove(fullUrl);
+		if(this.cacheTimes != null){
+			this.cacheTimes.remove(fullUrl);
+		}
 		
-		if(! this.memCache.containsKey(fullUrl)){
+		if(removed != null){
+			this.persistentCacheBytes.addAndGet(-weigh(fullUrl, removed));
+		}
+	}
 	
-			String xml = this.callBioportal(fullUrl);
-			
-			this.memCache.put(fullUrl, xml);
+	/**
+	 * Gets the approximate size of a response on disk.
+	 *
+	 * @param fullUrl the full url
+	 * @param xml the response
+	 * @return the size, in bytes
+	 */
+	private static long weigh(String fullUrl, String xml){
+		return fullUrl.length() + xml.length();
+	}
+	
+	/**
+	 * Adds up the size of the responses on disk. Every response is read, so
+	 * this is only done at startup.
+	 */
+	private void weighCache(){
+		long bytes = 0;
+		for(Entry<String,String> entry : this.cache.entrySet()){
+			bytes += weigh(entry.getKey(), entry.getValue());
 		}
 		
-		return new String(this.memCache.get(fullUrl));
+		this.persistentCacheBytes.set(bytes);
+	}
+	
+	/**
+	 * If the responses on disk are over the byte budget, drop them oldest first
+	 * until they are back to about 90% of it. A response with no fetch time
+	 * counts as the oldest.
+	 *
+	 * @return true, if any responses were dropped
+	 */
+	private boolean evictOverBudget(){
+		long maxBytes = this.persistentCacheMaxBytes;
+		if(maxBytes <= 0 || this.persistentCacheBytes.get() <= maxBytes){
+			return false;
+		}
+		
+		synchronized(cache){
+			if(this.persistentCacheBytes.get() <= maxBytes){
+				return false;
+			}
+			
+			final Map<String,Long> fetched = new HashMap<String,Long>();
+			for(String fullUrl : this.cache.keySet()){
+				Long time = this.cacheTimes != null ? this.cacheTimes.get(fullUrl) : null;
+				fetched.put(fullUrl, time != null ? time : Long.MIN_VALUE);
+			}
+			
+			List<String> oldestFirst = new ArrayList<String>(fetched.keySet());
+			Collections.sort(oldestFirst, new Comparator<String>(){
+
+				public int compare(String o1, String o2) {
+					return fetched.get(o1).compareTo(fetched.get(o2));
+				}
+			});
+			
+			long target = maxBytes * PERSISTENT_CACHE_EVICTION_TARGET / 100;
+			
+			int evicted = 0;
+			for(String fullUrl : oldestFirst){
+				if(this.persistentCacheBytes.get() <= target){
+					break;
+				}
+				
+				this.removeFromCache(fullUrl);
+				evicted++;
+			}
+			
+			log.info("Evicted " + evicted + " responses to keep the cache under " + maxBytes + " bytes.");
+			
+			return evicted > 0;
+		}
 	}
 	
 	/**
@@ -600,6 +1070,24 @@ public class BioportalRestService extends BaseCacheObservable
 	 * @return the string
 	 */
 	protected String callBioportal(String url){
+		return this.callBioportal(url, null);
+	}
+	
+	/**
+	 * Call bioportal. A URL that answered 404 recently is answered with
+	 * a 404 again, without going upstream.
+	 *
+	 * @param url the url
+	 * @param ontologyId the ontology the URL belongs to, or null
+	 * @return the string
+	 */
+	protected String callBioportal(String url, String ontologyId){
+		if(this.negativeCache.isMissing(url)){
+			throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+		}
+		
+		this.rateLimiter.acquire();
+		
 		log.info("Calling Bioportal REST: " + url);
 		HttpHeaders headers = new HttpHeaders();
 		headers.set( "Accept", "application/xml" );
@@ -614,6 +1102,8 @@ public class BioportalRestService extends BaseCacheObservable
 					String.class);
 		} catch (HttpStatusCodeException e) {
 			if(e.getStatusCode().equals(HttpStatus.NOT_FOUND)){
+				this.negativeCache.put(url, ontologyId);
+				
 				throw e;
 			} else {
 				log.error("Error calling BioPortal REST Service", e);
@@ -668,6 +1158,16 @@ public class BioportalRestService extends BaseCacheObservable
 			
 		this.cache = this.createCache(file);
 		
+		this.weighCache();
+		
+		if(this.evictOverBudget()){
+			this.writeCache();
+		}
+		
+		this.cacheCommitter.start();
+		
+		this.startCacheStatsTimer();
+		
 		//not sure this is helping the cause.
 		//this.startRssChangeTimer();
 	}
@@ -686,6 +1186,27 @@ public class BioportalRestService extends BaseCacheObservable
 	    return new File(updateLogPath);
     }
     
+    /**
+     * Start logging the cache stats every cacheStatsLogPeriod minutes.
+     */
+    private void startCacheStatsTimer(){
+    	if(this.cacheStatsLogPeriod <= 0){
+    		return;
+    	}
+    	
+    	long period = ONE_MINUTE * this.cacheStatsLogPeriod;
+    	
+    	this.cacheStatsTimer = new Timer("bioportal-cache-stats", true);
+    	this.cacheStatsTimer.scheduleAtFixedRate(new TimerTask(){
+
+			@Override
+			public void run() {
+				logCacheStats();
+			}
+    		
+    	}, period, period);
+    }
+    
     /**
      * Start rss change timer.
      */
@@ -717,7 +1238,7 @@ public class BioportalRestService extends BaseCacheObservable
             if(lastUpdateFromFeed != null &&
                     (lastUpdate == null || lastUpdateFromFeed.after(lastUpdate)) ){
                 List<String> ontologyIds =
-                    this.getUpdatedOntologies(feed, lastUpdateFromFeed);
+                    this.getUpdatedOntologies(feed, lastUpdate);
 
                 for(String ontologyId : ontologyIds) {
                     this.purgeGetLatestOntologyVersions();
@@ -727,6 +1248,14 @@ public class BioportalRestService extends BaseCacheObservable
 
                 this.writeUpdateLog(lastUpdateFromFeed);
 
+                //views also depend on the names of the changed code systems
+                this.derivedViewCache.clear();
+                
+                //new versions change what searches of the latest versions find
+                this.countCache.clear();
+                
+                this.negativeCache.invalidate(ontologyIds);
+
                 this.fireOnCodeSystemsChangeEvent(ontologyIds);
             }
         } catch(Exception e){
@@ -759,7 +1288,7 @@ public class BioportalRestService extends BaseCacheObservable
      * Gets the updated ontologies.
      *
      * @param feed the feed
-     * @param fromDate the from date
+     * @param fromDate the last update seen, or null if there was none
      * @return the updated ontologies
      */
     protected List<String> getUpdatedOntologies(SyndFeed feed, Date fromDate){
@@ -770,7 +1299,7 @@ public class BioportalRestService extends BaseCacheObservable
 			SyndEntry  syndEntry = (SyndEntry)entry;
 			DateModule date = (DateModule) syndEntry.getModule(DateModule.URI);
 			Date foundDate = date.getDate();
-			if(foundDate.after(foundDate)){
+			if(fromDate == null || foundDate.after(fromDate)){
 				ontologyIdList.add(
 						StringUtils.substringAfterLast(syndEntry.getLink(), "/"));
 			}
@@ -864,9 +1393,378 @@ public class BioportalRestService extends BaseCacheObservable
 		return apiKey;
 	}
 
+	/**
+	 * Replaces the HTTP transport used to call BioPortal. By default
+	 * requests are served by the pooled {@link HttpConnectionPool}.
+	 *
+	 * @param clientHttpRequestFactory the client http request factory
+	 */
+	public void setClientHttpRequestFactory(ClientHttpRequestFactory clientHttpRequestFactory) {
+		this.restTemplate.setRequestFactory(clientHttpRequestFactory);
+	}
+
+	/**
+	 * Gets the number of BioPortal calls that were served by joining an
+	 * identical request already in flight instead of going upstream.
+	 *
+	 * @return the coalesced request count
+	 */
+	public long getCoalescedRequestCount() {
+		return this.requestCoalescer.getCoalescedCount();
+	}
+
+	/**
+	 * Gets the bounded executor used to fan out independent BioPortal calls.
+	 *
+	 * @return the parallel executor
+	 */
+	public ParallelExecutor getParallelExecutor() {
+		return parallelExecutor;
+	}
+
+	/**
+	 * Sets how many BioPortal calls a fan-out (such as the identity bootstrap) may run at once.
+	 *
+	 * @param upstreamParallelism the upstream parallelism
+	 */
+	public void setUpstreamParallelism(int upstreamParallelism) {
+		this.parallelExecutor.setParallelism(upstreamParallelism);
+	}
+
+	public int getUpstreamParallelism() {
+		return this.parallelExecutor.getParallelism();
+	}
+
+	/**
+	 * Sets how many ontologies go into each shard of a multi-ontology search.
+	 *
+	 * @param searchShardSize the search shard size, or 0 to always send one request
+	 */
+	public void setSearchShardSize(int searchShardSize) {
+		this.searchShardSize = searchShardSize;
+	}
+
+	public int getSearchShardSize() {
+		return searchShardSize;
+	}
+
+	/**
+	 * Caps how many nodes a multi-level association graph may return.
+	 *
+	 * @param maxGraphNodes the max graph nodes
+	 */
+	public void setMaxGraphNodes(int maxGraphNodes) {
+		this.maxGraphNodes = maxGraphNodes;
+	}
+
+	public int getMaxGraphNodes() {
+		return maxGraphNodes;
+	}
+
+	/**
+	 * Caps how many calls to BioPortal may start per second.
+	 *
+	 * @param maxRequestsPerSecond the max requests per second, or 0 for no limit
+	 */
+	public void setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+		this.rateLimiter.setPermitsPerSecond(maxRequestsPerSecond);
+	}
+
+	public int getMaxRequestsPerSecond() {
+		return this.rateLimiter.getPermitsPerSecond();
+	}
+
+	/**
+	 * Enables or disables write-behind commits of the persistent cache.
+	 * When disabled, every change is committed immediately.
+	 *
+	 * @param writeBehindEnabled the write behind enabled
+	 */
+	public void setWriteBehindEnabled(boolean writeBehindEnabled) {
+		this.cacheCommitter.setWriteBehindEnabled(writeBehindEnabled);
+	}
+
+	public boolean isWriteBehindEnabled() {
+		return this.cacheCommitter.isWriteBehindEnabled();
+	}
+
+	/**
+	 * Sets how many pending changes trigger an early commit in write-behind mode.
+	 *
+	 * @param writeBehindBatchSize the write behind batch size
+	 */
+	public void setWriteBehindBatchSize(int writeBehindBatchSize) {
+		this.cacheCommitter.setBatchSize(writeBehindBatchSize);
+	}
+
+	public int getWriteBehindBatchSize() {
+		return this.cacheCommitter.getBatchSize();
+	}
+
+	/**
+	 * Sets the longest time a change may wait before it is committed -- the
+	 * most that can be lost from the persistent cache on a crash.
+	 *
+	 * @param writeBehindInterval the write behind interval, in milliseconds
+	 */
+	public void setWriteBehindInterval(int writeBehindInterval) {
+		this.cacheCommitter.setCommitInterval(writeBehindInterval);
+	}
+
+	public int getWriteBehindInterval() {
+		return this.cacheCommitter.getCommitInterval();
+	}
+
+	public GroupCommitter getCacheCommitter() {
+		return cacheCommitter;
+	}
+
+	/**
+	 * Gets the in-memory cache of entity and search responses.
+	 *
+	 * @return the mem cache
+	 */
+	public ResponseCache getMemCache() {
+		return memCache;
+	}
+
+	/**
+	 * Sets the approximate maximum size of the in-memory response cache.
+	 *
+	 * @param memCacheMaxBytes the mem cache max bytes
+	 */
+	public void setMemCacheMaxBytes(long memCacheMaxBytes) {
+		this.memCache.setMaximumWeight(memCacheMaxBytes);
+	}
+
+	public long getMemCacheMaxBytes() {
+		return this.memCache.getMaximumWeight();
+	}
+
+	/**
+	 * Sets the approximate maximum size of the responses kept on disk. When they
+	 * go over it, the oldest are dropped.
+	 *
+	 * @param persistentCacheMaxBytes the max bytes, or 0 for no limit
+	 */
+	public void setPersistentCacheMaxBytes(long persistentCacheMaxBytes) {
+		this.persistentCacheMaxBytes = persistentCacheMaxBytes;
+		if(this.cache != null && this.evictOverBudget()){
+			this.cacheCommitter.changed();
+		}
+	}
+
+	public long getPersistentCacheMaxBytes() {
+		return persistentCacheMaxBytes;
+	}
+	
+	public long getPersistentCacheBytes() {
+		return this.persistentCacheBytes.get();
+	}
+
+	/**
+	 * Gets the cache of model lists derived from whole responses.
+	 *
+	 * @return the derived view cache
+	 */
+	public DerivedViewCache getDerivedViewCache() {
+		return derivedViewCache;
+	}
+
+	/**
+	 * Sets the most derived views to hold in memory. 0 turns the cache off.
+	 *
+	 * @param derivedViewCacheSize the derived view cache size
+	 */
+	public void setDerivedViewCacheSize(int derivedViewCacheSize) {
+		this.derivedViewCache.setMaxEntries(derivedViewCacheSize);
+	}
+
+	public int getDerivedViewCacheSize() {
+		return this.derivedViewCache.getMaxEntries();
+	}
+
+	public CachePolicy getCachePolicy() {
+		return cachePolicy;
+	}
+
+	/**
+	 * Sets how long a response about the latest versions (the TTL tier) is used before it is fetched again.
+	 *
+	 * @param latestCacheTtl the latest cache ttl, in milliseconds
+	 */
+	public void setLatestCacheTtl(long latestCacheTtl) {
+		this.cachePolicy.setTtl(latestCacheTtl);
+	}
+
+	public long getLatestCacheTtl() {
+		return this.cachePolicy.getTtl();
+	}
+	
+	/**
+	 * Sets the cache rules of endpoint families to the defaults, overridden by a rule table.
+	 *
+	 * @param cacheRules the rule table
+	 * @see CachePolicy#setRules(String)
+	 */
+	public void setCacheRules(String cacheRules) {
+		this.cachePolicy.setRules(cacheRules);
+	}
+	
+	/**
+	 * Sets how often the cache stats are logged. Read at startup.
+	 *
+	 * @param cacheStatsLogPeriod the period, in minutes, or 0 to only log them on shutdown
+	 */
+	public void setCacheStatsLogPeriod(int cacheStatsLogPeriod) {
+		this.cacheStatsLogPeriod = cacheStatsLogPeriod;
+	}
+
+	public int getCacheStatsLogPeriod() {
+		return cacheStatsLogPeriod;
+	}
+	
+	/**
+	 * Gets the hit and staleness counts of a family.
+	 *
+	 * @param family the family
+	 * @return the cache stats
+	 */
+	public CacheStats getCacheStats(EndpointFamily family) {
+		return this.cacheStats.get(family);
+	}
+
+	public RelationCache getRelationCache() {
+		return relationCache;
+	}
+
+	/**
+	 * Sets the most entities to hold the children (or other relations) of. 0 turns the cache off.
+	 * This is a count, not a size -- see {@link RelationCache}.
+	 *
+	 * @param relationCacheSize the relation cache size
+	 */
+	public void setRelationCacheSize(int relationCacheSize) {
+		this.relationCache.setMaxEntries(relationCacheSize);
+	}
+
+	public int getRelationCacheSize() {
+		return this.relationCache.getMaxEntries();
+	}
+
+	/**
+	 * Gets the result counts read from the headers of fetched pages.
+	 *
+	 * @return the count cache
+	 */
+	public CountCache getCountCache() {
+		return countCache;
+	}
+
+	/**
+	 * Sets how long a result count read from a page header is kept.
+	 *
+	 * @param countCacheTtl the count cache ttl, in milliseconds
+	 */
+	public void setCountCacheTtl(long countCacheTtl) {
+		this.countCache.setTtl(countCacheTtl);
+	}
+
+	public long getCountCacheTtl() {
+		return this.countCache.getTtl();
+	}
+
+	/**
+	 * Gets the cache of URLs that answered 404.
+	 *
+	 * @return the negative cache
+	 */
+	public NegativeCache getNegativeCache() {
+		return negativeCache;
+	}
+
+	/**
+	 * Gets the number of calls answered as 404 without going upstream.
+	 *
+	 * @return the negative cache hit count
+	 */
+	public long getNegativeCacheHitCount() {
+		return this.negativeCache.getHitCount();
+	}
+
+	/**
+	 * Sets the most 404 URLs to remember. 0 turns the negative cache off.
+	 *
+	 * @param negativeCacheMaxEntries the negative cache max entries
+	 */
+	public void setNegativeCacheMaxEntries(int negativeCacheMaxEntries) {
+		this.negativeCache.setMaxEntries(negativeCacheMaxEntries);
+	}
+
+	public int getNegativeCacheMaxEntries() {
+		return this.negativeCache.getMaxEntries();
+	}
+
+	/**
+	 * Sets how long to remember a URL that answered 404.
+	 *
+	 * @param negativeCacheTtl the negative cache ttl, in milliseconds
+	 */
+	public void setNegativeCacheTtl(long negativeCacheTtl) {
+		this.negativeCache.setTtl(negativeCacheTtl);
+	}
+
+	public long getNegativeCacheTtl() {
+		return this.negativeCache.getTtl();
+	}
+
+	public HttpConnectionPool getHttpConnectionPool() {
+		return httpConnectionPool;
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return this.httpConnectionPool.getMaxConnectionsPerRoute();
+	}
+
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.httpConnectionPool.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+	}
+
+	public int getMaxTotalConnections() {
+		return this.httpConnectionPool.getMaxTotalConnections();
+	}
+
+	public void setMaxTotalConnections(int maxTotalConnections) {
+		this.httpConnectionPool.setMaxTotalConnections(maxTotalConnections);
+	}
+
+	public int getConnectTimeout() {
+		return this.httpConnectionPool.getConnectTimeout();
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.httpConnectionPool.setConnectTimeout(connectTimeout);
+	}
+
+	public int getReadTimeout() {
+		return this.httpConnectionPool.getReadTimeout();
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.httpConnectionPool.setReadTimeout(readTimeout);
+	}
+
+	public void setIdleConnectionTimeout(int idleConnectionTimeout) {
+		this.httpConnectionPool.setIdleConnectionTimeout(idleConnectionTimeout);
+	}
+
 	public void setApiKey(String apiKey) {
 		this.apiKey = apiKey;
 		if(this.propertiesSet){
+			this.derivedViewCache.clear();
+			this.countCache.clear();
+			this.negativeCache.clear();
+			this.relationCache.clear();
 			this.fireApiKeyChangeEvent();
 		}
 	}
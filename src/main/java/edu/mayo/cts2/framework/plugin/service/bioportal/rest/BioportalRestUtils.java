@@ -27,7 +27,10 @@ import java.io.StringReader;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 
@@ -40,16 +43,54 @@ import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
  * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
  */
 public class BioportalRestUtils {
+	
+	private static Log log = LogFactory.getLog(BioportalRestUtils.class);
+	
+	/* BioPortal responses never need a DTD or external entities */
+	private static final String[][] PARSER_FEATURES = {
+		{"http://apache.org/xml/features/disallow-doctype-decl", "true"},
+		{"http://xml.org/sax/features/external-general-entities", "false"},
+		{"http://xml.org/sax/features/external-parameter-entities", "false"},
+		{"http://apache.org/xml/features/nonvalidating/load-external-dtd", "false"}
+	};
 		
-	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
 	
-	private static final DocumentBuilder DOCUMENT_BUILDER;
-	static {
-		try{
-		DOCUMENT_BUILDER = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
-		} catch(Exception e){
-			throw new Cts2RuntimeException(e);
+	/* DocumentBuilders are not thread safe, but can be reused -- so keep one per thread */
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<DocumentBuilder>(){
+
+		@Override
+		protected DocumentBuilder initialValue() {
+			try {
+				synchronized(DOCUMENT_BUILDER_FACTORY){
+					return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+				}
+			} catch (ParserConfigurationException e) {
+				throw new Cts2RuntimeException(e);
+			}
+		}
+	};
+	
+	/**
+	 * Creates the document builder factory, with DTDs and external entities turned off
+	 * where the underlying parser supports it.
+	 *
+	 * @return the document builder factory
+	 */
+	private static DocumentBuilderFactory createDocumentBuilderFactory(){
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setValidating(false);
+		factory.setExpandEntityReferences(false);
+		
+		for(String[] feature : PARSER_FEATURES){
+			try {
+				factory.setAttribute(feature[0], Boolean.valueOf(feature[1]));
+			} catch (IllegalArgumentException e) {
+				log.warn("XML parser does not support feature: " + feature[0]);
+			}
 		}
+		
+		return factory;
 	}
 	
 	/**
@@ -73,9 +114,7 @@ public class BioportalRestUtils {
 		Document doc;
 		
 		try {
-			synchronized(DOCUMENT_BUILDER){
-				doc = DOCUMENT_BUILDER.parse(inputStream);
-			}
+			doc = DOCUMENT_BUILDER.get().parse(inputStream);
 		} catch (Exception e) {
 			throw new Cts2RuntimeException(e);
 		} 
@@ -0,0 +1,238 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+
+/**
+ * A small in-memory cache, bounded by entry count, that drops the least recently
+ * used entry first. Entries may also expire after a TTL.
+ * 
+ * The plugin's derived caches (views, counts, 404s, relations) are built on it.
+ *
+ * @param <V> the value type
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class BoundedCache<V> {
+	
+	private int maxEntries;
+	
+	private long ttl;
+	
+	private Map<String,Entry<V>> entries = new LinkedHashMap<String,Entry<V>>(16, 0.75f, true);
+	
+	private AtomicLong hitCount = new AtomicLong();
+	
+	private AtomicLong missCount = new AtomicLong();
+	
+	/**
+	 * Picks entries by their value.
+	 *
+	 * @param <V> the value type
+	 */
+	public interface Condition<V> {
+		
+		boolean matches(V value);
+	}
+	
+	private static class Entry<V> {
+		private final V value;
+		private final long storedAt;
+		
+		private Entry(V value, long storedAt) {
+			super();
+			this.value = value;
+			this.storedAt = storedAt;
+		}
+	}
+
+	/**
+	 * Instantiates a new bounded cache.
+	 *
+	 * @param maxEntries the most entries to hold, or 0 to turn the cache off
+	 * @param ttl how long an entry is kept, in milliseconds, or 0 for no expiry
+	 */
+	public BoundedCache(int maxEntries, long ttl) {
+		super();
+		this.maxEntries = maxEntries;
+		this.ttl = ttl;
+	}
+	
+	/**
+	 * Gets a value.
+	 *
+	 * @param key the key
+	 * @return the value, or null if it is not cached or has expired
+	 */
+	public synchronized V get(String key){
+		Entry<V> entry = this.entries.get(key);
+		
+		if(entry != null && this.isExpired(entry)){
+			this.entries.remove(key);
+			entry = null;
+		}
+		
+		if(entry == null){
+			this.missCount.incrementAndGet();
+			return null;
+		}
+		
+		this.hitCount.incrementAndGet();
+		
+		return entry.value;
+	}
+	
+	/**
+	 * Gets a value, building it if it is not cached. The value is built outside
+	 * of the cache's lock, so two callers may build the same value at once.
+	 *
+	 * @param key the key
+	 * @param build builds the value
+	 * @return the value
+	 */
+	public V get(String key, Callable<? extends V> build){
+		V value = this.get(key);
+		
+		if(value == null){
+			try {
+				value = build.call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new Cts2RuntimeException(e);
+			}
+			
+			this.put(key, value);
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Caches a value. Nothing is cached while the cache is off.
+	 *
+	 * @param key the key
+	 * @param value the value
+	 */
+	public synchronized void put(String key, V value){
+		if(this.maxEntries <= 0){
+			return;
+		}
+		
+		this.entries.put(key, new Entry<V>(value, this.now()));
+		
+		this.evict();
+	}
+	
+	/**
+	 * Drops one entry.
+	 *
+	 * @param key the key
+	 */
+	public synchronized void remove(String key){
+		this.entries.remove(key);
+	}
+	
+	/**
+	 * Drops every entry whose value matches.
+	 *
+	 * @param condition the condition
+	 */
+	public synchronized void removeAll(Condition<? super V> condition){
+		Iterator<Entry<V>> itr = this.entries.values().iterator();
+		while(itr.hasNext()){
+			if(condition.matches(itr.next().value)){
+				itr.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Drops every entry.
+	 */
+	public synchronized void clear(){
+		this.entries.clear();
+	}
+	
+	private boolean isExpired(Entry<V> entry){
+		return this.ttl > 0 && this.now() - entry.storedAt >= this.ttl;
+	}
+	
+	private void evict(){
+		Iterator<String> eldest = this.entries.keySet().iterator();
+		while(this.entries.size() > Math.max(0, this.maxEntries) && eldest.hasNext()){
+			eldest.next();
+			eldest.remove();
+		}
+	}
+	
+	protected long now(){
+		return System.currentTimeMillis();
+	}
+	
+	/**
+	 * Sets the most entries to hold, evicting if the cache is now over. 0 turns the cache off.
+	 *
+	 * @param maxEntries the new max entries
+	 */
+	public synchronized void setMaxEntries(int maxEntries){
+		this.maxEntries = maxEntries;
+		this.evict();
+	}
+	
+	public synchronized int getMaxEntries(){
+		return this.maxEntries;
+	}
+	
+	/**
+	 * Sets how long an entry is kept.
+	 *
+	 * @param ttl the ttl, in milliseconds, or 0 for no expiry
+	 */
+	public synchronized void setTtl(long ttl){
+		this.ttl = ttl;
+	}
+	
+	public synchronized long getTtl(){
+		return this.ttl;
+	}
+	
+	public synchronized int size(){
+		return this.entries.size();
+	}
+	
+	public long getHitCount(){
+		return this.hitCount.get();
+	}
+	
+	public long getMissCount(){
+		return this.missCount.get();
+	}
+}
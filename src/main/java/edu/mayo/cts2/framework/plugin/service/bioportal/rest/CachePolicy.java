@@ -0,0 +1,289 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * How each {@link EndpointFamily} of BioPortal responses is cached.
+ * 
+ * Responses for one ontology version never change, so they are kept on disk
+ * for good. Responses about the latest versions are kept on disk too, but only
+ * for the TTL, and an old copy is served if BioPortal can't be reached. 
+ * Searches are kept in memory. The responses on disk may be given a byte budget
+ * ({@link BioportalRestService#setPersistentCacheMaxBytes(long)}), past which the
+ * oldest are dropped.
+ * 
+ * The defaults may be overridden with a rule table of the form
+ * <pre>
+ * SEARCH:tier=MEMORY,ttl=600000,maxBytes=8388608;VIRTUAL_ONTOLOGY:refreshAhead=300000
+ * </pre>
+ * where only the listed settings of each family are changed.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class CachePolicy {
+	
+	private static final Log log = LogFactory.getLog(CachePolicy.class);
+	
+	/**
+	 * The caches a response may be kept in.
+	 */
+	public enum Tier {
+		/** on disk, with no expiry unless the rule sets a TTL */
+		PERSISTENT,
+		/** on disk, until the TTL has passed */
+		TTL,
+		/** in memory, bounded by size */
+		MEMORY
+	}
+	
+	/**
+	 * How the responses of one family are cached.
+	 */
+	public static class Rule {
+		
+		private Tier tier;
+		
+		/* null is the policy's default TTL */
+		private Long ttl;
+		
+		/* 0 is the shared memory cache */
+		private long maxBytes;
+		
+		/* 0 is no refresh ahead */
+		private long refreshAhead;
+		
+		private boolean serveStaleOnError;
+		
+		public Rule(Tier tier, boolean serveStaleOnError) {
+			super();
+			this.tier = tier;
+			this.serveStaleOnError = serveStaleOnError;
+		}
+		
+		private Rule(Rule rule) {
+			super();
+			this.tier = rule.tier;
+			this.ttl = rule.ttl;
+			this.maxBytes = rule.maxBytes;
+			this.refreshAhead = rule.refreshAhead;
+			this.serveStaleOnError = rule.serveStaleOnError;
+		}
+
+		public Tier getTier() {
+			return tier;
+		}
+
+		public void setTier(Tier tier) {
+			this.tier = tier;
+		}
+
+		/**
+		 * Gets how long a response is used before it is fetched again.
+		 *
+		 * @return the ttl, in milliseconds, 0 for no expiry or null for the default
+		 */
+		public Long getTtl() {
+			return ttl;
+		}
+
+		public void setTtl(Long ttl) {
+			this.ttl = ttl;
+		}
+
+		/**
+		 * Gets the size of this family's own memory cache. Only used by the MEMORY tier.
+		 *
+		 * @return the max bytes, or 0 to share the memory cache
+		 */
+		public long getMaxBytes() {
+			return maxBytes;
+		}
+
+		public void setMaxBytes(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		/**
+		 * Gets how long before it expires a response that is still being
+		 * used is fetched again in the background.
+		 *
+		 * @return the refresh ahead window, in milliseconds, or 0 for none
+		 */
+		public long getRefreshAhead() {
+			return refreshAhead;
+		}
+
+		public void setRefreshAhead(long refreshAhead) {
+			this.refreshAhead = refreshAhead;
+		}
+
+		/**
+		 * Whether an expired response is served when BioPortal can't be reached.
+		 *
+		 * @return true, if stale responses are served on error
+		 */
+		public boolean isServeStaleOnError() {
+			return serveStaleOnError;
+		}
+
+		public void setServeStaleOnError(boolean serveStaleOnError) {
+			this.serveStaleOnError = serveStaleOnError;
+		}
+	}
+	
+	public static final long DEFAULT_TTL = 60 * 60 * 1000L;
+	
+	private Map<EndpointFamily,Rule> rules = new EnumMap<EndpointFamily,Rule>(EndpointFamily.class);
+	
+	private long ttl = DEFAULT_TTL;
+
+	/**
+	 * Instantiates a new cache policy with the default rules.
+	 */
+	public CachePolicy() {
+		super();
+		this.rules.putAll(createDefaultRules());
+	}
+	
+	private static Map<EndpointFamily,Rule> createDefaultRules() {
+		Map<EndpointFamily,Rule> rules = new EnumMap<EndpointFamily,Rule>(EndpointFamily.class);
+		
+		rules.put(EndpointFamily.ONTOLOGY_VERSION, new Rule(Tier.PERSISTENT, false));
+		rules.put(EndpointFamily.CONCEPT, new Rule(Tier.PERSISTENT, false));
+		rules.put(EndpointFamily.HIERARCHY_ROOTS, new Rule(Tier.PERSISTENT, false));
+		rules.put(EndpointFamily.CONCEPTS_ALL, new Rule(Tier.PERSISTENT, false));
+		
+		rules.put(EndpointFamily.ONTOLOGIES, new Rule(Tier.TTL, true));
+		rules.put(EndpointFamily.ONTOLOGY_VERSIONS, new Rule(Tier.TTL, true));
+		rules.put(EndpointFamily.VIRTUAL_ONTOLOGY, new Rule(Tier.TTL, true));
+		rules.put(EndpointFamily.VIEWS, new Rule(Tier.TTL, true));
+		
+		rules.put(EndpointFamily.SEARCH, new Rule(Tier.MEMORY, false));
+		
+		rules.put(EndpointFamily.OTHER, new Rule(Tier.PERSISTENT, false));
+		
+		return rules;
+	}
+	
+	/**
+	 * Gets a copy of the rule for a family, with its TTL resolved if the rule
+	 * doesn't set one -- 0 (no expiry) for the PERSISTENT tier, and the policy's
+	 * TTL otherwise.
+	 *
+	 * @param family the family
+	 * @return the rule
+	 */
+	public synchronized Rule getRule(EndpointFamily family){
+		Rule rule = new Rule(this.rules.get(family));
+		
+		if(rule.getTtl() == null){
+			rule.setTtl(rule.getTier() == Tier.PERSISTENT ? 0L : this.ttl);
+		}
+		
+		return rule;
+	}
+	
+	public synchronized void setRule(EndpointFamily family, Rule rule){
+		this.rules.put(family, new Rule(rule));
+	}
+	
+	public synchronized Tier getTier(EndpointFamily family){
+		return this.rules.get(family).getTier();
+	}
+	
+	public synchronized void setTier(EndpointFamily family, Tier tier){
+		this.rules.get(family).setTier(tier);
+	}
+	
+	/**
+	 * Sets the rules to the defaults overridden by a rule table, so a rule
+	 * dropped from the table goes back to its default. A malformed rule is
+	 * logged and skipped.
+	 *
+	 * @param table the rule table
+	 */
+	public synchronized void setRules(String table){
+		this.rules.clear();
+		this.rules.putAll(createDefaultRules());
+		
+		for(String entry : StringUtils.split(StringUtils.defaultString(table), ';')){
+			if(StringUtils.isBlank(entry)){
+				continue;
+			}
+			
+			try {
+				EndpointFamily family = 
+					EndpointFamily.valueOf(StringUtils.substringBefore(entry, ":").trim().toUpperCase());
+				
+				Rule rule = new Rule(this.rules.get(family));
+				for(String setting : StringUtils.split(StringUtils.substringAfter(entry, ":"), ',')){
+					this.applySetting(rule, 
+							StringUtils.substringBefore(setting, "=").trim(), 
+							StringUtils.substringAfter(setting, "=").trim());
+				}
+				
+				this.rules.put(family, rule);
+			} catch (IllegalArgumentException e) {
+				log.warn("Skipping cache policy rule '" + entry + "': " + e.getMessage());
+			}
+		}
+	}
+	
+	private void applySetting(Rule rule, String name, String value){
+		if(name.equals("tier")){
+			rule.setTier(Tier.valueOf(value.toUpperCase()));
+		} else if(name.equals("ttl")){
+			rule.setTtl(Long.valueOf(value));
+		} else if(name.equals("maxBytes")){
+			rule.setMaxBytes(Long.parseLong(value));
+		} else if(name.equals("refreshAhead")){
+			rule.setRefreshAhead(Long.parseLong(value));
+		} else if(name.equals("serveStaleOnError")){
+			rule.setServeStaleOnError(Boolean.parseBoolean(value));
+		} else {
+			throw new IllegalArgumentException("Unknown setting: " + name);
+		}
+	}
+
+	public long getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * Sets how long a response is used before it is fetched again, 
+	 * for rules that don't set their own.
+	 *
+	 * @param ttl the ttl, in milliseconds
+	 */
+	public void setTtl(long ttl) {
+		this.ttl = ttl;
+	}
+}
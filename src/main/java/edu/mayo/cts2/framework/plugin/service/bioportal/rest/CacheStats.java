@@ -0,0 +1,136 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit and staleness counts for one {@link EndpointFamily} of cached responses.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class CacheStats {
+	
+	private AtomicLong hitCount = new AtomicLong();
+	
+	private AtomicLong missCount = new AtomicLong();
+	
+	private AtomicLong staleHitCount = new AtomicLong();
+	
+	private AtomicLong refreshAheadCount = new AtomicLong();
+	
+	/* only hits whose fetch time is known */
+	private AtomicLong agedHitCount = new AtomicLong();
+	
+	private AtomicLong totalHitAge = new AtomicLong();
+	
+	/**
+	 * Records a response served from the cache.
+	 *
+	 * @param age how long ago the response was fetched, or -1 if not known
+	 */
+	public void recordHit(long age){
+		this.hitCount.incrementAndGet();
+		this.recordAge(age);
+	}
+	
+	/**
+	 * Records a response that had to be fetched.
+	 */
+	public void recordMiss(){
+		this.missCount.incrementAndGet();
+	}
+	
+	/**
+	 * Records an expired response served because it couldn't be fetched again.
+	 *
+	 * @param age how long ago the response was fetched, or -1 if not known
+	 */
+	public void recordStaleHit(long age){
+		this.staleHitCount.incrementAndGet();
+		this.recordAge(age);
+	}
+	
+	/**
+	 * Records a response fetched again in the background before it expired.
+	 */
+	public void recordRefreshAhead(){
+		this.refreshAheadCount.incrementAndGet();
+	}
+	
+	private void recordAge(long age){
+		if(age >= 0){
+			this.agedHitCount.incrementAndGet();
+			this.totalHitAge.addAndGet(age);
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getStaleHitCount() {
+		return staleHitCount.get();
+	}
+
+	public long getRefreshAheadCount() {
+		return refreshAheadCount.get();
+	}
+	
+	/**
+	 * Gets the share of requests served from the cache without going upstream.
+	 *
+	 * @return the hit ratio
+	 */
+	public double getHitRatio() {
+		long hits = this.getHitCount();
+		long requests = hits + this.getMissCount();
+		
+		return requests == 0 ? 0d : (double) hits / requests;
+	}
+	
+	/**
+	 * Gets how old, on average, the responses served from the cache were.
+	 *
+	 * @return the average age, in milliseconds
+	 */
+	public long getAverageHitAge() {
+		long aged = this.agedHitCount.get();
+		
+		return aged == 0 ? 0 : this.totalHitAge.get() / aged;
+	}
+	
+	@Override
+	public String toString() {
+		return "hits=" + this.getHitCount() + 
+			", misses=" + this.getMissCount() + 
+			", staleHits=" + this.getStaleHitCount() + 
+			", refreshAheads=" + this.getRefreshAheadCount() + 
+			", averageHitAge=" + this.getAverageHitAge();
+	}
+}
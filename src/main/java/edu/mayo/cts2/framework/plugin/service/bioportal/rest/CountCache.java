@@ -0,0 +1,156 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import edu.mayo.cts2.framework.model.command.ResolvedFilter;
+
+/**
+ * The total result counts of BioPortal listings and searches, as read from the
+ * header of any page already fetched for them.
+ *
+ * Entries are keyed by the scope of the query (an ontology, a set of ontologies,
+ * an ontology version...) and the filter, so a count request can be answered
+ * without going upstream once any page of the same query has been read.
+ * Counts expire after a TTL, as a listing can grow between ontology updates
+ * that the RSS feed reports.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class CountCache {
+	
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+	
+	public static final long DEFAULT_TTL = 60 * 60 * 1000;
+	
+	private static final String SEPARATOR = "|";
+	
+	private BoundedCache<Integer> counts;
+
+	/**
+	 * Instantiates a new count cache.
+	 *
+	 * @param maxEntries the most counts to hold
+	 */
+	public CountCache(int maxEntries) {
+		this(maxEntries, DEFAULT_TTL);
+	}
+	
+	/**
+	 * Instantiates a new count cache.
+	 *
+	 * @param maxEntries the most counts to hold
+	 * @param ttl how long a count is kept, in milliseconds, or 0 for no expiry
+	 */
+	public CountCache(int maxEntries, long ttl) {
+		super();
+		this.counts = new BoundedCache<Integer>(maxEntries, ttl){
+
+			@Override
+			protected long now() {
+				return CountCache.this.now();
+			}
+		};
+	}
+	
+	/**
+	 * Builds the key of a query.
+	 *
+	 * @param scope what is being listed or searched, for instance "ontology:1032"
+	 * @param filter the filter, or null for an unfiltered listing
+	 * @return the key
+	 */
+	public static String key(String scope, ResolvedFilter filter){
+		StringBuilder sb = new StringBuilder(scope);
+		
+		if(filter != null){
+			sb.append(SEPARATOR).append(filter.getMatchValue());
+			
+			if(filter.getMatchAlgorithmReference() != null){
+				sb.append(SEPARATOR).append(filter.getMatchAlgorithmReference().getContent());
+			}
+			if(filter.getPropertyReference() != null && 
+					filter.getPropertyReference().getReferenceTarget() != null){
+				sb.append(SEPARATOR).append(filter.getPropertyReference().getReferenceTarget().getName());
+			}
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Gets a count.
+	 *
+	 * @param key the key
+	 * @return the count, or null if no page of the query has been read lately
+	 */
+	public Integer get(String key){
+		return this.counts.get(key);
+	}
+	
+	/**
+	 * Records the count read from a page header.
+	 *
+	 * @param key the key
+	 * @param count the count
+	 */
+	public void put(String key, int count){
+		this.counts.put(key, count);
+	}
+	
+	/**
+	 * Drops all counts.
+	 */
+	public void clear(){
+		this.counts.clear();
+	}
+	
+	protected long now(){
+		return System.currentTimeMillis();
+	}
+	
+	/**
+	 * Sets how long a count is kept.
+	 *
+	 * @param ttl the ttl, in milliseconds, or 0 for no expiry
+	 */
+	public void setTtl(long ttl){
+		this.counts.setTtl(ttl);
+	}
+	
+	public long getTtl(){
+		return this.counts.getTtl();
+	}
+	
+	public int size(){
+		return this.counts.size();
+	}
+
+	public long getHitCount() {
+		return this.counts.getHitCount();
+	}
+
+	public long getMissCount() {
+		return this.counts.getMissCount();
+	}
+}
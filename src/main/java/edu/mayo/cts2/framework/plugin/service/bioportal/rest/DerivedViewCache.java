@@ -0,0 +1,157 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+
+/**
+ * A cache of model lists derived from whole BioPortal responses.
+ *
+ * Entries are keyed by the name of the view and the length and hash code of
+ * the response, and hold the response they were derived from. A response
+ * served from the memory cache is the same String on every hit, so it is
+ * found by identity, and its hash code is already cached in the String -- 
+ * a hit costs nothing in the size of the response. A response read back
+ * from disk is an equal copy and is matched with equals. A refetched response
+ * that changed never matches, so it can never be served a stale list.
+ * 
+ * Views are handed out as read-only lists, shared by every caller. The model
+ * objects in them must not be changed.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class DerivedViewCache {
+	
+	public static final int DEFAULT_MAX_ENTRIES = 64;
+	
+	private BoundedCache<View> entries;
+
+	/**
+	 * Instantiates a new derived view cache.
+	 *
+	 * @param maxEntries the most views to hold
+	 */
+	public DerivedViewCache(int maxEntries) {
+		super();
+		this.entries = new BoundedCache<View>(maxEntries, 0);
+	}
+	
+	/**
+	 * Gets the view of a response, deriving it if it is not cached. The list
+	 * returned is read-only.
+	 *
+	 * @param <T> the element type
+	 * @param viewName the name of the view
+	 * @param response the response it is derived from
+	 * @param derivation builds the view from the response
+	 * @return the view
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> get(String viewName, String response, Callable<List<T>> derivation){
+		if(this.entries.getMaxEntries() <= 0){
+			return Collections.unmodifiableList(this.derive(derivation));
+		}
+		
+		String key = viewName + "@" + response.length() + ":" + response.hashCode();
+		
+		View view = this.entries.get(key);
+		
+		if(view != null && view.isOf(response)){
+			return (List<T>) view.list;
+		}
+		
+		List<T> list = Collections.unmodifiableList(new ArrayList<T>(this.derive(derivation)));
+		
+		this.entries.put(key, new View(response, list));
+		
+		return list;
+	}
+	
+	private <T> List<T> derive(Callable<List<T>> derivation){
+		try {
+			return derivation.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new Cts2RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * A derived view, and the response it was derived from.
+	 */
+	private static class View {
+		
+		private String response;
+		
+		private List<?> list;
+
+		private View(String response, List<?> list) {
+			super();
+			this.response = response;
+			this.list = list;
+		}
+		
+		private boolean isOf(String response){
+			return this.response == response || this.response.equals(response);
+		}
+	}
+	
+	/**
+	 * Drops every view.
+	 */
+	public void clear(){
+		this.entries.clear();
+	}
+	
+	/**
+	 * Sets the most views to hold. 0 turns the cache off.
+	 *
+	 * @param maxEntries the new max entries
+	 */
+	public void setMaxEntries(int maxEntries){
+		this.entries.setMaxEntries(maxEntries);
+	}
+	
+	public int getMaxEntries(){
+		return this.entries.getMaxEntries();
+	}
+	
+	public int size(){
+		return this.entries.size();
+	}
+	
+	public long getHitCount(){
+		return this.entries.getHitCount();
+	}
+	
+	public long getMissCount(){
+		return this.entries.getMissCount();
+	}
+}
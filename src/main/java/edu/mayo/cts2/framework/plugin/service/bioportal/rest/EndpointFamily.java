@@ -0,0 +1,92 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * The kinds of BioPortal REST calls, told apart by the path of their URL.
+ * Families are matched in the order they are declared, so the more specific
+ * paths come first.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public enum EndpointFamily {
+	
+	/** /search -- free text searches */
+	SEARCH(".*/search/.*"),
+	
+	/** /concepts/{v}/root -- the hierarchy roots of an ontology version */
+	HIERARCHY_ROOTS(".*/concepts/[^/]+/root"),
+	
+	/** /concepts/{v}/all -- pages of every concept of an ontology version */
+	CONCEPTS_ALL(".*/concepts/[^/]+/all"),
+	
+	/** /concepts/{v} -- one concept of an ontology version */
+	CONCEPT(".*/concepts/[^/]+"),
+	
+	/** /virtual/ontology/{id} -- the latest version of an ontology */
+	VIRTUAL_ONTOLOGY(".*/virtual/ontology/.*"),
+	
+	/** /ontologies/versions/{id} -- every version of an ontology */
+	ONTOLOGY_VERSIONS(".*/ontologies/versions/.*"),
+	
+	/** /ontologies/{v} -- one ontology version */
+	ONTOLOGY_VERSION(".*/ontologies/[^/]+"),
+	
+	/** /ontologies -- the latest version of every ontology */
+	ONTOLOGIES(".*/ontologies/?"),
+	
+	/** /views -- the latest views, and every version of a view */
+	VIEWS(".*/views(/.*)?"),
+	
+	/** anything else */
+	OTHER(".*");
+	
+	private Pattern pathPattern;
+	
+	private EndpointFamily(String pathPattern){
+		this.pathPattern = Pattern.compile(pathPattern);
+	}
+	
+	/**
+	 * Finds the family of a URL.
+	 *
+	 * @param url the url
+	 * @return the endpoint family
+	 */
+	public static EndpointFamily forUrl(String url){
+		String path = StringUtils.substringBefore(url, "?");
+		
+		for(EndpointFamily family : values()){
+			if(family.pathPattern.matcher(path).matches()){
+				return family;
+			}
+		}
+		
+		return OTHER;
+	}
+}
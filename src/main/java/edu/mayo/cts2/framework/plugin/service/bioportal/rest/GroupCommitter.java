@@ -0,0 +1,200 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Groups the commits of the persistent response cache.
+ * 
+ * In write-behind mode, changes are only marked as pending and are committed
+ * together once a batch size is reached or the commit interval elapses -- so at most
+ * one interval of changes can be lost on a crash. With write-behind disabled,
+ * every change is committed immediately.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class GroupCommitter {
+	
+	private static final Log log = LogFactory.getLog(GroupCommitter.class);
+	
+	public static final boolean DEFAULT_WRITE_BEHIND_ENABLED = false;
+	
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	
+	/* in milliseconds */
+	public static final int DEFAULT_COMMIT_INTERVAL = 5000;
+
+	private Runnable commit;
+	
+	private boolean writeBehindEnabled = DEFAULT_WRITE_BEHIND_ENABLED;
+	
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	
+	private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+	
+	private int pending;
+	
+	private ScheduledExecutorService scheduler;
+	
+	private ScheduledFuture<?> scheduledCommit;
+	
+	private AtomicLong commitCount = new AtomicLong();
+	
+	/**
+	 * Instantiates a new group committer.
+	 *
+	 * @param commit the action that commits all pending changes
+	 */
+	public GroupCommitter(Runnable commit){
+		super();
+		this.commit = commit;
+	}
+	
+	/**
+	 * Starts the periodic commit.
+	 */
+	public synchronized void start(){
+		if(this.scheduler == null){
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "bioportal-cache-committer");
+					thread.setDaemon(true);
+					
+					return thread;
+				}
+			});
+		}
+		
+		this.schedule();
+	}
+	
+	private synchronized void schedule(){
+		if(this.scheduler == null){
+			return;
+		}
+		
+		if(this.scheduledCommit != null){
+			this.scheduledCommit.cancel(false);
+		}
+		
+		this.scheduledCommit = this.scheduler.scheduleWithFixedDelay(new Runnable(){
+
+			public void run() {
+				try {
+					flush();
+				} catch (Exception e) {
+					log.warn("Error committing the BioPortal cache.", e);
+				}
+			}
+			
+		}, this.commitInterval, this.commitInterval, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Records a change, committing now if write-behind is disabled or the batch is full.
+	 */
+	public synchronized void changed(){
+		this.pending++;
+		
+		if(! this.writeBehindEnabled || this.pending >= this.batchSize){
+			this.flush();
+		}
+	}
+	
+	/**
+	 * Commits any pending changes.
+	 */
+	public synchronized void flush(){
+		if(this.pending > 0){
+			this.commit.run();
+			this.pending = 0;
+			this.commitCount.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Commits any pending changes and stops the periodic commit.
+	 */
+	public synchronized void shutdown(){
+		if(this.scheduler != null){
+			this.scheduler.shutdown();
+			this.scheduler = null;
+			this.scheduledCommit = null;
+		}
+		
+		this.flush();
+	}
+
+	public synchronized boolean isWriteBehindEnabled() {
+		return writeBehindEnabled;
+	}
+
+	public synchronized void setWriteBehindEnabled(boolean writeBehindEnabled) {
+		this.writeBehindEnabled = writeBehindEnabled;
+		
+		if(! writeBehindEnabled){
+			this.flush();
+		}
+	}
+
+	public synchronized int getBatchSize() {
+		return batchSize;
+	}
+
+	public synchronized void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public synchronized int getCommitInterval() {
+		return commitInterval;
+	}
+
+	/**
+	 * Sets the longest time a change may wait before it is committed.
+	 *
+	 * @param commitInterval the commit interval, in milliseconds
+	 */
+	public synchronized void setCommitInterval(int commitInterval) {
+		this.commitInterval = commitInterval;
+		this.schedule();
+	}
+
+	public synchronized int getPendingCount() {
+		return pending;
+	}
+
+	public long getCommitCount() {
+		return commitCount.get();
+	}
+}
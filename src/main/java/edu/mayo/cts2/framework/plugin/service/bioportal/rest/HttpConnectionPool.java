@@ -0,0 +1,184 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.CommonsClientHttpRequestFactory;
+
+/**
+ * A pooled, keep-alive HTTP transport for calls to BioPortal.
+ *
+ * Connections are held by a commons-httpclient {@link MultiThreadedHttpConnectionManager}
+ * and reused across requests. Idle connections are closed by a background reaper.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class HttpConnectionPool {
+
+	private static final Log log = LogFactory.getLog(HttpConnectionPool.class);
+
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+
+	public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
+
+	/* in milliseconds */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	/* in milliseconds */
+	public static final int DEFAULT_READ_TIMEOUT = 60000;
+
+	/* in milliseconds */
+	public static final int DEFAULT_IDLE_CONNECTION_TIMEOUT = 30000;
+
+	private MultiThreadedHttpConnectionManager connectionManager;
+
+	private HttpClient httpClient;
+
+	private IdleConnectionTimeoutThread idleConnectionReaper;
+
+	private AtomicLong requestCount = new AtomicLong();
+
+	/**
+	 * Instantiates a new http connection pool with the default settings.
+	 */
+	public HttpConnectionPool(){
+		super();
+		this.connectionManager = new MultiThreadedHttpConnectionManager();
+
+		HttpConnectionManagerParams params = this.connectionManager.getParams();
+		params.setDefaultMaxConnectionsPerHost(DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+		params.setMaxTotalConnections(DEFAULT_MAX_TOTAL_CONNECTIONS);
+		params.setConnectionTimeout(DEFAULT_CONNECT_TIMEOUT);
+		params.setSoTimeout(DEFAULT_READ_TIMEOUT);
+		params.setStaleCheckingEnabled(true);
+
+		this.httpClient = new HttpClient(this.connectionManager);
+
+		this.idleConnectionReaper = new IdleConnectionTimeoutThread();
+		this.idleConnectionReaper.setName("bioportal-idle-connection-reaper");
+		this.idleConnectionReaper.addConnectionManager(this.connectionManager);
+		this.setIdleConnectionTimeout(DEFAULT_IDLE_CONNECTION_TIMEOUT);
+		this.idleConnectionReaper.start();
+	}
+
+	/**
+	 * Creates a request factory that draws its connections from this pool.
+	 *
+	 * @return the client http request factory
+	 */
+	public ClientHttpRequestFactory createRequestFactory(){
+		return new CommonsClientHttpRequestFactory(this.httpClient){
+
+			@Override
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod)
+					throws IOException {
+				requestCount.incrementAndGet();
+
+				return super.createRequest(uri, httpMethod);
+			}
+		};
+	}
+
+	/**
+	 * Closes all pooled connections and stops the idle connection reaper.
+	 */
+	public void shutdown(){
+		log.info("Shutting down BioPortal HTTP connection pool.");
+		this.idleConnectionReaper.shutdown();
+		this.connectionManager.shutdown();
+	}
+
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.connectionManager.getParams().setDefaultMaxConnectionsPerHost(maxConnectionsPerRoute);
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return this.connectionManager.getParams().getDefaultMaxConnectionsPerHost();
+	}
+
+	public void setMaxTotalConnections(int maxTotalConnections) {
+		this.connectionManager.getParams().setMaxTotalConnections(maxTotalConnections);
+	}
+
+	public int getMaxTotalConnections() {
+		return this.connectionManager.getParams().getMaxTotalConnections();
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectionManager.getParams().setConnectionTimeout(connectTimeout);
+	}
+
+	public int getConnectTimeout() {
+		return this.connectionManager.getParams().getConnectionTimeout();
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.connectionManager.getParams().setSoTimeout(readTimeout);
+	}
+
+	public int getReadTimeout() {
+		return this.connectionManager.getParams().getSoTimeout();
+	}
+
+	/**
+	 * Sets how long a connection may sit idle in the pool before it is closed.
+	 * The reaper checks at half this interval.
+	 *
+	 * @param idleConnectionTimeout the idle connection timeout, in milliseconds
+	 */
+	public void setIdleConnectionTimeout(int idleConnectionTimeout) {
+		this.idleConnectionReaper.setConnectionTimeout(idleConnectionTimeout);
+		this.idleConnectionReaper.setTimeoutInterval(Math.max(1000, idleConnectionTimeout / 2));
+	}
+
+	/**
+	 * Gets the number of connections currently held by the pool, both idle and in use.
+	 *
+	 * @return the connections in pool
+	 */
+	public int getConnectionsInPool() {
+		return this.connectionManager.getConnectionsInPool();
+	}
+
+	/**
+	 * Gets the number of requests issued through this pool.
+	 *
+	 * @return the request count
+	 */
+	public long getRequestCount() {
+		return this.requestCount.get();
+	}
+}
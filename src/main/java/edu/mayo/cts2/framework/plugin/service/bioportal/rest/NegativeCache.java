@@ -0,0 +1,163 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Remembers the BioPortal URLs that answered 404, so asking for them again
+ * does not go upstream until the entry expires.
+ *
+ * Each entry may be tagged with the ontology id it belongs to, so the entries
+ * of an ontology can be dropped when the ontology changes. Untagged entries
+ * can't be traced to an ontology, so they are dropped on any change.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class NegativeCache {
+	
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+	
+	public static final long DEFAULT_TTL = 10 * 60 * 1000L;
+	
+	private BoundedCache<Miss> misses;
+	
+	private static class Miss {
+		private String ontologyId;
+		
+		private Miss(String ontologyId) {
+			super();
+			this.ontologyId = ontologyId;
+		}
+	}
+
+	/**
+	 * Instantiates a new negative cache.
+	 *
+	 * @param maxEntries the most URLs to remember, or 0 to turn the cache off
+	 * @param ttl how long to remember a URL, in milliseconds
+	 */
+	public NegativeCache(int maxEntries, long ttl) {
+		super();
+		this.misses = new BoundedCache<Miss>(maxEntries, ttl){
+
+			@Override
+			protected long now() {
+				return NegativeCache.this.now();
+			}
+		};
+	}
+	
+	/**
+	 * Checks if the URL answered 404 recently.
+	 *
+	 * @param url the url
+	 * @return true, if the URL is known to be missing
+	 */
+	public boolean isMissing(String url){
+		return this.misses.get(url) != null;
+	}
+	
+	/**
+	 * Remember that a URL answered 404.
+	 *
+	 * @param url the url
+	 * @param ontologyId the ontology the URL belongs to, or null
+	 */
+	public void put(String url, String ontologyId){
+		//a URL that is remembered for no time at all is not remembered
+		if(this.misses.getTtl() <= 0){
+			return;
+		}
+		
+		this.misses.put(url, new Miss(ontologyId));
+	}
+	
+	/**
+	 * Forget a URL.
+	 *
+	 * @param url the url
+	 */
+	public void remove(String url){
+		this.misses.remove(url);
+	}
+	
+	/**
+	 * Forget the URLs of changed ontologies, and every URL not tagged with one.
+	 *
+	 * @param ontologyIds the ontology ids
+	 */
+	public void invalidate(Collection<String> ontologyIds){
+		final Set<String> changed = new HashSet<String>(ontologyIds);
+		
+		this.misses.removeAll(new BoundedCache.Condition<Miss>(){
+
+			public boolean matches(Miss miss) {
+				return miss.ontologyId == null || changed.contains(miss.ontologyId);
+			}
+		});
+	}
+	
+	/**
+	 * Forget all URLs.
+	 */
+	public void clear(){
+		this.misses.clear();
+	}
+	
+	protected long now(){
+		return System.currentTimeMillis();
+	}
+	
+	public int size(){
+		return this.misses.size();
+	}
+
+	/**
+	 * Gets the number of calls answered as missing without going upstream.
+	 *
+	 * @return the hit count
+	 */
+	public long getHitCount() {
+		return this.misses.getHitCount();
+	}
+
+	public int getMaxEntries() {
+		return this.misses.getMaxEntries();
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.misses.setMaxEntries(maxEntries);
+	}
+
+	public long getTtl() {
+		return this.misses.getTtl();
+	}
+
+	public void setTtl(long ttl) {
+		this.misses.setTtl(ttl);
+	}
+}
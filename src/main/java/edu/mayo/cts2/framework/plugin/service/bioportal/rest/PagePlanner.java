@@ -0,0 +1,261 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import edu.mayo.cts2.framework.model.command.Page;
+import edu.mayo.cts2.framework.model.directory.DirectoryResult;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.CountedDirectoryResult;
+
+/**
+ * Maps a CTS2 (start, max) window onto aligned BioPortal pages.
+ * 
+ * Every page is fetched with the same page size, and the window is sliced out of
+ * the pages locally. Responses are cached by URL, so keeping one page size means
+ * that windows of any size and offset over the same rows share the cached pages.
+ * A window needs 'max / pageSize' pages, plus one when it crosses a page boundary.
+ * 
+ * The price of the fixed page size is volume: a window downloads whole pages, so
+ * even a window of one row costs a page, and a window costs at most
+ * 'max + 2 * pageSize' upstream rows. That is paid once per page, as every later
+ * window over the page is a cache hit.
+ * 
+ * Whether a window is at the end goes by the upstream row count when the reader
+ * returns a {@link CountedDirectoryResult}, since a reader may drop rows it can't
+ * resolve and a short page is then no sign of the end. Readers without a count
+ * must not drop rows -- if the window ends inside the last upstream page, the
+ * row after it is read from that page to see if there are more.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class PagePlanner {
+	
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	
+	private int pageSize;
+	
+	/**
+	 * Reads one planned page.
+	 *
+	 * @param <T> the generic type
+	 */
+	public interface PageReader<T> {
+		
+		/**
+		 * Fetch the page, and return its rows from 'from' to 'to'
+		 * (inclusive, zero-based, relative to the page).
+		 *
+		 * @param page the BioPortal page
+		 * @param from the first row to return
+		 * @param to the last row to return
+		 * @return the rows, and whether the page is the last one upstream -- a 
+		 * {@link CountedDirectoryResult} if the upstream row count is known
+		 */
+		DirectoryResult<T> read(Page page, int from, int to);
+	}
+	
+	/**
+	 * The aligned pages that cover one window.
+	 */
+	public static class PagePlan {
+		
+		private int start;
+		private int max;
+		private int pageSize;
+		private int firstPage;
+		private int lastPage;
+
+		private PagePlan(int start, int max, int pageSize) {
+			super();
+			this.start = start;
+			this.max = max;
+			this.pageSize = pageSize;
+			this.firstPage = start / pageSize;
+			this.lastPage = (start + max - 1) / pageSize;
+		}
+
+		/**
+		 * Gets the pages, in order. Page numbers are zero-based.
+		 *
+		 * @return the pages
+		 */
+		public List<Page> getPages() {
+			List<Page> pages = new ArrayList<Page>();
+			for(int i = this.firstPage; i <= this.lastPage; i++){
+				Page page = new Page();
+				page.setPage(i);
+				page.setMaxToReturn(this.pageSize);
+				
+				pages.add(page);
+			}
+			
+			return pages;
+		}
+		
+		/**
+		 * Gets the first row of the window within the given page of the plan.
+		 *
+		 * @param index the index of the page in the plan
+		 * @return the row, relative to the page
+		 */
+		public int getFrom(int index) {
+			return index == 0 ? this.start - (this.firstPage * this.pageSize) : 0;
+		}
+		
+		/**
+		 * Gets the last row of the window within the given page of the plan.
+		 *
+		 * @param index the index of the page in the plan
+		 * @return the row, relative to the page
+		 */
+		public int getTo(int index) {
+			return index == this.getPageCount() - 1 ? 
+					(this.start + this.max - 1) - (this.lastPage * this.pageSize) : 
+					this.pageSize - 1;
+		}
+
+		public int getPageSize() {
+			return pageSize;
+		}
+		
+		public int getPageCount() {
+			return this.lastPage - this.firstPage + 1;
+		}
+		
+		/**
+		 * Gets the number of rows the plan downloads.
+		 *
+		 * @return the row count
+		 */
+		public int getRowCount() {
+			return this.getPageCount() * this.pageSize;
+		}
+	}
+	
+	/**
+	 * Instantiates a new page planner.
+	 *
+	 * @param pageSize the size of every page fetched
+	 */
+	public PagePlanner(int pageSize){
+		super();
+		this.pageSize = Math.max(1, pageSize);
+	}
+	
+	/**
+	 * Plan the pages for a window.
+	 *
+	 * @param start the start
+	 * @param max the max
+	 * @return the page plan
+	 */
+	public PagePlan plan(int start, int max){
+		return new PagePlan(start, Math.max(1, max), this.pageSize);
+	}
+	
+	public int getPageSize() {
+		return this.pageSize;
+	}
+	
+	/**
+	 * Fetch the pages that cover a window in parallel, and stitch their rows together.
+	 *
+	 * @param <T> the generic type
+	 * @param start the start
+	 * @param max the max
+	 * @param reader the page reader
+	 * @param executor the executor
+	 * @return the rows of the window
+	 */
+	public <T> DirectoryResult<T> read(
+			int start, 
+			int max, 
+			final PageReader<T> reader, 
+			ParallelExecutor executor){
+		final PagePlan plan = this.plan(start, max);
+		final List<Page> pages = plan.getPages();
+		
+		List<Callable<DirectoryResult<T>>> tasks = new ArrayList<Callable<DirectoryResult<T>>>();
+		for(int i = 0; i < pages.size(); i++){
+			final int index = i;
+			
+			tasks.add(new Callable<DirectoryResult<T>>(){
+
+				public DirectoryResult<T> call() {
+					return reader.read(pages.get(index), plan.getFrom(index), plan.getTo(index));
+				}
+			});
+		}
+		
+		List<DirectoryResult<T>> results = executor.invokeAll(tasks);
+		
+		List<T> entries = new ArrayList<T>();
+		for(DirectoryResult<T> result : results){
+			entries.addAll(result.getEntries());
+		}
+		
+		int lastIndex = results.size() - 1;
+		DirectoryResult<T> last = results.get(lastIndex);
+		
+		boolean atEnd;
+		if(last instanceof CountedDirectoryResult){
+			atEnd = start + max >= ((CountedDirectoryResult<T>) last).getTotalCount();
+		} else if(! last.isAtEnd()){
+			atEnd = false;
+		} else {
+			int from = plan.getFrom(lastIndex);
+			int to = plan.getTo(lastIndex);
+			
+			if(to == plan.getPageSize() - 1 || last.getEntries().size() < to - from + 1){
+				atEnd = true;
+			} else {
+				//the last page upstream, and the window ends inside it -- see if a row follows
+				atEnd = reader.read(pages.get(lastIndex), to + 1, to + 1).getEntries().isEmpty();
+			}
+		}
+		
+		return new DirectoryResult<T>(entries, atEnd);
+	}
+	
+	/**
+	 * Slice rows of a whole page, for readers that cannot read a window of a page.
+	 *
+	 * @param <T> the generic type
+	 * @param rows the rows of the page
+	 * @param from the first row
+	 * @param to the last row
+	 * @return the rows from 'from' to 'to'
+	 */
+	public static <T> List<T> slice(List<T> rows, int from, int to){
+		if(from >= rows.size()){
+			return Collections.emptyList();
+		}
+		
+		return new ArrayList<T>(rows.subList(from, Math.min(rows.size(), to + 1)));
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+
+/**
+ * A bounded pool for fanning out independent BioPortal calls.
+ * 
+ * Tasks submitted from a thread of this pool are run inline, in the calling
+ * thread, so nested fan-outs cannot deadlock the pool. Waits are bounded by
+ * the await timeout, so a task that never finishes fails its waiter rather
+ * than holding it forever.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class ParallelExecutor {
+	
+	private static final ThreadLocal<ParallelExecutor> CURRENT_POOL = new ThreadLocal<ParallelExecutor>();
+	
+	public static final long DEFAULT_AWAIT_TIMEOUT = 5 * 60 * 1000L;
+	
+	private ThreadPoolExecutor executor;
+	
+	private volatile long awaitTimeout = DEFAULT_AWAIT_TIMEOUT;
+	
+	/**
+	 * Instantiates a new parallel executor.
+	 *
+	 * @param parallelism the most tasks to run at once
+	 * @param name the thread name prefix
+	 */
+	public ParallelExecutor(int parallelism, final String name){
+		super();
+		
+		final AtomicInteger threadCount = new AtomicInteger();
+		
+		this.executor = new ThreadPoolExecutor(
+				parallelism, 
+				parallelism, 
+				60, 
+				TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory(){
+
+					public Thread newThread(final Runnable runnable) {
+						Thread thread = new Thread(new Runnable(){
+
+							public void run() {
+								CURRENT_POOL.set(ParallelExecutor.this);
+								runnable.run();
+							}
+							
+						}, name + "-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						
+						return thread;
+					}
+				});
+		
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * Runs the tasks, at most 'parallelism' at a time, and waits for all of them.
+	 * If any task fails, the first failure is rethrown once all have finished.
+	 *
+	 * @param <T> the generic type
+	 * @param tasks the tasks
+	 * @return the results, in task order
+	 */
+	public <T> List<T> invokeAll(List<? extends Callable<T>> tasks){
+		List<T> results = new ArrayList<T>();
+		
+		if(CURRENT_POOL.get() == this || tasks.size() < 2){
+			for(Callable<T> task : tasks){
+				try {
+					results.add(task.call());
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new Cts2RuntimeException(e);
+				}
+			}
+			
+			return results;
+		}
+		
+		List<Future<T>> futures = new ArrayList<Future<T>>();
+		for(Callable<T> task : tasks){
+			futures.add(this.executor.submit(task));
+		}
+		
+		Throwable failure = null;
+		for(Future<T> future : futures){
+			try {
+				results.add(this.getResult(future));
+			} catch (Throwable e) {
+				if(failure == null){
+					failure = e;
+				}
+				results.add(null);
+			}
+		}
+		
+		if(failure instanceof RuntimeException){
+			throw (RuntimeException) failure;
+		}
+		if(failure instanceof Error){
+			throw (Error) failure;
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Queues one task to run in the background. A task submitted from a thread
+	 * of this pool is run inline, so waiting on its future can never deadlock the pool.
+	 *
+	 * @param <T> the generic type
+	 * @param task the task
+	 * @return the future
+	 */
+	public <T> Future<T> submit(Callable<T> task){
+		if(CURRENT_POOL.get() == this){
+			FutureTask<T> future = new FutureTask<T>(task);
+			future.run();
+
+			return future;
+		}
+
+		return this.executor.submit(task);
+	}
+
+	/**
+	 * Checks if the calling thread is one of this pool's. Work submitted from
+	 * such a thread is run inline, so it gains nothing from being split up.
+	 *
+	 * @return true, if the caller is a thread of this pool
+	 */
+	public boolean isPoolThread(){
+		return CURRENT_POOL.get() == this;
+	}
+	
+	/**
+	 * Waits for a future from this pool, rethrowing the task's failure.
+	 *
+	 * @param <T> the generic type
+	 * @param future the future
+	 * @return the result
+	 */
+	public <T> T await(Future<T> future){
+		try {
+			return this.getResult(future);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new Cts2RuntimeException((Exception) e);
+		}
+	}
+
+	private <T> T getResult(Future<T> future) throws Throwable {
+		long deadline = System.currentTimeMillis() + this.awaitTimeout;
+		
+		boolean interrupted = false;
+		try {
+			while(true){
+				try {
+					return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (TimeoutException e) {
+			throw new Cts2RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException || cause instanceof Error){
+				throw cause;
+			}
+			throw new Cts2RuntimeException((Exception) cause);
+		} finally {
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Sets the most tasks to run at once.
+	 *
+	 * @param parallelism the new parallelism
+	 */
+	public synchronized void setParallelism(int parallelism){
+		if(parallelism > this.executor.getMaximumPoolSize()){
+			this.executor.setMaximumPoolSize(parallelism);
+			this.executor.setCorePoolSize(parallelism);
+		} else {
+			this.executor.setCorePoolSize(parallelism);
+			this.executor.setMaximumPoolSize(parallelism);
+		}
+	}
+	
+	public int getParallelism(){
+		return this.executor.getMaximumPoolSize();
+	}
+	
+	/**
+	 * Sets the longest a caller waits for a task.
+	 *
+	 * @param awaitTimeout the await timeout, in milliseconds
+	 */
+	public void setAwaitTimeout(long awaitTimeout){
+		this.awaitTimeout = awaitTimeout;
+	}
+	
+	public long getAwaitTimeout(){
+		return this.awaitTimeout;
+	}
+	
+	/**
+	 * Stops the pool threads.
+	 */
+	public void shutdown(){
+		this.executor.shutdown();
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out calls so that no more than a set number start per second.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class RateLimiter {
+	
+	private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+	
+	private int permitsPerSecond;
+	
+	private long nextFree = System.nanoTime();
+	
+	/**
+	 * Instantiates a new rate limiter.
+	 *
+	 * @param permitsPerSecond the permits per second, or 0 for no limit
+	 */
+	public RateLimiter(int permitsPerSecond){
+		super();
+		this.permitsPerSecond = permitsPerSecond;
+	}
+	
+	/**
+	 * Blocks until the caller may proceed.
+	 */
+	public void acquire(){
+		long wait;
+		
+		synchronized(this){
+			if(this.permitsPerSecond <= 0){
+				return;
+			}
+			
+			long now = System.nanoTime();
+			if(this.nextFree - now < 0){
+				this.nextFree = now;
+			}
+			
+			wait = this.nextFree - now;
+			this.nextFree += ONE_SECOND / this.permitsPerSecond;
+		}
+		
+		if(wait > 0){
+			try {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public synchronized int getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+
+	public synchronized void setPermitsPerSecond(int permitsPerSecond) {
+		this.permitsPerSecond = permitsPerSecond;
+		this.nextFree = System.nanoTime();
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.concurrent.Callable;
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.RelatedEntityList;
+
+/**
+ * A cache of what an entity is related to (its children, for instance), built
+ * once from the entity and kept in a compact form so each page of it is a slice.
+ *
+ * Entries are keyed by ontology version, entity and predicate. An ontology version
+ * never changes, so entries don't go stale when new versions are published.
+ *
+ * The cache is bounded by a count of entities, not by size. One entry holds every
+ * entity related to its entity -- three strings a row -- so an entity with tens of
+ * thousands of children costs as much as many ordinary entries. A row is a few
+ * hundred bytes, so the default of 256 entries a few hundred children wide comes
+ * to some tens of megabytes; for ontologies with very wide hierarchies, size it
+ * down.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class RelationCache {
+	
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+	
+	private static final String SEPARATOR = "|";
+	
+	private BoundedCache<RelatedEntityList> entries;
+
+	/**
+	 * Instantiates a new relation cache.
+	 *
+	 * @param maxEntries the most entities to hold
+	 */
+	public RelationCache(int maxEntries) {
+		super();
+		this.entries = new BoundedCache<RelatedEntityList>(maxEntries, 0);
+	}
+	
+	/**
+	 * Builds the key of the relations of an entity.
+	 *
+	 * @param ontologyVersionId the ontology version id
+	 * @param entityName the entity name, as asked for
+	 * @param predicateName the predicate name
+	 * @return the key
+	 */
+	public static String key(String ontologyVersionId, String entityName, String predicateName){
+		return ontologyVersionId + SEPARATOR + entityName + SEPARATOR + predicateName;
+	}
+	
+	/**
+	 * Gets the relations of an entity, building them if they are not cached.
+	 * The value is shared with the cache and must not be changed.
+	 *
+	 * @param key the key
+	 * @param build builds the relations
+	 * @return the relations
+	 */
+	public RelatedEntityList get(String key, Callable<RelatedEntityList> build){
+		return this.entries.get(key, build);
+	}
+	
+	/**
+	 * Drops every entry.
+	 */
+	public void clear(){
+		this.entries.clear();
+	}
+	
+	/**
+	 * Sets the most entities to hold. 0 turns the cache off.
+	 *
+	 * @param maxEntries the new max entries
+	 */
+	public void setMaxEntries(int maxEntries){
+		this.entries.setMaxEntries(maxEntries);
+	}
+	
+	public int getMaxEntries(){
+		return this.entries.getMaxEntries();
+	}
+	
+	public int size(){
+		return this.entries.size();
+	}
+	
+	public long getHitCount(){
+		return this.entries.getHitCount();
+	}
+	
+	public long getMissCount(){
+		return this.entries.getMissCount();
+	}
+}
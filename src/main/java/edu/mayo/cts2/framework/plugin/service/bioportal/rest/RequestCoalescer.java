@@ -0,0 +1,125 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+
+/**
+ * Coalesces concurrent calls for the same key into a single execution
+ * ("single-flight"). The first caller for a key runs the work; callers
+ * arriving while it is in flight wait for and share its result.
+ *
+ * @param <V> the result type
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class RequestCoalescer<V> {
+
+	private ConcurrentMap<String,FutureTask<V>> inFlight = 
+		new ConcurrentHashMap<String,FutureTask<V>>();
+	
+	private AtomicLong coalescedCount = new AtomicLong();
+
+	/**
+	 * Executes the work for the given key, or joins an execution already in flight.
+	 *
+	 * @param key the key
+	 * @param work the work
+	 * @return the result
+	 */
+	public V execute(String key, Callable<V> work){
+		FutureTask<V> task = new FutureTask<V>(work);
+		
+		FutureTask<V> existing = this.inFlight.putIfAbsent(key, task);
+		
+		if(existing != null){
+			this.coalescedCount.incrementAndGet();
+			task = existing;
+		} else {
+			try {
+				task.run();
+			} finally {
+				this.inFlight.remove(key, task);
+			}
+		}
+		
+		return this.getResult(task);
+	}
+	
+	/**
+	 * Waits for the result, rethrowing any failure of the work to every waiting caller.
+	 *
+	 * @param task the task
+	 * @return the result
+	 */
+	private V getResult(FutureTask<V> task){
+		boolean interrupted = false;
+		try {
+			while(true){
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException){
+				throw (RuntimeException) cause;
+			}
+			if(cause instanceof Error){
+				throw (Error) cause;
+			}
+			throw new Cts2RuntimeException((Exception) cause);
+		} finally {
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of calls that were served by joining another caller's execution.
+	 *
+	 * @return the coalesced count
+	 */
+	public long getCoalescedCount() {
+		return this.coalescedCount.get();
+	}
+	
+	/**
+	 * Gets the number of executions currently in flight.
+	 *
+	 * @return the in flight count
+	 */
+	public int getInFlightCount() {
+		return this.inFlight.size();
+	}
+}
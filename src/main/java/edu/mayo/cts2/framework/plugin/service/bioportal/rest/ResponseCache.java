@@ -0,0 +1,446 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent, in-memory cache of BioPortal responses bounded by the
+ * approximate size of the cached responses in bytes.
+ * 
+ * Reads are lock-free. Eviction is least-recently-used, but a new entry is only
+ * admitted over its victims if it has been requested at least as often as they have
+ * (a TinyLFU-style admission policy), so one-off requests cannot flush popular entries.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class ResponseCache {
+	
+	/* approximate per-entry bookkeeping overhead, in bytes */
+	private static final int ENTRY_OVERHEAD = 64;
+
+	private ConcurrentMap<String,Entry> data = new ConcurrentHashMap<String,Entry>();
+	
+	/* access-ordered keys to their weight, guarded by the evictionLock */
+	private LinkedHashMap<String,Long> accessOrder = new LinkedHashMap<String,Long>(16, 0.75f, true);
+	
+	private ReentrantLock evictionLock = new ReentrantLock();
+	
+	private FrequencySketch sketch;
+	
+	private long maximumWeight;
+	
+	private long weightedSize;
+	
+	private AtomicLong hitCount = new AtomicLong();
+	private AtomicLong missCount = new AtomicLong();
+	private AtomicLong evictionCount = new AtomicLong();
+	private AtomicLong rejectionCount = new AtomicLong();
+	
+	/**
+	 * A cached response, and when it was stored.
+	 */
+	public static class Entry {
+		
+		private String value;
+		
+		private long storedAt;
+
+		private Entry(String value, long storedAt) {
+			super();
+			this.value = value;
+			this.storedAt = storedAt;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public long getStoredAt() {
+			return storedAt;
+		}
+	}
+	
+	/**
+	 * Instantiates a new response cache.
+	 *
+	 * @param maximumWeight the maximum total size of cached responses, in bytes
+	 */
+	public ResponseCache(long maximumWeight){
+		super();
+		this.maximumWeight = maximumWeight;
+		this.sketch = new FrequencySketch(maximumWeight);
+	}
+	
+	/**
+	 * Gets the cached response for a key.
+	 *
+	 * @param key the key
+	 * @return the response, or null if not cached
+	 */
+	public String get(String key){
+		Entry entry = this.getEntry(key);
+		
+		return entry != null ? entry.getValue() : null;
+	}
+	
+	/**
+	 * Gets the cached response for a key, along with when it was stored.
+	 *
+	 * @param key the key
+	 * @return the entry, or null if not cached
+	 */
+	public Entry getEntry(String key){
+		this.sketch.increment(key);
+		
+		Entry entry = this.data.get(key);
+		
+		if(entry == null){
+			this.missCount.incrementAndGet();
+		} else {
+			this.hitCount.incrementAndGet();
+			
+			//recency is best-effort -- skip it rather than block a reader
+			if(this.evictionLock.tryLock()){
+				try {
+					this.accessOrder.get(key);
+				} finally {
+					this.evictionLock.unlock();
+				}
+			}
+		}
+		
+		return entry;
+	}
+	
+	/**
+	 * Gets the cached response for a key without recording the access.
+	 *
+	 * @param key the key
+	 * @return the response, or null if not cached
+	 */
+	public String peek(String key){
+		Entry entry = this.peekEntry(key);
+		
+		return entry != null ? entry.getValue() : null;
+	}
+	
+	/**
+	 * Gets the cached response for a key, along with when it was stored,
+	 * without recording the access.
+	 *
+	 * @param key the key
+	 * @return the entry, or null if not cached
+	 */
+	public Entry peekEntry(String key){
+		return this.data.get(key);
+	}
+	
+	/**
+	 * Caches a response. The response may be rejected by the admission
+	 * policy if the cache is full of more frequently requested entries.
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @return true, if the response was cached
+	 */
+	public boolean put(String key, String value){
+		return this.put(key, value, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Caches a response fetched at the given time.
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @param storedAt when the response was fetched, in milliseconds
+	 * @return true, if the response was cached
+	 * @see #put(String, String)
+	 */
+	public boolean put(String key, String value, long storedAt){
+		long weight = this.weigh(key, value);
+		
+		this.evictionLock.lock();
+		try {
+			if(weight > this.maximumWeight){
+				this.rejectionCount.incrementAndGet();
+				return false;
+			}
+			
+			Long previous = this.accessOrder.remove(key);
+			if(previous != null){
+				this.weightedSize -= previous;
+			}
+			
+			List<String> victims = this.selectVictims(weight);
+			
+			//updates to an existing entry are always admitted
+			if(previous == null && ! this.admit(key, victims)){
+				this.rejectionCount.incrementAndGet();
+				return false;
+			}
+			
+			for(String victim : victims){
+				this.weightedSize -= this.accessOrder.remove(victim);
+				this.data.remove(victim);
+				this.evictionCount.incrementAndGet();
+			}
+			
+			this.accessOrder.put(key, weight);
+			this.weightedSize += weight;
+			this.data.put(key, new Entry(value, storedAt));
+			
+			return true;
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+	
+	/**
+	 * Removes a cached response.
+	 *
+	 * @param key the key
+	 */
+	public void remove(String key){
+		this.evictionLock.lock();
+		try {
+			Long weight = this.accessOrder.remove(key);
+			if(weight != null){
+				this.weightedSize -= weight;
+			}
+			this.data.remove(key);
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+	
+	/**
+	 * Removes all cached responses.
+	 */
+	public void clear(){
+		this.evictionLock.lock();
+		try {
+			this.accessOrder.clear();
+			this.data.clear();
+			this.weightedSize = 0;
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+	
+	/**
+	 * Selects, least recently used first, the entries that must go to make room for the given weight.
+	 *
+	 * @param weight the weight
+	 * @return the victims
+	 */
+	private List<String> selectVictims(long weight){
+		List<String> victims = new ArrayList<String>();
+		
+		long freed = 0;
+		Iterator<Map.Entry<String,Long>> itr = this.accessOrder.entrySet().iterator();
+		while(this.weightedSize - freed + weight > this.maximumWeight && itr.hasNext()){
+			Map.Entry<String,Long> entry = itr.next();
+			victims.add(entry.getKey());
+			freed += entry.getValue();
+		}
+		
+		return victims;
+	}
+	
+	/**
+	 * Admit the candidate only if it is requested at least as often as every victim it displaces.
+	 *
+	 * @param candidate the candidate
+	 * @param victims the victims
+	 * @return true, if successful
+	 */
+	private boolean admit(String candidate, List<String> victims){
+		int candidateFrequency = this.sketch.frequency(candidate);
+		for(String victim : victims){
+			if(this.sketch.frequency(victim) > candidateFrequency){
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private long weigh(String key, String value){
+		return ENTRY_OVERHEAD + 2L * (key.length() + value.length());
+	}
+	
+	/**
+	 * Sets the maximum weight, evicting entries if the cache is now over capacity.
+	 *
+	 * @param maximumWeight the new maximum weight, in bytes
+	 */
+	public void setMaximumWeight(long maximumWeight) {
+		this.evictionLock.lock();
+		try {
+			this.maximumWeight = maximumWeight;
+			
+			for(String victim : this.selectVictims(0)){
+				this.weightedSize -= this.accessOrder.remove(victim);
+				this.data.remove(victim);
+				this.evictionCount.incrementAndGet();
+			}
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	public long getMaximumWeight() {
+		return maximumWeight;
+	}
+	
+	public long getWeightedSize() {
+		this.evictionLock.lock();
+		try {
+			return this.weightedSize;
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+	
+	public int size() {
+		return this.data.size();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public long getRejectionCount() {
+		return rejectionCount.get();
+	}
+	
+	public double getHitRate() {
+		long hits = this.getHitCount();
+		long requests = hits + this.getMissCount();
+		
+		return requests == 0 ? 0d : (double) hits / requests;
+	}
+
+	/**
+	 * A count-min sketch of 4-bit-style saturating counters that estimates how often
+	 * a key has been requested. Counters are periodically halved so that
+	 * the estimate favors recent popularity.
+	 */
+	private static class FrequencySketch {
+		
+		private static final int MAX_COUNT = 15;
+		
+		private static final int MIN_WIDTH = 1 << 10;
+		
+		private static final int MAX_WIDTH = 1 << 20;
+		
+		/* a guess at an average response size, used to size the sketch */
+		private static final long AVERAGE_ENTRY_WEIGHT = 8 * 1024;
+		
+		private static final int[] SEEDS = {0x97cb3127, 0xb7e15163, 0x7f4a7c15, 0x2545f491};
+
+		private int[] table;
+		
+		private int mask;
+		
+		private int sampleSize;
+		
+		private int additions;
+		
+		private FrequencySketch(long maximumWeight){
+			long expected = Math.max(MIN_WIDTH, Math.min(MAX_WIDTH, maximumWeight / AVERAGE_ENTRY_WEIGHT));
+			
+			int width = Integer.highestOneBit((int) expected - 1) << 1;
+			
+			this.table = new int[width];
+			this.mask = width - 1;
+			this.sampleSize = 10 * width;
+		}
+		
+		/* racy by design -- a lost increment only makes the estimate a little low */
+		private void increment(String key){
+			int hash = spread(key.hashCode());
+			
+			boolean added = false;
+			for(int seed : SEEDS){
+				int index = this.indexOf(hash, seed);
+				if(this.table[index] < MAX_COUNT){
+					this.table[index]++;
+					added = true;
+				}
+			}
+			
+			if(added && ++this.additions >= this.sampleSize){
+				this.reset();
+			}
+		}
+		
+		private int frequency(String key){
+			int hash = spread(key.hashCode());
+			
+			int frequency = MAX_COUNT;
+			for(int seed : SEEDS){
+				frequency = Math.min(frequency, this.table[this.indexOf(hash, seed)]);
+			}
+			
+			return frequency;
+		}
+		
+		private synchronized void reset(){
+			for(int i=0;i<this.table.length;i++){
+				this.table[i] = this.table[i] >>> 1;
+			}
+			this.additions = this.additions >>> 1;
+		}
+		
+		private int indexOf(int hash, int seed){
+			int h = (hash ^ seed) * 0x9e3779b9;
+			
+			return (h ^ (h >>> 16)) & this.mask;
+		}
+		
+		private static int spread(int hash){
+			int h = hash * 0x85ebca6b;
+			
+			return h ^ (h >>> 13);
+		}
+	}
+}
@@ -24,6 +24,7 @@
 package edu.mayo.cts2.framework.plugin.service.bioportal.restrict.directory;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -141,10 +142,19 @@ public class ValueSetDirectoryBuilder extends AbstractRemovingDirectoryBuilder<V
 		 * @return the code systems of value set
 		 */
 		public Set<String> getCodeSystemsOfValueSet(String valueSetName);
+		
+		/**
+		 * Gets the value sets that are views on a code system.
+		 *
+		 * @param codeSystemName the code system name
+		 * @return the value sets of code system
+		 */
+		public Set<String> getValueSetsOfCodeSystem(String codeSystemName);
 	}
 	
 	/**
-	 * The Class CodeSystemRestriction.
+	 * The Class CodeSystemRestriction. The value sets on all of the code systems
+	 * are looked up once, so each candidate is a single set lookup.
 	 *
 	 * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
 	 */
@@ -152,6 +162,8 @@ public class ValueSetDirectoryBuilder extends AbstractRemovingDirectoryBuilder<V
 
 		private List<String> codeSystems;
 		
+		private Set<String> valueSets;
+		
 		/**
 		 * Instantiates a new code system restriction.
 		 *
@@ -165,10 +177,28 @@ public class ValueSetDirectoryBuilder extends AbstractRemovingDirectoryBuilder<V
 		 * @see edu.mayo.cts2.framework.filter.directory.AbstractDirectoryBuilder.Restriction#passRestriction(java.lang.Object)
 		 */
 		public boolean passRestriction(ValueSetCatalogEntry candidate) {
-			String valueSetName = candidate.getValueSetName();
+			return this.getValueSets().contains(candidate.getValueSetName());
+		}
+		
+		private Set<String> getValueSets(){
+			if(this.valueSets == null){
+				Set<String> found = null;
+				
+				for(String codeSystem : this.codeSystems){
+					Set<String> valueSetsOfCodeSystem = 
+							valueSetCodeSystemExtractor.getValueSetsOfCodeSystem(codeSystem);
+					
+					if(found == null){
+						found = new HashSet<String>(valueSetsOfCodeSystem);
+					} else {
+						found.retainAll(valueSetsOfCodeSystem);
+					}
+				}
+				
+				this.valueSets = found;
+			}
 			
-			return valueSetCodeSystemExtractor.
-				getCodeSystemsOfValueSet(valueSetName).containsAll(codeSystems);
+			return this.valueSets;
 		}
 	}
 }
@@ -25,6 +25,7 @@ package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.springframework.stereotype.Component;
 import org.w3c.dom.Document;
@@ -70,7 +71,25 @@ public abstract class AbstractBioportalOntologyTransformTemplate<R extends Abstr
 	 * @param xml the xml
 	 * @return the list
 	 */
-	public List<R> transformResources(String xml) {
+	public List<R> transformResources(final String xml) {
+		return this.getBioportalRestService().getDerivedViewCache().get(
+				this.getClass().getName() + ".transformResources", 
+				xml, 
+				new Callable<List<R>>(){
+
+					public List<R> call() {
+						return doTransformResources(xml);
+					}
+				});
+	}
+	
+	/**
+	 * Do transform resources.
+	 *
+	 * @param xml the xml
+	 * @return the list
+	 */
+	private List<R> doTransformResources(String xml) {
 		List<R> entryList = 
 			new ArrayList<R>();
 	 
@@ -193,6 +212,25 @@ public abstract class AbstractBioportalOntologyTransformTemplate<R extends Abstr
 	 * @return the list
 	 */
 	public List<S> transformResourceSummaries(
+			final String xml) {
+		return this.getBioportalRestService().getDerivedViewCache().get(
+				this.getClass().getName() + ".transformResourceSummaries", 
+				xml, 
+				new Callable<List<S>>(){
+
+					public List<S> call() {
+						return doTransformResourceSummaries(xml);
+					}
+				});
+	}
+	
+	/**
+	 * Do transform resource summaries.
+	 *
+	 * @param xml the xml
+	 * @return the list
+	 */
+	private List<S> doTransformResourceSummaries(
 			String xml) {
 		List<S> entryList = 
 			new ArrayList<S>();
@@ -29,11 +29,13 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
-import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
 import org.w3c.dom.Document;
@@ -49,6 +51,7 @@ import edu.mayo.cts2.framework.model.core.ResourceVersionDescriptionDirectoryEnt
 import edu.mayo.cts2.framework.model.core.SourceAndNotation;
 import edu.mayo.cts2.framework.model.util.ModelUtils;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver;
 import edu.mayo.cts2.framework.plugin.service.bioportal.util.BioportalConstants;
 
 /**
@@ -59,12 +62,17 @@ import edu.mayo.cts2.framework.plugin.service.bioportal.util.BioportalConstants;
  * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
  */
 @Component
-public abstract class AbstractBioportalOntologyVersionTransformTemplate<R extends ResourceVersionDescription, S extends ResourceVersionDescriptionDirectoryEntry> extends AbstractOntologyTransform {
+public abstract class AbstractBioportalOntologyVersionTransformTemplate<R extends ResourceVersionDescription, S extends ResourceVersionDescriptionDirectoryEntry> extends AbstractOntologyTransform 
+	implements InitializingBean, CacheObserver {
 	private static final String DOWNLOAD_LOCATION = "downloadLocation";
 	
-	@SuppressWarnings("unchecked")
-	private Map<Integer,List<S>> 
-		cachedVersionSummaries = new LRUMap(1);
+	private ResourceVersionCatalog<S> versionCatalog = new ResourceVersionCatalog<S>(
+			new ResourceVersionCatalog.VersionLoader<S>(){
+
+				public List<S> loadVersions(String ontologyId) {
+					return transformVersionsOfOntology(ontologyId);
+				}
+			});
 	
 	private static final ThreadLocal<SoftReference<DateFormat>> threadLocal = new ThreadLocal<SoftReference<DateFormat>>();
 
@@ -82,6 +90,27 @@ public abstract class AbstractBioportalOntologyVersionTransformTemplate<R extend
 		return result;
 	}
 
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		this.getBioportalRestService().addObserver(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver#onCodeSystemsChangeEvent(java.util.List)
+	 */
+	public void onCodeSystemsChangeEvent(List<String> changedOntologyIds) {
+		this.versionCatalog.invalidate(changedOntologyIds);
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.rest.CacheObserver#onApiKeyChange()
+	 */
+	public void onApiKeyChange() {
+		this.versionCatalog.clear();
+	}
+
 	/**
 	 * Creates the new resource version.
 	 *
@@ -237,7 +266,7 @@ public abstract class AbstractBioportalOntologyVersionTransformTemplate<R extend
 		
 		resourceVersion.addSourceAndRole(this.getSourceAndRoleReference(node));
 		
-		resourceVersion.setDocumentURI(this.getIdentityConverter().getDocumentUri(ontologyVersionId));
+		resourceVersion.setDocumentURI(this.getIdentityConverter().getDocumentUri(node));
 		
 		resourceVersion = this.decorateResourceVersion(node, resourceName, resourceVersion);
 		
@@ -254,6 +283,25 @@ public abstract class AbstractBioportalOntologyVersionTransformTemplate<R extend
 	 * @return the list
 	 */
 	public List<S> transformVersionsOfResource(
+			final String xml) {
+		return this.getBioportalRestService().getDerivedViewCache().get(
+				this.getClass().getName() + ".transformVersionsOfResource", 
+				xml, 
+				new Callable<List<S>>(){
+
+					public List<S> call() {
+						return doTransformVersionsOfResource(xml);
+					}
+				});
+	}
+	
+	/**
+	 * Do transform versions of resource.
+	 *
+	 * @param xml the xml
+	 * @return the list
+	 */
+	private List<S> doTransformVersionsOfResource(
 			String xml) {
 		List<S> entryList = 
 			new ArrayList<S>();
@@ -278,58 +326,52 @@ public abstract class AbstractBioportalOntologyVersionTransformTemplate<R extend
 	}
 
 	/**
-	 * Transform resource versions.
+	 * Transform resource versions. Every version of every ontology in the given
+	 * latest-versions list is served from the version catalog -- only ontologies
+	 * that are new, have a new latest version, or were reported as changed
+	 * are read from BioPortal again.
 	 *
 	 * @param xml the xml
 	 * @return the list
 	 */
 	public List<S> transformResourceVersions(
 			String xml){
+		Document doc = BioportalRestUtils.getDocument(xml);
 
-		if(! this.cachedVersionSummaries.containsKey(xml.hashCode())){
-			this.cachedVersionSummaries.clear();
-			
-			this.cachedVersionSummaries.put(xml.hashCode(),
-				this.doTransformResourceVersions(xml));
+		Map<String,String> latestVersionIds = new LinkedHashMap<String,String>();
+		for(Node node : TransformUtils.getNodeListWithPath(doc, "success.data.list.ontologyBean")){
+			latestVersionIds.put(
+					TransformUtils.getNamedChildText(node, ONTOLOGY_ID), 
+					TransformUtils.getNamedChildText(node, ONTOLOGY_VERSION_ID));
 		}
 		
-		return new ArrayList<S>(
-				this.cachedVersionSummaries.get(xml.hashCode()));
+		return this.versionCatalog.getVersions(
+				latestVersionIds, 
+				this.getBioportalRestService().getParallelExecutor());
 	}
 	
 	/**
-	 * Do transform resource versions.
+	 * Transform all versions of one ontology.
 	 *
-	 * @param xml the xml
+	 * @param ontologyId the ontology id
 	 * @return the list
 	 */
-	private List<S> doTransformResourceVersions(
-			String xml) {
+	private List<S> transformVersionsOfOntology(String ontologyId) {
 		List<S> entryList = 
 			new ArrayList<S>();
-	 
-		Document doc = BioportalRestUtils.getDocument(xml);
-
-	
-		List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, "success.data.list.ontologyBean");
+		
+		String versionsXml = 
+			this.getBioportalRestService().getOntologyVersionsByOntologyId(ontologyId);
+		
+		Document versionsDoc = BioportalRestUtils.getDocument(versionsXml);
+		
+		List<Node> versionsNodeList = TransformUtils.getNodeListWithPath(versionsDoc, "success.data.list.ontologyBean");
+		
+		for(Node version : versionsNodeList) {
+				
+			S entry = transformVersionSummary(version);
 
-		for(Node node : nodeList){
-			
-			String ontologyId = TransformUtils.getNamedChildText(node, ONTOLOGY_ID);
-			
-			String versionsXml = 
-				this.getBioportalRestService().getOntologyVersionsByOntologyId(ontologyId);
-			
-			Document versionsDoc = BioportalRestUtils.getDocument(versionsXml);
-			
-			List<Node> versionsNodeList = TransformUtils.getNodeListWithPath(versionsDoc, "success.data.list.ontologyBean");
-			
-			for(Node version : versionsNodeList) {
-					
-				S entry = transformVersionSummary(version);
-	
-				entryList.add(entry);
-			}
+			entryList.add(entry);
 		}
 	
 		return entryList;
@@ -361,7 +403,8 @@ public abstract class AbstractBioportalOntologyVersionTransformTemplate<R extend
 		entry.setResourceSynopsis(new EntryDescription());
 		entry.getResourceSynopsis().setValue(ModelUtils.toTsAnyType(description));
 
-		entry.setDocumentURI(this.getIdentityConverter().getDocumentUri(ontologyVersionId));
+		//the version list entries carry the urn and file names, so no call per version is needed
+		entry.setDocumentURI(this.getIdentityConverter().getDocumentUri(node));
 		String version= this.getIdentityConverter().codeSystemVersionNameToVersion(resourceVersionName);
 //		entry.setHref(this.getHref(resourceName, version));
 		entry.setHref(getHref(resourceName, resourceVersionName, ontologyId, ontologyVersionId ));
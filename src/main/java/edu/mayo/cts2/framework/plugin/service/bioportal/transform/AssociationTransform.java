@@ -39,10 +39,10 @@ import edu.mayo.cts2.framework.model.core.EntitySynopsis;
 import edu.mayo.cts2.framework.model.core.PredicateReference;
 import edu.mayo.cts2.framework.model.core.StatementTarget;
 import edu.mayo.cts2.framework.model.core.URIAndEntityName;
+import edu.mayo.cts2.framework.model.core.types.AssociationDirection;
 import edu.mayo.cts2.framework.model.directory.DirectoryResult;
 import edu.mayo.cts2.framework.model.entity.EntityDirectoryEntry;
 import edu.mayo.cts2.framework.model.util.ModelUtils;
-import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
 
 /**
  * The Class AssociationTransform.
@@ -54,6 +54,12 @@ public class AssociationTransform extends AbstractTransform{
 	
 	private static final String NODE = "success.data.classBean";
 	
+	private static final String REVERSE_PREFIX = "[R]";
+	
+	private static final String SUPERCLASS = "SuperClass";
+	
+	private static final String SUBCLASS = "SubClass";
+	
 	/**
 	 * Transform entities for relationship.
 	 *
@@ -69,8 +75,30 @@ public class AssociationTransform extends AbstractTransform{
 			String codeSystemName,
 			String codeSystemVersionName,
 			String predicateName) throws Exception {
+		return this.transformEntitiesForRelationship(
+				new ParsedResponse(xml), 
+				codeSystemName, 
+				codeSystemVersionName, 
+				predicateName);
+	}
+	
+	/**
+	 * Transform entities for relationship.
+	 *
+	 * @param response the response
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @param predicateName the predicate name
+	 * @return the list
+	 * @throws Exception the exception
+	 */
+	public List<EntityDirectoryEntry> transformEntitiesForRelationship(
+			ParsedResponse response,
+			String codeSystemName,
+			String codeSystemVersionName,
+			String predicateName) throws Exception {
 		
-		Node node = TransformUtils.getNamedChildWithPath(BioportalRestUtils.getDocument(xml), NODE);
+		Node node = TransformUtils.getNamedChildWithPath(response.getDocument(), NODE);
 		
 		return transformEntityNodeForRelationships(
 				codeSystemName, 
@@ -143,26 +171,12 @@ public class AssociationTransform extends AbstractTransform{
 
 			@Override
 			public EntityDirectoryEntry transform(Node entryNode) {
-				EntityDirectoryEntry entry = new EntityDirectoryEntry();
-
-				String about = getAbout(entryNode);
-				String name = getName(entryNode);
-				String label = getLabel(entryNode);
-				
-				entry.setAbout(about);
-				String version = getIdentityConverter().codeSystemVersionNameToVersion(codeSystemVersionName);
-				entry.addKnownEntityDescription(createKnownEntityDescription(
-						codeSystemName, 
-						codeSystemVersionName, 
-						label));
-				
-				entry.setHref(getUrlConstructor().createEntityUrl(
+				return createEntityDirectoryEntry(
+						getName(entryNode), 
+						getAbout(entryNode), 
+						getLabel(entryNode), 
 						codeSystemName, 
-						version, 
-						name));
-				entry.setName(ModelUtils.createScopedEntityName(name, codeSystemName));
-				
-				return entry;
+						codeSystemVersionName);
 			}
 		}, 
 		codeSystemName, 
@@ -171,6 +185,95 @@ public class AssociationTransform extends AbstractTransform{
 		xmlNode);
 
 	}
+	
+	private EntityDirectoryEntry createEntityDirectoryEntry(
+			String name,
+			String about,
+			String label,
+			String codeSystemName,
+			String codeSystemVersionName){
+		EntityDirectoryEntry entry = new EntityDirectoryEntry();
+		
+		entry.setAbout(about);
+		String version = getIdentityConverter().codeSystemVersionNameToVersion(codeSystemVersionName);
+		entry.addKnownEntityDescription(createKnownEntityDescription(
+				codeSystemName, 
+				codeSystemVersionName, 
+				label));
+		
+		entry.setHref(getUrlConstructor().createEntityUrl(
+				codeSystemName, 
+				version, 
+				name));
+		entry.setName(ModelUtils.createScopedEntityName(name, codeSystemName));
+		
+		return entry;
+	}
+	
+	/**
+	 * Read the entities the entity is related to by the predicate into a compact list.
+	 *
+	 * @param xml the xml
+	 * @param predicateName the predicate name
+	 * @return the related entity list
+	 */
+	public RelatedEntityList transformRelatedEntityList(
+			String xml,
+			String predicateName) {
+		Node xmlNode = TransformUtils.getNamedChildWithPath(new ParsedResponse(xml).getDocument(), NODE);
+		
+		final List<String> names = new ArrayList<String>();
+		final List<String> abouts = new ArrayList<String>();
+		final List<String> labels = new ArrayList<String>();
+		
+		this.doTransformEntityNodeForRelationships(new Transform<Void>(){
+
+			@Override
+			public Void transform(Node entryNode) {
+				names.add(getName(entryNode));
+				abouts.add(getAbout(entryNode));
+				labels.add(getLabel(entryNode));
+				
+				return null;
+			}
+		}, 
+		null, 
+		null, 
+		predicateName, 
+		xmlNode);
+		
+		return new RelatedEntityList(names, abouts, labels);
+	}
+	
+	/**
+	 * Build the directory entries of rows of a related entity list.
+	 *
+	 * @param list the list
+	 * @param from the first row
+	 * @param to the row after the last row
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @return the entries
+	 */
+	public List<EntityDirectoryEntry> transformRelatedEntityList(
+			RelatedEntityList list,
+			int from,
+			int to,
+			String codeSystemName,
+			String codeSystemVersionName) {
+		List<EntityDirectoryEntry> returnList = new ArrayList<EntityDirectoryEntry>();
+		
+		for(int i = from; i < Math.min(to, list.size()); i++){
+			returnList.add(this.createEntityDirectoryEntry(
+					list.getName(i), 
+					list.getAbout(i), 
+					list.getLabel(i), 
+					codeSystemName, 
+					codeSystemVersionName));
+		}
+		
+		return returnList;
+	}
 
 
 	/**
@@ -187,8 +290,29 @@ public class AssociationTransform extends AbstractTransform{
 			final String codeSystemName,
 			final String codeSystemVersionName, 
 			final String predicateName) {
+		return this.transformURIAndEntityNameForRelationships(
+				new ParsedResponse(xml), 
+				codeSystemName, 
+				codeSystemVersionName, 
+				predicateName);
+	}
+	
+	/**
+	 * Transform entity node for relationships.
+	 *
+	 * @param response the response
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @param predicateName the predicate name
+	 * @return the list
+	 */
+	public URIAndEntityName[] transformURIAndEntityNameForRelationships(
+			ParsedResponse response,
+			final String codeSystemName,
+			final String codeSystemVersionName, 
+			final String predicateName) {
 		
-		Node xmlNode = TransformUtils.getNamedChildWithPath(BioportalRestUtils.getDocument(xml), NODE);
+		Node xmlNode = TransformUtils.getNamedChildWithPath(response.getDocument(), NODE);
 
 		List<URIAndEntityName> returnList = this.doTransformEntityNodeForRelationships(new Transform<URIAndEntityName>(){
 
@@ -230,6 +354,7 @@ public class AssociationTransform extends AbstractTransform{
 	 * @param predicateNode the predicate node
 	 * @param targetNode the target node
 	 * @param clazz the clazz
+	 * @param reverse true to assert the association from the target node to the subject node
 	 * @return the t
 	 */
 	private <T extends AssociationDirectoryEntry> T transformAssociationNode(
@@ -238,15 +363,26 @@ public class AssociationTransform extends AbstractTransform{
 			Node subjectNode,
 			Node predicateNode,
 			Node targetNode,
-			Class<T> clazz) {
+			Class<T> clazz,
+			boolean reverse) {
+		
+		//the node the association leads to from the subject node
+		Node reachedNode = targetNode;
+		
+		String predicateName = this.getPredicate(predicateNode);
+		
+		if(reverse){
+			targetNode = subjectNode;
+			subjectNode = reachedNode;
+			
+			predicateName = this.getReversePredicate(predicateName);
+		}
 
 		String subjectName = TransformUtils.getNamedChildText(
 				subjectNode, "id");
 
 		String subjectAbout = TransformUtils.getNamedChildText(
 			subjectNode, "fullId");
-
-		String predicateName = this.getPredicate(predicateNode);
 		
 		String targetName = TransformUtils.getNamedChildText(
 				targetNode, "id");
@@ -282,19 +418,26 @@ public class AssociationTransform extends AbstractTransform{
 						version, targetName));
 		
 		if(clazz.equals(GraphNode.class)){
-			String targetLabel = TransformUtils.getNamedChildText(
-					targetNode, "label");
+			String reachedLabel = TransformUtils.getNamedChildText(
+					reachedNode, "label");
+			String reachedName = TransformUtils.getNamedChildText(
+					reachedNode, "id");
 			
 			GraphNode graphNode = (GraphNode)entry;
 			graphNode.setNodeEntity(new EntitySynopsis());
-			graphNode.getNodeEntity().setDesignation(targetLabel);
+			graphNode.getNodeEntity().setDesignation(reachedLabel);
 			
-			graphNode.getNodeEntity().setName(targetName);
+			graphNode.getNodeEntity().setName(reachedName);
 			graphNode.getNodeEntity().setNamespace(codeSystemName);
-			graphNode.getNodeEntity().setUri(targetAbout);
+			graphNode.getNodeEntity().setUri(TransformUtils.getNamedChildText(
+					reachedNode, "fullId"));
 			graphNode.getNodeEntity().setHref(
 					this.getUrlConstructor().createEntityUrl(codeSystemName,
-							version, targetName));
+							version, reachedName));
+			
+			graphNode.setDirection(reverse ? 
+					AssociationDirection.TARGET_TO_SOURCE : 
+					AssociationDirection.SOURCE_TO_TARGET);
 		}
 
 		PredicateReference predicateRef = new PredicateReference();
@@ -309,21 +452,22 @@ public class AssociationTransform extends AbstractTransform{
 	/**
 	 * Transform association for relationships.
 	 *
-	 * @param xml the xml
+	 * @param response the response
 	 * @param codeSystemName the code system name
 	 * @param codeSystemVersionName the code system version name
 	 * @return the list
 	 */
 	private List<AssociationDirectoryEntry> transformAssociationForRelationships(
-			String xml,
+			ParsedResponse response,
 			String codeSystemName,
 			String codeSystemVersionName) {
 		
 		return this.transformAssociationForRelationships(
-				xml, 
+				response, 
 				codeSystemName, 
 				codeSystemVersionName, 
-				AssociationDirectoryEntry.class);
+				AssociationDirectoryEntry.class,
+				false);
 	}
 
 	/**
@@ -339,31 +483,76 @@ public class AssociationTransform extends AbstractTransform{
 			String codeSystemName,
 			String codeSystemVersionName) {
 		
+		return this.transformAssociationForGraph(
+				new ParsedResponse(xml), 
+				codeSystemName, 
+				codeSystemVersionName);
+	}
+	
+	/**
+	 * Transform association for graph.
+	 *
+	 * @param response the response
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @return the list
+	 */
+	public List<GraphNode> transformAssociationForGraph(
+			ParsedResponse response,
+			String codeSystemName,
+			String codeSystemVersionName) {
+		
 		return this.transformAssociationForRelationships(
-				xml, 
+				response, 
 				codeSystemName, 
 				codeSystemVersionName, 
-				GraphNode.class);
+				GraphNode.class,
+				false);
+	}
+	
+	/**
+	 * Transform the associations that have the entity as their target for a graph.
+	 * These are the reverse ('[R]') relations, and the SubClass/SuperClass relations
+	 * asserted from the other end.
+	 *
+	 * @param response the response
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @return the list
+	 */
+	public List<GraphNode> transformReverseAssociationForGraph(
+			ParsedResponse response,
+			String codeSystemName,
+			String codeSystemVersionName) {
+		
+		return this.transformAssociationForRelationships(
+				response, 
+				codeSystemName, 
+				codeSystemVersionName, 
+				GraphNode.class,
+				true);
 	}
 	
 	/**
 	 * Transform association for relationships.
 	 *
 	 * @param <T> the generic type
-	 * @param xml the xml
+	 * @param response the response
 	 * @param codeSystemName the code system name
 	 * @param codeSystemVersionName the code system version name
 	 * @param clazz the clazz
+	 * @param reverse true for the associations targeting the entity
 	 * @return the list
 	 */
 	private <T extends AssociationDirectoryEntry> List<T> transformAssociationForRelationships(
-			String xml,
+			ParsedResponse response,
 			String codeSystemName,
 			String codeSystemVersionName,
-			Class<T> clazz) {
+			Class<T> clazz,
+			boolean reverse) {
 		List<T> entryList = new ArrayList<T>();
 
-		Document doc = BioportalRestUtils.getDocument(xml);
+		Document doc = response.getDocument();
 		
 		Node subjectNode = TransformUtils.getNamedChildWithPath(doc,
 			"success.data.classBean");
@@ -381,6 +570,12 @@ public class AssociationTransform extends AbstractTransform{
 					"list.classBean");
 
 			if (objects != null) {
+				String predicateName = this.getPredicate(predicateNode);
+				
+				if(StringUtils.isBlank(predicateName) || 
+						(reverse && this.getReversePredicate(predicateName) == null)){
+					continue;
+				}
 
 				for (Node objectNode : objects) {
 
@@ -390,8 +585,10 @@ public class AssociationTransform extends AbstractTransform{
 							subjectNode, 
 							predicateNode, 
 							objectNode,
-							clazz);
-					if (StringUtils.isNotBlank(entry.getPredicate().getName()) && ! entry.getPredicate().getName().startsWith("[R]")) {
+							clazz,
+							reverse);
+					if (StringUtils.isNotBlank(entry.getPredicate().getName()) && 
+							(reverse || ! entry.getPredicate().getName().startsWith(REVERSE_PREFIX))) {
 					   entryList.add(entry);
 					}
 				}
@@ -458,6 +655,25 @@ public class AssociationTransform extends AbstractTransform{
 		return TransformUtils.getNamedChild(node, "string").getTextContent();
 	}
 
+	/**
+	 * Gets the predicate asserted from the other end of a relation, or
+	 * null if the relation has no known reverse.
+	 *
+	 * @param predicateName the predicate name
+	 * @return the reverse predicate
+	 */
+	private String getReversePredicate(String predicateName){
+		if(predicateName.startsWith(REVERSE_PREFIX)){
+			return predicateName.substring(REVERSE_PREFIX.length());
+		} else if(predicateName.equals(SUBCLASS)){
+			return SUPERCLASS;
+		} else if(predicateName.equals(SUPERCLASS)){
+			return SUBCLASS;
+		} else {
+			return null;
+		}
+	}
+
 	/**
 	 * Transform subject of associations for entity.
 	 *
@@ -470,11 +686,29 @@ public class AssociationTransform extends AbstractTransform{
 			String xml, 
 			String codeSystemName, 
 			String codeSystemVersionName) {
+		return this.transformSubjectOfAssociationsForEntity(
+				new ParsedResponse(xml), 
+				codeSystemName, 
+				codeSystemVersionName);
+	}
+	
+	/**
+	 * Transform subject of associations for entity.
+	 *
+	 * @param response the response
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @return the directory result
+	 */
+	public DirectoryResult<AssociationDirectoryEntry> transformSubjectOfAssociationsForEntity(
+			ParsedResponse response, 
+			String codeSystemName, 
+			String codeSystemVersionName) {
 		
 		DirectoryResult<AssociationDirectoryEntry> result = new
 			DirectoryResult<AssociationDirectoryEntry>(
 					this.transformAssociationForRelationships(
-							xml, 
+							response, 
 							codeSystemName, 
 							codeSystemVersionName), true);
 
@@ -0,0 +1,57 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import java.util.List;
+
+import edu.mayo.cts2.framework.model.directory.DirectoryResult;
+
+/**
+ * A directory result that also carries the total count from the header of the
+ * BioPortal page it was read from.
+ *
+ * @param <T> the generic type
+ * 
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class CountedDirectoryResult<T> extends DirectoryResult<T> {
+	
+	private int totalCount;
+
+	/**
+	 * Instantiates a new counted directory result.
+	 *
+	 * @param entries the entries
+	 * @param atEnd the at end
+	 * @param totalCount the total count upstream
+	 */
+	public CountedDirectoryResult(List<T> entries, boolean atEnd, int totalCount) {
+		super(entries, atEnd);
+		this.totalCount = totalCount;
+	}
+
+	public int getTotalCount() {
+		return totalCount;
+	}
+}
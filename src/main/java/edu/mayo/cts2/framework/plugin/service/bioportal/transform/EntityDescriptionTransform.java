@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 
@@ -57,7 +58,9 @@ import edu.mayo.cts2.framework.model.entity.NamedIndividualDescription;
 import edu.mayo.cts2.framework.model.entity.PredicateDescription;
 import edu.mayo.cts2.framework.model.entity.types.DesignationRole;
 import edu.mayo.cts2.framework.model.util.ModelUtils;
-import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.SearchResultReader.SearchResultWindow;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.ShardedSearchReader.MergedWindow;
 import edu.mayo.cts2.framework.plugin.service.bioportal.util.UriUtils;
 
 /**
@@ -80,7 +83,21 @@ public class EntityDescriptionTransform extends AbstractTransform {
 	private final static String TYPE = "type";
 	private final static String NODE = "success.data.classBean";
 	private final static String NODELIST = "success.data.page.contents.classBeanResultList.classBean";
-	private final static String SEARCH_NODELIST = "success.data.page.contents.searchResultList.searchBean";
+	
+	private final static String CONCEPT_ID = "conceptId";
+	private final static String CONCEPT_ID_SHORT = "conceptIdShort";
+	private final static String PREFERRED_NAME = "preferredName";
+	private final static String ONTOLOGY_ID = "ontologyId";
+	private final static String ONTOLOGY_VERSION_ID = "ontologyVersionId";
+	
+	private final static SearchResultReader SEARCH_RESULT_READER = new SearchResultReader(
+			CONCEPT_ID, 
+			CONCEPT_ID_SHORT, 
+			PREFERRED_NAME, 
+			ONTOLOGY_ID, 
+			ONTOLOGY_VERSION_ID);
+	
+	private final static ShardedSearchReader SHARDED_SEARCH_READER = new ShardedSearchReader(SEARCH_RESULT_READER);
 	
 	private final static String SKOS_CONCEPT_NAME = "Concept";
 	private final static String SKOS_URI = "http://www.w3.org/2004/02/skos/core#";
@@ -103,8 +120,26 @@ public class EntityDescriptionTransform extends AbstractTransform {
 			String xml,
 			String codeSystemName,
 			String codeSystemVersionName) {
+		return this.transformEntityDescription(
+				new ParsedResponse(xml), 
+				codeSystemName, 
+				codeSystemVersionName);
+	}
+	
+	/**
+	 * Transform entity description.
+	 *
+	 * @param response the response
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @return the named entity description
+	 */
+	public NamedEntityDescription transformEntityDescription(
+			ParsedResponse response,
+			String codeSystemName,
+			String codeSystemVersionName) {
 		
-		Document doc = BioportalRestUtils.getDocument(xml);
+		Document doc = response.getDocument();
 
 		Node node = TransformUtils.getNamedChildWithPath(doc, NODE);
 		
@@ -151,7 +186,7 @@ public class EntityDescriptionTransform extends AbstractTransform {
 		
 		entity.addEntityType(this.getEntityType(type));
 		
-		entity.setParent(associationTransform.transformURIAndEntityNameForRelationships(xml, codeSystemName, codeSystemVersionName, PARENT_PREDICATE));
+		entity.setParent(associationTransform.transformURIAndEntityNameForRelationships(response, codeSystemName, codeSystemVersionName, PARENT_PREDICATE));
 
 		return entity;
 	}
@@ -319,13 +354,31 @@ public class EntityDescriptionTransform extends AbstractTransform {
 	 * @param codeSystemVersionName the code system version name
 	 * @return the directory result
 	 */
-	public DirectoryResult<EntityDirectoryEntry>  transformEntityDirectory(
+	public CountedDirectoryResult<EntityDirectoryEntry>  transformEntityDirectory(
 			String xml, 
 			String codeSystemName,
 			String codeSystemVersionName) {
+		return this.transformEntityDirectory(
+				new ParsedResponse(xml), 
+				codeSystemName, 
+				codeSystemVersionName);
+	}
+	
+	/**
+	 * Transform entity directory.
+	 *
+	 * @param response the response
+	 * @param codeSystemName the code system name
+	 * @param codeSystemVersionName the code system version name
+	 * @return the directory result
+	 */
+	public CountedDirectoryResult<EntityDirectoryEntry>  transformEntityDirectory(
+			ParsedResponse response, 
+			String codeSystemName,
+			String codeSystemVersionName) {
 		List<EntityDirectoryEntry> entryList = new ArrayList<EntityDirectoryEntry>();
 	
-		Document doc = BioportalRestUtils.getDocument(xml);
+		Document doc = response.getDocument();
 		
 		List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, NODELIST);
 		
@@ -357,14 +410,12 @@ public class EntityDescriptionTransform extends AbstractTransform {
 			
 		}
 		
-		int totalCount = TransformUtils.getTotalCount(xml);
-		int page = TransformUtils.getPageNumber(xml);
-		int pageSize = TransformUtils.getPageSize(xml);
-		int numOfResultsOnPage = TransformUtils.getNumberOfResultsOnPage(xml);
-	
-		boolean atEnd = totalCount <= ( ( (page - 1) * pageSize) + numOfResultsOnPage);
+		PageHeader pageHeader = response.getPageHeader();
 		
-		return new DirectoryResult<EntityDirectoryEntry>(entryList, atEnd);
+		return new CountedDirectoryResult<EntityDirectoryEntry>(
+				entryList, 
+				pageHeader.isAtEnd(), 
+				pageHeader.getTotalCount());
 	}
 	
 
@@ -379,126 +430,149 @@ public class EntityDescriptionTransform extends AbstractTransform {
 	}
 	
 	public String getUriFromSearch(String xml) {
-		Document doc = BioportalRestUtils.getDocument(xml);
-		
-		List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, SEARCH_NODELIST);
+		SearchResultWindow window = SEARCH_RESULT_READER.read(xml, 0, 0);
 		
-		return TransformUtils.getNamedChildText(nodeList.get(0), "conceptId");
+		return window.getResults().get(0).get(CONCEPT_ID);
 	}
 		
 
 	/**
-	 * Transform entity directory from search.
+	 * Transform entity directory from search. The response is streamed, and only
+	 * the results from start to end are read.
 	 *
 	 * @param start the start
 	 * @param end the end
 	 * @param xml the xml
 	 * @return the directory result
 	 */
-	public DirectoryResult<EntityDirectoryEntry> transformEntityDirectoryFromSearch(
+	public CountedDirectoryResult<EntityDirectoryEntry> transformEntityDirectoryFromSearch(
 			int start,
 			int end,
 			String xml) {
 		List<EntityDirectoryEntry> entryList = new ArrayList<EntityDirectoryEntry>();
 		
 		long time = System.currentTimeMillis();
-
-		long time2 = System.currentTimeMillis();
 		
-		Document doc = BioportalRestUtils.getDocument(xml);
+		SearchResultWindow window = SEARCH_RESULT_READER.read(xml, start, end);
 		
-		List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, SEARCH_NODELIST);
-		log.debug("transformEntityDirectoryFromSearch" + (System.currentTimeMillis() - time2) + " ms inner");
-
-		int skipped = 0;
-
-		for(int i = start; i<nodeList.size() && i <= end; i++){
-
-			EntityDirectoryEntry entry = new EntityDirectoryEntry();
-
-			Node node = nodeList.get(i);
-
-			String conceptIdKey = "conceptId";
-			String conceptIdShortKey = "conceptIdShort";
-			String preferredNameKey = "preferredName";
-			String ontologyIdKey = "ontologyId";
-			String ontologyVersionIdKey = "ontologyVersionId";
-
-			Map<String, String> resultMap = this
-					.getChildrenTextMap(node, conceptIdKey, conceptIdShortKey,
-							preferredNameKey, ontologyIdKey, ontologyVersionIdKey);
+		this.addSearchResults(window.getResults(), entryList);
+		
+		log.debug("transformEntityDirectoryFromSearch" + (System.currentTimeMillis() - time) + " ms");
+		
+		PageHeader pageHeader = window.getPageHeader();
+		
+		return new CountedDirectoryResult<EntityDirectoryEntry>(
+				entryList, 
+				pageHeader.isAtEnd(), 
+				pageHeader.getTotalCount());
+	}
+	
+	/**
+	 * Transform entity directory from a search that was split into shards of ontologies.
+	 * Results are ordered by rank within each shard, then by shard, and shards that
+	 * can't reach the window are cancelled.
+	 *
+	 * @param start the start
+	 * @param end the end
+	 * @param shards the first page of each shard's search, in shard order
+	 * @param executor the executor the shards were submitted to
+	 * @return the directory result
+	 */
+	public DirectoryResult<EntityDirectoryEntry> transformEntityDirectoryFromShardedSearch(
+			int start,
+			int end,
+			List<Future<String>> shards,
+			ParallelExecutor executor) {
+		List<EntityDirectoryEntry> entryList = new ArrayList<EntityDirectoryEntry>();
+		
+		MergedWindow window = SHARDED_SEARCH_READER.read(shards, start, end, executor);
+		
+		this.addSearchResults(window.getResults(), entryList);
+		
+		if(window.getCancelledShards() > 0){
+			log.debug("Window filled, cancelled " + window.getCancelledShards() + " search shard(s).");
+		}
+		
+		return new DirectoryResult<EntityDirectoryEntry>(entryList, window.isAtEnd());
+	}
+	
+	private void addSearchResults(List<Map<String,String>> results, List<EntityDirectoryEntry> entryList) {
+		for(Map<String,String> result : results){
+			EntityDirectoryEntry entry = this.transformSearchResult(result);
+			if(entry != null){
+				entryList.add(entry);
+			}
+		}
+	}
+	
+	/**
+	 * Transform one search result.
+	 *
+	 * @param resultMap the searchBean values, by element name
+	 * @return the entity directory entry, or null if the result cannot be resolved
+	 */
+	private EntityDirectoryEntry transformSearchResult(Map<String,String> resultMap) {
+		EntityDirectoryEntry entry = new EntityDirectoryEntry();
 
-			String about = resultMap.get(conceptIdKey);
-			String name = UriUtils.getLocalName( resultMap.get(conceptIdShortKey) );
+		String about = resultMap.get(CONCEPT_ID);
+		String name = UriUtils.getLocalName( resultMap.get(CONCEPT_ID_SHORT) );
 
-			String label = resultMap.get(preferredNameKey);
-			String ontologyId = resultMap.get(ontologyIdKey);
-			String ontologyVersionId = resultMap.get(ontologyVersionIdKey);
+		String label = resultMap.get(PREFERRED_NAME);
+		String ontologyId = resultMap.get(ONTOLOGY_ID);
+		String ontologyVersionId = resultMap.get(ONTOLOGY_VERSION_ID);
 
-			String codeSystemName;
+		String codeSystemName;
+		try {
+			codeSystemName = this.getIdentityConverter()
+					.ontologyIdToCodeSystemName(ontologyId);
+		} catch (Exception e) {
+			//it seems there are invalid ontologyIds from time to time 
+			//1634 for example. Warn and continue.
+			log.warn(e);
+			return null;
+		}
+		
+		String codeSystemVersionName;
+		String version="";
+		
+		//if there is no codesystemname, it must be matching a view, so throw it out
+		if(StringUtils.isBlank(codeSystemName)){
+			log.warn("Result matched ontologyVersionId: " + ontologyVersionId + ", which is a view.");
 			try {
-				codeSystemName = this.getIdentityConverter()
-						.ontologyIdToCodeSystemName(ontologyId);
+				codeSystemName = 
+						this.getIdentityConverter().ontologyIdToValueSetName(ontologyId);
+			
+				codeSystemVersionName = this.getIdentityConverter().ontologyVersionIdToValueSetDefinitionName(ontologyId, ontologyVersionId);
 			} catch (Exception e) {
-				//it seems there are invalid ontologyIds from time to time 
-				//1634 for example. Warn and continue.
+				//search results may be outdated in Bioportal
 				log.warn(e);
-				continue;
+				return null;
 			}
-			
-			String codeSystemVersionName;
-			String version="";
-			
-			//if there is no codesystemname, it must be matching a view, so throw it out
-			if(StringUtils.isBlank(codeSystemName)){
-				log.warn("Result matched ontologyVersionId: " + ontologyVersionId + ", which is a view.");
-				try {
-					codeSystemName = 
-							this.getIdentityConverter().ontologyIdToValueSetName(ontologyId);
-				
-					codeSystemVersionName = this.getIdentityConverter().ontologyVersionIdToValueSetDefinitionName(ontologyId, ontologyVersionId);
-				} catch (Exception e) {
-					//search results may be outdated in Bioportal
-					log.warn(e);
-					continue;
-				}
-			} else {
-				try {
-					codeSystemVersionName = this.getIdentityConverter().ontologyVersionIdToCodeSystemVersionName(ontologyId, ontologyVersionId);
-					version= this.getIdentityConverter().codeSystemVersionNameToVersion(codeSystemVersionName);
-				} catch (Exception e) {
-					//search results may be outdated in Bioportal
-					log.warn(e);
-					continue;
-				}
-				entry.addKnownEntityDescription(this.createKnownEntityDescription(
-						codeSystemName, 
-						codeSystemVersionName, 
-						label));
+		} else {
+			try {
+				codeSystemVersionName = this.getIdentityConverter().ontologyVersionIdToCodeSystemVersionName(ontologyId, ontologyVersionId);
+				version= this.getIdentityConverter().codeSystemVersionNameToVersion(codeSystemVersionName);
+			} catch (Exception e) {
+				//search results may be outdated in Bioportal
+				log.warn(e);
+				return null;
 			}
-		
-			entry.setAbout(about);
-			
-			entry.setName(this.buildScopedEntityName(name, codeSystemName));
-			
-			entry.setHref(this.getUrlConstructor().createEntityUrl(
+			entry.addKnownEntityDescription(this.createKnownEntityDescription(
 					codeSystemName, 
-					version, 
-					name));
-			
-			entryList.add(entry);
+					codeSystemVersionName, 
+					label));
 		}
+	
+		entry.setAbout(about);
 		
-		log.debug("transformEntityDirectoryFromSearch" + (System.currentTimeMillis() - time) + " ms outer");
+		entry.setName(this.buildScopedEntityName(name, codeSystemName));
 		
-		int totalCount = TransformUtils.getTotalCount(xml) - skipped;
-		int page = TransformUtils.getPageNumber(xml);
-		int pageSize = TransformUtils.getPageSize(xml);
-		int numOfResultsOnPage = TransformUtils.getNumberOfResultsOnPage(xml);
-	
-		boolean atEnd = totalCount <= ( ( (page - 1) * pageSize) + numOfResultsOnPage);
-	
-		return new DirectoryResult<EntityDirectoryEntry>(entryList, atEnd);
+		entry.setHref(this.getUrlConstructor().createEntityUrl(
+				codeSystemName, 
+				version, 
+				name));
+		
+		return entry;
 	}
 	
 	/**
@@ -0,0 +1,90 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+/**
+ * The paging information of a BioPortal page response (the 'success.data.page' element).
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class PageHeader {
+	
+	private int totalCount;
+	private int pageNumber;
+	private int pageSize;
+	private int numberOfPages;
+	private int numberOfResultsOnPage;
+	
+	/**
+	 * Instantiates a new page header.
+	 *
+	 * @param totalCount the total count
+	 * @param pageNumber the page number (1-based)
+	 * @param pageSize the page size
+	 * @param numberOfPages the number of pages
+	 * @param numberOfResultsOnPage the number of results on page
+	 */
+	public PageHeader(
+			int totalCount, 
+			int pageNumber, 
+			int pageSize, 
+			int numberOfPages,
+			int numberOfResultsOnPage) {
+		super();
+		this.totalCount = totalCount;
+		this.pageNumber = pageNumber;
+		this.pageSize = pageSize;
+		this.numberOfPages = numberOfPages;
+		this.numberOfResultsOnPage = numberOfResultsOnPage;
+	}
+	
+	/**
+	 * Checks if this page holds the last of the results.
+	 *
+	 * @return true, if is at end
+	 */
+	public boolean isAtEnd(){
+		return this.totalCount <= ( ( (this.pageNumber - 1) * this.pageSize) + this.numberOfResultsOnPage);
+	}
+
+	public int getTotalCount() {
+		return totalCount;
+	}
+
+	public int getPageNumber() {
+		return pageNumber;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public int getNumberOfPages() {
+		return numberOfPages;
+	}
+
+	public int getNumberOfResultsOnPage() {
+		return numberOfResultsOnPage;
+	}
+}
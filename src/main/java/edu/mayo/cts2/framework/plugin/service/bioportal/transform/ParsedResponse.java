@@ -0,0 +1,88 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import org.w3c.dom.Document;
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
+
+/**
+ * A BioPortal XML response that is parsed at most once, however many
+ * transforms read it.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class ParsedResponse {
+	
+	private String xml;
+	
+	private Document document;
+	
+	private PageHeader pageHeader;
+
+	/**
+	 * Instantiates a new parsed response. The xml is not parsed until needed.
+	 *
+	 * @param xml the xml
+	 */
+	public ParsedResponse(String xml) {
+		super();
+		this.xml = xml;
+	}
+
+	/**
+	 * Gets the raw response.
+	 *
+	 * @return the xml
+	 */
+	public String getXml() {
+		return xml;
+	}
+
+	/**
+	 * Gets the parsed document.
+	 *
+	 * @return the document
+	 */
+	public synchronized Document getDocument() {
+		if(this.document == null){
+			this.document = BioportalRestUtils.getDocument(this.xml);
+		}
+		
+		return this.document;
+	}
+
+	/**
+	 * Gets the page header, if this is a page response.
+	 *
+	 * @return the page header
+	 */
+	public synchronized PageHeader getPageHeader() {
+		if(this.pageHeader == null){
+			this.pageHeader = TransformUtils.getPageHeader(this.getDocument());
+		}
+		
+		return this.pageHeader;
+	}
+}
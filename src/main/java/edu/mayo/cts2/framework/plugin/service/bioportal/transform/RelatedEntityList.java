@@ -0,0 +1,72 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import java.util.List;
+
+/**
+ * The entities one entity is related to by a predicate, held as plain
+ * arrays of their names, URIs and labels. Directory entries are only
+ * built for the rows that are asked for.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class RelatedEntityList {
+	
+	private String[] names;
+	
+	private String[] abouts;
+	
+	private String[] labels;
+
+	/**
+	 * Instantiates a new related entity list.
+	 *
+	 * @param names the names
+	 * @param abouts the abouts
+	 * @param labels the labels
+	 */
+	public RelatedEntityList(List<String> names, List<String> abouts, List<String> labels) {
+		super();
+		this.names = names.toArray(new String[names.size()]);
+		this.abouts = abouts.toArray(new String[abouts.size()]);
+		this.labels = labels.toArray(new String[labels.size()]);
+	}
+	
+	public int size(){
+		return this.names.length;
+	}
+	
+	public String getName(int i){
+		return this.names[i];
+	}
+	
+	public String getAbout(int i){
+		return this.abouts[i];
+	}
+	
+	public String getLabel(int i){
+		return this.labels[i];
+	}
+}
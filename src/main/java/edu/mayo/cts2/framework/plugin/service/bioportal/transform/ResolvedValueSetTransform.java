@@ -25,6 +25,7 @@ package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.springframework.stereotype.Component;
 import org.w3c.dom.Document;
@@ -45,7 +46,19 @@ public class ResolvedValueSetTransform extends AbstractOntologyTransform {
 	/* (non-Javadoc)
 	 * @see edu.mayo.cts2.framework.plugin.service.bioportal.transform.AbstractBioportalOntologyVersionTransformTemplate#createNewResourceVersion()
 	 */
-	public List<ResolvedValueSetDirectoryEntry> transfrom(String xml) {
+	public List<ResolvedValueSetDirectoryEntry> transfrom(final String xml) {
+		return this.getBioportalRestService().getDerivedViewCache().get(
+				this.getClass().getName() + ".transform", 
+				xml, 
+				new Callable<List<ResolvedValueSetDirectoryEntry>>(){
+
+					public List<ResolvedValueSetDirectoryEntry> call() {
+						return doTransform(xml);
+					}
+				});
+	}
+	
+	private List<ResolvedValueSetDirectoryEntry> doTransform(String xml) {
 		Document doc = BioportalRestUtils.getDocument(xml);
 
 		List<Node> nodeList = TransformUtils.getNodeListWithPath(doc, "success.data.list.ontologyBean");
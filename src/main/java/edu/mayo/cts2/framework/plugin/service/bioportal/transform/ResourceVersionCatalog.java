@@ -0,0 +1,228 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor;
+
+/**
+ * An in-memory catalog of every version of every ontology, kept as transformed
+ * summaries. An ontology is only re-read from BioPortal when it is new, when its
+ * latest version has changed, or when it has been invalidated -- everything
+ * else is served from memory.
+ * 
+ * The catalog holds at most a fixed number of ontologies, dropping the least
+ * recently listed first. A load that was started before an invalidation is
+ * used for the listing that started it, but is not kept.
+ *
+ * @param <S> the summary type
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class ResourceVersionCatalog<S> {
+
+	/**
+	 * Reads and transforms all versions of one ontology.
+	 *
+	 * @param <S> the summary type
+	 */
+	public interface VersionLoader<S> {
+		
+		/**
+		 * Load the versions.
+		 *
+		 * @param ontologyId the ontology id
+		 * @return the version summaries
+		 */
+		List<S> loadVersions(String ontologyId);
+	}
+	
+	private static class CatalogEntry<S> {
+		private final String latestVersionId;
+		private final List<S> versions;
+		
+		private CatalogEntry(String latestVersionId, List<S> versions) {
+			super();
+			this.latestVersionId = latestVersionId;
+			this.versions = Collections.unmodifiableList(versions);
+		}
+	}
+	
+	public static final int DEFAULT_MAX_ENTRIES = 2000;
+	
+	private VersionLoader<S> loader;
+	
+	private int maxEntries;
+	
+	/* access ordered, guarded by this */
+	private Map<String,CatalogEntry<S>> entries = 
+			new LinkedHashMap<String,CatalogEntry<S>>(16, 0.75f, true);
+	
+	/* bumped by every invalidation, guarded by this */
+	private long generation;
+
+	/**
+	 * Instantiates a new resource version catalog.
+	 *
+	 * @param loader the loader
+	 */
+	public ResourceVersionCatalog(VersionLoader<S> loader) {
+		this(loader, DEFAULT_MAX_ENTRIES);
+	}
+	
+	/**
+	 * Instantiates a new resource version catalog.
+	 *
+	 * @param loader the loader
+	 * @param maxEntries the most ontologies to hold
+	 */
+	public ResourceVersionCatalog(VersionLoader<S> loader, int maxEntries) {
+		super();
+		this.loader = loader;
+		this.maxEntries = maxEntries;
+	}
+	
+	/**
+	 * Gets all versions of the given ontologies, in the given order. Ontologies
+	 * that are missing or stale are loaded first, in parallel.
+	 *
+	 * @param latestVersionIds the latest ontology version id, by ontology id
+	 * @param executor the executor to load on
+	 * @return the version summaries
+	 */
+	public List<S> getVersions(Map<String,String> latestVersionIds, ParallelExecutor executor){
+		final Map<String,CatalogEntry<S>> found = new HashMap<String,CatalogEntry<S>>();
+		
+		final long startGeneration;
+		synchronized(this){
+			startGeneration = this.generation;
+			
+			for(Entry<String, String> latest : latestVersionIds.entrySet()){
+				CatalogEntry<S> entry = this.entries.get(latest.getKey());
+				if(entry != null && isCurrent(entry, latest.getValue())){
+					found.put(latest.getKey(), entry);
+				}
+			}
+		}
+		
+		List<Callable<Void>> loads = new ArrayList<Callable<Void>>();
+		
+		for(Entry<String, String> latest : latestVersionIds.entrySet()){
+			final String ontologyId = latest.getKey();
+			final String latestVersionId = latest.getValue();
+			
+			if(! found.containsKey(ontologyId)){
+				loads.add(new Callable<Void>(){
+
+					public Void call() {
+						CatalogEntry<S> entry = 
+							new CatalogEntry<S>(latestVersionId, loader.loadVersions(ontologyId));
+						
+						synchronized(found){
+							found.put(ontologyId, entry);
+						}
+						
+						put(ontologyId, entry, startGeneration);
+						
+						return null;
+					}
+				});
+			}
+		}
+		
+		executor.invokeAll(loads);
+		
+		List<S> versions = new ArrayList<S>();
+		for(String ontologyId : latestVersionIds.keySet()){
+			CatalogEntry<S> entry = found.get(ontologyId);
+			if(entry != null){
+				versions.addAll(entry.versions);
+			}
+		}
+		
+		return versions;
+	}
+	
+	/**
+	 * Keeps a loaded entry, unless the catalog has been invalidated since the load started.
+	 */
+	private synchronized void put(String ontologyId, CatalogEntry<S> entry, long loadGeneration){
+		if(loadGeneration != this.generation){
+			return;
+		}
+		
+		this.entries.put(ontologyId, entry);
+		
+		Iterator<String> eldest = this.entries.keySet().iterator();
+		while(this.entries.size() > this.maxEntries && eldest.hasNext()){
+			eldest.next();
+			eldest.remove();
+		}
+	}
+	
+	private static boolean isCurrent(CatalogEntry<?> entry, String latestVersionId){
+		return entry.latestVersionId == null ? 
+				latestVersionId == null : entry.latestVersionId.equals(latestVersionId);
+	}
+	
+	/**
+	 * Drops the given ontologies, so they are re-read on the next listing.
+	 *
+	 * @param ontologyIds the ontology ids
+	 */
+	public synchronized void invalidate(Collection<String> ontologyIds){
+		this.generation++;
+		
+		for(String ontologyId : ontologyIds){
+			this.entries.remove(ontologyId);
+		}
+	}
+	
+	/**
+	 * Drops every ontology.
+	 */
+	public synchronized void clear(){
+		this.generation++;
+		
+		this.entries.clear();
+	}
+	
+	/**
+	 * Gets the number of ontologies held.
+	 *
+	 * @return the size
+	 */
+	public synchronized int size(){
+		return this.entries.size();
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException;
+
+/**
+ * Streams a BioPortal search response, keeping only the 'searchBean' elements
+ * inside a requested window. Beans outside of the window are skipped without being
+ * materialized, and reading stops as soon as the window and the page header have been read.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class SearchResultReader {
+	
+	private static final String[] PAGE = {"success", "data", "page"};
+	private static final String[] SEARCH_BEAN = {"success", "data", "page", "contents", "searchResultList", "searchBean"};
+	
+	private static final String COUNT = "numResultsTotal";
+	private static final String PAGE_NUMBER = "pageNum";
+	private static final String PAGE_SIZE = "pageSize";
+	private static final String NUMBER_OF_PAGES = "numPages";
+	private static final String NUMBER_OF_RESULTS_ON_PAGE = "numResultsPage";
+	
+	private static final int HEADER_FIELDS = 5;
+	
+	private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+	static {
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+	
+	private Set<String> fields;
+	
+	/**
+	 * Instantiates a new search result reader.
+	 *
+	 * @param fields the searchBean child elements to read
+	 */
+	public SearchResultReader(String... fields){
+		super();
+		this.fields = new HashSet<String>(Arrays.asList(fields));
+	}
+	
+	/**
+	 * The searchBeans of one window of a search page, along with the page header.
+	 */
+	public static class SearchResultWindow {
+		
+		private List<Map<String,String>> results;
+		
+		private PageHeader pageHeader;
+
+		private SearchResultWindow(List<Map<String, String>> results, PageHeader pageHeader) {
+			super();
+			this.results = results;
+			this.pageHeader = pageHeader;
+		}
+
+		public List<Map<String, String>> getResults() {
+			return results;
+		}
+
+		public PageHeader getPageHeader() {
+			return pageHeader;
+		}
+	}
+	
+	/**
+	 * Read the searchBeans from start to end (inclusive, zero-based, relative to this page).
+	 *
+	 * @param xml the xml
+	 * @param start the start
+	 * @param end the end
+	 * @return the search result window
+	 */
+	public SearchResultWindow read(String xml, int start, int end){
+		List<Map<String,String>> results = new ArrayList<Map<String,String>>();
+		
+		Map<String,Integer> header = new HashMap<String,Integer>();
+		
+		List<String> path = new ArrayList<String>();
+		
+		int index = -1;
+		Map<String,String> bean = null;
+		StringBuilder text = null;
+		
+		XMLStreamReader reader;
+		try {
+			reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+		} catch (XMLStreamException e) {
+			throw new Cts2RuntimeException(e);
+		}
+		
+		try {
+			while(reader.hasNext()){
+				int event = reader.next();
+				
+				if(event == XMLStreamConstants.START_ELEMENT){
+					String name = reader.getLocalName();
+					
+					if(bean != null && path.size() == SEARCH_BEAN.length && this.fields.contains(name)){
+						text = new StringBuilder();
+					} else if(isHeaderField(path, name)){
+						text = new StringBuilder();
+					} else if(isPath(path, SEARCH_BEAN.length - 1, SEARCH_BEAN) && name.equals(SEARCH_BEAN[SEARCH_BEAN.length - 1])){
+						index++;
+						
+						if(index >= start && index <= end){
+							bean = new HashMap<String,String>();
+						} else {
+							//not in the window -- skip the whole searchBean
+							skipElement(reader);
+							
+							if(index > end && header.size() == HEADER_FIELDS){
+								break;
+							}
+							continue;
+						}
+					}
+					
+					path.add(name);
+					
+				} else if(event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA){
+					if(text != null){
+						text.append(reader.getText());
+					}
+					
+				} else if(event == XMLStreamConstants.END_ELEMENT){
+					String name = path.remove(path.size() - 1);
+					
+					if(text != null){
+						String value = TransformUtils.normalizeText(text.toString());
+						
+						if(bean != null){
+							bean.put(name, value);
+						} else {
+							header.put(name, Integer.valueOf(value));
+						}
+						
+						text = null;
+					} else if(bean != null && path.size() == SEARCH_BEAN.length - 1){
+						results.add(bean);
+						bean = null;
+						
+						if(index >= end && header.size() == HEADER_FIELDS){
+							break;
+						}
+					}
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new Cts2RuntimeException(e);
+		} finally {
+			try {
+				reader.close();
+			} catch (XMLStreamException e) {
+				//nothing left to do
+			}
+		}
+		
+		return new SearchResultWindow(results, new PageHeader(
+				getHeaderValue(header, COUNT),
+				getHeaderValue(header, PAGE_NUMBER),
+				getHeaderValue(header, PAGE_SIZE),
+				getHeaderValue(header, NUMBER_OF_PAGES),
+				getHeaderValue(header, NUMBER_OF_RESULTS_ON_PAGE)));
+	}
+	
+	private static boolean isHeaderField(List<String> path, String name){
+		return isPath(path, PAGE.length, PAGE) && 
+				(name.equals(COUNT) || 
+				 name.equals(PAGE_NUMBER) || 
+				 name.equals(PAGE_SIZE) || 
+				 name.equals(NUMBER_OF_PAGES) || 
+				 name.equals(NUMBER_OF_RESULTS_ON_PAGE));
+	}
+	
+	private static boolean isPath(List<String> path, int length, String[] expected){
+		if(path.size() != length){
+			return false;
+		}
+		
+		for(int i=0;i<length;i++){
+			if(! path.get(i).equals(expected[i])){
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static int getHeaderValue(Map<String,Integer> header, String name){
+		Integer value = header.get(name);
+		
+		return value != null ? value : 0;
+	}
+	
+	/**
+	 * Advance the reader to the end of the current element.
+	 *
+	 * @param reader the reader, positioned on a START_ELEMENT
+	 * @throws XMLStreamException the xML stream exception
+	 */
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while(depth > 0){
+			int event = reader.next();
+			if(event == XMLStreamConstants.START_ELEMENT){
+				depth++;
+			} else if(event == XMLStreamConstants.END_ELEMENT){
+				depth--;
+			}
+		}
+	}
+}
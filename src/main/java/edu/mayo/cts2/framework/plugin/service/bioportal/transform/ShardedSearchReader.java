@@ -0,0 +1,170 @@
+/*
+ * Copyright: (c) 2004-2011 Mayo Foundation for Medical Education and 
+ * Research (MFMER). All rights reserved. MAYO, MAYO CLINIC, and the
+ * triple-shield Mayo logo are trademarks and service marks of MFMER.
+ *
+ * Except as contained in the copyright notice above, or as used to identify 
+ * MFMER as the author of this software, the trade names, trademarks, service
+ * marks, or product names of the copyright holder shall not be used in
+ * advertising, promotion or otherwise in connection with this software without
+ * prior written authorization of the copyright holder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor;
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.SearchResultReader.SearchResultWindow;
+
+/**
+ * Merges the responses of a search that was split into shards of ontologies.
+ * 
+ * The merged order is the upstream rank within each shard, then shard order -- the
+ * best result of every shard comes before the second best of any, so no shard's
+ * results are pushed behind another's. Each shard's response must be its first page,
+ * holding at least 'end + 1' results.
+ * 
+ * Shards are read in order. The first result of a shard can't come before the first
+ * result of any earlier shard, so once 'end + 1' earlier shards have results, no
+ * later shard can reach the window and the outstanding ones are cancelled.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class ShardedSearchReader {
+	
+	private SearchResultReader searchResultReader;
+	
+	/**
+	 * Instantiates a new sharded search reader.
+	 *
+	 * @param searchResultReader the reader for each shard's response
+	 */
+	public ShardedSearchReader(SearchResultReader searchResultReader){
+		super();
+		this.searchResultReader = searchResultReader;
+	}
+	
+	/**
+	 * The merged searchBeans of one window of a sharded search.
+	 */
+	public static class MergedWindow {
+		
+		private List<Map<String,String>> results;
+		
+		private boolean atEnd;
+		
+		private int cancelledShards;
+
+		private MergedWindow(List<Map<String, String>> results, boolean atEnd, int cancelledShards) {
+			super();
+			this.results = results;
+			this.atEnd = atEnd;
+			this.cancelledShards = cancelledShards;
+		}
+
+		public List<Map<String, String>> getResults() {
+			return results;
+		}
+
+		public boolean isAtEnd() {
+			return atEnd;
+		}
+
+		public int getCancelledShards() {
+			return cancelledShards;
+		}
+	}
+	
+	/**
+	 * Read the merged searchBeans from start to end (inclusive, zero-based).
+	 *
+	 * @param shards the shard responses, in shard order
+	 * @param start the start
+	 * @param end the end
+	 * @param executor the executor the shards were submitted to
+	 * @return the merged window
+	 */
+	public MergedWindow read(List<Future<String>> shards, int start, int end, ParallelExecutor executor){
+		List<List<Map<String,String>>> ranked = new ArrayList<List<Map<String,String>>>();
+		
+		int totalCount = 0;
+		int shardsWithResults = 0;
+		int shard = 0;
+		
+		try {
+			for(; shard < shards.size() && shardsWithResults <= end; shard++){
+				String xml = executor.await(shards.get(shard));
+				
+				SearchResultWindow window = this.searchResultReader.read(xml, 0, end);
+				
+				ranked.add(window.getResults());
+				
+				if(! window.getResults().isEmpty()){
+					shardsWithResults++;
+				}
+				
+				totalCount += window.getPageHeader().getTotalCount();
+			}
+		} finally {
+			//the window is filled (or a shard failed) -- nothing else is needed. A shard that
+			//is already running is left to finish, as an interrupt could land in a cache write.
+			for(int i = shard; i < shards.size(); i++){
+				shards.get(i).cancel(false);
+			}
+		}
+		
+		List<Map<String,String>> merged = merge(ranked, end + 1);
+		
+		List<Map<String,String>> results = new ArrayList<Map<String,String>>(
+				merged.subList(Math.min(start, merged.size()), merged.size()));
+		
+		boolean atEnd = shard == shards.size() && totalCount <= end + 1;
+		
+		return new MergedWindow(results, atEnd, shards.size() - shard);
+	}
+	
+	/**
+	 * Interleave the shards by rank, then by shard order.
+	 *
+	 * @param ranked the results of each shard, in rank order
+	 * @param max the most results to merge
+	 * @return the merged results
+	 */
+	private static List<Map<String,String>> merge(List<List<Map<String,String>>> ranked, int max){
+		List<Map<String,String>> merged = new ArrayList<Map<String,String>>();
+		
+		for(int rank = 0; merged.size() < max; rank++){
+			boolean found = false;
+			
+			for(int i = 0; i < ranked.size() && merged.size() < max; i++){
+				List<Map<String,String>> results = ranked.get(i);
+				
+				if(rank < results.size()){
+					merged.add(results.get(rank));
+					found = true;
+				}
+			}
+			
+			if(! found){
+				break;
+			}
+		}
+		
+		return merged;
+	}
+}
@@ -47,11 +47,12 @@ import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
  */
 public class TransformUtils {
 
-	private static final String COUNT = "success.data.page.numResultsTotal";
-	private static final String PAGE_NUMBER = "success.data.page.pageNum";
-	private static final String PAGE_SIZE = "success.data.page.pageSize";
-	private static final String NUMBER_OF_PAGES = "success.data.page.numPages";
-	private static final String NUMBER_OF_RESULTS_ON_PAGE = "success.data.page.numResultsPage";
+	private static final String PAGE = "success.data.page";
+	private static final String COUNT = "numResultsTotal";
+	private static final String PAGE_NUMBER = "pageNum";
+	private static final String PAGE_SIZE = "pageSize";
+	private static final String NUMBER_OF_PAGES = "numPages";
+	private static final String NUMBER_OF_RESULTS_ON_PAGE = "numResultsPage";
 
 	/**
 	 * Instantiates a new transform utils.
@@ -104,14 +105,65 @@ public class TransformUtils {
 	}
 
 	/**
-	 * Gets the total count.
+	 * Reads the page header of a page response in one pass over the 'page' element.
+	 *
+	 * @param document the parsed response
+	 * @return the page header
+	 */
+	public static PageHeader getPageHeader(Node document) {
+		Node page = TransformUtils.getNamedChildWithPath(document, PAGE);
+		
+		int totalCount = 0;
+		int pageNumber = 0;
+		int pageSize = 0;
+		int numberOfPages = 0;
+		int numberOfResultsOnPage = 0;
+		
+		NodeList nodeList = page.getChildNodes();
+		for (int i = 0; i < nodeList.getLength(); i++) {
+			Node childNode = nodeList.item(i);
+			String name = childNode.getNodeName();
+			
+			if(name.equals(COUNT)){
+				totalCount = Integer.valueOf(getNodeText(childNode));
+			} else if(name.equals(PAGE_NUMBER)){
+				pageNumber = Integer.valueOf(getNodeText(childNode));
+			} else if(name.equals(PAGE_SIZE)){
+				pageSize = Integer.valueOf(getNodeText(childNode));
+			} else if(name.equals(NUMBER_OF_PAGES)){
+				numberOfPages = Integer.valueOf(getNodeText(childNode));
+			} else if(name.equals(NUMBER_OF_RESULTS_ON_PAGE)){
+				numberOfResultsOnPage = Integer.valueOf(getNodeText(childNode));
+			}
+		}
+		
+		return new PageHeader(
+				totalCount, 
+				pageNumber, 
+				pageSize, 
+				numberOfPages, 
+				numberOfResultsOnPage);
+	}
+	
+	/**
+	 * Gets the page header.
+	 *
+	 * @param xml the xml
+	 * @return the page header
+	 */
+	public static PageHeader getPageHeader(String xml) {
+		return getPageHeader(BioportalRestUtils.getDocument(xml));
+	}
+
+	/**
+	 * Gets the total count. Use {@link #getPageHeader(String)} when more
+	 * than one header value is needed.
 	 *
 	 * @param xml the xml
 	 * @return the total count
 	 */
 	public static int getTotalCount(String xml) {
-		return Integer.valueOf(TransformUtils.getNamedChildTextWithPath(
-				BioportalRestUtils.getDocument(xml), COUNT));
+		return getPageHeader(xml).getTotalCount();
 	}
 	
 	/**
@@ -121,8 +173,7 @@ public class TransformUtils {
 	 * @return the page number
 	 */
 	public static int getPageNumber(String xml) {
-		return Integer.valueOf(TransformUtils.getNamedChildTextWithPath(
-				BioportalRestUtils.getDocument(xml), PAGE_NUMBER));
+		return getPageHeader(xml).getPageNumber();
 	}
 	
 	/**
@@ -132,8 +183,7 @@ public class TransformUtils {
 	 * @return the page size
 	 */
 	public static int getPageSize(String xml) {
-		return Integer.valueOf(TransformUtils.getNamedChildTextWithPath(
-				BioportalRestUtils.getDocument(xml), PAGE_SIZE));
+		return getPageHeader(xml).getPageSize();
 	}
 	
 
@@ -144,13 +194,11 @@ public class TransformUtils {
 	 * @return the number of pages
 	 */
 	public static int getNumberOfPages(String xml) {
-		return Integer.valueOf(TransformUtils.getNamedChildTextWithPath(
-				BioportalRestUtils.getDocument(xml), NUMBER_OF_PAGES));
+		return getPageHeader(xml).getNumberOfPages();
 	}
 	
 	public static int getNumberOfResultsOnPage(String xml) {
-		return Integer.valueOf(TransformUtils.getNamedChildTextWithPath(
-				BioportalRestUtils.getDocument(xml), NUMBER_OF_RESULTS_ON_PAGE));
+		return getPageHeader(xml).getNumberOfResultsOnPage();
 	}
 
 	/**
@@ -239,7 +287,17 @@ public class TransformUtils {
 	 * @return the node text
 	 */
 	public static String getNodeText(Node node){
-		return StringUtils.trim(node.getTextContent()).replaceAll("[\\n\\t]", "");
+		return normalizeText(node.getTextContent());
+	}
+	
+	/**
+	 * Trims the text and removes any newlines and tabs.
+	 *
+	 * @param text the text
+	 * @return the normalized text
+	 */
+	public static String normalizeText(String text){
+		return StringUtils.trim(text).replaceAll("[\\n\\t]", "");
 	}
 
 	/**
@@ -1,7 +1,13 @@
 package edu.mayo.cts2.framework.plugin.service.bioportal.util;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 
@@ -11,13 +17,53 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
 
 import edu.mayo.cts2.framework.model.core.ScopedEntityName;
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter;
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityIndex;
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityMap;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor;
 
 @Component
 public class EntityResolver {
 	
 	@Resource
 	private BioportalRestService bioportalRestService;
+	
+	@Resource
+	private IdentityConverter identityConverter;
+	
+	/**
+	 * The ways an entity name may be spelled as a BioPortal concept id.
+	 */
+	protected enum Spelling {
+		NAME {
+			String apply(ScopedEntityName name){
+				return name.getName();
+			}
+		},
+		UNDERSCORE_AS_COLON {
+			String apply(ScopedEntityName name){
+				return StringUtils.replace(name.getName(), "_", ":");
+			}
+		},
+		NAMESPACE_COLON_NAME {
+			String apply(ScopedEntityName name){
+				return name.getNamespace() + ":" + name.getName();
+			}
+		},
+		NAMESPACE_HASH_NAME {
+			String apply(ScopedEntityName name){
+				return name.getNamespace() + "#" + name.getName();
+			}
+		};
+		
+		abstract String apply(ScopedEntityName name);
+	}
+	
+	/**
+	 * The spelling that last found an entity, by code system.
+	 */
+	private Map<String,Spelling> preferredSpellings = new ConcurrentHashMap<String,Spelling>();
 
 	public String getEntityXml(ScopedEntityName name, String ontologyVersionId){
 		return this.getXmlForEntityName(
@@ -26,16 +72,17 @@ public class EntityResolver {
 	}
 	
 	public String getEntityXml(String uri, String ontologyVersionId){
-		return this.doGetEntityXml(ontologyVersionId, uri);
+		return this.doGetEntityXml(ontologyVersionId, uri, this.getOntologyId(ontologyVersionId));
 	}
 	
-	private String doGetEntityXml(String ontologyVersionId, String entityId){
+	private String doGetEntityXml(String ontologyVersionId, String entityId, String ontologyId){
 		String xml = null;
 		try {
 			xml = this.bioportalRestService
 					.getEntityByOntologyVersionIdAndEntityId(
 							ontologyVersionId,
-							entityId);
+							entityId,
+							ontologyId);
 		} catch (HttpClientErrorException e) {
 			if(e.getStatusCode().equals(HttpStatus.NOT_FOUND)){
 				//
@@ -47,38 +94,152 @@ public class EntityResolver {
 		return xml;
 	}
 	
+	/**
+	 * Find the entity by trying each spelling of its name. The spelling that last
+	 * worked for the code system is tried alone first -- if there is none, or it
+	 * misses, the remaining spellings are tried.
+	 *
+	 * @param name the name
+	 * @param ontologyVersionId the ontology version id
+	 * @return the xml, or null if no spelling is found
+	 */
 	protected String getXmlForEntityName(ScopedEntityName name, String ontologyVersionId){
-		List<String> tries = new ArrayList<String>();
-		tries.add(name.getName());
-		tries.add(StringUtils.replace(name.getName(), "_", ":"));
-		tries.add(name.getNamespace() + ":" +name.getName());
-		tries.add(name.getNamespace() + "#" +name.getName());
-				
-		for(String str : tries){
-			String xml = this.doGetEntityXml(ontologyVersionId, str);
+		String preferenceKey = this.getPreferenceKey(ontologyVersionId);
+		String ontologyId = this.getOntologyId(ontologyVersionId);
+		
+		String preferredId = null;
+		
+		Spelling preferred = this.preferredSpellings.get(preferenceKey);
+		if(preferred != null){
+			preferredId = preferred.apply(name);
+			
+			String xml = this.doGetEntityXml(ontologyVersionId, preferredId, ontologyId);
 			if(xml != null){
 				return xml;
 			}
 		}
-		return null;
-		/* If we need to do a search... hopefully this isn't needed.
-		ResolvedFilter filter = new ResolvedFilter();
-		filter.setMatchValue(name.getName());
-		filter.setMatchAlgorithmReference(StandardMatchAlgorithmReference.CONTAINS.getMatchAlgorithmReference());
 		
-		String searchXml = this.bioportalRestService.searchEntitiesByOntologyId(
-					ontologyId, 
-					filter, 
-					new Page());
-			
-		String uri = this.entityDescriptionTransform.getUriFromSearch(searchXml);
+		Map<String,Spelling> tries = new LinkedHashMap<String,Spelling>();
+		for(Spelling spelling : Spelling.values()){
+			String entityId = spelling.apply(name);
 			
-		String xml = this.bioportalRestService
-			.getEntityByOntologyVersionIdAndEntityId(
-					ontologyId,
-					uri);
+			//don't ask for the same id twice
+			if(! entityId.equals(preferredId) && ! tries.containsKey(entityId)){
+				tries.put(entityId, spelling);
+			}
+		}
 		
-		return xml;
-		*/
+		return this.getFirstFound(ontologyVersionId, ontologyId, preferenceKey, tries);
+	}
+	
+	/**
+	 * Gets the first spelling found, in spelling order. The spellings are asked for
+	 * at once, and those after a found one are dropped. On a thread of the pool they
+	 * would run inline anyway, so there they are asked for one at a time, stopping
+	 * at the first found.
+	 */
+	private String getFirstFound(
+			final String ontologyVersionId, 
+			final String ontologyId, 
+			String preferenceKey, 
+			Map<String,Spelling> tries){
+		ParallelExecutor executor = this.bioportalRestService.getParallelExecutor();
+		
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		
+		if(! executor.isPoolThread()){
+			for(final String entityId : tries.keySet()){
+				futures.add(executor.submit(new Callable<String>(){
+
+					public String call() {
+						return doGetEntityXml(ontologyVersionId, entityId, ontologyId);
+					}
+				}));
+			}
+		}
+		
+		RuntimeException failure = null;
+		try {
+			int i = 0;
+			for(Entry<String,Spelling> entry : tries.entrySet()){
+				String xml;
+				try {
+					if(futures.isEmpty()){
+						xml = this.doGetEntityXml(ontologyVersionId, entry.getKey(), ontologyId);
+					} else {
+						xml = executor.await(futures.get(i));
+					}
+				} catch (RuntimeException e) {
+					if(failure == null){
+						failure = e;
+					}
+					continue;
+				} finally {
+					i++;
+				}
+				
+				if(xml != null){
+					this.preferredSpellings.put(preferenceKey, entry.getValue());
+					
+					return xml;
+				}
+			}
+		} finally {
+			//spellings not yet started are dropped -- running ones are left to finish,
+			//as an interrupt could land in a cache write
+			for(Future<String> future : futures){
+				future.cancel(false);
+			}
+		}
+		
+		if(failure != null){
+			throw failure;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Spellings are learned per code system, so all of its versions share them.
+	 * This only reads the identity index -- it never goes upstream.
+	 *
+	 * @param ontologyVersionId the ontology version id
+	 * @return the preference key
+	 */
+	private String getPreferenceKey(String ontologyVersionId){
+		String codeSystemName = this.getCodeSystemName(ontologyVersionId);
+		
+		return codeSystemName != null ? codeSystemName : ontologyVersionId;
+	}
+	
+	/**
+	 * Gets the ontology id of a version, so a 404 can be dropped when the
+	 * ontology changes. This only reads the identity index.
+	 *
+	 * @param ontologyVersionId the ontology version id
+	 * @return the ontology id, or null if the version is not indexed yet
+	 */
+	private String getOntologyId(String ontologyVersionId){
+		String codeSystemName = this.getCodeSystemName(ontologyVersionId);
+		if(codeSystemName == null){
+			return null;
+		}
+		
+		return this.identityConverter.getIdentityIndex().get(IdentityMap.CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, codeSystemName);
+	}
+	
+	private String getCodeSystemName(String ontologyVersionId){
+		IdentityIndex index = this.identityConverter.getIdentityIndex();
+		
+		String codeSystemVersionName = index.get(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, ontologyVersionId);
+		if(codeSystemVersionName == null){
+			return null;
+		}
+		
+		return index.get(IdentityMap.VERSION_NAME_TO_NAME, codeSystemVersionName);
+	}
+	
+	protected Spelling getPreferredSpelling(String ontologyVersionId){
+		return this.preferredSpellings.get(this.getPreferenceKey(ontologyVersionId));
 	}
 }
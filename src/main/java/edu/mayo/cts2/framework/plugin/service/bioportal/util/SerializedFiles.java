@@ -0,0 +1,126 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads and writes serialized objects kept on disk.
+ *
+ * @author <a href="mailto:kevin.peterson@mayo.edu">Kevin Peterson</a>
+ */
+public class SerializedFiles {
+	
+	/**
+	 * Reads an object, resolving its classes through the given loader --
+	 * under OSGi the default lookup doesn't see the plugin's classes.
+	 *
+	 * @param file the file
+	 * @param classLoader the class loader
+	 * @return the object
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException the class not found exception
+	 */
+	public static Object read(File file, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return readObject(in, classLoader);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+	
+	/**
+	 * Reads an object from bytes written by {@link #toBytes(Serializable)}.
+	 *
+	 * @param bytes the bytes
+	 * @param classLoader the class loader
+	 * @return the object
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException the class not found exception
+	 */
+	public static Object fromBytes(byte[] bytes, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+		return readObject(new ByteArrayInputStream(bytes), classLoader);
+	}
+	
+	/**
+	 * Serializes an object to bytes.
+	 *
+	 * @param object the object
+	 * @return the bytes
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static byte[] toBytes(Serializable object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		try {
+			out.writeObject(object);
+		} finally {
+			out.close();
+		}
+		
+		return bytes.toByteArray();
+	}
+	
+	private static Object readObject(InputStream in, final ClassLoader classLoader) throws IOException, ClassNotFoundException {
+		ObjectInputStream objectIn = new ObjectInputStream(in){
+
+			@Override
+			protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+				try {
+					return Class.forName(desc.getName(), false, classLoader);
+				} catch (ClassNotFoundException e) {
+					//primitives and their arrays
+					return super.resolveClass(desc);
+				}
+			}
+		};
+		
+		return objectIn.readObject();
+	}
+	
+	/**
+	 * Writes an object. It is written to a temporary file first and renamed over
+	 * the target, so a crash mid-write leaves the previous copy in place.
+	 *
+	 * @param file the file
+	 * @param object the object
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void write(File file, Serializable object) throws IOException {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		
+		File parent = file.getAbsoluteFile().getParentFile();
+		if(parent != null && ! parent.exists() && ! parent.mkdirs()){
+			throw new IOException("Could not create: " + parent.getPath());
+		}
+		
+		ObjectOutputStream out = new ObjectOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		try {
+			out.writeObject(object);
+		} finally {
+			out.close();
+		}
+		
+		if(! tmpFile.renameTo(file)){
+			//the rename can't replace an existing file on every platform
+			if(! file.delete() || ! tmpFile.renameTo(file)){
+				throw new IOException("Could not replace: " + file.getPath());
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.StubBioportal
+
+/**
+ * Times the IdentityConverter bootstrap against a stub BioPortal
+ * that answers every call after a fixed latency.
+ */
+class IdentityBootstrapTestIT {
+
+	def ontologies = 60
+
+	def latency = 30
+
+	def stub = new StubBioportal({ exchange ->
+		Thread.sleep(latency)
+		respond(exchange.requestURI.path)
+	})
+
+	def cacheDirs = []
+
+	def services = []
+
+	def bean(ontologyId){
+		def versionId = 40000 + ontologyId
+		"""<ontologyBean><id>${versionId}</id><ontologyId>${ontologyId}</ontologyId>
+			<abbreviation>ONT${ontologyId}</abbreviation><displayLabel>Ontology ${ontologyId}</displayLabel>
+			<versionNumber>1.0</versionNumber><format>OWL</format><isView>false</isView></ontologyBean>"""
+	}
+
+	def list(beans){
+		"<success><data><list>${beans.join('')}</list></data></success>"
+	}
+
+	def respond(path){
+		if(path.endsWith("/ontologies")){
+			return list((1..ontologies).collect { bean(it) })
+		}
+		if(path.endsWith("/views")){
+			return list([])
+		}
+		if(path.contains("/ontologies/versions/")){
+			return list([bean(path.tokenize("/").last() as int)])
+		}
+		if(path.contains("/virtual/ontology/")){
+			return "<success><data>${bean(path.tokenize("/").last() as int)}</data></success>"
+		}
+		if(path.contains("/ontologies/")){
+			return "<success><data>${bean((path.tokenize("/").last() as int) - 40000)}</data></success>"
+		}
+		"<success/>"
+	}
+
+	@Before
+	void startStubServer(){
+		stub.start()
+	}
+
+	@After
+	void stopStubServer(){
+		services.each { it.destroy() }
+		stub.stop()
+		cacheDirs.each { it.deleteDir() }
+	}
+
+	def bootstrap(parallelism){
+		def dir = File.createTempFile("bioportal-cache", "")
+		dir.delete()
+		cacheDirs << dir
+
+		def service = new BioportalRestService(apiKey: "test", cachePath: dir.path)
+		services << service
+		service.upstreamParallelism = parallelism
+
+		service.clientHttpRequestFactory = stub.requestFactory()
+
+		service.afterPropertiesSet()
+
+		def converter = new IdentityConverter()
+		converter.@bioportalRestService = service
+
+		def start = System.currentTimeMillis()
+		converter.afterPropertiesSet()
+		def elapsed = System.currentTimeMillis() - start
+
+		assertEquals "ONT7", converter.ontologyIdToCodeSystemName("7")
+		assertEquals "40007", converter.codeSystemVersionNameToOntologyVersionId("ONT7_1-0_OWL")
+
+		elapsed
+	}
+
+	@Test
+	void testParallelBootstrapWallTime(){
+		def serial = bootstrap(1)
+		def parallel = bootstrap(8)
+
+		println "${ontologies} ontologies at ${latency} ms/call: serial ${serial} ms, parallelism 8: ${parallel} ms"
+
+		assertTrue parallel < serial / 2
+	}
+}
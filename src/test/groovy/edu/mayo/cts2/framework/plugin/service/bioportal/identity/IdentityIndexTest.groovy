@@ -0,0 +1,137 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import org.junit.Test
+
+class IdentityIndexTest {
+
+	@Test
+	void testWithLeavesOldIndexUnchanged(){
+		def updates = new IdentityIndex.Updates()
+			.put(IdentityMap.CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, "BRO", "1104")
+			.put(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, "1104", "BRO")
+
+		def index = IdentityIndex.EMPTY.with(updates)
+
+		assertEquals "1104", index.get(IdentityMap.CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, "BRO")
+		assertEquals "BRO", index.get(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, "1104")
+		assertFalse IdentityIndex.EMPTY.containsKey(IdentityMap.CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, "BRO")
+	}
+
+	@Test
+	void testUntouchedMapsAreShared(){
+		def index = IdentityIndex.EMPTY.with(
+			new IdentityIndex.Updates().put(IdentityMap.CODE_SYSTEM_NAME_TO_ABOUT, "BRO", "http://bro"))
+
+		assertSame IdentityIndex.EMPTY.getMap(IdentityMap.VERSION_NAME_TO_NAME), 
+			index.getMap(IdentityMap.VERSION_NAME_TO_NAME)
+		assertSame index, index.with(new IdentityIndex.Updates())
+	}
+
+	@Test
+	void testLaterPutWins(){
+		def index = IdentityIndex.EMPTY.with(new IdentityIndex.Updates()
+			.put(IdentityMap.VERSION_NAME_TO_NAME, "BRO_1", "old")
+			.put(IdentityMap.VERSION_NAME_TO_NAME, "BRO_1", "new"))
+
+		assertEquals "new", index.get(IdentityMap.VERSION_NAME_TO_NAME, "BRO_1")
+	}
+
+	@Test
+	void testBuilderAppliesManyBatchesToOneCopy(){
+		def builder = IdentityIndex.EMPTY.builder()
+		100.times {
+			builder.apply(new IdentityIndex.Updates().put(IdentityMap.VERSION_NAME_TO_NAME, "BRO_" + it, "BRO"))
+		}
+		def index = builder.build()
+
+		assertEquals 100, index.getMap(IdentityMap.VERSION_NAME_TO_NAME).size()
+		assertTrue IdentityIndex.EMPTY.getMap(IdentityMap.VERSION_NAME_TO_NAME).isEmpty()
+		assertSame IdentityIndex.EMPTY.getMap(IdentityMap.CODE_SYSTEM_NAME_TO_ABOUT),
+			index.getMap(IdentityMap.CODE_SYSTEM_NAME_TO_ABOUT)
+		assertSame index, index.builder().build()
+	}
+
+	@Test
+	void testUpdatesPutAll(){
+		def batch = new IdentityIndex.Updates()
+			.put(IdentityMap.VERSION_NAME_TO_NAME, "BRO_1", "old")
+		batch.putAll(new IdentityIndex.Updates()
+			.put(IdentityMap.VERSION_NAME_TO_NAME, "BRO_1", "new")
+			.put(IdentityMap.VERSION_NAME_TO_NAME, "GO_1", "GO"))
+
+		def index = IdentityIndex.EMPTY.with(batch)
+
+		assertEquals "new", index.get(IdentityMap.VERSION_NAME_TO_NAME, "BRO_1")
+		assertEquals "GO", index.get(IdentityMap.VERSION_NAME_TO_NAME, "GO_1")
+	}
+
+	@Test(expected=UnsupportedOperationException)
+	void testMapsAreReadOnly(){
+		IdentityIndex.EMPTY.getMap(IdentityMap.VERSION_NAME_TO_NAME).put("a", "b")
+	}
+
+	@Test
+	void testMapsByKey(){
+		def index = IdentityIndex.EMPTY.with(
+			new IdentityIndex.Updates().put(IdentityMap.VERSION_NAME_TO_NAME, "BRO_1", "BRO"))
+
+		def maps = index.mapsByKey
+
+		assertEquals IdentityMap.values().length, maps.size()
+		assertEquals(["BRO_1": "BRO"], maps.versionNameToName)
+	}
+
+	@Test
+	void testConcurrentUpdatesAreNeitherLostNorTorn(){
+		def converter = new IdentityConverter()
+		def writers = 8
+		def batches = 200
+		def done = new CountDownLatch(writers)
+		def torn = []
+
+		def executor = Executors.newFixedThreadPool(writers + 2)
+
+		def writes = (1..writers).collect { writer ->
+			executor.submit({
+				batches.times { batch ->
+					def id = "${writer}-${batch}".toString()
+
+					converter.update(new IdentityIndex.Updates()
+						.put(IdentityMap.CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, "CS" + id, id)
+						.put(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME, id, "CS" + id))
+				}
+				done.countDown()
+			} as Callable)
+		}
+
+		//a batch is visible in both maps or in neither
+		def reads = (1..2).collect {
+			executor.submit({
+				while(done.count > 0){
+					def index = converter.identityIndex
+					index.getMap(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME).each { id, name ->
+						if(index.get(IdentityMap.CODE_SYSTEM_NAME_TO_ONTOLOGY_ID, name) != id){
+							synchronized(torn){ torn << id }
+						}
+					}
+				}
+			} as Callable)
+		}
+
+		(writes + reads).each { it.get(30, TimeUnit.SECONDS) }
+		executor.shutdown()
+
+		assertEquals([], torn)
+
+		def index = converter.identityIndex
+		assertEquals writers * batches, index.getMap(IdentityMap.ONTOLOGY_ID_TO_CODE_SYSTEM_NAME).size()
+		assertEquals writers * batches, index.getMap(IdentityMap.CODE_SYSTEM_NAME_TO_ONTOLOGY_ID).size()
+	}
+}
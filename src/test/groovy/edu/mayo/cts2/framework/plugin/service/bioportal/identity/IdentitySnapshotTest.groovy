@@ -0,0 +1,76 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Test
+
+class IdentitySnapshotTest {
+
+	def file = File.createTempFile("identity", ".snapshot")
+
+	@After
+	void tearDown(){
+		file.delete()
+	}
+
+	@Test
+	void testSaveAndLoad(){
+		def maps = [
+			codeSystemNameToOntologyId: ["BRO": "1104"],
+			ontologyIdToCodeSystemName: ["1104": "BRO"]
+		]
+
+		new IdentitySnapshot(maps).save(file)
+
+		def snapshot = IdentitySnapshot.load(file)
+		assertNotNull snapshot
+		assertEquals IdentitySnapshot.FORMAT_VERSION, snapshot.formatVersion
+
+		assertEquals "1104", snapshot.getMap("codeSystemNameToOntologyId").BRO
+		assertEquals "BRO", snapshot.getMap("ontologyIdToCodeSystemName")."1104"
+		assertNull snapshot.getMap("notInSnapshot")
+	}
+
+	@Test
+	void testSnapshotIsACopy(){
+		def map = ["BRO": "1104"]
+		def snapshot = new IdentitySnapshot([codeSystemNameToOntologyId: map])
+
+		map.put("GO", "1070")
+
+		assertEquals 1, snapshot.getMap("codeSystemNameToOntologyId").size()
+	}
+
+	@Test
+	void testLoadMissingFile(){
+		file.delete()
+
+		assertNull IdentitySnapshot.load(file)
+	}
+
+	@Test
+	void testLoadCorruptFile(){
+		file.text = "not a snapshot"
+
+		assertNull IdentitySnapshot.load(file)
+	}
+
+	@Test
+	void testLoadOtherFormatVersion(){
+		def snapshot = new IdentitySnapshot([:])
+		snapshot.@formatVersion = IdentitySnapshot.FORMAT_VERSION + 1
+		snapshot.save(file)
+
+		assertNull IdentitySnapshot.load(file)
+	}
+
+	@Test
+	void testSaveReplacesPreviousSnapshot(){
+		new IdentitySnapshot([codeSystemNameToOntologyId: ["BRO": "1104"]]).save(file)
+		new IdentitySnapshot([codeSystemNameToOntologyId: ["GO": "1070"]]).save(file)
+
+		assertEquals(["GO": "1070"], IdentitySnapshot.load(file).getMap("codeSystemNameToOntologyId"))
+		assertFalse new File(file.path + ".tmp").exists()
+	}
+}
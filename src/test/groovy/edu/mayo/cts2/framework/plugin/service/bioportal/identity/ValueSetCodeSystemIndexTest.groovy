@@ -0,0 +1,130 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import static org.junit.Assert.*
+
+import org.junit.Before
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService
+
+class ValueSetCodeSystemIndexTest {
+
+	def viewsCalls = 0
+
+	def forcedViewsCalls = 0
+
+	def namesBuilt = []
+
+	def views = """<success><data><list>
+		<ontologyBean><ontologyId>1</ontologyId><abbreviation>VS1</abbreviation>
+			<viewOnOntologyVersionId><int>100</int><int>200</int></viewOnOntologyVersionId></ontologyBean>
+		<ontologyBean><ontologyId>2</ontologyId><abbreviation>VS2</abbreviation>
+			<viewOnOntologyVersionId><int>200</int></viewOnOntologyVersionId></ontologyBean>
+		<ontologyBean><ontologyId>3</ontologyId><abbreviation>BROKEN</abbreviation>
+			<viewOnOntologyVersionId><int>999</int></viewOnOntologyVersionId></ontologyBean>
+		</list></data></success>"""
+
+	def index = new ValueSetCodeSystemIndex()
+
+	@Before
+	void setUp(){
+		index.bioportalRestService = [
+			getLatestViews: { boolean force -> viewsCalls++; if(force){ forcedViewsCalls++ }; views }
+		] as BioportalRestService
+
+		index.identityConverter = [
+			buildName: { node -> def name = node.getElementsByTagName("abbreviation").item(0).textContent; namesBuilt << name; name },
+			ontologyVersionIdToCodeSystemVersionName: { String id ->
+				if(id == "999"){
+					throw new IllegalStateException()
+				}
+				["100": "CSA_1", "200": "CSB_2"][id]
+			},
+			codeSystemVersionNameCodeSystemName: { String name -> ["CSA_1": "CSA", "CSB_2": "CSB"][name] }
+		] as IdentityConverter
+	}
+
+	@Test
+	void testCodeSystemsOfValueSet(){
+		assertEquals(["CSA", "CSB"] as Set, index.getCodeSystemsOfValueSet("VS1"))
+		assertEquals(["CSB"] as Set, index.getCodeSystemsOfValueSet("VS2"))
+	}
+
+	@Test
+	void testValueSetsOfCodeSystem(){
+		assertEquals(["VS1", "VS2"] as Set, index.getValueSetsOfCodeSystem("CSB"))
+		assertEquals(["VS1"] as Set, index.getValueSetsOfCodeSystem("CSA"))
+		assertEquals([] as Set, index.getValueSetsOfCodeSystem("NONE"))
+	}
+
+	@Test
+	void testBrokenViewIsSkipped(){
+		assertEquals([] as Set, index.getCodeSystemsOfValueSet("BROKEN"))
+	}
+
+	@Test
+	void testBuiltOnFirstUse(){
+		index.afterPropertiesSet()
+		assertEquals 0, viewsCalls
+
+		index.getCodeSystemsOfValueSet("VS1")
+		index.getCodeSystemsOfValueSet("VS2")
+		assertEquals 1, viewsCalls
+	}
+
+	@Test
+	void testOnlyChangedViewsAreIndexedAgain(){
+		index.getCodeSystemsOfValueSet("VS1")
+		namesBuilt.clear()
+
+		views = views.replace("<int>100</int>", "")
+		index.onCodeSystemsChangeEvent(["1"])
+		assertEquals 1, viewsCalls
+
+		assertEquals(["CSB"] as Set, index.getCodeSystemsOfValueSet("VS1"))
+		assertEquals(["VS1", "VS2"] as Set, index.getValueSetsOfCodeSystem("CSB"))
+		assertEquals 2, viewsCalls
+		assertEquals 1, forcedViewsCalls
+		//VS2 was kept, BROKEN was never indexed
+		assertEquals(["VS1", "BROKEN"], namesBuilt)
+	}
+
+	@Test
+	void testNewViewIsIndexed(){
+		index.getCodeSystemsOfValueSet("VS1")
+
+		views = views.replace("</list>", """<ontologyBean><ontologyId>4</ontologyId><abbreviation>VS4</abbreviation>
+			<viewOnOntologyVersionId><int>100</int></viewOnOntologyVersionId></ontologyBean></list>""")
+		index.onCodeSystemsChangeEvent(["4"])
+
+		assertEquals(["CSA"] as Set, index.getCodeSystemsOfValueSet("VS4"))
+	}
+
+	@Test
+	void testChangedViewsAreFoundWithoutAnEvent(){
+		views = views.replace("<ontologyId>1</ontologyId>", "<ontologyId>1</ontologyId><id>11</id>")
+		index.checkInterval = 0
+
+		assertEquals(["CSA", "CSB"] as Set, index.getCodeSystemsOfValueSet("VS1"))
+		namesBuilt.clear()
+
+		views = views.replace("<id>11</id>", "<id>12</id>").replace("<int>100</int>", "")
+
+		assertEquals(["CSB"] as Set, index.getCodeSystemsOfValueSet("VS1"))
+		assertEquals([] as Set, index.getValueSetsOfCodeSystem("CSA"))
+		assertEquals 0, forcedViewsCalls
+		//VS2 was kept, BROKEN was never indexed
+		assertEquals(["VS1", "BROKEN"], namesBuilt)
+	}
+
+	@Test
+	void testUnchangedViewsAreNotIndexedAgain(){
+		index.checkInterval = 0
+
+		index.getCodeSystemsOfValueSet("VS1")
+		index.getCodeSystemsOfValueSet("VS1")
+
+		assertEquals 2, viewsCalls
+		assertEquals(["VS1", "VS2", "BROKEN"], namesBuilt)
+	}
+}
@@ -0,0 +1,157 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.identity;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import org.junit.After
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor
+
+class VersionGapFillerTest {
+
+	def executor = new ParallelExecutor(4, "test-gap-fill")
+
+	def loaded = new ConcurrentHashMap()
+
+	def loads = Collections.synchronizedList([])
+
+	def publishes = Collections.synchronizedList([])
+
+	def loader = [
+		isLoaded: { id -> loaded.containsKey(id) },
+		load: { id, updates ->
+			loads << id
+			Thread.sleep(5)
+			if(id == "13"){
+				throw new IllegalStateException()
+			}
+			updates.put(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME, id, id)
+		},
+		publish: { updates ->
+			publishes << updates
+			loaded.putAll(IdentityIndex.EMPTY.with(updates).getMap(IdentityMap.ONTOLOGY_VERSION_ID_TO_NAME))
+		}
+	] as VersionGapFiller.VersionLoader
+
+	def filler = new VersionGapFiller(loader, 4)
+
+	@After
+	void tearDown(){
+		executor.shutdown()
+	}
+
+	def awaitAll(){
+		filler.pendingIds.each { filler.await(it, 5000) }
+	}
+
+	@Test
+	void testFillsOnlyAboveTheSeed(){
+		filler.seed(10)
+
+		assertEquals 5, filler.fillTo(15, executor)
+		awaitAll()
+
+		assertEquals(["11", "12", "14", "15"] as Set, loaded.keySet())
+		assertEquals 15, filler.highestScheduledId
+	}
+
+	@Test
+	void testIdsAreQueuedOnce(){
+		filler.seed(0)
+
+		def threads = 8
+		def start = new CountDownLatch(1)
+		def pool = Executors.newFixedThreadPool(threads)
+		def queued = (1..threads).collect {
+			pool.submit({ start.await(); filler.fillTo(50, executor) } as Callable)
+		}
+		start.countDown()
+
+		assertEquals 50, queued.sum { it.get(5, TimeUnit.SECONDS) }
+		pool.shutdown()
+
+		awaitAll()
+
+		assertEquals 50, loads.size()
+		assertEquals 0, filler.fillTo(50, executor)
+	}
+
+	@Test
+	void testAlreadyLoadedIdsAreSkipped(){
+		loaded.put("2", "2")
+		filler.seed(0)
+
+		filler.fillTo(3, executor)
+		awaitAll()
+
+		assertEquals(["1", "3"] as Set, loads as Set)
+	}
+
+	@Test
+	void testEachBatchIsPublishedOnce(){
+		filler.seed(0)
+
+		filler.fillTo(10, executor)
+		awaitAll()
+
+		assertEquals 10, loaded.size()
+		assertEquals 3, publishes.size()
+	}
+
+	@Test
+	void testAwaitOneId(){
+		filler.seed(0)
+		filler.fillTo(20, executor)
+
+		filler.await(20, 5000)
+
+		assertTrue loaded.containsKey("20")
+		assertFalse filler.await(1000, 5000)
+	}
+
+	@Test
+	void testAwaitOnAnotherThreadIsBounded(){
+		def started = new CountDownLatch(1)
+		def release = new CountDownLatch(1)
+		def slow = new VersionGapFiller([
+			isLoaded: { id -> false },
+			load: { id, updates -> started.countDown(); release.await() },
+			publish: { updates -> }
+		] as VersionGapFiller.VersionLoader)
+		slow.seed(0)
+		slow.fillTo(1, executor)
+		assertTrue started.await(5, TimeUnit.SECONDS)
+
+		def begin = System.currentTimeMillis()
+		assertTrue slow.await(1, 50)
+		assertTrue System.currentTimeMillis() - begin < 2000
+
+		release.countDown()
+	}
+
+	@Test
+	void testAwaitFromPoolThreadDoesNotDeadlock(){
+		def single = new ParallelExecutor(1, "test-gap-fill-single")
+		def release = new CountDownLatch(1)
+		filler.seed(0)
+
+		//holds the only pool thread, then waits for an id queued behind it
+		def waiter = single.submit({
+			release.await()
+			filler.await(3, 5000)
+			loaded.containsKey("3")
+		} as Callable)
+
+		filler.fillTo(3, single)
+		release.countDown()
+
+		assertTrue waiter.get(5, TimeUnit.SECONDS)
+		single.shutdown()
+	}
+}
@@ -0,0 +1,165 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.profile.association
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.After
+import org.junit.Test
+
+import edu.mayo.cts2.framework.model.association.GraphNode
+import edu.mayo.cts2.framework.model.core.EntitySynopsis
+import edu.mayo.cts2.framework.model.core.PredicateReference
+import edu.mayo.cts2.framework.model.core.ScopedEntityName
+import edu.mayo.cts2.framework.model.core.StatementTarget
+import edu.mayo.cts2.framework.model.core.URIAndEntityName
+import edu.mayo.cts2.framework.plugin.service.bioportal.profile.association.AssociationGraphExpander.LevelListener
+import edu.mayo.cts2.framework.plugin.service.bioportal.profile.association.AssociationGraphExpander.NeighborReader
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor
+
+class AssociationGraphExpanderTest {
+
+	def executor = new ParallelExecutor(4, "test")
+
+	// A -> B, C; B -> D; C -> D, A; D -> E
+	def graph = [
+		A: ["B", "C"],
+		B: ["D"],
+		C: ["D", "A"],
+		D: ["E"],
+		E: []
+	]
+
+	def reads = Collections.synchronizedList([])
+
+	def inFlight = new AtomicInteger()
+
+	def maxInFlight = new AtomicInteger()
+
+	def reader = [
+		read: { ScopedEntityName entity ->
+			reads << entity.name
+			def now = inFlight.incrementAndGet()
+			synchronized(maxInFlight){
+				maxInFlight.set(Math.max(maxInFlight.get(), now))
+			}
+			try {
+				Thread.sleep(50)
+			} finally {
+				inFlight.decrementAndGet()
+			}
+			edges(entity.name)
+		}
+	] as NeighborReader
+
+	@After
+	void shutdown(){
+		executor.shutdown()
+	}
+
+	def edges(from){
+		graph[from].collect { to ->
+			def node = new GraphNode()
+			node.subject = new URIAndEntityName(name: from, namespace: "cs")
+			node.predicate = new PredicateReference(name: "SubClass")
+			node.target = new StatementTarget()
+			node.target.entity = new URIAndEntityName(name: to, namespace: "cs")
+			node.nodeEntity = new EntitySynopsis(name: to, namespace: "cs")
+			node
+		}
+	}
+
+	def focus(){
+		new ScopedEntityName(name: "A", namespace: "cs")
+	}
+
+	def expand(depth, maxNodes = 100, listener = null){
+		new AssociationGraphExpander(executor, maxNodes).expand(
+			focus(), edges("A"), depth, reader, listener)
+	}
+
+	@Test
+	void testDepthOne(){
+		def result = expand(1)
+
+		assertEquals(["B", "C"], result.entries.collect { it.nodeEntity.name })
+		assertTrue result.atEnd
+		assertTrue reads.isEmpty()
+	}
+
+	@Test
+	void testStableNumbering(){
+		def result = expand(3)
+
+		assertEquals(["A>B", "A>C", "B>D", "C>D", "C>A", "D>E"],
+			result.entries.collect { it.subject.name + ">" + it.nodeEntity.name })
+		assertEquals((0..5).collect { it as long }, result.entries.collect { it.nodeNumber })
+		assertEquals((1..6).collect { it as long }, result.entries.collect { it.nextNodeNumber })
+	}
+
+	@Test
+	void testVisitsEachNodeOnce(){
+		expand(5)
+
+		assertEquals(["B", "C", "D", "E"] as Set, reads as Set)
+		assertEquals 4, reads.size()
+	}
+
+	@Test
+	void testLevelsStreamed(){
+		def levels = []
+
+		expand(3, 100, [
+			onLevel: { depth, nodes -> levels << [depth, nodes.collect { it.nodeEntity.name }] }
+		] as LevelListener)
+
+		assertEquals([[1, ["B", "C"]], [2, ["D", "D", "A"]], [3, ["E"]]], levels)
+	}
+
+	@Test
+	void testLevelFetchedConcurrently(){
+		def start = System.currentTimeMillis()
+		expand(3)
+		def elapsed = System.currentTimeMillis() - start
+
+		//B and C together, then D -- two round trips, not three
+		assertEquals 2, maxInFlight.get()
+		assertTrue elapsed < 150
+	}
+
+	@Test
+	void testMaxNodes(){
+		def result = expand(5, 3)
+
+		assertEquals 3, result.entries.size()
+		assertFalse result.atEnd
+		assertEquals(["B", "C"] as Set, reads as Set)
+	}
+
+	@Test
+	void testDuplicateEdgesDropped(){
+		def first = edges("A") + edges("A")
+
+		def result = new AssociationGraphExpander(executor, 100).expand(
+			focus(), first, 1, reader, null)
+
+		assertEquals 2, result.entries.size()
+	}
+
+	@Test
+	void testFailedNodeSkipped(){
+		def failing = [
+			read: { ScopedEntityName entity ->
+				if(entity.name == "B"){
+					throw new RuntimeException("boom")
+				}
+				edges(entity.name)
+			}
+		] as NeighborReader
+
+		def result = new AssociationGraphExpander(executor, 100).expand(
+			focus(), edges("A"), 2, failing, null)
+
+		assertEquals(["B", "C", "D", "A"], result.entries.collect { it.nodeEntity.name })
+	}
+}
@@ -0,0 +1,103 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.profile.association
+
+import static org.junit.Assert.*
+
+import org.springframework.core.io.ClassPathResource
+import org.junit.Test
+
+import edu.mayo.cts2.framework.core.url.UrlConstructor
+import edu.mayo.cts2.framework.model.command.Page
+import edu.mayo.cts2.framework.model.command.ResolvedFilter
+import edu.mayo.cts2.framework.model.core.ScopedEntityName
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.RelationCache
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.AssociationTransform
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.EntityResolver
+import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference
+import edu.mayo.cts2.framework.service.meta.StandardModelAttributeReference
+
+class BioportalRestAssociationQueryServiceTest {
+
+	def xml = new ClassPathResource("bioportalXml/entity.xml").getInputStream().getText("UTF-8")
+
+	def fetches = 0
+
+	def relationCache = new RelationCache(RelationCache.DEFAULT_MAX_ENTRIES)
+
+	def service = new BioportalRestAssociationQueryService()
+
+	BioportalRestAssociationQueryServiceTest(){
+		def idConverter = [
+			codeSystemVersionNameToOntologyVersionId: { csvn -> "123" },
+			getCodeSystemAbout: { cs, defNs -> "http://about" },
+			codeSystemVersionNameToVersion: { csvn -> csvn }
+		] as IdentityConverter
+
+		def transform = new AssociationTransform()
+		transform.setUrlConstructor([
+			createEntityUrl: { cs, csv, sub -> "http://entity/uri" },
+			createCodeSystemUrl: { cs -> "http://test/webapp/codesystem/" + cs }
+		] as UrlConstructor)
+		transform.setIdentityConverter(idConverter)
+
+		service.@identityConverter = idConverter
+		service.@associationTransform = transform
+		service.@bioportalRestService = [
+			getRelationCache: { relationCache }
+		] as BioportalRestService
+		service.@entityResolver = [
+			getEntityXml: { ScopedEntityName name, versionId -> fetches++; xml }
+		] as EntityResolver
+	}
+
+	def children(start, max, filters = null){
+		service.doGetAssociationsOfEntity(
+			"ICD10", "ICD10_1", new ScopedEntityName(name: "O80-O84.9", namespace: "ICD10"),
+			"SubClass", filters, new Page(page: start / max as int, maxToReturn: max))
+	}
+
+	@Test
+	void testPages(){
+		def first = children(0, 2)
+		def second = children(2, 2)
+		def last = children(4, 2)
+
+		assertEquals(["O84", "O83"], first.entries.collect { it.name.name })
+		assertFalse first.atEnd
+		assertEquals(["O82", "O81"], second.entries.collect { it.name.name })
+		assertFalse second.atEnd
+		assertEquals(["O80"], last.entries.collect { it.name.name })
+		assertTrue last.atEnd
+	}
+
+	@Test
+	void testEntityReadOncePerVersion(){
+		children(0, 2)
+		children(2, 2)
+		children(4, 2)
+
+		assertEquals 1, fetches
+	}
+
+	@Test
+	void testExactlyFullPageIsAtEnd(){
+		def all = children(0, 5)
+
+		assertEquals 5, all.entries.size()
+		assertTrue all.atEnd
+	}
+
+	@Test
+	void testFiltered(){
+		def filter = new ResolvedFilter(
+			matchValue: "O82",
+			matchAlgorithmReference: StandardMatchAlgorithmReference.EXACT_MATCH.matchAlgorithmReference,
+			propertyReference: StandardModelAttributeReference.RESOURCE_NAME.propertyReference)
+
+		def result = children(0, 2, [filter] as Set)
+
+		assertEquals(["O82"], result.entries.collect { it.name.name })
+		assertTrue result.atEnd
+	}
+}
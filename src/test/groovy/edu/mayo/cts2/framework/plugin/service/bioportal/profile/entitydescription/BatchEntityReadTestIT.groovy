@@ -0,0 +1,84 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.profile.entitydescription
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Test
+
+import edu.mayo.cts2.framework.model.core.ScopedEntityName
+import edu.mayo.cts2.framework.model.entity.NamedEntityDescription
+import edu.mayo.cts2.framework.model.service.core.EntityNameOrURI
+import edu.mayo.cts2.framework.model.util.ModelUtils
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.EntityDescriptionTransform
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.EntityResolver
+import edu.mayo.cts2.framework.service.profile.entitydescription.name.EntityDescriptionReadId
+
+/**
+ * Compares the throughput of a batch read against looping over read, 
+ * with each upstream fetch taking a fixed latency.
+ */
+class BatchEntityReadTestIT {
+
+	static final int CODES = 200
+
+	static final long LATENCY = 20
+
+	def executor = new ParallelExecutor(8, "test")
+
+	def service = new BioportalRestEntityDescriptionReadService()
+
+	BatchEntityReadTestIT(){
+		service.@bioportalRestService = [
+			getParallelExecutor: { executor }
+		] as BioportalRestService
+
+		service.@identityConverter = [
+			codeSystemVersionNameCodeSystemName: { name -> Thread.sleep(1); "NCIt" },
+			codeSystemVersionNameToOntologyVersionId: { name -> Thread.sleep(1); "123" }
+		] as IdentityConverter
+
+		service.@entityResolver = [
+			getEntityXml: { id, versionId ->
+				Thread.sleep(LATENCY)
+				"<success>${id.name}</success>".toString()
+			}
+		] as EntityResolver
+
+		service.@entityDescriptionTransform = [
+			transformEntityDescription: { String xml, csName, csvName ->
+				new NamedEntityDescription(about: xml)
+			}
+		] as EntityDescriptionTransform
+	}
+
+	@After
+	void shutdown(){
+		executor.shutdown()
+	}
+
+	@Test
+	void testBatchThroughput(){
+		def names = (1..CODES).collect { new ScopedEntityName(namespace: "NCIt", name: "C" + it) }
+
+		def start = System.currentTimeMillis()
+		names.each {
+			assertNotNull service.read(
+				new EntityDescriptionReadId(it, ModelUtils.nameOrUriFromName("NCIt_1")), null)
+		}
+		def loop = System.currentTimeMillis() - start
+
+		start = System.currentTimeMillis()
+		def results = service.readAll("NCIt_1", names.collect { new EntityNameOrURI(entityName: it) })
+		def batch = System.currentTimeMillis() - start
+
+		assertTrue results.every { it.found }
+
+		println "read loop: ${CODES} codes in ${loop}ms (${(CODES * 1000 / Math.max(loop, 1)) as int}/s)"
+		println "readAll:   ${CODES} codes in ${batch}ms (${(CODES * 1000 / Math.max(batch, 1)) as int}/s)"
+
+		assertTrue batch < loop
+	}
+}
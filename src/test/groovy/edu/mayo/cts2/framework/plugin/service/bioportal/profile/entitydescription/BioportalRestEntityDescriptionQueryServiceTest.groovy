@@ -2,132 +2,129 @@ package edu.mayo.cts2.framework.plugin.service.bioportal.profile.entitydescripti
 
 import static org.junit.Assert.*
 
+import org.junit.After
 import org.junit.Test
 
 import edu.mayo.cts2.framework.model.command.Page;
+import edu.mayo.cts2.framework.model.directory.DirectoryResult
 import edu.mayo.cts2.framework.plugin.service.bioportal.profile.entitydescription.BioportalRestEntityDescriptionQueryService;
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.PagePlanner
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.CountedDirectoryResult
 
 class BioportalRestEntityDescriptionQueryServiceTest {
 	
-	def service = new BioportalRestEntityDescriptionQueryService()
+	def service = new BioportalRestEntityDescriptionQueryService(bioportalRestService: new BioportalRestService())
 	
-	@Test
-	void testGetPage(){
-		Page page = service.getPageForStartAndMax(0,10)
-		
-		assertEquals page.maxtoreturn, 10
-		assertEquals page.page, 0
-	}
+	def requested = []
 	
-	@Test
-	void testGetPageOverMax(){
-		Page page = service.getPageForStartAndMax(200,10)
-		
-		assertEquals page.maxtoreturn, 10
-		assertEquals page.page, 20
-	}
+	def reader = { Page page, int from, int to ->
+		synchronized(requested){
+			requested << page
+		}
+		def first = page.page * page.maxToReturn
+		def rows = (first..<first + page.maxToReturn).collect { it }
+		new DirectoryResult(PagePlanner.slice(rows, from, to), false)
+	} as PagePlanner.PageReader
 	
-	@Test
-	void testGetPageEquals(){
-		Page page = service.getPageForStartAndMax(10,10)
-		
-		assertEquals page.maxtoreturn, 10
-		assertEquals page.page, 1
-	}
+	//a listing of 25 rows whose pages carry the total count in their header
+	def countedReader = { Page page, int from, int to ->
+		synchronized(requested){
+			requested << page
+		}
+		def first = page.page * page.maxToReturn
+		def rows = (first..<Math.min(25, first + page.maxToReturn)).collect { it }
+		new CountedDirectoryResult(PagePlanner.slice(rows, from, to), first + page.maxToReturn >= 25, 25)
+	} as PagePlanner.PageReader
 	
-	@Test
-	void testGetPageOneUnder(){
-		Page page = service.getPageForStartAndMax(9,10)
-		
-		assertEquals page.maxtoreturn, 10
-		assertEquals page.page, 0
+	@After
+	void tearDown(){
+		service.bioportalRestService.parallelExecutor.shutdown()
 	}
 	
-	@Test
-	void testGetPageOptimized(){
-		Page page = service.getPageForStartAndMax(6,2)
-		
-		assertEquals page.maxtoreturn, 2
-		assertEquals page.page, 3
+	def rowsRequested(){
+		requested.sum { it.maxToReturn }
 	}
 	
 	@Test
-	void testGetPageOneOver(){
-		Page page = service.getPageForStartAndMax(11,10)
+	void testReadFirstWindow(){
+		def result = service.readWindow(0, 10, "test", reader)
 		
-		assertEquals page.maxtoreturn, 11
-		assertEquals page.page, 1
+		assertEquals((0..9).collect { it }, result.entries)
+		assertEquals 1, requested.size()
+		assertEquals 0, requested[0].page
+		assertEquals PagePlanner.DEFAULT_PAGE_SIZE, requested[0].maxToReturn
 	}
 	
 	@Test
-	void testCalculateTransformStartUnder(){
-		Page page = new Page(page:0,maxtoreturn:27)
-		def start = service.calculateTransformStart(page, 7)
+	void testReadAlignedWindow(){
+		def result = service.readWindow(200, 10, "test", reader)
 		
-		assertEquals 7, start
+		assertEquals((200..209).collect { it }, result.entries)
+		assertEquals 1, requested.size()
+		assertEquals 2, requested[0].page
+		assertEquals PagePlanner.DEFAULT_PAGE_SIZE, requested[0].maxToReturn
 	}
 	
 	@Test
-	void testCalculateTransformStartOverWithOnePage(){
-		Page page = new Page(page:1,maxtoreturn:30)
-		def start = service.calculateTransformStart(page, 37)
+	void testReadUnalignedWindow(){
+		def result = service.readWindow(11, 10, "test", reader)
 		
-		assertEquals 7, start
+		assertEquals((11..20).collect { it }, result.entries)
+		assertEquals 1, requested.size()
+		assertEquals 0, requested[0].page
 	}
 	
 	@Test
-	void testCalculateTransformStartOverWithTwoPages(){
-		Page page = new Page(page:10,maxtoreturn:30)
-		def start = service.calculateTransformStart(page, 320)
-		
-		assertEquals 20, start
+	void testDeepWindowIsOneAlignedPage(){
+		//this used to be one page of (start - page * max) + max rows, almost twice the window
+		def result = service.readWindow(1009, 10, "test", reader)
+		
+		assertEquals((1009..1018).collect { it }, result.entries)
+		assertEquals 1, requested.size()
+		assertEquals 10, requested[0].page
+		assertEquals PagePlanner.DEFAULT_PAGE_SIZE, rowsRequested()
 	}
 	
 	@Test
-	void testPageRoundTripOver(){
-		Page page = new Page(page:20,maxtoreturn:10)
+	void testWindowsOfDifferentSizesRequestTheSamePage(){
+		service.readWindow(0, 10, "test", reader)
+		service.readWindow(10, 25, "test", reader)
 		
-		def start = page.getStart()
-		def max = page.maxtoreturn
-		
-		def roundTripPage = service.getPageForStartAndMax(start,max)
-		
-		assertEquals page.page, roundTripPage.page
-		assertEquals page.maxtoreturn, roundTripPage.maxtoreturn
+		assertEquals 2, requested.size()
+		assertEquals requested[0].page, requested[1].page
+		assertEquals requested[0].maxToReturn, requested[1].maxToReturn
 	}
 	
 	@Test
-	void testPageRoundTripUnder(){
-		Page page = new Page(page:10,maxtoreturn:20)
-		
-		def start = page.getStart()
-		def max = page.maxtoreturn
-		
-		def roundTripPage = service.getPageForStartAndMax(start,max)
+	void testPageHeaderCountIsCached(){
+		service.readWindow(0, 10, "counted", countedReader)
 		
-		assertEquals page.page, roundTripPage.page
-		assertEquals page.maxtoreturn, roundTripPage.maxtoreturn
+		assertEquals 25, service.getCachedCount("counted")
 	}
 	
 	@Test
-	void testGetPageOneOverTransformStart(){
-		Page page = service.getPageForStartAndMax(11,10)
+	void testKnownCountTrimsWindow(){
+		service.readWindow(0, 10, "counted", countedReader)
+		requested.clear()
 		
-		assertEquals page.maxtoreturn, 11
-		assertEquals page.page, 1
+		def result = service.readWindow(20, 10, "counted", countedReader)
 		
-		def transformStart = service.calculateTransformStart(page, 11)
-		assertEquals 0, transformStart
+		assertEquals((20..24).collect { it }, result.entries)
+		assertTrue result.atEnd
+		assertEquals 1, requested.size()
+		assertEquals 0, requested[0].page
 	}
 	
 	@Test
-	void testGetPageOneOverTransformEnd(){
-		Page page = service.getPageForStartAndMax(11,10)
+	void testWindowPastKnownCountIsNotRequested(){
+		service.readWindow(0, 10, "counted", countedReader)
+		requested.clear()
 		
-		assertEquals page.maxtoreturn, 11
-		assertEquals page.page, 1
+		def result = service.readWindow(30, 10, "counted", countedReader)
 		
-		def transformEnd = service.calculateTransformEnd(page, 11, 10)
-		assertEquals 10, transformEnd
+		assertEquals 0, result.entries.size()
+		assertTrue result.atEnd
+		assertEquals 0, requested.size()
 	}
 }
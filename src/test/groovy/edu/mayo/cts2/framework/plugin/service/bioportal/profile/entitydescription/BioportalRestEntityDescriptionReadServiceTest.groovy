@@ -0,0 +1,131 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.profile.entitydescription
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.After
+import org.junit.Test
+
+import edu.mayo.cts2.framework.model.core.EntityReference
+import edu.mayo.cts2.framework.model.core.ScopedEntityName
+import edu.mayo.cts2.framework.model.entity.NamedEntityDescription
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException
+import edu.mayo.cts2.framework.model.service.core.EntityNameOrURI
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.EntityDescriptionTransform
+import edu.mayo.cts2.framework.plugin.service.bioportal.util.EntityResolver
+
+class BioportalRestEntityDescriptionReadServiceTest {
+
+	def executor = new ParallelExecutor(4, "test")
+
+	def identityLookups = new AtomicInteger()
+
+	def fetched = Collections.synchronizedList([])
+
+	def service = new BioportalRestEntityDescriptionReadService()
+
+	BioportalRestEntityDescriptionReadServiceTest(){
+		service.@bioportalRestService = [
+			getParallelExecutor: { executor }
+		] as BioportalRestService
+
+		service.@identityConverter = [
+			codeSystemVersionNameCodeSystemName: { name ->
+				identityLookups.incrementAndGet()
+				name == "NCIt_1" ? "NCIt" : null
+			},
+			codeSystemVersionNameToOntologyVersionId: { name ->
+				identityLookups.incrementAndGet()
+				"123"
+			}
+		] as IdentityConverter
+
+		service.@entityResolver = [
+			getEntityXml: { id, versionId ->
+				def key = id instanceof ScopedEntityName ? id.name : id
+				fetched << key
+				if(key == "boom"){
+					throw new Cts2RuntimeException("boom")
+				}
+				key == "missing" ? null : "<success>${key}</success>".toString()
+			}
+		] as EntityResolver
+
+		service.@entityDescriptionTransform = [
+			transformEntityDescription: { String xml, csName, csvName ->
+				new NamedEntityDescription(about: xml)
+			}
+		] as EntityDescriptionTransform
+	}
+
+	@After
+	void shutdown(){
+		executor.shutdown()
+	}
+
+	def name(n){
+		new EntityNameOrURI(entityName: new ScopedEntityName(namespace: "NCIt", name: n))
+	}
+
+	@Test
+	void testReadAllInInputOrder(){
+		def ids = ["C3", "C1", "C2"].collect { name(it) }
+
+		def results = service.readAll("NCIt_1", ids)
+
+		assertEquals(["C3", "C1", "C2"], results.collect { it.id.entityName.name })
+		assertEquals(["<success>C3</success>", "<success>C1</success>", "<success>C2</success>"],
+			results.collect { it.entityDescription.namedEntity.about })
+	}
+
+	@Test
+	void testReadAllResolvesIdentityOnce(){
+		service.readAll("NCIt_1", (1..20).collect { name("C" + it) })
+
+		assertEquals 2, identityLookups.get()
+	}
+
+	@Test
+	void testReadAllFetchesDuplicatesOnce(){
+		def results = service.readAll("NCIt_1", [name("C1"), name("C2"), name("C1")])
+
+		assertEquals 2, fetched.size()
+		assertEquals 3, results.size()
+		assertEquals "<success>C1</success>", results[2].entityDescription.namedEntity.about
+	}
+
+	@Test
+	void testReadAllUri(){
+		def results = service.readAll("NCIt_1", [new EntityNameOrURI(uri: "http://test/C1")])
+
+		assertTrue results[0].found
+		assertEquals(["http://test/C1"], fetched)
+	}
+
+	@Test
+	void testReadAllPerItemErrors(){
+		def results = service.readAll("NCIt_1", [name("C1"), name("boom"), name("missing")])
+
+		assertTrue results[0].found
+		assertNull results[0].error
+
+		assertFalse results[1].found
+		assertEquals "boom", results[1].error.message
+
+		assertFalse results[2].found
+		assertNull results[2].error
+	}
+
+	@Test
+	void testReadAllUnknownVersion(){
+		def results = service.readAll("__INVALID__", [name("C1"), name("C2")])
+
+		assertEquals 2, results.size()
+		assertFalse results.any { it.found }
+		assertTrue fetched.isEmpty()
+	}
+}
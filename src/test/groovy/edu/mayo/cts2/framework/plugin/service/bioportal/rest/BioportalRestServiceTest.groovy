@@ -51,4 +51,21 @@ class BioportalRestServiceTest {
 		
 		assertEquals "&includeproperties=true", url
 	}
+
+	@Test
+	void testGetSearchShards(){
+		service.searchShardSize = 2
+
+		assertEquals([["1", "2"], ["3", "4"], ["5"]], service.getSearchShards(["1", "2", "3", "4", "5"]))
+		assertTrue service.isShardedSearch(["1", "2", "3"])
+		assertFalse service.isShardedSearch(["1", "2"])
+	}
+
+	@Test
+	void testSearchShardingDisabled(){
+		service.searchShardSize = 0
+
+		assertEquals([["1", "2", "3"]], service.getSearchShards(["1", "2", "3"]))
+		assertFalse service.isShardedSearch(["1", "2", "3"])
+	}
 }
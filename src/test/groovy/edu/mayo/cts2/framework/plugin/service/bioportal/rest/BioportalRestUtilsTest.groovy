@@ -2,7 +2,12 @@ package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
 
 import static org.junit.Assert.*
 
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
 import org.junit.Test
+import org.springframework.core.io.ClassPathResource
 
 import edu.mayo.cts2.framework.model.command.Page;
 import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestUtils;
@@ -24,5 +29,35 @@ class BioportalRestUtilsTest {
 		
 		assertEquals 100, BioportalRestUtils.getStart(page)
 	}
+	
+	@Test
+	void testGetDocumentConcurrently(){
+		def xml = new ClassPathResource("bioportalXml/entity.xml").inputStream.getText("UTF-8")
+		def expected = BioportalRestUtils.getDocument(xml).documentElement.nodeName
+		
+		def executor = Executors.newFixedThreadPool(8)
+		def futures = (1..8).collect {
+			executor.submit({
+				(1..50).collect { BioportalRestUtils.getDocument(xml).documentElement.nodeName }
+			} as Callable)
+		}
+		
+		futures.each { future ->
+			future.get(30, TimeUnit.SECONDS).each { assertEquals expected, it }
+		}
+		executor.shutdown()
+	}
+	
+	@Test
+	void testGetDocumentRecoversAfterBadXml(){
+		try {
+			BioportalRestUtils.getDocument("<success><data>")
+			fail()
+		} catch (Exception e){
+			//expected
+		}
+		
+		assertEquals "success", BioportalRestUtils.getDocument("<success/>").documentElement.nodeName
+	}
 
 }
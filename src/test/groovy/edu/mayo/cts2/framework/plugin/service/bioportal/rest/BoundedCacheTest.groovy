@@ -0,0 +1,71 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+
+import org.junit.Test
+
+class BoundedCacheTest {
+
+	def time = 0
+
+	def cache = new BoundedCache(2, 100){
+		protected long now(){
+			time
+		}
+	}
+
+	@Test
+	void testLeastRecentlyUsedIsEvicted(){
+		cache.put("a", 1)
+		cache.put("b", 2)
+		cache.get("a")
+		cache.put("c", 3)
+
+		assertEquals 1, cache.get("a")
+		assertNull cache.get("b")
+		assertEquals 2, cache.size()
+	}
+
+	@Test
+	void testExpired(){
+		cache.put("a", 1)
+		time = 100
+
+		assertNull cache.get("a")
+		assertEquals 0, cache.size()
+	}
+
+	@Test
+	void testBuildOnMiss(){
+		def builds = 0
+		def build = { builds++; "value" } as Callable
+
+		assertEquals "value", cache.get("a", build)
+		assertEquals "value", cache.get("a", build)
+
+		assertEquals 1, builds
+		assertEquals 1, cache.hitCount
+		assertEquals 1, cache.missCount
+	}
+
+	@Test
+	void testRemoveAll(){
+		cache.put("a", 1)
+		cache.put("b", 2)
+
+		cache.removeAll({ it == 1 } as BoundedCache.Condition)
+
+		assertNull cache.get("a")
+		assertEquals 2, cache.get("b")
+	}
+
+	@Test
+	void testZeroDisables(){
+		cache.maxEntries = 0
+		cache.put("a", 1)
+
+		assertEquals 0, cache.size()
+	}
+}
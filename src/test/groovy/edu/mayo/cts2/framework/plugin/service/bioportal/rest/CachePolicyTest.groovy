@@ -0,0 +1,90 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class CachePolicyTest {
+
+	@Test
+	void testDefaultRules(){
+		def policy = new CachePolicy(ttl: 1000)
+
+		def rule = policy.getRule(EndpointFamily.CONCEPT)
+		assertEquals 0, rule.ttl
+		assertFalse rule.serveStaleOnError
+
+		rule = policy.getRule(EndpointFamily.VIRTUAL_ONTOLOGY)
+		assertEquals 1000, rule.ttl
+		assertTrue rule.serveStaleOnError
+		assertEquals 0, rule.refreshAhead
+	}
+
+	@Test
+	void testSetRules(){
+		def policy = new CachePolicy()
+		policy.rules = "search:tier=MEMORY,ttl=5000,maxBytes=1024; VIRTUAL_ONTOLOGY:refreshAhead=300,serveStaleOnError=false"
+
+		def rule = policy.getRule(EndpointFamily.SEARCH)
+		assertEquals CachePolicy.Tier.MEMORY, rule.tier
+		assertEquals 5000, rule.ttl
+		assertEquals 1024, rule.maxBytes
+
+		rule = policy.getRule(EndpointFamily.VIRTUAL_ONTOLOGY)
+		assertEquals CachePolicy.Tier.TTL, rule.tier
+		assertEquals 300, rule.refreshAhead
+		assertFalse rule.serveStaleOnError
+	}
+
+	@Test
+	void testMalformedRulesSkipped(){
+		def policy = new CachePolicy()
+		policy.rules = "NOWHERE:tier=MEMORY;CONCEPT:tier=SOMEWHERE;VIEWS:ttl=abc;ONTOLOGIES:ttl=10"
+
+		assertEquals CachePolicy.Tier.PERSISTENT, policy.getTier(EndpointFamily.CONCEPT)
+		assertEquals CachePolicy.DEFAULT_TTL, policy.getRule(EndpointFamily.VIEWS).ttl
+		assertEquals 10, policy.getRule(EndpointFamily.ONTOLOGIES).ttl
+	}
+
+	@Test
+	void testSetRulesResetsToDefaults(){
+		def policy = new CachePolicy()
+		policy.rules = "SEARCH:tier=PERSISTENT;VIEWS:ttl=10"
+		policy.rules = "VIEWS:ttl=20"
+
+		assertEquals CachePolicy.Tier.MEMORY, policy.getTier(EndpointFamily.SEARCH)
+		assertEquals 20, policy.getRule(EndpointFamily.VIEWS).ttl
+
+		policy.rules = null
+		assertEquals CachePolicy.DEFAULT_TTL, policy.getRule(EndpointFamily.VIEWS).ttl
+	}
+
+	@Test
+	void testPersistentRuleTtl(){
+		def policy = new CachePolicy()
+		policy.rules = "ONTOLOGY_VERSION:ttl=5000;SEARCH:tier=PERSISTENT"
+
+		assertEquals 5000, policy.getRule(EndpointFamily.ONTOLOGY_VERSION).ttl
+		assertEquals 0, policy.getRule(EndpointFamily.SEARCH).ttl
+	}
+
+	@Test
+	void testGetRuleIsCopy(){
+		def policy = new CachePolicy()
+		policy.getRule(EndpointFamily.SEARCH).tier = CachePolicy.Tier.PERSISTENT
+
+		assertEquals CachePolicy.Tier.MEMORY, policy.getTier(EndpointFamily.SEARCH)
+	}
+
+	@Test
+	void testStats(){
+		def stats = new CacheStats()
+		stats.recordHit(100)
+		stats.recordHit(-1)
+		stats.recordHit(300)
+		stats.recordMiss()
+
+		assertEquals 0.75d, stats.hitRatio, 0d
+		assertEquals 200, stats.averageHitAge
+	}
+}
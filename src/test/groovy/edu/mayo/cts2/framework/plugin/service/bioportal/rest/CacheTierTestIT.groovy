@@ -0,0 +1,193 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class CacheTierTestIT {
+
+	def stub = new StubBioportal({ exchange ->
+		"<success><data>${exchange.requestURI.path} ${stub.requests.size()}</data></success>"
+	})
+
+	def requests = stub.requests
+
+	def dir
+
+	@Before
+	void startStubServer(){
+		stub.start()
+
+		dir = File.createTempFile("bioportal-cache", "")
+		dir.delete()
+	}
+
+	@After
+	void stopStubServer(){
+		stub.stop()
+		dir.deleteDir()
+	}
+
+	def start(){
+		def service = new BioportalRestService(apiKey: "test", cachePath: dir.path)
+		service.afterPropertiesSet()
+		service
+	}
+
+	def url(path){
+		stub.url(path)
+	}
+
+	@Test
+	void testVersionedResponsesSurviveRestart(){
+		def service = start()
+		service.doCallBioportal(url("/concepts/44103/root"))
+		service.doCallBioportal(url("/concepts/44103?conceptid=C1"))
+		service.destroy()
+
+		service = start()
+		service.doCallBioportal(url("/concepts/44103/root"))
+		service.doCallBioportal(url("/concepts/44103?conceptid=C1"))
+		service.destroy()
+
+		assertEquals 2, requests.size()
+	}
+
+	@Test
+	void testLatestResponsesExpire(){
+		def service = start()
+		service.latestCacheTtl = 100
+
+		service.doCallBioportal(url("/virtual/ontology/1032"))
+		service.doCallBioportal(url("/virtual/ontology/1032"))
+		assertEquals 1, requests.size()
+
+		Thread.sleep(200)
+
+		service.doCallBioportal(url("/virtual/ontology/1032"))
+		assertEquals 2, requests.size()
+
+		//versioned responses don't expire
+		service.doCallBioportal(url("/ontologies/44103"))
+		Thread.sleep(200)
+		service.doCallBioportal(url("/ontologies/44103"))
+		assertEquals 3, requests.size()
+
+		service.destroy()
+	}
+
+	@Test
+	void testPersistentRuleTtl(){
+		def service = start()
+		service.cacheRules = "ONTOLOGY_VERSION:ttl=100"
+
+		service.doCallBioportal(url("/ontologies/44103"))
+		service.doCallBioportal(url("/ontologies/44103"))
+		assertEquals 1, requests.size()
+
+		Thread.sleep(200)
+
+		service.doCallBioportal(url("/ontologies/44103"))
+		assertEquals 2, requests.size()
+		service.destroy()
+	}
+
+	@Test
+	void testPersistentCacheBudget(){
+		def service = start()
+		["/ontologies/44101", "/ontologies/44102", "/ontologies/44103"].each {
+			service.doCallBioportal(url(it))
+			Thread.sleep(10)
+		}
+
+		def bytes = service.persistentCacheBytes
+		assertTrue bytes > 0
+
+		//the oldest goes, to bring the cache back to 90% of the budget
+		service.persistentCacheMaxBytes = bytes - 1
+
+		assertEquals 2, service.cache.size()
+		assertFalse service.cache.keySet().any { it.contains("/ontologies/44101") }
+
+		service.doCallBioportal(url("/ontologies/44102"))
+		assertEquals 3, requests.size()
+
+		service.doCallBioportal(url("/ontologies/44101"))
+		assertEquals 4, requests.size()
+		assertEquals 2, service.cache.size()
+		assertFalse service.cache.keySet().any { it.contains("/ontologies/44102") }
+
+		bytes = service.persistentCacheBytes
+		service.destroy()
+
+		//weighed again on startup
+		service = start()
+		assertEquals bytes, service.persistentCacheBytes
+		service.destroy()
+	}
+
+	@Test
+	void testSearchesKeptInMemory(){
+		def service = start()
+		service.doCallBioportal(url("/search/heart?ontologyids=1"))
+		service.doCallBioportal(url("/search/heart?ontologyids=1"))
+
+		assertEquals 1, requests.size()
+		assertEquals 1, service.memCache.size()
+		service.destroy()
+	}
+
+	@Test
+	void testServeStaleOnError(){
+		def service = start()
+		service.latestCacheTtl = 100
+
+		def xml = service.doCallBioportal(url("/virtual/ontology/1032"))
+		Thread.sleep(200)
+
+		stub.status = 500
+		assertEquals xml, service.doCallBioportal(url("/virtual/ontology/1032"))
+		assertEquals 2, requests.size()
+
+		def stats = service.getCacheStats(EndpointFamily.VIRTUAL_ONTOLOGY)
+		assertEquals 1, stats.staleHitCount
+		assertEquals 2, stats.missCount
+		service.destroy()
+	}
+
+	@Test
+	void testRefreshAhead(){
+		def service = start()
+		service.cacheRules = "VIRTUAL_ONTOLOGY:ttl=1000,refreshAhead=500"
+
+		def xml = service.doCallBioportal(url("/virtual/ontology/1032"))
+		Thread.sleep(600)
+
+		//still fresh, so served from the cache while it is fetched again
+		assertEquals xml, service.doCallBioportal(url("/virtual/ontology/1032"))
+		Thread.sleep(200)
+
+		assertEquals 2, requests.size()
+		assertFalse xml == service.doCallBioportal(url("/virtual/ontology/1032"))
+
+		def stats = service.getCacheStats(EndpointFamily.VIRTUAL_ONTOLOGY)
+		assertEquals 1, stats.refreshAheadCount
+		assertEquals 2d / 3d, stats.hitRatio, 0.001d
+		service.destroy()
+	}
+
+	@Test
+	void testFamilyMemoryCache(){
+		def service = start()
+		service.cacheRules = "SEARCH:maxBytes=1048576"
+
+		service.doCallBioportal(url("/search/heart?ontologyids=1"))
+		service.doCallBioportal(url("/search/heart?ontologyids=1"))
+
+		assertEquals 1, requests.size()
+		assertEquals 0, service.memCache.size()
+		service.destroy()
+	}
+}
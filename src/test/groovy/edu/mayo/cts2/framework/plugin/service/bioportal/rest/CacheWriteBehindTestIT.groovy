@@ -0,0 +1,66 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Times a bootstrap-sized burst of cached BioPortal calls (one per
+ * ontology, as IdentityConverter does) with and without write-behind commits.
+ */
+class CacheWriteBehindTestIT {
+
+	def calls = 500
+
+	def stub = new StubBioportal({ exchange -> "<success><data>${exchange.requestURI}</data></success>" })
+
+	def cacheDirs = []
+
+	@Before
+	void startStubServer(){
+		stub.start()
+	}
+
+	@After
+	void stopStubServer(){
+		stub.stop()
+		cacheDirs.each { it.deleteDir() }
+	}
+
+	def bootstrap(writeBehind){
+		def dir = File.createTempFile("bioportal-cache", "")
+		dir.delete()
+		cacheDirs << dir
+
+		def service = new BioportalRestService(apiKey: "test", cachePath: dir.path)
+		service.writeBehindEnabled = writeBehind
+		service.afterPropertiesSet()
+
+		def start = System.nanoTime()
+		(1..calls).each {
+			service.doCallBioportal(stub.url("/virtual/ontology/${it}?"), false)
+		}
+		def elapsed = (System.nanoTime() - start) / 1000000
+
+		service.destroy()
+
+		[elapsed, service.cacheCommitter.commitCount]
+	}
+
+	@Test
+	void testBootstrapWallTime(){
+		//warm up
+		bootstrap(true)
+
+		def (commitEach, commitEachCount) = bootstrap(false)
+		def (writeBehind, writeBehindCount) = bootstrap(true)
+
+		println "${calls} cached calls, commit per put: ${commitEach} ms (${commitEachCount} commits)"
+		println "${calls} cached calls, write-behind:   ${writeBehind} ms (${writeBehindCount} commits)"
+
+		assertEquals calls, commitEachCount
+		assertTrue writeBehindCount <= calls / GroupCommitter.DEFAULT_BATCH_SIZE + 1
+	}
+}
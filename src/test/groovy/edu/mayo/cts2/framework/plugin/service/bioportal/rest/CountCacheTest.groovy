@@ -0,0 +1,79 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.model.command.ResolvedFilter
+import edu.mayo.cts2.framework.model.core.MatchAlgorithmReference
+import edu.mayo.cts2.framework.model.core.PropertyReference
+import edu.mayo.cts2.framework.model.core.URIAndEntityName
+
+class CountCacheTest {
+
+	def time = 0
+
+	def cache = new CountCache(2, 100){
+		protected long now(){
+			time
+		}
+	}
+
+	def filter(value, algorithm, property){
+		new ResolvedFilter(
+			matchValue: value,
+			matchAlgorithmReference: new MatchAlgorithmReference(content: algorithm),
+			propertyReference: new PropertyReference(referenceTarget: new URIAndEntityName(name: property)))
+	}
+
+	@Test
+	void testKeyIncludesFilter(){
+		def contains = CountCache.key("ontology:1", filter("heart", "contains", "resourceSynopsis"))
+		def exact = CountCache.key("ontology:1", filter("heart", "exactMatch", "resourceSynopsis"))
+		def definitions = CountCache.key("ontology:1", filter("heart", "contains", "definitions"))
+		def other = CountCache.key("ontology:2", filter("heart", "contains", "resourceSynopsis"))
+
+		assertEquals 4, [contains, exact, definitions, other].toSet().size()
+		assertEquals contains, CountCache.key("ontology:1", filter("heart", "contains", "resourceSynopsis"))
+		assertEquals "ontologyVersion:5", CountCache.key("ontologyVersion:5", null)
+	}
+
+	@Test
+	void testPutAndGet(){
+		assertNull cache.get("a")
+
+		cache.put("a", 25)
+
+		assertEquals 25, cache.get("a")
+		assertEquals 1, cache.hitCount
+		assertEquals 1, cache.missCount
+	}
+
+	@Test
+	void testLeastRecentlyUsedIsEvicted(){
+		cache.put("a", 1)
+		cache.put("b", 2)
+		cache.get("a")
+		cache.put("c", 3)
+
+		assertEquals 2, cache.size()
+		assertEquals 1, cache.get("a")
+		assertNull cache.get("b")
+	}
+
+	@Test
+	void testExpired(){
+		cache.put("a", 1)
+		time = 100
+
+		assertNull cache.get("a")
+	}
+
+	@Test
+	void testClear(){
+		cache.put("a", 1)
+		cache.clear()
+
+		assertEquals 0, cache.size()
+	}
+}
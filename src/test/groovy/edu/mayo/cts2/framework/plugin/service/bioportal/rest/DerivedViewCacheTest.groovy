@@ -0,0 +1,105 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+
+import org.junit.Test
+
+class DerivedViewCacheTest {
+
+	def cache = new DerivedViewCache(2)
+
+	def derivations = 0
+
+	def derive(response){
+		{ derivations++; [response.size()] } as Callable
+	}
+
+	@Test
+	void testSameResponseIsDerivedOnce(){
+		def xml = "<success>one</success>"
+
+		assertEquals([22], cache.get("view", xml, derive(xml)))
+		assertEquals([22], cache.get("view", new String(xml), derive(xml)))
+
+		assertEquals 1, derivations
+		assertEquals 1, cache.hitCount
+	}
+
+	@Test
+	void testViewsOfOneResponseAreSeparate(){
+		def xml = "<success/>"
+
+		cache.get("a", xml, derive(xml))
+		cache.get("b", xml, derive(xml))
+
+		assertEquals 2, derivations
+	}
+
+	@Test
+	void testChangedResponseIsDerivedAgain(){
+		cache.get("view", "<success>1</success>", derive("1"))
+		cache.get("view", "<success>2</success>", derive("2"))
+
+		assertEquals 2, derivations
+	}
+
+	@Test
+	void testCapacityIsBounded(){
+		cache.get("view", "1", derive("1"))
+		cache.get("view", "2", derive("2"))
+		cache.get("view", "1", derive("1"))
+		cache.get("view", "3", derive("3"))
+
+		assertEquals 2, cache.size()
+
+		//"2" was least recently used
+		cache.get("view", "1", derive("1"))
+		assertEquals 3, derivations
+		cache.get("view", "2", derive("2"))
+		assertEquals 4, derivations
+	}
+
+	@Test(expected=UnsupportedOperationException)
+	void testReturnedListIsReadOnly(){
+		cache.get("view", "1", derive("1")).clear()
+	}
+
+	@Test
+	void testCallersShareOneList(){
+		def derivation = { [new Object()] } as Callable
+
+		assertSame cache.get("view", "1", derivation), cache.get("view", "1", derivation)
+	}
+
+	@Test
+	void testUnserializableViewIsCached(){
+		def derivation = { derivations++; [new Object()] } as Callable
+
+		cache.get("view", "1", derivation)
+		cache.get("view", "1", derivation)
+
+		assertEquals 1, derivations
+		assertEquals 1, cache.size()
+	}
+
+	@Test
+	void testResponsesWithTheSameHashAreNotConfused(){
+		assertEquals "Aa".hashCode(), "BB".hashCode()
+
+		assertEquals([2], cache.get("view", "Aa", derive("Aa")))
+		assertEquals(["BB"], cache.get("view", "BB", { ["BB"] } as Callable))
+	}
+
+	@Test
+	void testZeroDisables(){
+		cache.maxEntries = 0
+
+		cache.get("view", "1", derive("1"))
+		cache.get("view", "1", derive("1"))
+
+		assertEquals 2, derivations
+		assertEquals 0, cache.size()
+	}
+}
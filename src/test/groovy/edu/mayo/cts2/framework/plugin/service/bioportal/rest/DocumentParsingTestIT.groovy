@@ -0,0 +1,77 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import javax.xml.parsers.DocumentBuilderFactory
+
+import org.junit.Test
+import org.springframework.core.io.ClassPathResource
+import org.xml.sax.InputSource
+
+/**
+ * Compares multi-threaded parse throughput of the fixture responses using
+ * BioportalRestUtils against a single shared, synchronized DocumentBuilder.
+ */
+class DocumentParsingTestIT {
+
+	def fixtures = [
+		"codeSystemVersion.xml",
+		"entity.xml",
+		"entityDescription.xml",
+		"entitySearch.xml",
+		"valueSetDefinition.xml"].collect {
+			new ClassPathResource("bioportalXml/${it}").inputStream.getText("UTF-8")
+		}
+
+	def iterations = 400
+
+	def sharedBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+
+	def synchronizedParse = { xml ->
+		synchronized(sharedBuilder){
+			sharedBuilder.parse(new InputSource(new StringReader(xml)))
+		}
+	}
+
+	def threadLocalParse = { xml ->
+		BioportalRestUtils.getDocument(xml)
+	}
+
+	def throughput(threads, parse){
+		def executor = Executors.newFixedThreadPool(threads)
+
+		def start = System.nanoTime()
+		def futures = (1..threads).collect {
+			executor.submit({
+				iterations.times { fixtures.each { parse(it) } }
+			} as Callable)
+		}
+		futures.each { it.get(5, TimeUnit.MINUTES) }
+		def seconds = (System.nanoTime() - start) / 1000000000
+
+		executor.shutdown()
+
+		(threads * iterations * fixtures.size()) / seconds
+	}
+
+	@Test
+	void testParseThroughput(){
+		//warm up
+		throughput(2, synchronizedParse)
+		throughput(2, threadLocalParse)
+
+		def cores = Runtime.runtime.availableProcessors()
+		[1, 4, cores].unique().each { threads ->
+			def before = throughput(threads, synchronizedParse)
+			def after = throughput(threads, threadLocalParse)
+
+			printf("%2d threads: synchronized %8.0f docs/s, thread-local %8.0f docs/s%n", threads, before, after)
+
+			assertTrue after > 0
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class EndpointFamilyTest {
+
+	def base = "http://rest.bioontology.org/bioportal"
+
+	def family(path){
+		EndpointFamily.forUrl(base + path)
+	}
+
+	@Test
+	void testFamilies(){
+		assertEquals EndpointFamily.ONTOLOGIES, family("/ontologies?")
+		assertEquals EndpointFamily.ONTOLOGY_VERSION, family("/ontologies/44103")
+		assertEquals EndpointFamily.ONTOLOGY_VERSIONS, family("/ontologies/versions/1032")
+		assertEquals EndpointFamily.VIEWS, family("/views?")
+		assertEquals EndpointFamily.VIEWS, family("/views/versions/1032")
+		assertEquals EndpointFamily.VIRTUAL_ONTOLOGY, family("/virtual/ontology/1032")
+		assertEquals EndpointFamily.CONCEPT, family("/concepts/44103?conceptid=C1234")
+		assertEquals EndpointFamily.HIERARCHY_ROOTS, family("/concepts/44103/root")
+		assertEquals EndpointFamily.CONCEPTS_ALL, family("/concepts/44103/all?pagenum=1&pagesize=50")
+		assertEquals EndpointFamily.SEARCH, family("/search/heart?ontologyids=1032&isexactmatch=1")
+	}
+
+	@Test
+	void testApiKeyIgnored(){
+		assertEquals EndpointFamily.HIERARCHY_ROOTS, family("/concepts/44103/root?apikey=abc")
+	}
+
+	@Test
+	void testOther(){
+		assertEquals EndpointFamily.OTHER, EndpointFamily.forUrl("http://bioportal.bioontology.org/syndication/rss")
+	}
+
+	@Test
+	void testDefaultTiers(){
+		def policy = new CachePolicy()
+
+		[EndpointFamily.ONTOLOGY_VERSION, EndpointFamily.CONCEPT, EndpointFamily.HIERARCHY_ROOTS, EndpointFamily.CONCEPTS_ALL].each {
+			assertEquals CachePolicy.Tier.PERSISTENT, policy.getTier(it)
+		}
+		[EndpointFamily.ONTOLOGIES, EndpointFamily.ONTOLOGY_VERSIONS, EndpointFamily.VIRTUAL_ONTOLOGY, EndpointFamily.VIEWS].each {
+			assertEquals CachePolicy.Tier.TTL, policy.getTier(it)
+		}
+		assertEquals CachePolicy.Tier.MEMORY, policy.getTier(EndpointFamily.SEARCH)
+
+		EndpointFamily.values().each {
+			assertNotNull policy.getTier(it)
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class GroupCommitterTest {
+
+	def commits = new AtomicInteger()
+
+	def committer = new GroupCommitter({ commits.incrementAndGet() } as Runnable)
+
+	@Before
+	void setUp(){
+		committer.writeBehindEnabled = true
+	}
+
+	@After
+	void tearDown(){
+		committer.shutdown()
+	}
+
+	@Test
+	void testCommitsOnBatchSize(){
+		committer.batchSize = 10
+
+		25.times { committer.changed() }
+
+		assertEquals 2, commits.get()
+		assertEquals 5, committer.pendingCount
+	}
+
+	@Test
+	void testDisabledByDefault(){
+		assertFalse new GroupCommitter({} as Runnable).writeBehindEnabled
+	}
+
+	@Test
+	void testCommitsEveryChangeWhenDisabled(){
+		committer.writeBehindEnabled = false
+
+		3.times { committer.changed() }
+
+		assertEquals 3, commits.get()
+		assertEquals 0, committer.pendingCount
+	}
+
+	@Test
+	void testCommitsOnInterval(){
+		committer.commitInterval = 50
+		committer.start()
+
+		committer.changed()
+		assertEquals 0, commits.get()
+
+		def deadline = System.currentTimeMillis() + 5000
+		while(commits.get() == 0 && System.currentTimeMillis() < deadline){
+			Thread.sleep(10)
+		}
+
+		assertEquals 1, commits.get()
+	}
+
+	@Test
+	void testShutdownFlushesPending(){
+		committer.changed()
+		committer.shutdown()
+
+		assertEquals 1, commits.get()
+	}
+
+	@Test
+	void testFlushWithNothingPendingDoesNotCommit(){
+		committer.flush()
+
+		assertEquals 0, commits.get()
+	}
+}
@@ -0,0 +1,56 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class HttpConnectionPoolTest {
+
+	def stub = new StubBioportal({ "<success/>" })
+
+	def service = new BioportalRestService()
+
+	@Before
+	void startStubServer(){
+		stub.start()
+	}
+
+	@After
+	void stopStubServer(){
+		stub.stop()
+		service.httpConnectionPool.shutdown()
+	}
+
+	def url(path){
+		stub.url(path)
+	}
+
+	@Test
+	void testCallBioportalReturnsBody(){
+		assertEquals "<success/>", service.callBioportal(url("/ontologies"))
+	}
+
+	@Test
+	void testConnectionIsReused(){
+		service.callBioportal(url("/ontologies"))
+		service.callBioportal(url("/views"))
+
+		assertEquals 2, stub.clientPorts.size()
+		assertEquals stub.clientPorts[0], stub.clientPorts[1]
+		assertEquals 1, service.httpConnectionPool.connectionsInPool
+		assertEquals 2, service.httpConnectionPool.requestCount
+	}
+
+	@Test
+	void testPoolSettingsAreApplied(){
+		service.maxConnectionsPerRoute = 5
+		service.connectTimeout = 1234
+		service.readTimeout = 4321
+
+		assertEquals 5, service.httpConnectionPool.maxConnectionsPerRoute
+		assertEquals 1234, service.httpConnectionPool.connectTimeout
+		assertEquals 4321, service.httpConnectionPool.readTimeout
+	}
+}
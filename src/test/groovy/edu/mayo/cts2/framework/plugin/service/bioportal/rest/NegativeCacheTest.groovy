@@ -0,0 +1,159 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.springframework.web.client.HttpClientErrorException
+
+import com.sun.syndication.feed.synd.SyndEntryImpl
+import com.sun.syndication.feed.synd.SyndFeedImpl
+
+class NegativeCacheTest {
+
+	def cache = new NegativeCache(2, 60000)
+
+	//every entity is missing
+	def stub = new StubBioportal({ null })
+
+	def service = new BioportalRestService()
+
+	@Before
+	void startStubServer(){
+		stub.start()
+	}
+
+	@After
+	void stopStubServer(){
+		stub.stop()
+		service.httpConnectionPool.shutdown()
+		service.parallelExecutor.shutdown()
+	}
+
+	def url(path){
+		stub.url(path)
+	}
+
+	def callMissing(path, ontologyId){
+		try {
+			service.callBioportal(url(path), ontologyId)
+			fail()
+		} catch (HttpClientErrorException e){
+			assertEquals 404, e.statusCode.value()
+		}
+	}
+
+	@Test
+	void testPutAndHit(){
+		assertFalse cache.isMissing("a")
+
+		cache.put("a", "1")
+
+		assertTrue cache.isMissing("a")
+		assertEquals 1, cache.hitCount
+	}
+
+	@Test
+	void testExpired(){
+		cache.ttl = 0
+		cache.put("a", "1")
+
+		assertFalse cache.isMissing("a")
+		assertEquals 0, cache.size()
+	}
+
+	@Test
+	void testBounded(){
+		cache.put("a", "1")
+		cache.put("b", "1")
+		cache.put("c", "1")
+
+		assertEquals 2, cache.size()
+		assertFalse cache.isMissing("a")
+	}
+
+	@Test
+	void testDisabled(){
+		cache.maxEntries = 0
+		cache.put("a", "1")
+
+		assertFalse cache.isMissing("a")
+	}
+
+	@Test
+	void testInvalidateOntology(){
+		cache.put("a", "1")
+		cache.put("b", "2")
+
+		cache.invalidate(["1"])
+
+		assertFalse cache.isMissing("a")
+		assertTrue cache.isMissing("b")
+	}
+
+	@Test
+	void testInvalidateDropsUntagged(){
+		cache.put("a", null)
+		cache.put("b", "2")
+
+		cache.invalidate(["1"])
+
+		assertFalse cache.isMissing("a")
+		assertTrue cache.isMissing("b")
+	}
+
+	@Test
+	void testRepeated404IsNotSentUpstream(){
+		callMissing("/concepts/1", "1")
+		callMissing("/concepts/1", "1")
+
+		assertEquals 1, stub.requests.size()
+		assertEquals 1, service.negativeCacheHitCount
+	}
+
+	@Test
+	void testChangedOntologyGoesUpstreamAgain(){
+		callMissing("/concepts/1", "1")
+		service.negativeCache.invalidate(["1"])
+		callMissing("/concepts/1", "1")
+
+		assertEquals 2, stub.requests.size()
+	}
+
+	@Test
+	void testFeedUpdateGoesUpstreamAgain(){
+		def dir = File.createTempFile("bioportal-cache", "")
+		dir.delete()
+
+		service.apiKey = "test"
+		service.cachePath = dir.path
+		service.afterPropertiesSet()
+
+		try {
+			callMissing("/concepts/1", "1")
+			callMissing("/concepts/2", "2")
+
+			def feed = new SyndFeedImpl(entries: [
+				new SyndEntryImpl(link: "http://bioportal.bioontology.org/ontologies/1", modules: [new DateModule(new Date())])
+			])
+
+			service.checkForUpdates(feed)
+
+			callMissing("/concepts/1", "1")
+			callMissing("/concepts/2", "2")
+
+			assertEquals 3, stub.requests.size()
+
+			//the same feed again holds nothing new
+			service.checkForUpdates(feed)
+
+			callMissing("/concepts/1", "1")
+
+			assertEquals 3, stub.requests.size()
+		} finally {
+			service.destroy()
+			dir.deleteDir()
+		}
+	}
+}
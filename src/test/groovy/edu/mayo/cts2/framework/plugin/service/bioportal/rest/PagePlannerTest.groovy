@@ -0,0 +1,155 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Test
+
+import edu.mayo.cts2.framework.model.command.Page
+import edu.mayo.cts2.framework.model.directory.DirectoryResult
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.CountedDirectoryResult
+
+class PagePlannerTest {
+
+	def planner = new PagePlanner(100)
+
+	def executor = new ParallelExecutor(4, "test")
+
+	def total = 1000
+
+	def requests = []
+
+	@After
+	void tearDown(){
+		executor.shutdown()
+	}
+
+	//an upstream of 'total' rows, serving whole pages
+	def upstream = { Page page, int from, int to ->
+		def first = page.page * page.maxToReturn
+		def rows = (first..<Math.min(total, first + page.maxToReturn)).collect { it }
+		synchronized(this){
+			requests << page
+		}
+		new DirectoryResult(PagePlanner.slice(rows, from, to), first + page.maxToReturn >= total)
+	} as PagePlanner.PageReader
+
+	@Test
+	void testAlignedWindowIsOnePage(){
+		def plan = planner.plan(200, 10)
+
+		assertEquals 1, plan.pageCount
+		assertEquals 2, plan.pages[0].page
+		assertEquals 100, plan.pages[0].maxToReturn
+		assertEquals 0, plan.getFrom(0)
+		assertEquals 9, plan.getTo(0)
+	}
+
+	@Test
+	void testUnalignedWindowIsSlicedFromItsPage(){
+		def plan = planner.plan(11, 10)
+
+		assertEquals 1, plan.pageCount
+		assertEquals 0, plan.pages[0].page
+		assertEquals 11, plan.getFrom(0)
+		assertEquals 20, plan.getTo(0)
+	}
+
+	@Test
+	void testWindowAcrossABoundary(){
+		def plan = planner.plan(95, 10)
+
+		assertEquals([0, 1], plan.pages*.page)
+		assertEquals 95, plan.getFrom(0)
+		assertEquals 4, plan.getTo(1)
+	}
+
+	@Test
+	void testPagesAreAlwaysFullSizeAndAligned(){
+		[1, 7, 10, 33, 100, 250].each { max ->
+			(0..250).each { start ->
+				def plan = planner.plan(start, max)
+
+				assertTrue plan.pages.every { it.maxToReturn == 100 }
+				assertTrue "start ${start}, max ${max}", plan.pageCount <= (int) Math.ceil(max / 100) + 1
+				assertTrue plan.pages[0].start <= start
+				assertTrue plan.pages[-1].start + plan.pageSize >= start + max
+			}
+		}
+	}
+
+	@Test
+	void testWindowsOfAnySizeShareAPage(){
+		planner.read(0, 10, upstream, executor)
+		planner.read(11, 25, upstream, executor)
+		planner.read(50, 7, upstream, executor)
+
+		assertEquals 1, requests.collect { [it.page, it.maxToReturn] }.unique().size()
+	}
+
+	@Test
+	void testReadStitchesWindow(){
+		def result = planner.read(95, 10, upstream, executor)
+
+		assertEquals((95..104).collect { it }, result.entries)
+		assertFalse result.atEnd
+	}
+
+	@Test
+	void testReadAtEnd(){
+		def result = planner.read(995, 10, upstream, executor)
+
+		assertEquals((995..999).collect { it }, result.entries)
+		assertTrue result.atEnd
+	}
+
+	@Test
+	void testReadWindowEndingOnLastRow(){
+		def result = planner.read(990, 10, upstream, executor)
+
+		assertEquals 10, result.entries.size()
+		assertTrue result.atEnd
+	}
+
+	@Test
+	void testWindowInsideTheLastPageIsNotAtEnd(){
+		assertFalse planner.read(900, 10, upstream, executor).atEnd
+		assertFalse planner.read(990, 5, upstream, executor).atEnd
+		assertTrue planner.read(995, 5, upstream, executor).atEnd
+	}
+
+	@Test
+	void testUpstreamVolumeIsBounded(){
+		[1, 7, 10, 33, 100, 250].each { max ->
+			[0, 1, 50, 99, 100, 150, 399].each { start ->
+				requests.clear()
+
+				planner.read(start, max, upstream, executor)
+
+				assertTrue "start ${start}, max ${max}", requests.sum { it.maxToReturn } <= max + 2 * planner.pageSize
+			}
+		}
+	}
+
+	@Test
+	void testDroppedRowIsNotTheEnd(){
+		//a counted upstream whose reader can't resolve row 5
+		def dropping = { Page page, int from, int to ->
+			def first = page.page * page.maxToReturn
+			def rows = (first..<Math.min(total, first + page.maxToReturn)).collect { it }
+			def window = PagePlanner.slice(rows, from, to)
+			window.remove((Object) 5)
+			new CountedDirectoryResult(window, first + page.maxToReturn >= total, total)
+		} as PagePlanner.PageReader
+
+		def result = planner.read(0, 10, dropping, executor)
+
+		assertEquals 9, result.entries.size()
+		assertFalse result.atEnd
+
+		result = planner.read(990, 10, dropping, executor)
+
+		assertEquals 10, result.entries.size()
+		assertTrue result.atEnd
+	}
+}
@@ -0,0 +1,74 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.After
+import org.junit.Test
+
+import edu.mayo.cts2.framework.model.exception.Cts2RuntimeException
+
+class ParallelExecutorTest {
+
+	def executor = new ParallelExecutor(4, "test")
+
+	@After
+	void tearDown(){
+		executor.shutdown()
+	}
+
+	@Test
+	void testResultsAreInTaskOrder(){
+		def tasks = (1..20).collect { i -> { Thread.sleep(20 - i); i } as Callable }
+
+		assertEquals((1..20).toList(), executor.invokeAll(tasks))
+	}
+
+	@Test
+	void testParallelismIsBounded(){
+		def running = new AtomicInteger()
+		def maxRunning = new AtomicInteger()
+
+		def tasks = (1..20).collect {
+			{
+				def now = running.incrementAndGet()
+				synchronized(maxRunning){
+					maxRunning.set(Math.max(maxRunning.get(), now))
+				}
+				Thread.sleep(20)
+				running.decrementAndGet()
+			} as Callable
+		}
+		executor.invokeAll(tasks)
+
+		assertTrue maxRunning.get() > 1
+		assertTrue maxRunning.get() <= 4
+	}
+
+	@Test
+	void testNestedInvokeRunsInline(){
+		def outer = (1..8).collect {
+			{ executor.invokeAll((1..3).collect { { it } as Callable }).sum() } as Callable
+		}
+
+		assertEquals([6] * 8, executor.invokeAll(outer))
+	}
+
+	@Test(expected=IllegalStateException)
+	void testFailureIsRethrownAfterAllFinish(){
+		def tasks = [
+			{ throw new IllegalStateException() } as Callable,
+			{ "ok" } as Callable]
+
+		executor.invokeAll(tasks)
+	}
+
+	@Test(expected=Cts2RuntimeException)
+	void testAwaitIsBounded(){
+		executor.awaitTimeout = 50
+
+		executor.await(executor.submit({ Thread.sleep(5000) } as Callable))
+	}
+}
@@ -0,0 +1,29 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class RateLimiterTest {
+
+	@Test
+	void testNoLimit(){
+		def limiter = new RateLimiter(0)
+
+		def start = System.currentTimeMillis()
+		1000.times { limiter.acquire() }
+
+		assertTrue System.currentTimeMillis() - start < 1000
+	}
+
+	@Test
+	void testLimitSpacesCalls(){
+		def limiter = new RateLimiter(50)
+
+		def start = System.currentTimeMillis()
+		11.times { limiter.acquire() }
+
+		//the first call is free, the next 10 are 20ms apart
+		assertTrue System.currentTimeMillis() - start >= 180
+	}
+}
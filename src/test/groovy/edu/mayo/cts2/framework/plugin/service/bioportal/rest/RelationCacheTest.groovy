@@ -0,0 +1,73 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.RelatedEntityList
+
+class RelationCacheTest {
+
+	def cache = new RelationCache(2)
+
+	def builds = 0
+
+	def build(name){
+		{ -> builds++; related(name) } as Callable
+	}
+
+	def related(name){
+		new RelatedEntityList([name], ["http://test/${name}".toString()], ["Label ${name}".toString()])
+	}
+
+	@Test
+	void testKey(){
+		assertEquals "123|NCIt:C1|SubClass", RelationCache.key("123", "NCIt:C1", "SubClass")
+		assertFalse RelationCache.key("123", "NCIt:C1", "SubClass") == RelationCache.key("124", "NCIt:C1", "SubClass")
+	}
+
+	@Test
+	void testBuiltOnce(){
+		def first = cache.get("a", build("x"))
+		def second = cache.get("a", build("y"))
+
+		assertEquals "x", first.getName(0)
+		assertSame first, second
+		assertEquals 1, builds
+		assertEquals 1, cache.hitCount
+		assertEquals 1, cache.missCount
+	}
+
+	@Test
+	void testEvictsLeastRecentlyUsed(){
+		cache.get("a", build("1"))
+		cache.get("b", build("2"))
+		cache.get("a", build("1"))
+		cache.get("c", build("3"))
+
+		assertEquals 2, cache.size()
+		assertEquals "1", cache.get("a", build("-1")).getName(0)
+		assertEquals "-2", cache.get("b", build("-2")).getName(0)
+	}
+
+	@Test
+	void testOff(){
+		cache.maxEntries = 0
+
+		cache.get("a", build("1"))
+		cache.get("a", build("1"))
+
+		assertEquals 2, builds
+		assertEquals 0, cache.size()
+	}
+
+	@Test
+	void testClear(){
+		cache.get("a", build("1"))
+		cache.clear()
+
+		assertEquals 0, cache.size()
+	}
+}
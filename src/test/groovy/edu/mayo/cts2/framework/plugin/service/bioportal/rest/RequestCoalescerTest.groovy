@@ -0,0 +1,63 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+class RequestCoalescerTest {
+
+	def coalescer = new RequestCoalescer<String>()
+
+	@Test
+	void testConcurrentCallsShareOneExecution(){
+		def threads = 8
+		def calls = new AtomicInteger()
+		def release = new CountDownLatch(1)
+
+		def work = {
+			calls.incrementAndGet()
+			release.await()
+			"<success/>"
+		} as Callable
+
+		def executor = Executors.newFixedThreadPool(threads)
+		def futures = (1..threads).collect {
+			executor.submit({ coalescer.execute("http://test/url", work) } as Callable)
+		}
+
+		while(coalescer.coalescedCount < threads - 1){
+			Thread.sleep(10)
+		}
+		release.countDown()
+
+		futures.each { assertEquals "<success/>", it.get(5, TimeUnit.SECONDS) }
+		executor.shutdown()
+
+		assertEquals 1, calls.get()
+		assertEquals threads - 1, coalescer.coalescedCount
+		assertEquals 0, coalescer.inFlightCount
+	}
+
+	@Test
+	void testSequentialCallsAreNotCoalesced(){
+		def calls = new AtomicInteger()
+		def work = { calls.incrementAndGet(); "xml" } as Callable
+
+		coalescer.execute("http://test/url", work)
+		coalescer.execute("http://test/url", work)
+
+		assertEquals 2, calls.get()
+		assertEquals 0, coalescer.coalescedCount
+	}
+
+	@Test(expected=IllegalStateException)
+	void testFailureIsRethrown(){
+		coalescer.execute("http://test/url", { throw new IllegalStateException() } as Callable)
+	}
+}
@@ -0,0 +1,117 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import org.junit.Test
+
+class ResponseCacheTest {
+
+	/* each "key-n"/"xxxxxxxxxx" entry weighs 64 + 2 * (5 + 10) = 94 bytes */
+	def value = "xxxxxxxxxx"
+
+	@Test
+	void testGetAndPut(){
+		def cache = new ResponseCache(1024)
+
+		assertNull cache.get("key-1")
+		assertTrue cache.put("key-1", value)
+		assertEquals value, cache.get("key-1")
+
+		assertEquals 1, cache.hitCount
+		assertEquals 1, cache.missCount
+		assertEquals 94, cache.weightedSize
+	}
+
+	@Test
+	void testWeightIsBounded(){
+		def cache = new ResponseCache(300)
+
+		(1..9).each { cache.put("key-${it}" as String, value) }
+
+		assertEquals 3, cache.size()
+		assertTrue cache.weightedSize <= 300
+		assertEquals 6, cache.evictionCount
+	}
+
+	@Test
+	void testOversizedEntryIsRejected(){
+		def cache = new ResponseCache(100)
+
+		assertFalse cache.put("key-1", "x" * 100)
+		assertEquals 1, cache.rejectionCount
+		assertEquals 0, cache.size()
+	}
+
+	@Test
+	void testEntryKeepsStoredTime(){
+		def cache = new ResponseCache(1024)
+
+		cache.put("key-1", value, 1234L)
+		assertEquals 1234L, cache.peekEntry("key-1").storedAt
+		assertEquals value, cache.getEntry("key-1").value
+
+		//evicted entries take their stored time with them
+		cache.maximumWeight = 0
+		assertNull cache.peekEntry("key-1")
+	}
+
+	@Test
+	void testFrequentEntriesSurviveAScan(){
+		def cache = new ResponseCache(300)
+
+		(1..3).each { cache.put("hot-${it}" as String, value) }
+		5.times { (1..3).each { cache.get("hot-${it}" as String) } }
+
+		(1..50).each {
+			def key = "c-${it}" as String
+			cache.get(key)
+			cache.put(key, value)
+		}
+
+		(1..3).each { assertNotNull cache.get("hot-${it}" as String) }
+		assertTrue cache.rejectionCount > 0
+	}
+
+	@Test
+	void testRemoveAndResize(){
+		def cache = new ResponseCache(1024)
+
+		(1..5).each { cache.put("key-${it}" as String, value) }
+		cache.remove("key-1")
+		assertNull cache.peek("key-1")
+		assertEquals 4 * 94, cache.weightedSize
+
+		cache.maximumWeight = 200
+		assertEquals 2, cache.size()
+		assertNotNull cache.peek("key-5")
+	}
+
+	@Test
+	void testConcurrentAccessKeepsWeightConsistent(){
+		def cache = new ResponseCache(2000)
+		def executor = Executors.newFixedThreadPool(8)
+
+		def futures = (1..8).collect { thread ->
+			executor.submit({
+				1000.times { i ->
+					def key = "k-${(thread * 7 + i) % 100}" as String
+					if(cache.get(key) == null){
+						cache.put(key, value)
+					}
+				}
+			} as Callable)
+		}
+		futures.each { it.get(30, TimeUnit.SECONDS) }
+		executor.shutdown()
+
+		assertTrue cache.weightedSize <= 2000
+		def expected = (0..99).collect { "k-${it}" as String }.findAll { cache.peek(it) != null }.sum(0) {
+			64 + 2 * (it.length() + value.length())
+		}
+		assertEquals expected, cache.weightedSize
+	}
+}
@@ -0,0 +1,140 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import edu.mayo.cts2.framework.model.command.Page
+import edu.mayo.cts2.framework.model.command.ResolvedFilter
+import edu.mayo.cts2.framework.model.core.PropertyReference
+import edu.mayo.cts2.framework.model.core.URIAndEntityName
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.SearchResultReader
+import edu.mayo.cts2.framework.plugin.service.bioportal.transform.ShardedSearchReader
+import edu.mayo.cts2.framework.service.meta.StandardMatchAlgorithmReference
+
+/**
+ * Compares the latency of one multi-ontology search request against the same
+ * search split into concurrent shards, using a stub BioPortal whose response
+ * time grows with the number of ontologies searched.
+ */
+class ShardedSearchTestIT {
+
+	def ontologyIds = (1..32).collect { it.toString() }
+
+	def matchesPerOntology = 10
+
+	def baseLatency = 20
+
+	def latencyPerOntology = 4
+
+	def iterations = 50
+
+	def stub = new StubBioportal({ exchange ->
+		def query = exchange.requestURI.query
+		def ids = query.find(/ontologyids=([^&]*)/) { all, ids -> ids }.tokenize(",")
+		Thread.sleep(baseLatency + latencyPerOntology * ids.size())
+		respond(query)
+	})
+
+	def cacheDir
+
+	def service
+
+	def reader = new SearchResultReader("conceptIdShort", "ontologyId")
+
+	def respond(query){
+		def params = query.tokenize("&").collectEntries { it.tokenize("=") as List }
+		def ids = params.ontologyids.tokenize(",")
+		def size = params.pagesize as int
+
+		def beans = []
+		ids.each { id ->
+			(0..<matchesPerOntology).each {
+				beans << "<searchBean><conceptIdShort>${id}-${it}</conceptIdShort><ontologyId>${id}</ontologyId></searchBean>"
+			}
+		}
+		def total = beans.size()
+		beans = beans.take(size)
+
+		"""<success><data><page><pageNum>1</pageNum><numPages>${(int)Math.ceil(total / size)}</numPages>
+			<pageSize>${size}</pageSize><numResultsPage>${beans.size()}</numResultsPage><numResultsTotal>${total}</numResultsTotal>
+			<contents><searchResultList>${beans.join('')}</searchResultList></contents></page></data></success>"""
+	}
+
+	@Before
+	void setUp(){
+		stub.start()
+
+		cacheDir = File.createTempFile("bioportal-cache", "")
+		cacheDir.delete()
+
+		service = new BioportalRestService(apiKey: "test", cachePath: cacheDir.path)
+		service.searchShardSize = 4
+
+		service.clientHttpRequestFactory = stub.requestFactory()
+
+		service.afterPropertiesSet()
+	}
+
+	@After
+	void tearDown(){
+		service.destroy()
+		stub.stop()
+		cacheDir.deleteDir()
+	}
+
+	def filter(term){
+		new ResolvedFilter(
+			matchValue: term,
+			matchAlgorithmReference: StandardMatchAlgorithmReference.CONTAINS.matchAlgorithmReference,
+			propertyReference: new PropertyReference(referenceTarget: new URIAndEntityName(name: "resourceSynopsis")))
+	}
+
+	def page(max){
+		new Page(page: 0, maxToReturn: max)
+	}
+
+	def single(term, max){
+		def xml = service.searchEntitiesByOntologyIds(ontologyIds, filter(term), page(max))
+		reader.read(xml, 0, max - 1).results
+	}
+
+	def sharded(term, max){
+		def shards = service.searchEntitiesByOntologyIdShards(ontologyIds, filter(term), page(max))
+		new ShardedSearchReader(reader).read(shards, 0, max - 1, service.parallelExecutor).results
+	}
+
+	def percentile(times, p){
+		def sorted = times.sort(false)
+		sorted[Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1)]
+	}
+
+	def measure(name, search){
+		def times = []
+		iterations.times { i ->
+			//a new term each time, so no response is served from the cache
+			def start = System.nanoTime()
+			def results = search("${name}${i}".toString(), 25)
+			times << (System.nanoTime() - start) / 1000000
+			assertEquals 25, results.size()
+		}
+		times
+	}
+
+	@Test
+	void testShardedSearchLatency(){
+		//the best match of each shard of 4 ontologies comes first
+		assertEquals((0..<8).collect { "${it * 4 + 1}-0".toString() }, sharded("warmup", 25)*.conceptIdShort.take(8))
+
+		def singleTimes = measure("single", this.&single)
+		def shardedTimes = measure("sharded", this.&sharded)
+
+		println "${ontologyIds.size()} ontologies, window of 25: " +
+			"single request p50 ${percentile(singleTimes, 0.5)} ms, p99 ${percentile(singleTimes, 0.99)} ms; " +
+			"shards of ${service.searchShardSize} p50 ${percentile(shardedTimes, 0.5)} ms, p99 ${percentile(shardedTimes, 0.99)} ms"
+
+		assertTrue percentile(shardedTimes, 0.5) < percentile(singleTimes, 0.5)
+	}
+}
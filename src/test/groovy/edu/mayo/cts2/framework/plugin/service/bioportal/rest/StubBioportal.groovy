@@ -0,0 +1,85 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.rest;
+
+import java.util.concurrent.Executors
+
+import org.springframework.http.HttpMethod
+import org.springframework.http.client.ClientHttpRequestFactory
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpHandler
+import com.sun.net.httpserver.HttpServer
+
+/**
+ * A stand-in BioPortal on a local port. Every request is recorded and answered
+ * with the body the responder closure returns for its exchange -- a null body
+ * is answered with a 404.
+ */
+class StubBioportal {
+
+	def server
+
+	def executor = Executors.newCachedThreadPool()
+
+	/* the paths asked for, in order */
+	def requests = []
+
+	/* the client port of each request, to tell connections apart */
+	def clientPorts = []
+
+	/* the status of every response with a body */
+	def status = 200
+
+	def respond
+
+	StubBioportal(Closure respond){
+		this.respond = respond
+	}
+
+	def start(){
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+		server.executor = executor
+		server.createContext("/", { HttpExchange exchange ->
+			synchronized(requests){
+				requests << exchange.requestURI.path
+				clientPorts << exchange.remoteAddress.port
+			}
+
+			def body = respond(exchange)
+			if(body == null){
+				exchange.sendResponseHeaders(404, -1)
+			} else {
+				def bytes = body.toString().bytes
+				exchange.sendResponseHeaders(status, bytes.length)
+				exchange.responseBody.write(bytes)
+			}
+			exchange.close()
+		} as HttpHandler)
+		server.start()
+
+		this
+	}
+
+	def stop(){
+		server.stop(0)
+		executor.shutdownNow()
+	}
+
+	def getPort(){
+		server.address.port
+	}
+
+	def url(path){
+		"http://localhost:${port}${path}".toString()
+	}
+
+	/**
+	 * A request factory that sends every BioPortal call to the stub.
+	 */
+	def requestFactory(){
+		def pooled = new HttpConnectionPool().createRequestFactory()
+
+		return { URI uri, HttpMethod method ->
+			pooled.createRequest(new URI("http", null, "localhost", port, uri.path, uri.query, null), method)
+		} as ClientHttpRequestFactory
+	}
+}
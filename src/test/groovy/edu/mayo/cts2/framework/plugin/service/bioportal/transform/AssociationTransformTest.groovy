@@ -12,6 +12,7 @@ import org.springframework.core.io.ClassPathResource
 import org.w3c.dom.*
 
 import edu.mayo.cts2.framework.core.url.UrlConstructor
+import edu.mayo.cts2.framework.model.core.types.AssociationDirection
 import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter
 
 class AssociationTransformTest {
@@ -152,4 +153,70 @@ class AssociationTransformTest {
 			assertNotNull it.getAbout()
 		}
 	}
+	
+	@Test
+	void testTransformReverseAssociationForGraph(){
+		def transform = new AssociationTransform()
+		transform.setUrlConstructor(urlConstructor)
+		transform.setIdentityConverter(idConverter)
+		
+		def xml = new ClassPathResource("bioportalXml/entity.xml").getInputStream().getText("UTF-8")
+		
+		def result = transform.transformReverseAssociationForGraph(new ParsedResponse(xml), "csname", "csvname")
+		
+		assertEquals 6, result.size()
+		
+		def parent = result.find { it.nodeEntity.name == "O00-O99.9" }
+		assertEquals "O00-O99.9", parent.subject.name
+		assertEquals "SubClass", parent.predicate.name
+		assertEquals "O80-O84.9", parent.target.entity.name
+		assertEquals AssociationDirection.TARGET_TO_SOURCE, parent.direction
+		
+		def child = result.find { it.nodeEntity.name == "O84" }
+		assertEquals "O84", child.subject.name
+		assertEquals "SuperClass", child.predicate.name
+		assertEquals "O80-O84.9", child.target.entity.name
+	}
+	
+	@Test
+	void testTransformAssociationForGraphReachesTarget(){
+		def transform = new AssociationTransform()
+		transform.setUrlConstructor(urlConstructor)
+		transform.setIdentityConverter(idConverter)
+		
+		def xml = new ClassPathResource("bioportalXml/entity.xml").getInputStream().getText("UTF-8")
+		
+		def result = transform.transformAssociationForGraph(xml, "csname", "csvname")
+		
+		result.each {
+			assertEquals "O80-O84.9", it.subject.name
+			assertEquals it.target.entity.name, it.nodeEntity.name
+			assertEquals AssociationDirection.SOURCE_TO_TARGET, it.direction
+		}
+	}
+	
+	@Test
+	void testTransformRelatedEntityList(){
+		def transform = new AssociationTransform()
+		transform.setUrlConstructor(urlConstructor)
+		transform.setIdentityConverter(idConverter)
+		
+		def xml = new ClassPathResource("bioportalXml/entity.xml").getInputStream().getText("UTF-8")
+		
+		def list = transform.transformRelatedEntityList(xml, "SubClass")
+		
+		assertEquals 5, list.size()
+		assertEquals "O84", list.getName(0)
+		assertEquals "http://purl.bioontology.org/ontology/ICD10/O84", list.getAbout(0)
+		
+		def page = transform.transformRelatedEntityList(list, 1, 3, "csname", "csvname")
+		
+		assertEquals(["O83", "O82"], page.collect { it.name.name })
+		assertEquals(transform.transformEntitiesForRelationship(xml, "csname", "csvname", "SubClass")[1..2].collect { it.about },
+			page.collect { it.about })
+		page.each {
+			assertNotNull it.href
+			assertEquals "csname", it.name.namespace
+		}
+	}
 }
@@ -0,0 +1,31 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform
+
+import edu.mayo.cts2.framework.model.directory.DirectoryResult
+
+/**
+ * The search transform as it was before the response was streamed -- the whole
+ * page is parsed into a DOM and the window is read from it. Kept as a baseline
+ * for the streaming transform to be checked and timed against.
+ */
+class DomSearchTransform {
+
+	static final String SEARCH_NODELIST = "success.data.page.contents.searchResultList.searchBean"
+
+	static DirectoryResult transform(EntityDescriptionTransform transform, int start, int end, String xml){
+		def response = new ParsedResponse(xml)
+		def nodeList = TransformUtils.getNodeListWithPath(response.document, SEARCH_NODELIST)
+
+		def entries = []
+		for(int i = start; i < nodeList.size() && i <= end; i++){
+			def resultMap = transform.getChildrenTextMap(nodeList.get(i),
+				"conceptId", "conceptIdShort", "preferredName", "ontologyId", "ontologyVersionId")
+
+			def entry = transform.transformSearchResult(resultMap)
+			if(entry != null){
+				entries << entry
+			}
+		}
+
+		new DirectoryResult(entries, response.pageHeader.atEnd)
+	}
+}
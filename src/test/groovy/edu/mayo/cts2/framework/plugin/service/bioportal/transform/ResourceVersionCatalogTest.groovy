@@ -0,0 +1,96 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform;
+
+import static org.junit.Assert.*
+
+import org.junit.After
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor
+
+class ResourceVersionCatalogTest {
+
+	def executor = new ParallelExecutor(4, "test-catalog")
+
+	def loads = Collections.synchronizedList([])
+
+	def catalog = new ResourceVersionCatalog({ ontologyId ->
+		loads << ontologyId
+		["${ontologyId}-a".toString(), "${ontologyId}-b".toString()]
+	} as ResourceVersionCatalog.VersionLoader)
+
+	@After
+	void tearDown(){
+		executor.shutdown()
+	}
+
+	def latest(map){
+		new LinkedHashMap(map)
+	}
+
+	@Test
+	void testVersionsAreInOntologyOrder(){
+		def versions = catalog.getVersions(latest(["2": "20", "1": "10"]), executor)
+
+		assertEquals(["2-a", "2-b", "1-a", "1-b"], versions)
+	}
+
+	@Test
+	void testSecondListingIsFromMemory(){
+		catalog.getVersions(latest(["1": "10", "2": "20"]), executor)
+		catalog.getVersions(latest(["1": "10", "2": "20"]), executor)
+
+		assertEquals(["1", "2"] as Set, loads as Set)
+		assertEquals 2, loads.size()
+	}
+
+	@Test
+	void testOnlyChangedOntologiesAreReloaded(){
+		catalog.getVersions(latest(["1": "10", "2": "20", "3": "30"]), executor)
+		loads.clear()
+
+		catalog.invalidate(["3"])
+		catalog.getVersions(latest(["1": "10", "2": "21", "3": "30", "4": "40"]), executor)
+
+		assertEquals(["2", "3", "4"] as Set, loads as Set)
+	}
+
+	@Test
+	void testRemovedOntologiesAreNotListed(){
+		catalog.getVersions(latest(["1": "10", "2": "20"]), executor)
+
+		assertEquals(["2-a", "2-b"], catalog.getVersions(latest(["2": "20"]), executor))
+	}
+
+	@Test
+	void testClear(){
+		catalog.getVersions(latest(["1": "10"]), executor)
+		catalog.clear()
+
+		assertEquals 0, catalog.size()
+	}
+
+	@Test
+	void testLoadOverlappingAnInvalidationIsNotKept(){
+		def racing
+		racing = new ResourceVersionCatalog({ ontologyId ->
+			//the ontology changes while it is being read
+			racing.invalidate([ontologyId])
+			["${ontologyId}-old".toString()]
+		} as ResourceVersionCatalog.VersionLoader)
+
+		assertEquals(["1-old"], racing.getVersions(latest(["1": "10"]), executor))
+		assertEquals 0, racing.size()
+	}
+
+	@Test
+	void testSizeIsBounded(){
+		def bounded = new ResourceVersionCatalog({ ontologyId ->
+			loads << ontologyId
+			[ontologyId]
+		} as ResourceVersionCatalog.VersionLoader, 2)
+
+		def all = latest(["1": "10", "2": "20", "3": "30"])
+		assertEquals(["1", "2", "3"], bounded.getVersions(all, executor))
+		assertEquals 2, bounded.size()
+	}
+}
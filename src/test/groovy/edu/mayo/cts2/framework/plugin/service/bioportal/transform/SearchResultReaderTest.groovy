@@ -0,0 +1,72 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+import org.springframework.core.io.ClassPathResource
+
+import edu.mayo.cts2.framework.core.url.UrlConstructor
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter
+
+class SearchResultReaderTest {
+
+	def xml = new ClassPathResource("bioportalXml/entitySearch.xml").inputStream.getText("UTF-8")
+
+	def reader = new SearchResultReader("conceptId", "conceptIdShort", "ontologyId")
+
+	@Test
+	void testReadWindow(){
+		def window = reader.read(xml, 1, 3)
+
+		assertEquals 3, window.results.size()
+		assertEquals "http://purl.bioontology.org/ontology/MSH/D001914", window.results[0].conceptId
+		assertEquals "D001914", window.results[0].conceptIdShort
+		assertEquals "1351", window.results[0].ontologyId
+		assertNull window.results[0].preferredName
+	}
+
+	@Test
+	void testReadPageHeader(){
+		def header = reader.read(xml, 0, 0).pageHeader
+
+		assertEquals 25, header.totalCount
+		assertEquals 1, header.pageNumber
+		assertEquals 25, header.pageSize
+		assertEquals 1, header.numberOfPages
+		assertEquals 25, header.numberOfResultsOnPage
+	}
+
+	@Test
+	void testReadPastEnd(){
+		def window = reader.read(xml, 20, 100)
+
+		assertEquals 5, window.results.size()
+		assertEquals 25, window.pageHeader.totalCount
+	}
+
+	@Test
+	void testStreamingMatchesDom(){
+		def transform = new EntityDescriptionTransform(
+			identityConverter: [
+				ontologyIdToCodeSystemName: { "cs-" + it },
+				ontologyVersionIdToCodeSystemVersionName: { id, versionId -> "csv-" + versionId },
+				codeSystemVersionNameToVersion: { it },
+				getCodeSystemAbout: { cs, ns -> "http://about/" + cs }
+			] as IdentityConverter,
+			urlConstructor: [
+				createEntityUrl: { cs, csv, name -> "http://entity/${cs}/${csv}/${name}".toString() },
+				createCodeSystemUrl: { "http://cs/" + it },
+				createCodeSystemVersionUrl: { cs, csv -> "http://cs/${cs}/${csv}".toString() }
+			] as UrlConstructor)
+
+		[[0, 0], [0, 9], [5, 14], [20, 30]].each { start, end ->
+			def streamed = transform.transformEntityDirectoryFromSearch(start, end, xml)
+			def dom = DomSearchTransform.transform(transform, start, end, xml)
+
+			assertEquals dom.atEnd, streamed.atEnd
+			assertEquals dom.entries*.about, streamed.entries*.about
+			assertEquals dom.entries*.href, streamed.entries*.href
+			assertEquals dom.entries*.name*.name, streamed.entries*.name*.name
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform
+
+import static org.junit.Assert.*
+
+import java.lang.management.ManagementFactory
+
+import org.junit.Test
+import org.springframework.core.io.ClassPathResource
+
+import edu.mayo.cts2.framework.core.url.UrlConstructor
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter
+
+/**
+ * Compares latency and allocation of the streaming and DOM search transforms
+ * on a large search page, transforming one window at the front of the page.
+ */
+class SearchTransformTestIT {
+
+	def transform = new EntityDescriptionTransform(
+		identityConverter: [
+			ontologyIdToCodeSystemName: { "cs-" + it },
+			ontologyVersionIdToCodeSystemVersionName: { id, versionId -> "csv-" + versionId },
+			codeSystemVersionNameToVersion: { it },
+			getCodeSystemAbout: { cs, ns -> "http://about/" + cs }
+		] as IdentityConverter,
+		urlConstructor: [
+			createEntityUrl: { cs, csv, name -> "http://entity/${cs}/${csv}/${name}".toString() },
+			createCodeSystemUrl: { "http://cs/" + it },
+			createCodeSystemVersionUrl: { cs, csv -> "http://cs/${cs}/${csv}".toString() }
+		] as UrlConstructor)
+
+	def threadBean = ManagementFactory.threadMXBean
+
+	/* repeat the fixture's searchBeans to build a 5000 result page */
+	def buildLargePage(){
+		def xml = new ClassPathResource("bioportalXml/entitySearch.xml").inputStream.getText("UTF-8")
+
+		def beans = xml.substring(xml.indexOf("<searchBean>"), xml.lastIndexOf("</searchBean>") + "</searchBean>".length())
+
+		xml.replace(beans, beans * 200).
+			replace("<numResultsPage>25</numResultsPage>", "<numResultsPage>5000</numResultsPage>").
+			replace("<numResultsTotal>25</numResultsTotal>", "<numResultsTotal>5000</numResultsTotal>").
+			replace("<pageSize>25</pageSize>", "<pageSize>5000</pageSize>")
+	}
+
+	def measure(iterations, closure){
+		def allocatedBefore = allocatedBytes()
+		def start = System.nanoTime()
+
+		iterations.times(closure)
+
+		def millis = (System.nanoTime() - start) / 1000000 / iterations
+		def bytes = (allocatedBytes() - allocatedBefore) / iterations
+
+		[millis, bytes]
+	}
+
+	def allocatedBytes(){
+		threadBean.respondsTo("getThreadAllocatedBytes") ?
+			threadBean.getThreadAllocatedBytes(Thread.currentThread().id) : 0
+	}
+
+	@Test
+	void testStreamingVersusDom(){
+		def xml = buildLargePage()
+		def iterations = 50
+
+		def dom = { DomSearchTransform.transform(transform, 0, 49, xml) }
+		def streaming = { transform.transformEntityDirectoryFromSearch(0, 49, xml) }
+
+		//warm up
+		10.times(dom)
+		10.times(streaming)
+
+		def (domMillis, domBytes) = measure(iterations, dom)
+		def (streamingMillis, streamingBytes) = measure(iterations, streaming)
+
+		printf("DOM:       %8.2f ms/op %12.0f bytes/op%n", domMillis, domBytes)
+		printf("Streaming: %8.2f ms/op %12.0f bytes/op%n", streamingMillis, streamingBytes)
+
+		assertEquals dom().entries*.about, streaming().entries*.about
+	}
+}
@@ -0,0 +1,97 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.FutureTask
+
+import org.junit.After
+import org.junit.Test
+
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor
+
+class ShardedSearchReaderTest {
+
+	def executor = new ParallelExecutor(2, "test")
+
+	def reader = new ShardedSearchReader(new SearchResultReader("conceptIdShort", "ontologyId"))
+
+	@After
+	void tearDown(){
+		executor.shutdown()
+	}
+
+	def page(ontologyId, total, size){
+		def count = Math.min(total, size)
+		def beans = (0..<count).collect {
+			"<searchBean><conceptIdShort>${ontologyId}-${it}</conceptIdShort><ontologyId>${ontologyId}</ontologyId></searchBean>"
+		}
+		"""<success><data><page><pageNum>1</pageNum><numPages>1</numPages><pageSize>${size}</pageSize>
+			<numResultsPage>${count}</numResultsPage><numResultsTotal>${total}</numResultsTotal>
+			<contents><searchResultList>${beans.join('')}</searchResultList></contents></page></data></success>"""
+	}
+
+	def done(xml){
+		def future = new FutureTask({ xml.toString() } as Callable)
+		future.run()
+		future
+	}
+
+	def pending(){
+		new FutureTask({ throw new IllegalStateException("should have been cancelled") } as Callable)
+	}
+
+	@Test
+	void testMergedByRankThenShard(){
+		def shards = [done(page("A", 2, 10)), done(page("B", 3, 10)), done(page("C", 1, 10))]
+
+		def window = reader.read(shards, 0, 9, executor)
+
+		assertEquals(["A-0", "B-0", "C-0", "A-1", "B-1", "B-2"], window.results*.conceptIdShort)
+		assertTrue window.atEnd
+		assertEquals 0, window.cancelledShards
+	}
+
+	@Test
+	void testWindowSpansShards(){
+		def shards = [done(page("A", 2, 4)), done(page("B", 3, 4)), done(page("C", 1, 4))]
+
+		def window = reader.read(shards, 1, 3, executor)
+
+		assertEquals(["B-0", "C-0", "A-1"], window.results*.conceptIdShort)
+		assertFalse window.atEnd
+	}
+
+	@Test
+	void testFilledWindowCancelsRemainingShards(){
+		def last = pending()
+		def shards = [done(page("A", 5, 3)), done(page("B", 1, 3)), done(page("C", 2, 3)), last]
+
+		def window = reader.read(shards, 0, 2, executor)
+
+		assertEquals(["A-0", "B-0", "C-0"], window.results*.conceptIdShort)
+		assertFalse window.atEnd
+		assertEquals 1, window.cancelledShards
+		assertTrue last.cancelled
+	}
+
+	@Test
+	void testEmptyShardsDoNotFillTheWindow(){
+		def shards = [done(page("A", 0, 2)), done(page("B", 1, 2)), done(page("C", 1, 2))]
+
+		def window = reader.read(shards, 0, 1, executor)
+
+		assertEquals(["B-0", "C-0"], window.results*.conceptIdShort)
+		assertTrue window.atEnd
+	}
+
+	@Test
+	void testEmptyShardsAreSkipped(){
+		def shards = [done(page("A", 0, 5)), done(page("B", 2, 5))]
+
+		def window = reader.read(shards, 0, 4, executor)
+
+		assertEquals(["B-0", "B-1"], window.results*.conceptIdShort)
+		assertTrue window.atEnd
+	}
+}
@@ -0,0 +1,38 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.transform
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+import org.springframework.core.io.ClassPathResource
+
+class TransformUtilsTest {
+
+	def xml = new ClassPathResource("bioportalXml/entitySearch.xml").inputStream.getText("UTF-8")
+
+	@Test
+	void testGetPageHeader(){
+		def header = TransformUtils.getPageHeader(xml)
+
+		assertEquals 25, header.totalCount
+		assertEquals 1, header.pageNumber
+		assertEquals 25, header.pageSize
+		assertEquals 1, header.numberOfPages
+		assertEquals 25, header.numberOfResultsOnPage
+		assertTrue header.atEnd
+	}
+
+	@Test
+	void testPageHeaderNotAtEnd(){
+		assertFalse new PageHeader(100, 2, 25, 4, 25).atEnd
+		assertTrue new PageHeader(100, 4, 25, 4, 25).atEnd
+	}
+
+	@Test
+	void testParsedResponseParsesOnce(){
+		def response = new ParsedResponse(xml)
+
+		assertSame response.document, response.document
+		assertSame response.pageHeader, response.pageHeader
+		assertEquals TransformUtils.getTotalCount(xml), response.pageHeader.totalCount
+	}
+}
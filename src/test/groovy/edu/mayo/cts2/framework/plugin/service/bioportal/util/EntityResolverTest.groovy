@@ -0,0 +1,145 @@
+package edu.mayo.cts2.framework.plugin.service.bioportal.util;
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.After
+import org.junit.Test
+import org.springframework.http.HttpStatus
+import org.springframework.web.client.HttpClientErrorException
+import org.springframework.web.client.HttpServerErrorException
+
+import edu.mayo.cts2.framework.model.core.ScopedEntityName
+import edu.mayo.cts2.framework.plugin.service.bioportal.identity.IdentityConverter
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.BioportalRestService
+import edu.mayo.cts2.framework.plugin.service.bioportal.rest.ParallelExecutor
+
+class EntityResolverTest {
+
+	def executor = new ParallelExecutor(4, "test")
+
+	def calls = []
+
+	def inFlight = new AtomicInteger()
+
+	def maxInFlight = new AtomicInteger()
+
+	//the concept ids the stub BioPortal knows
+	def known = ["NCIt:C1234", "NCIt:C5678"] as Set
+
+	def error = null
+
+	//how long the stub takes to answer each concept id, 50 ms if not set
+	def delays = [:]
+
+	def resolver = new EntityResolver()
+
+	EntityResolverTest(){
+		resolver.@bioportalRestService = [
+			getParallelExecutor: { executor },
+			getEntityByOntologyVersionIdAndEntityId: { versionId, entityId, ontologyId ->
+				synchronized(calls){
+					calls << entityId
+				}
+				def now = inFlight.incrementAndGet()
+				synchronized(maxInFlight){
+					maxInFlight.set(Math.max(maxInFlight.get(), now))
+				}
+				try {
+					Thread.sleep(delays.get(entityId, 50))
+				} finally {
+					inFlight.decrementAndGet()
+				}
+				if(known.contains(entityId)){
+					return "<success>${entityId}</success>".toString()
+				}
+				if(error){
+					throw error
+				}
+				throw new HttpClientErrorException(HttpStatus.NOT_FOUND)
+			}
+		] as BioportalRestService
+		resolver.@identityConverter = new IdentityConverter()
+	}
+
+	@After
+	void tearDown(){
+		executor.shutdown()
+	}
+
+	def name(name){
+		new ScopedEntityName(namespace: "NCIt", name: name)
+	}
+
+	@Test
+	void testSpellingsAreTriedAtOnce(){
+		assertEquals "<success>NCIt:C1234</success>", resolver.getEntityXml(name("C1234"), "1")
+
+		assertTrue maxInFlight.get() > 1
+	}
+
+	@Test
+	void testNotFound(){
+		assertNull resolver.getEntityXml(name("C9999"), "1")
+
+		assertEquals(["C9999", "NCIt:C9999", "NCIt#C9999"] as Set, calls as Set)
+	}
+
+	@Test
+	void testSameSpellingIsNotAskedTwice(){
+		resolver.getEntityXml(name("C9999"), "1")
+
+		assertEquals calls.size(), (calls as Set).size()
+	}
+
+	@Test
+	void testFoundSpellingIsPreferred(){
+		resolver.getEntityXml(name("C1234"), "1")
+
+		assertEquals EntityResolver.Spelling.NAMESPACE_COLON_NAME, resolver.getPreferredSpelling("1")
+
+		calls.clear()
+		assertEquals "<success>NCIt:C5678</success>", resolver.getEntityXml(name("C5678"), "1")
+
+		assertEquals(["NCIt:C5678"], calls)
+	}
+
+	@Test
+	void testPreferredSpellingMissFallsBack(){
+		resolver.getEntityXml(name("C1234"), "1")
+		known << "C_42".replace("_", ":")
+
+		calls.clear()
+		assertEquals "<success>C:42</success>", resolver.getEntityXml(name("C_42"), "1")
+
+		assertEquals 1, calls.count { it == "NCIt:C_42" }
+		assertEquals EntityResolver.Spelling.UNDERSCORE_AS_COLON, resolver.getPreferredSpelling("1")
+	}
+
+	@Test
+	void testEarlierSpellingWinsOverFasterOne(){
+		known << "C1234"
+		delays["C1234"] = 200
+
+		assertEquals "<success>C1234</success>", resolver.getEntityXml(name("C1234"), "1")
+		assertEquals EntityResolver.Spelling.NAME, resolver.getPreferredSpelling("1")
+	}
+
+	@Test
+	void testPoolThreadStopsAtFirstFound(){
+		def xml = executor.await(executor.submit({ resolver.getEntityXml(name("C1234"), "1") } as Callable))
+
+		assertEquals "<success>NCIt:C1234</success>", xml
+		assertEquals(["C1234", "NCIt:C1234"], calls)
+		assertEquals 1, maxInFlight.get()
+	}
+
+	@Test(expected=HttpServerErrorException)
+	void testErrorIsRethrownWhenNothingIsFound(){
+		error = new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR)
+
+		resolver.getEntityXml(name("C9999"), "1")
+	}
+}
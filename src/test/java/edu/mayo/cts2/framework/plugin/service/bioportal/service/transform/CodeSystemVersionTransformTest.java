@@ -11,6 +11,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.w3c.dom.Node;
 
 import edu.mayo.cts2.framework.core.url.UrlConstructor;
 import edu.mayo.cts2.framework.model.codesystemversion.CodeSystemVersionCatalogEntry;
@@ -44,7 +45,7 @@ public class CodeSystemVersionTransformTest {
 		
 		EasyMock.expect(idConverter.ontologyIdToCodeSystemName("1104")).andReturn("testCsName").once();
 		EasyMock.expect(idConverter.getCodeSystemAbout("testCsName", "http://purl.bioontology.org/ontology/")).andReturn("http://test.about").anyTimes();
-		EasyMock.expect(idConverter.getDocumentUri("44450")).andReturn("http://test.doc.uri").anyTimes();
+		EasyMock.expect(idConverter.getDocumentUri(EasyMock.isA(Node.class))).andReturn("http://test.doc.uri").anyTimes();
 		EasyMock.expect(idConverter.codeSystemNameToOntologyId("testCsName")).andReturn("1104").anyTimes();
 		EasyMock.expect(idConverter.codeSystemVersionNameToOntologyVersionId("testCsName")).andReturn("44450").anyTimes();
 		EasyMock.expect(idConverter.codeSystemVersionNameToVersion("testCsName")).andReturn("44450").anyTimes();